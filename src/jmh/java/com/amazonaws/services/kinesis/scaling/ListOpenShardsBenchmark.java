@@ -0,0 +1,92 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares listing the open Shards of a Stream with and without the AT_LATEST
+ * Shard filter, against simulated Streams with a growing history of closed
+ * Shards. Each ListShards call is given a fixed latency to approximate the
+ * round trip to the service, and the pages requested per listing are reported
+ * as a secondary result
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+public class ListOpenShardsBenchmark {
+	private static final String STREAM = "BenchmarkStream";
+
+	@Param({ "500" })
+	public int openShards;
+
+	// each cycle adds 3 closed shards to the history of every open shard
+	@Param({ "0", "1", "5", "10", "20" })
+	public int churnCycles;
+
+	@Param({ "20" })
+	public long latencyMs;
+
+	@Param({ "true", "false" })
+	public boolean useShardFilter;
+
+	private SimulatedKinesisClient client;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Pages {
+		public long pages;
+	}
+
+	@Setup
+	public void setup() {
+		client = new SimulatedKinesisClient(STREAM, openShards);
+		client.setTransactionLimit(SimulatedKinesisClient.LIST_SHARDS, null);
+		client.churn(STREAM, churnCycles);
+		client.setListShardsLatencyMs(latencyMs);
+		StreamScalingUtils.setUseShardFilter(useShardFilter);
+	}
+
+	@TearDown
+	public void tearDown() {
+		StreamScalingUtils.setUseShardFilter(true);
+	}
+
+	@Setup(Level.Iteration)
+	public void resetPages(Pages pages) {
+		pages.pages = 0;
+	}
+
+	@Benchmark
+	public Map<String, ShardHashInfo> listOpenShards(Pages pages) throws Exception {
+		int calls = client.getListShardsCalls();
+		Map<String, ShardHashInfo> open = StreamScalingUtils.getOpenShards(client, STREAM, (String) null);
+		pages.pages += client.getListShardsCalls() - calls;
+
+		return open;
+	}
+}
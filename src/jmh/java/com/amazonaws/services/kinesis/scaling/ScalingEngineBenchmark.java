@@ -0,0 +1,114 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import software.amazon.awssdk.services.kinesis.model.Shard;
+
+/**
+ * Benchmarks of the hot paths of the scaling engine, at Stream sizes from 1 to
+ * 10,000 open Shards. Streams are held in the simulated Kinesis client, with
+ * one cycle of split/merge history so that listings include closed Shards
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ScalingEngineBenchmark {
+	private static final String STREAM = "BenchmarkStream";
+
+	@Param({ "1", "10", "100", "1000", "10000" })
+	public int shardCount;
+
+	private SimulatedKinesisClient client;
+
+	// the full ListShards output, including closed shards
+	private List<Shard> listing;
+
+	private List<ShardHashInfo> openShards;
+
+	private double targetPct;
+
+	@Setup
+	public void setup() throws Exception {
+		client = new SimulatedKinesisClient(STREAM, shardCount);
+		for (String op : new String[] { SimulatedKinesisClient.LIST_SHARDS,
+				SimulatedKinesisClient.DESCRIBE_STREAM_SUMMARY }) {
+			client.setTransactionLimit(op, null);
+		}
+		client.churn(STREAM, 1);
+
+		listing = StreamScalingUtils.listShards(client, STREAM, null);
+		openShards = ShardKeyspaceIndex.build(STREAM, listing).ascending();
+		targetPct = 1d / (shardCount + 1);
+	}
+
+	@Benchmark
+	public void shardHashInfoConstruction(Blackhole bh) {
+		for (Shard s : listing) {
+			bh.consume(new ShardHashInfo(STREAM, s));
+		}
+	}
+
+	@Benchmark
+	public int softCompare() {
+		int result = 0;
+		for (ShardHashInfo s : openShards) {
+			result += StreamScalingUtils.softCompare(s.getPctWidth(), targetPct);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public ShardKeyspaceIndex buildKeyspaceIndex() {
+		return ShardKeyspaceIndex.build(STREAM, listing);
+	}
+
+	@Benchmark
+	public Map<String, ShardHashInfo> getOpenShards() throws Exception {
+		return StreamScalingUtils.getOpenShards(client, STREAM, (String) null);
+	}
+
+	@Benchmark
+	public AdjacentShardList adjacentShardList() throws Exception {
+		return new AdjacentShardList(STREAM, openShards);
+	}
+
+	@Benchmark
+	public ScalingPlan planResize() throws Exception {
+		return ScalingPlanner.plan(STREAM, openShards, shardCount + 1, null, null);
+	}
+
+	@Benchmark
+	public int getNewShardCount() {
+		return StreamScalingUtils.getNewShardCount(shardCount, null, 25, ScaleDirection.UP, null, null)
+				+ StreamScalingUtils.getNewShardCount(shardCount, null, 200, ScaleDirection.UP, null, null)
+				+ StreamScalingUtils.getNewShardCount(shardCount, 1, null, ScaleDirection.UP, null, null)
+				+ StreamScalingUtils.getNewShardCount(shardCount, null, 25, ScaleDirection.DOWN, 1, null)
+				+ StreamScalingUtils.getNewShardCount(shardCount, null, 200, ScaleDirection.DOWN, 1, null)
+				+ StreamScalingUtils.getNewShardCount(shardCount, 1, null, ScaleDirection.DOWN, 1, null);
+	}
+}
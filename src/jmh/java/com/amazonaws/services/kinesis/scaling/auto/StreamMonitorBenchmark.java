@@ -0,0 +1,111 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.kinesis.scaling.ScalingOperationReport;
+import com.amazonaws.services.kinesis.scaling.SimulatedKinesisClient;
+import com.amazonaws.services.kinesis.scaling.StreamScaler;
+
+/**
+ * Benchmark of the StreamMonitor scaling decision, from CloudWatch utilisation
+ * samples through to the report of the Stream, at Stream sizes from 1 to 10,000
+ * open Shards. Utilisation sits between the scale up and scale down
+ * thresholds, so that the simulated Stream is not modified
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StreamMonitorBenchmark {
+	private static final String STREAM = "BenchmarkStream";
+
+	private static final int SAMPLE_MINUTES = 5;
+
+	@Param({ "1", "10", "100", "1000", "10000" })
+	public int shardCount;
+
+	private StreamMonitor monitor;
+
+	private Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> utilisation;
+
+	private Map<KinesisOperationType, StreamMetrics> streamMaxCapacity;
+
+	private DateTime now;
+
+	@Setup
+	public void setup() throws Exception {
+		SimulatedKinesisClient client = new SimulatedKinesisClient(STREAM, shardCount);
+		client.setTransactionLimit(SimulatedKinesisClient.LIST_SHARDS, null);
+		client.setTransactionLimit(SimulatedKinesisClient.DESCRIBE_STREAM_SUMMARY, null);
+
+		ScalingConfig scaleUp = new ScalingConfig();
+		scaleUp.setScaleThresholdPct(75);
+		scaleUp.setScaleAfterMins(SAMPLE_MINUTES);
+		scaleUp.setScalePct(100);
+		ScalingConfig scaleDown = new ScalingConfig();
+		scaleDown.setScaleThresholdPct(25);
+		scaleDown.setScaleAfterMins(SAMPLE_MINUTES);
+		scaleDown.setScalePct(50);
+
+		AutoscalingConfiguration config = new AutoscalingConfiguration();
+		config.setStreamName(STREAM);
+		config.setScaleOnOperation(Arrays.asList(KinesisOperationType.PUT, KinesisOperationType.GET));
+		config.setScaleUp(scaleUp);
+		config.setScaleDown(scaleDown);
+
+		monitor = new StreamMonitor(config, new StreamScaler(client));
+
+		now = new DateTime();
+		utilisation = new HashMap<>();
+		streamMaxCapacity = new HashMap<>();
+		for (KinesisOperationType op : config.getScaleOnOperations()) {
+			StreamMetrics max = new StreamMetrics(op);
+			Map<StreamMetric, UtilisationSeries> samples = new HashMap<>();
+			for (StreamMetric m : StreamMetric.values()) {
+				max.put(m, shardCount * op.getMaxCapacity().get(m));
+
+				// half of the Stream capacity for each minute of the sample
+				Instant end = Instant.ofEpochMilli(now.getMillis());
+				UtilisationSeries series = new UtilisationSeries(end.minusSeconds(SAMPLE_MINUTES * 60), end,
+						StreamMonitor.CLOUDWATCH_PERIOD);
+				for (int i = 0; i < series.getPeriodCount(); i++) {
+					series.add(series.getTimestamp(i), 0.5d * max.get(m));
+				}
+				samples.put(m, series);
+			}
+			streamMaxCapacity.put(op, max);
+			utilisation.put(op, samples);
+		}
+	}
+
+	@Benchmark
+	public ScalingOperationReport processCloudwatchMetrics() {
+		return monitor.processCloudwatchMetrics(utilisation, streamMaxCapacity, SAMPLE_MINUTES, now);
+	}
+}
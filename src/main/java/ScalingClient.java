@@ -34,6 +34,10 @@ import software.amazon.awssdk.regions.Region;
  * down
  * <li>kinesis-endpoint - The endpoint address of the Kinesis Region where the
  * Stream exists
+ * <li>execution-mode - How split/merge resizes are run. Must be one of
+ * "sequential" or "waves"
+ * <li>max-in-flight - Number of Shard operations which may be submitted at once
+ * when running in waves
  */
 public class ScalingClient {
 	private StreamScaler scaler = null;
@@ -72,6 +76,10 @@ public class ScalingClient {
 
 	public static final String WAIT_FOR_COMPLETION = "wait-for-completion";
 
+	public static final String EXECUTION_MODE_PARAM = "execution-mode";
+
+	public static final String MAX_IN_FLIGHT_PARAM = "max-in-flight";
+
 	private String streamName;
 
 	private String shardId;
@@ -150,6 +158,15 @@ public class ScalingClient {
 		}
 
 		scaler = new StreamScaler(this.region);
+
+		if (System.getProperty(EXECUTION_MODE_PARAM) != null) {
+			int maxInFlight = 1;
+			if (System.getProperty(MAX_IN_FLIGHT_PARAM) != null) {
+				maxInFlight = Integer.parseInt(System.getProperty(MAX_IN_FLIGHT_PARAM));
+			}
+			scaler.setExecutionMode(StreamScaler.ExecutionMode.valueOf(System.getProperty(EXECUTION_MODE_PARAM)),
+					maxInFlight);
+		}
 	}
 
 	private void run() throws Exception {
@@ -8,7 +8,6 @@
 
 package com.amazonaws.services.kinesis.scaling;
 
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
@@ -19,37 +18,39 @@ public class AdjacentShardList extends ArrayList<AdjacentShards> {
     public AdjacentShardList(String streamName, List<ShardHashInfo> shards) throws Exception {
         ShardHashInfo previous = null;
         for (ShardHashInfo s : shards) {
-            if (this.size() == 0) {
-                previous = s;
-            } else {
+            if (previous != null) {
                 add(new AdjacentShards(streamName, previous, s));
             }
+            previous = s;
         }
     }
 
+    public AdjacentShardList(String streamName, ShardKeyspaceIndex index) throws Exception {
+        this(streamName, index.ascending());
+    }
+
     @Override
     public boolean add(AdjacentShards shards) {
-        AdjacentShards highest = super.get(super.size());
-
         if (this.size() > 0) {
-            // ensure that the added lowest shard is greater than the current
+            AdjacentShards highest = super.get(super.size() - 1);
+
+            // ensure that the added higher shard continues on from the current
             // max by 1
-            if (!shards.getLowerShard().getStartHash().subtract(
-                    highest.getHigherShard().getEndHash()).equals(new BigInteger("1"))) {
+            if (!highest.getHigherShard().getEndHash().immediatelyPrecedes(shards.getHigherShard().getStartHash())) {
                 return false;
-            } else {
-                this.add(shards);
             }
-        } else {
-            this.add(shards);
         }
 
-        return true;
+        return super.add(shards);
     }
 
     public Stack<ShardHashInfo> asStack() {
         ListIterator<AdjacentShards> shards = this.listIterator(this.size());
         Stack<ShardHashInfo> out = new Stack<>();
+        if (this.isEmpty()) {
+            return out;
+        }
+
         AdjacentShards s = null;
         while (shards.hasPrevious()) {
             s = shards.previous();
@@ -7,8 +7,7 @@
  */
 package com.amazonaws.services.kinesis.scaling;
 
-import java.math.BigInteger;
-import java.util.Map;
+import java.util.Arrays;
 
 import software.amazon.awssdk.services.kinesis.KinesisClient;
 
@@ -25,9 +24,7 @@ public class AdjacentShards {
 
 	public AdjacentShards(String streamName, ShardHashInfo lower, ShardHashInfo higher) throws Exception {
 		// ensure that the shards are adjacent
-		if (!new BigInteger(higher.getShard().hashKeyRange().startingHashKey())
-				.subtract(new BigInteger(lower.getShard().hashKeyRange().endingHashKey()))
-				.equals(new BigInteger("1"))) {
+		if (!lower.getEndHash().immediatelyPrecedes(higher.getStartHash())) {
 			throw new Exception("Shards are not Adjacent");
 		}
 		this.streamName = streamName;
@@ -51,19 +48,18 @@ public class AdjacentShards {
 	 * @throws Exception
 	 */
 	protected ShardHashInfo doMerge(KinesisClient kinesisClient, String currentHighestShardId) throws Exception {
-		StreamScalingUtils.mergeShards(kinesisClient, streamName, this.lowerShard, this.higherShard, true);
-
-		Map<String, ShardHashInfo> openShards = StreamScalingUtils.getOpenShards(kinesisClient, streamName,
-				currentHighestShardId);
-
-		for (ShardHashInfo info : openShards.values()) {
-			if (lowerShard.getShardId().equals(info.getShard().parentShardId())
-					&& higherShard.getShardId().equals(info.getShard().adjacentParentShardId())) {
-				return new ShardHashInfo(streamName, info.getShard());
-			}
-		}
+		return doMerge(new ShardTopology(kinesisClient, streamName, Arrays.asList(this.lowerShard, this.higherShard),
+				currentHighestShardId));
+	}
 
-		throw new Exception(String.format("Unable resolve new created Shard for parents %s and %s",
-				lowerShard.getShardId(), higherShard.getShardId()));
+	/**
+	 * Merge these two Shards, applying the result Shard to the supplied topology
+	 * 
+	 * @param topology
+	 * @return
+	 * @throws Exception
+	 */
+	protected ShardHashInfo doMerge(ShardTopology topology) throws Exception {
+		return topology.merge(this);
 	}
 }
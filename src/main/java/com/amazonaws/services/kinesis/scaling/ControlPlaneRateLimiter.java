@@ -0,0 +1,294 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Token bucket rate limiter for the Kinesis and CloudWatch control plane APIs
+ * of an account in a Region. Kinesis and CloudWatch limit the transactions per
+ * second of these APIs per account, so every Stream Monitor and Scaler using
+ * the same account and Region shares one limiter, rather than each retrying on
+ * its own after it has been throttled.
+ *
+ * Callers wait in one of two lanes. Calls in the HIGH lane are made for
+ * Streams which are being modified, and a call in the LOW lane, such as a
+ * routine refresh of Stream capacity, only takes a token when no HIGH call is
+ * waiting for the same API.
+ *
+ * Clients are registered with the account and Region they call, and clients
+ * which have not been registered each have a limiter of their own
+ */
+public class ControlPlaneRateLimiter {
+	public static enum Priority {
+		HIGH, LOW;
+	}
+
+	// the account of clients built from the default credentials
+	public static final String DEFAULT_ACCOUNT = "default";
+
+	public static final String LIST_SHARDS = "ListShards";
+
+	public static final String DESCRIBE_STREAM_SUMMARY = "DescribeStreamSummary";
+
+	public static final String SPLIT_SHARD = "SplitShard";
+
+	public static final String MERGE_SHARDS = "MergeShards";
+
+	public static final String UPDATE_SHARD_COUNT = "UpdateShardCount";
+
+	public static final String LIST_STREAM_CONSUMERS = "ListStreamConsumers";
+
+	public static final String GET_METRIC_DATA = "GetMetricData";
+
+	public static final String GET_METRIC_STATISTICS = "GetMetricStatistics";
+
+	// default transactions per second for each API, per account. UpdateShardCount
+	// is limited by the UpdateShardCountPlanner
+	public static final Map<String, Integer> DEFAULT_TRANSACTION_LIMITS;
+
+	static {
+		Map<String, Integer> limits = new HashMap<>();
+		limits.put(LIST_SHARDS, 1000);
+		limits.put(DESCRIBE_STREAM_SUMMARY, 20);
+		limits.put(SPLIT_SHARD, 5);
+		limits.put(MERGE_SHARDS, 5);
+		limits.put(LIST_STREAM_CONSUMERS, 5);
+		limits.put(GET_METRIC_DATA, 50);
+		limits.put(GET_METRIC_STATISTICS, 400);
+		DEFAULT_TRANSACTION_LIMITS = Collections.unmodifiableMap(limits);
+	}
+
+	private static final Map<String, ControlPlaneRateLimiter> limiters = new HashMap<>();
+
+	private static final Map<Object, ControlPlaneRateLimiter> clientLimiters = new WeakHashMap<>();
+
+	private class Bucket {
+		private final double transactionsPerSecond;
+
+		private double tokens;
+
+		private long refilledAt;
+
+		private final int[] waiting = new int[Priority.values().length];
+
+		// the most calls waiting at once since the peak was last read
+		private int peakQueueDepth;
+
+		Bucket(double transactionsPerSecond) {
+			this.transactionsPerSecond = transactionsPerSecond;
+			this.tokens = capacity();
+			this.refilledAt = System.nanoTime();
+		}
+
+		// a second of transactions can be made at once
+		private double capacity() {
+			return Math.max(this.transactionsPerSecond, 1);
+		}
+
+		private void refill(long now) {
+			this.tokens = Math.min(capacity(),
+					this.tokens + (now - this.refilledAt) * this.transactionsPerSecond / 1_000_000_000D);
+			this.refilledAt = now;
+		}
+
+		private int getQueueDepth() {
+			int depth = 0;
+			for (int w : this.waiting) {
+				depth += w;
+			}
+			return depth;
+		}
+
+		private void enqueue(Priority priority) {
+			this.waiting[priority.ordinal()]++;
+			this.peakQueueDepth = Math.max(this.peakQueueDepth, getQueueDepth());
+		}
+	}
+
+	private final String name;
+
+	private final Map<String, Integer> transactionLimits = new HashMap<>(DEFAULT_TRANSACTION_LIMITS);
+
+	private final Map<String, Bucket> buckets = new HashMap<>();
+
+	ControlPlaneRateLimiter(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Get the limiter shared by all clients of an account in a Region
+	 *
+	 * @param account
+	 * @param region
+	 * @return
+	 */
+	public static synchronized ControlPlaneRateLimiter get(String account, String region) {
+		String name = String.format("%s/%s", account, region);
+		ControlPlaneRateLimiter limiter = limiters.get(name);
+		if (limiter == null) {
+			limiter = new ControlPlaneRateLimiter(name);
+			limiters.put(name, limiter);
+		}
+		return limiter;
+	}
+
+	/**
+	 * @return the limiters of every account and Region, by account/Region
+	 */
+	public static synchronized Map<String, ControlPlaneRateLimiter> getAll() {
+		return new TreeMap<>(limiters);
+	}
+
+	/**
+	 * Register the account and Region which a Kinesis or CloudWatch client calls,
+	 * so that its calls share the limiter of the account and Region
+	 *
+	 * @param client
+	 * @param account
+	 * @param region
+	 */
+	public static synchronized void register(Object client, String account, String region) {
+		clientLimiters.put(client, get(account, region));
+	}
+
+	/**
+	 * @param client
+	 * @return the limiter of the account and Region of a client, or a limiter of
+	 *         its own if it has not been registered
+	 */
+	public static synchronized ControlPlaneRateLimiter forClient(Object client) {
+		ControlPlaneRateLimiter limiter = clientLimiters.get(client);
+		if (limiter == null) {
+			limiter = new ControlPlaneRateLimiter(String.format("%s@%x", client.getClass().getSimpleName(),
+					System.identityHashCode(client)));
+			clientLimiters.put(client, limiter);
+		}
+		return limiter;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Set the transactions per second of an API, where an account has a limit
+	 * other than the default
+	 *
+	 * @param api
+	 * @param transactionsPerSecond the limit, or null for no limit
+	 */
+	public synchronized void setTransactionLimit(String api, Integer transactionsPerSecond) {
+		if (transactionsPerSecond == null) {
+			this.transactionLimits.remove(api);
+		} else {
+			this.transactionLimits.put(api, transactionsPerSecond);
+		}
+		this.buckets.remove(api);
+		notifyAll();
+	}
+
+	private Bucket getBucket(String api) {
+		Integer limit = this.transactionLimits.get(api);
+		if (limit == null) {
+			return null;
+		}
+
+		Bucket bucket = this.buckets.get(api);
+		if (bucket == null) {
+			bucket = new Bucket(limit);
+			this.buckets.put(api, bucket);
+		}
+		return bucket;
+	}
+
+	/**
+	 * Wait until a call may be made to an API. Calls to APIs without a limit are
+	 * not delayed
+	 *
+	 * @param api
+	 * @param priority
+	 * @throws InterruptedException
+	 */
+	public synchronized void acquire(String api, Priority priority) throws InterruptedException {
+		Bucket bucket = getBucket(api);
+		if (bucket == null) {
+			return;
+		}
+
+		bucket.enqueue(priority);
+		try {
+			while (true) {
+				// the limit may have been changed while waiting
+				if (this.buckets.get(api) != bucket) {
+					Bucket current = getBucket(api);
+					if (current == null) {
+						return;
+					}
+					bucket.waiting[priority.ordinal()]--;
+					bucket = current;
+					bucket.enqueue(priority);
+				}
+
+				bucket.refill(System.nanoTime());
+				boolean mayTake = priority == Priority.HIGH || bucket.waiting[Priority.HIGH.ordinal()] == 0;
+				if (mayTake && bucket.tokens >= 1) {
+					bucket.tokens -= 1;
+					return;
+				}
+
+				// wait for the next token, or for a waiting HIGH call to take one
+				long waitMillis = (long) Math.ceil(Math.max(1 - bucket.tokens, 0) * 1000 / bucket.transactionsPerSecond);
+				wait(Math.max(waitMillis, 1));
+			}
+		} finally {
+			bucket.waiting[priority.ordinal()]--;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * @param api
+	 * @return the number of calls waiting for an API
+	 */
+	public synchronized int getQueueDepth(String api) {
+		Bucket bucket = this.buckets.get(api);
+		return bucket == null ? 0 : bucket.getQueueDepth();
+	}
+
+	/**
+	 * @return the number of calls waiting for each API which has been called
+	 */
+	public synchronized Map<String, Integer> getQueueDepths() {
+		Map<String, Integer> depths = new TreeMap<>();
+		for (Map.Entry<String, Bucket> entry : this.buckets.entrySet()) {
+			depths.put(entry.getKey(), entry.getValue().getQueueDepth());
+		}
+		return depths;
+	}
+
+	/**
+	 * Get the most calls which have waited at once for each API since the last
+	 * time the peaks were read, so that queueing between samples is not missed
+	 *
+	 * @return the peak number of calls waiting for each API which has been called
+	 */
+	public synchronized Map<String, Integer> getPeakQueueDepths() {
+		Map<String, Integer> depths = new TreeMap<>();
+		for (Map.Entry<String, Bucket> entry : this.buckets.entrySet()) {
+			Bucket bucket = entry.getValue();
+			depths.put(entry.getKey(), bucket.peakQueueDepth);
+			bucket.peakQueueDepth = bucket.getQueueDepth();
+		}
+		return depths;
+	}
+}
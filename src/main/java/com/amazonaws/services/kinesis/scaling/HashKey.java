@@ -0,0 +1,248 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Immutable unsigned 128 bit value representing a position in the Kinesis
+ * partition keyspace. The value is held as two longs, so that comparison,
+ * width and fraction calculations don't allocate, and BigInteger or BigDecimal
+ * are not needed. Hash Keys are only converted to and from their decimal String
+ * form at the Kinesis API boundary
+ */
+@JsonSerialize(using = HashKeySerialiser.class)
+public final class HashKey implements Comparable<HashKey> {
+	public static final HashKey MIN = new HashKey(0L, 0L);
+
+	public static final HashKey ONE = new HashKey(0L, 1L);
+
+	public static final HashKey MAX = new HashKey(-1L, -1L);
+
+	// size of the keyspace (2^128) as a double
+	private static final double KEYSPACE_SIZE = 0x1p128;
+
+	private static final long INT_MASK = 0xFFFFFFFFL;
+
+	private final long high;
+
+	private final long low;
+
+	private HashKey(long high, long low) {
+		this.high = high;
+		this.low = low;
+	}
+
+	/**
+	 * Parse a Hash Key from its decimal representation, as returned by the
+	 * Kinesis API
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static HashKey fromString(String value) {
+		if (value == null || value.length() == 0) {
+			throw new NumberFormatException("Hash Key value required");
+		}
+
+		long high = 0L;
+		long low = 0L;
+		for (int i = 0; i < value.length(); i++) {
+			int digit = Character.digit(value.charAt(i), 10);
+			if (digit < 0) {
+				throw new NumberFormatException(String.format("Invalid Hash Key %s", value));
+			}
+
+			// value = (value * 10) + digit, carried across 32 bit limbs
+			long p0 = (low & INT_MASK) * 10 + digit;
+			long p1 = (low >>> 32) * 10 + (p0 >>> 32);
+			long p2 = (high & INT_MASK) * 10 + (p1 >>> 32);
+			long p3 = (high >>> 32) * 10 + (p2 >>> 32);
+
+			if ((p3 >>> 32) != 0) {
+				throw new NumberFormatException(String.format("Hash Key %s exceeds 128 bits", value));
+			}
+
+			low = (p1 << 32) | (p0 & INT_MASK);
+			high = (p3 << 32) | (p2 & INT_MASK);
+		}
+
+		return new HashKey(high, low);
+	}
+
+	/**
+	 * Get the Hash Key which lies at the indicated fraction of the keyspace. Values
+	 * outside of 0-1 are clamped to the keyspace bounds
+	 *
+	 * @param fraction
+	 * @return
+	 */
+	public static HashKey atFraction(double fraction) {
+		if (!(fraction > 0d)) {
+			return MIN;
+		}
+		if (fraction >= 1d) {
+			return MAX;
+		}
+
+		// scaling by a power of 2 is exact, so the only loss of precision is
+		// the 53 bit mantissa of the supplied fraction
+		double scaled = fraction * KEYSPACE_SIZE;
+
+		if (scaled < 0x1p63) {
+			return new HashKey(0L, (long) scaled);
+		} else {
+			long mantissa = (Double.doubleToRawLongBits(scaled) & 0x000FFFFFFFFFFFFFL) | 0x0010000000000000L;
+			int shift = Math.getExponent(scaled) - 52;
+
+			if (shift >= 64) {
+				return new HashKey(mantissa << (shift - 64), 0L);
+			} else {
+				return new HashKey(mantissa >>> (64 - shift), mantissa << shift);
+			}
+		}
+	}
+
+	/**
+	 * Get the width of the keyspace between two Hash Keys
+	 *
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public static HashKey width(HashKey start, HashKey end) {
+		return end.subtract(start);
+	}
+
+	public HashKey add(HashKey other) {
+		long newLow = this.low + other.low;
+		long carry = Long.compareUnsigned(newLow, this.low) < 0 ? 1L : 0L;
+
+		return new HashKey(this.high + other.high + carry, newLow);
+	}
+
+	public HashKey subtract(HashKey other) {
+		long newLow = this.low - other.low;
+		long borrow = Long.compareUnsigned(this.low, other.low) < 0 ? 1L : 0L;
+
+		return new HashKey(this.high - other.high - borrow, newLow);
+	}
+
+	public HashKey increment() {
+		return add(ONE);
+	}
+
+	public HashKey decrement() {
+		return subtract(ONE);
+	}
+
+	/**
+	 * Determine if the supplied Hash Key is exactly one greater than this one,
+	 * which is the case for the end and start Hash Keys of adjacent Shards
+	 *
+	 * @param other
+	 * @return
+	 */
+	public boolean immediatelyPrecedes(HashKey other) {
+		if (this.low == -1L) {
+			return other.low == 0L && other.high == this.high + 1 && this.high != -1L;
+		} else {
+			return other.low == this.low + 1 && other.high == this.high;
+		}
+	}
+
+	/**
+	 * Get the fraction of the overall keyspace that this value represents, such as
+	 * when this Hash Key is the width of a Shard
+	 *
+	 * @return
+	 */
+	public double fraction() {
+		return toDouble() / KEYSPACE_SIZE;
+	}
+
+	public double toDouble() {
+		return unsignedToDouble(this.high) * 0x1p64 + unsignedToDouble(this.low);
+	}
+
+	private static double unsignedToDouble(long value) {
+		double d = (double) (value & Long.MAX_VALUE);
+		if (value < 0) {
+			d += 0x1p63;
+		}
+		return d;
+	}
+
+	@Override
+	public int compareTo(HashKey other) {
+		int c = Long.compareUnsigned(this.high, other.high);
+		if (c != 0) {
+			return c;
+		}
+		return Long.compareUnsigned(this.low, other.low);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof HashKey)) {
+			return false;
+		}
+		HashKey other = (HashKey) o;
+		return this.high == other.high && this.low == other.low;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(this.high) * 31 + Long.hashCode(this.low);
+	}
+
+	/**
+	 * Render the decimal representation of this Hash Key, as accepted by the
+	 * Kinesis API
+	 */
+	@Override
+	public String toString() {
+		if (this.high == 0L && this.low >= 0L) {
+			return Long.toString(this.low);
+		}
+
+		// repeated long division of the 32 bit limbs by 10^9
+		long[] limbs = new long[] { this.high >>> 32, this.high & INT_MASK, this.low >>> 32, this.low & INT_MASK };
+		long[] chunks = new long[5];
+		int chunkCount = 0;
+		boolean nonZero = true;
+		while (nonZero) {
+			long remainder = 0L;
+			nonZero = false;
+			for (int i = 0; i < limbs.length; i++) {
+				long current = (remainder << 32) | limbs[i];
+				limbs[i] = current / 1_000_000_000L;
+				remainder = current % 1_000_000_000L;
+				if (limbs[i] != 0) {
+					nonZero = true;
+				}
+			}
+			chunks[chunkCount++] = remainder;
+		}
+
+		StringBuilder sb = new StringBuilder(39);
+		sb.append(chunks[chunkCount - 1]);
+		for (int i = chunkCount - 2; i >= 0; i--) {
+			String chunk = Long.toString(chunks[i]);
+			for (int pad = chunk.length(); pad < 9; pad++) {
+				sb.append('0');
+			}
+			sb.append(chunk);
+		}
+
+		return sb.toString();
+	}
+}
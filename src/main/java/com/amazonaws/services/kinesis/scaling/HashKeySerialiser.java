@@ -0,0 +1,30 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+public class HashKeySerialiser extends JsonSerializer<HashKey> {
+	public HashKeySerialiser() {
+	}
+
+	public void serialize(HashKey value, JsonGenerator jgen, SerializerProvider provider)
+			throws IOException, JsonGenerationException {
+		if (null == value) {
+			jgen.writeNull();
+		} else {
+			// write as a raw number, as with the previous BigInteger representation
+			jgen.writeNumber(value.toString());
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Planned merge of two adjacent Shards
+ */
+public class MergeShardsOperation extends ShardOperation {
+	private final PlannedShard lowerShard;
+
+	private final PlannedShard higherShard;
+
+	private final PlannedShard mergedShard;
+
+	protected MergeShardsOperation(PlannedShard lowerShard, PlannedShard higherShard) throws Exception {
+		// ensure that the shards are adjacent
+		if (!lowerShard.getEndHash().immediatelyPrecedes(higherShard.getStartHash())) {
+			throw new Exception("Shards are not Adjacent");
+		}
+		this.lowerShard = lowerShard;
+		this.higherShard = higherShard;
+		this.mergedShard = new PlannedShard(null, lowerShard.getStartHash(), higherShard.getEndHash());
+	}
+
+	public PlannedShard getLowerShard() {
+		return lowerShard;
+	}
+
+	public PlannedShard getHigherShard() {
+		return higherShard;
+	}
+
+	public PlannedShard getMergedShard() {
+		return mergedShard;
+	}
+
+	@Override
+	public List<PlannedShard> getParents() {
+		return Arrays.asList(this.lowerShard, this.higherShard);
+	}
+
+	@Override
+	public List<PlannedShard> getChildren() {
+		return Collections.singletonList(this.mergedShard);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Merge %s with %s", this.lowerShard, this.higherShard);
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.text.DecimalFormat;
+
+/**
+ * Immutable transfer object for a Shard in a ScalingPlan. Shards which already
+ * exist in the Stream carry their Shard ID, while Shards which will be created
+ * by a planned operation only carry their predicted hash boundaries until the
+ * operation has been run
+ */
+public class PlannedShard {
+	private final String shardId;
+
+	private final HashKey startHash;
+
+	private final HashKey endHash;
+
+	private final double pctWidth;
+
+	protected PlannedShard(String shardId, HashKey startHash, HashKey endHash) {
+		this.shardId = shardId;
+		this.startHash = startHash;
+		this.endHash = endHash;
+		this.pctWidth = HashKey.width(startHash, endHash).fraction();
+	}
+
+	public static PlannedShard of(ShardHashInfo shard) {
+		return new PlannedShard(shard.getShardId(), shard.getStartHash(), shard.getEndHash());
+	}
+
+	/**
+	 * @return the Shard ID of an existing Shard, or null if the Shard will be
+	 *         created by the plan
+	 */
+	public String getShardId() {
+		return shardId;
+	}
+
+	public boolean isExisting() {
+		return this.shardId != null;
+	}
+
+	public HashKey getStartHash() {
+		return startHash;
+	}
+
+	public HashKey getEndHash() {
+		return endHash;
+	}
+
+	public double getPctWidth() {
+		return pctWidth;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s - Start: %s, End: %s (%s)", this.shardId == null ? "New Shard" : this.shardId,
+				this.startHash, this.endHash, new DecimalFormat("#0.000%").format(this.pctWidth));
+	}
+}
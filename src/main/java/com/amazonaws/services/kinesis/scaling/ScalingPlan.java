@@ -0,0 +1,154 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transfer Object for the ordered set of Shard operations which will take a
+ * Stream from its current layout to the target number of Shards, along with
+ * the predicted layout once all operations have been run
+ */
+public class ScalingPlan {
+	private final String streamName;
+
+	private final int originalShardCount;
+
+	private final int targetShardCount;
+
+	private final ScaleDirection scaleDirection;
+
+	private final ScalingCompletionStatus endStatus;
+
+	private final List<ShardOperation> operations;
+
+	private final List<PlannedShard> finalLayout;
+
+	protected ScalingPlan(String streamName, int originalShardCount, int targetShardCount,
+			ScaleDirection scaleDirection, ScalingCompletionStatus endStatus, List<ShardOperation> operations,
+			List<PlannedShard> finalLayout) {
+		this.streamName = streamName;
+		this.originalShardCount = originalShardCount;
+		this.targetShardCount = targetShardCount;
+		this.scaleDirection = scaleDirection;
+		this.endStatus = endStatus;
+		this.operations = Collections.unmodifiableList(operations);
+		this.finalLayout = Collections.unmodifiableList(finalLayout);
+	}
+
+	public String getStreamName() {
+		return streamName;
+	}
+
+	public int getOriginalShardCount() {
+		return originalShardCount;
+	}
+
+	public int getTargetShardCount() {
+		return targetShardCount;
+	}
+
+	public ScaleDirection getScaleDirection() {
+		return scaleDirection;
+	}
+
+	/**
+	 * @return the completion status to report once the plan has been run, such
+	 *         as when planning stopped at the minimum or maximum Shard count
+	 */
+	public ScalingCompletionStatus getEndStatus() {
+		return endStatus;
+	}
+
+	public List<ShardOperation> getOperations() {
+		return operations;
+	}
+
+	/**
+	 * @return the predicted open Shards once the plan has been run, ordered by
+	 *         start hash
+	 */
+	public List<PlannedShard> getFinalLayout() {
+		return finalLayout;
+	}
+
+	public int getOperationCount() {
+		return this.operations.size();
+	}
+
+	public int getSplitCount() {
+		int splits = 0;
+		for (ShardOperation op : this.operations) {
+			if (op instanceof SplitShardOperation) {
+				splits++;
+			}
+		}
+		return splits;
+	}
+
+	public int getMergeCount() {
+		return getOperationCount() - getSplitCount();
+	}
+
+	/**
+	 * Group the operations of the plan into waves, where every operation in a
+	 * wave only depends on Shards which exist before the wave starts. Operations
+	 * in the same wave work on disjoint parts of the keyspace, and can be run
+	 * without waiting for each other
+	 * 
+	 * @return the operations in each wave, in the order that the waves must be
+	 *         run
+	 */
+	public List<List<ShardOperation>> getWaves() {
+		List<List<ShardOperation>> waves = new ArrayList<>();
+		Map<PlannedShard, Integer> createdInWave = new IdentityHashMap<>();
+
+		for (ShardOperation op : this.operations) {
+			// an operation runs in the wave after the latest of its parents was
+			// created
+			int wave = 0;
+			for (PlannedShard parent : op.getParents()) {
+				Integer parentWave = createdInWave.get(parent);
+				if (parentWave != null) {
+					wave = Math.max(wave, parentWave + 1);
+				}
+			}
+
+			while (waves.size() <= wave) {
+				waves.add(new ArrayList<ShardOperation>());
+			}
+			waves.get(wave).add(op);
+
+			for (PlannedShard child : op.getChildren()) {
+				createdInWave.put(child, wave);
+			}
+		}
+
+		return waves;
+	}
+
+	/**
+	 * @return the approximate time taken to run the plan, when running one
+	 *         operation at a time
+	 */
+	public long getEstimatedDurationSeconds() {
+		return (long) getOperationCount() * ScalingPlanner.ESTIMATED_SECONDS_PER_OPERATION;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%s: Scaling Plan from %s to %s Shards requires %s Operations (%s Splits, %s Merges), estimated %s Seconds",
+				this.streamName, this.originalShardCount, this.finalLayout.size(), getOperationCount(),
+				getSplitCount(), getMergeCount(), getEstimatedDurationSeconds());
+	}
+}
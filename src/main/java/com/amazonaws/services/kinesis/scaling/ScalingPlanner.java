@@ -0,0 +1,169 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * Computes the full set of split and merge operations required to move a
+ * Stream to a target Shard count, without making any calls to Kinesis. Uses
+ * the same left leaning balanced topology as has always been applied by the
+ * StreamScaler, working from the lowest start hash upwards, so the resulting
+ * layout is the same as when each operation was discovered after the previous
+ * one completed
+ */
+public class ScalingPlanner {
+	// stream mutation takes around 30 seconds per modification
+	public static final int ESTIMATED_SECONDS_PER_OPERATION = 30;
+
+	private ScalingPlanner() {
+	}
+
+	/**
+	 * Plan the resize of a Stream to the indicated number of Shards
+	 *
+	 * @param streamName   The Stream being scaled
+	 * @param openShards   The current open Shards, in any order
+	 * @param targetShards The desired number of Shards
+	 * @param minCount     Minimum Shard count at which planning stops, or null
+	 * @param maxCount     Maximum Shard count at which planning stops, or null
+	 * @return
+	 * @throws Exception
+	 */
+	public static ScalingPlan plan(String streamName, List<ShardHashInfo> openShards, int targetShards,
+			Integer minCount, Integer maxCount) throws Exception {
+		return plan(streamName, openShards, targetShards, 1d / targetShards, minCount, maxCount);
+	}
+
+	/**
+	 * Plan the resize of a set of adjacent Shards so that each resulting Shard has
+	 * the indicated width of the keyspace
+	 *
+	 * @param streamName   The Stream being scaled
+	 * @param openShards   The adjacent Shards to resize, in any order
+	 * @param targetShards The number of Shards being scaled to
+	 * @param targetPct    The target width of each Shard as a fraction of the
+	 *                     keyspace
+	 * @param minCount     Minimum Shard count at which planning stops, or null
+	 * @param maxCount     Maximum Shard count at which planning stops, or null
+	 * @return
+	 * @throws Exception
+	 */
+	public static ScalingPlan plan(String streamName, List<ShardHashInfo> openShards, int targetShards,
+			double targetPct, Integer minCount, Integer maxCount) throws Exception {
+		if (targetShards <= 0) {
+			throw new Exception(streamName + ": Cannot plan for 0 or negative Shard Count");
+		}
+
+		// build the working stack with the lowest start hash on top
+		List<PlannedShard> ordered = new ArrayList<>();
+		for (ShardHashInfo s : openShards) {
+			ordered.add(PlannedShard.of(s));
+		}
+		Collections.sort(ordered, new Comparator<PlannedShard>() {
+			public int compare(PlannedShard o1, PlannedShard o2) {
+				return o2.getStartHash().compareTo(o1.getStartHash());
+			}
+		});
+		Stack<PlannedShard> shardStack = new Stack<>();
+		shardStack.addAll(ordered);
+
+		final int originalShardCount = shardStack.size();
+		final boolean checkMinMax = minCount != null || maxCount != null;
+		final ScaleDirection scaleDirection = originalShardCount >= targetShards ? ScaleDirection.DOWN
+				: ScaleDirection.UP;
+
+		List<ShardOperation> operations = new ArrayList<>();
+		List<PlannedShard> completed = new ArrayList<>();
+		ScalingCompletionStatus endStatus = ScalingCompletionStatus.Ok;
+		int currentCount = originalShardCount;
+
+		while (!shardStack.empty()) {
+			if (checkMinMax) {
+				// stop scaling if we've reached the min or max count
+				if ((minCount != null && currentCount == minCount && targetShards <= minCount)
+						|| (maxCount != null && currentCount == maxCount && targetShards >= maxCount)) {
+					if (operations.size() == 0) {
+						endStatus = (maxCount != null && currentCount == maxCount && targetShards >= maxCount)
+								? ScalingCompletionStatus.AlreadyAtMaximum
+								: ScalingCompletionStatus.AlreadyAtMinimum;
+					}
+					break;
+				}
+			}
+
+			PlannedShard lowerShard = shardStack.pop();
+
+			// first check is if the bottom shard is smaller or larger than our
+			// target width
+			if (StreamScalingUtils.softCompare(lowerShard.getPctWidth(), targetPct) < 0) {
+				if (shardStack.empty()) {
+					// our current shard is smaller than the target size, but
+					// there's nothing else to do
+					completed.add(lowerShard);
+					break;
+				}
+
+				PlannedShard higherShard = shardStack.pop();
+
+				if (StreamScalingUtils.softCompare(lowerShard.getPctWidth() + higherShard.getPctWidth(),
+						targetPct) > 0) {
+					// The two lowest shards together are larger than the target
+					// size, so split the upper at the target offset and merge the
+					// lower of the two new shards to the lowest shard
+					SplitShardOperation splitUpper = new SplitShardOperation(higherShard, higherShard.getStartHash()
+							.add(HashKey.atFraction(targetPct - lowerShard.getPctWidth())));
+					operations.add(splitUpper);
+					shardStack.push(splitUpper.getHigherShard());
+
+					MergeShardsOperation mergeLower = new MergeShardsOperation(lowerShard,
+							splitUpper.getLowerShard());
+					operations.add(mergeLower);
+					completed.add(mergeLower.getMergedShard());
+
+					// count of shards is unchanged in this case as we've just
+					// rebalanced
+				} else {
+					// The lower and upper shards together are smaller than the
+					// target size, so merge the two shards together and put the
+					// new shard back on the stack - it may still be too small
+					// relative to the target
+					MergeShardsOperation merge = new MergeShardsOperation(lowerShard, higherShard);
+					operations.add(merge);
+					shardStack.push(merge.getMergedShard());
+					currentCount--;
+				}
+			} else if (StreamScalingUtils.softCompare(lowerShard.getPctWidth(), targetPct) == 0) {
+				// at the correct size - move on
+				completed.add(lowerShard);
+			} else {
+				// lowest shard is larger than the target size so split at the
+				// target offset, and push the higher of the two splits back onto
+				// the stack
+				SplitShardOperation splitLower = new SplitShardOperation(lowerShard,
+						lowerShard.getStartHash().add(HashKey.atFraction(targetPct)));
+				operations.add(splitLower);
+				completed.add(splitLower.getLowerShard());
+				shardStack.push(splitLower.getHigherShard());
+				currentCount++;
+			}
+		}
+
+		// anything left on the stack is unchanged by the plan
+		while (!shardStack.empty()) {
+			completed.add(shardStack.pop());
+		}
+
+		return new ScalingPlan(streamName, originalShardCount, targetShards, scaleDirection, endStatus, operations,
+				completed);
+	}
+}
@@ -7,11 +7,9 @@
  */
 package com.amazonaws.services.kinesis.scaling;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.util.Map;
+import java.util.Collections;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
@@ -27,13 +25,13 @@ public class ShardHashInfo {
 	private String streamName;
 
 	@JsonProperty
-	private BigInteger startHash;
+	private HashKey startHash;
 
 	@JsonProperty
-	private BigInteger endHash;
+	private HashKey endHash;
 
 	@JsonProperty
-	private BigInteger hashWidth;
+	private HashKey hashWidth;
 
 	@JsonProperty
 	@JsonSerialize(using = PercentDoubleSerialiser.class)
@@ -45,8 +43,6 @@ public class ShardHashInfo {
 
 	private final NumberFormat pctFormat = NumberFormat.getPercentInstance();
 
-	private static final BigInteger maxHash = new BigInteger("340282366920938463463374607431768211455");
-
 	public ShardHashInfo(String streamName, Shard shard) {
 		// prevent constructing a null object
 		if (streamName == null || shard == null) {
@@ -54,23 +50,31 @@ public class ShardHashInfo {
 		}
 		this.shard = shard;
 		this.streamName = streamName;
-		this.endHash = new BigInteger(shard.hashKeyRange().endingHashKey());
-		this.startHash = new BigInteger(shard.hashKeyRange().startingHashKey());
+		this.endHash = HashKey.fromString(shard.hashKeyRange().endingHashKey());
+		this.startHash = HashKey.fromString(shard.hashKeyRange().startingHashKey());
 		this.hashWidth = getWidth(this.startHash, this.endHash);
 		this.pctOfKeyspace = getPctOfKeyspace(this.hashWidth);
 	}
 
-	public static BigInteger getWidth(BigInteger startHash, BigInteger endHash) {
-		return endHash.subtract(startHash);
+	public static HashKey getWidth(HashKey startHash, HashKey endHash) {
+		return HashKey.width(startHash, endHash);
 	}
 
-	public static BigInteger getWidth(String startHash, String endHash) {
-		return getWidth(new BigInteger(endHash), new BigInteger(startHash));
+	public static HashKey getWidth(String startHash, String endHash) {
+		return getWidth(HashKey.fromString(startHash), HashKey.fromString(endHash));
 	}
 
-	public static Double getPctOfKeyspace(BigInteger hashWidth) {
-		return new BigDecimal(hashWidth).divide(new BigDecimal(maxHash), StreamScalingUtils.PCT_COMPARISON_SCALE,
-				StreamScalingUtils.ROUNDING_MODE).doubleValue();
+	/**
+	 * Get the share of the keyspace covered by a width of Hash Keys, as a binary
+	 * fraction of 2^128. Unlike the decimal division which this replaces, the
+	 * value is not rounded to PCT_COMPARISON_SCALE places, so comparisons of
+	 * widths should use {@link StreamScalingUtils#softCompare}
+	 * 
+	 * @param hashWidth
+	 * @return
+	 */
+	public static Double getPctOfKeyspace(HashKey hashWidth) {
+		return hashWidth.fraction();
 	}
 
 	@JsonProperty("shardID")
@@ -82,15 +86,15 @@ public class ShardHashInfo {
 		return this.shard;
 	}
 
-	protected BigInteger getStartHash() {
+	protected HashKey getStartHash() {
 		return this.startHash;
 	}
 
-	protected BigInteger getEndHash() {
+	protected HashKey getEndHash() {
 		return this.endHash;
 	}
 
-	protected BigInteger getHashWidth() {
+	protected HashKey getHashWidth() {
 		return this.hashWidth;
 	}
 
@@ -102,16 +106,23 @@ public class ShardHashInfo {
 		return matchesTargetResize;
 	}
 
-	protected BigInteger getHashAtPctOffset(double pct) {
-		return this.startHash.add(new BigDecimal(maxHash).multiply(BigDecimal.valueOf(pct)).toBigInteger());
+	/*
+	 * the Hash Key at an offset of pct of the keyspace from the start of this
+	 * Shard. The offset is pct * 2^128 rounded down, rather than the decimal
+	 * product with the maximum Hash Key which was used before, so split points
+	 * can differ from earlier versions by up to 2^-52 of the keyspace. Binary
+	 * fractions such as 1/2 now fall on a power of two
+	 */
+	protected HashKey getHashAtPctOffset(double pct) {
+		return this.startHash.add(HashKey.atFraction(pct));
 	}
 
 	protected boolean isFirstShard() {
-		return this.startHash.equals(BigInteger.valueOf(0l));
+		return this.startHash.equals(HashKey.MIN);
 	}
 
 	protected boolean isLastShard() {
-		return this.endHash.equals(maxHash);
+		return this.endHash.equals(HashKey.MAX);
 	}
 
 	public String getStreamName() {
@@ -128,35 +139,35 @@ public class ShardHashInfo {
 	 */
 	public AdjacentShards doSplit(KinesisClient kinesisClient, double targetPct, String currentHighestShardId)
 			throws Exception {
-		BigInteger targetHash = getHashAtPctOffset(targetPct);
-
-		// split the shard
-		StreamScalingUtils.splitShard(kinesisClient, this.streamName, this.getShardId(), targetHash, true);
-
-		ShardHashInfo lowerShard = null;
-		ShardHashInfo higherShard = null;
-
-		// resolve the newly created shards from this one
-		Map<String, ShardHashInfo> openShards = StreamScalingUtils.getOpenShards(kinesisClient, streamName,
-				currentHighestShardId);
-
-		for (ShardHashInfo info : openShards.values()) {
-			if (!info.getShard().shardId().equals(this.shard.shardId())) {
-				if (info.getShard().hashKeyRange().startingHashKey().equals(targetHash.toString())) {
-					higherShard = new ShardHashInfo(this.streamName, info.getShard());
-					break;
-				} else {
-					lowerShard = new ShardHashInfo(this.streamName, info.getShard());
-				}
-			}
-		}
+		return doSplit(kinesisClient, getHashAtPctOffset(targetPct), currentHighestShardId);
+	}
 
-		if (lowerShard == null || higherShard == null) {
-			throw new Exception(String.format("Unable to resolve high/low shard mapping for Target Hash Value %s",
-					targetHash.toString()));
-		}
+	/**
+	 * Split the contained Shard at the indicated Hash Key, which becomes the
+	 * starting Hash Key of the higher of the two new Shards
+	 * 
+	 * @param kinesisClient
+	 * @param targetHash
+	 * @return
+	 * @throws Exception
+	 */
+	public AdjacentShards doSplit(KinesisClient kinesisClient, HashKey targetHash, String currentHighestShardId)
+			throws Exception {
+		return doSplit(new ShardTopology(kinesisClient, this.streamName, Collections.singletonList(this),
+				currentHighestShardId), targetHash);
+	}
 
-		return new AdjacentShards(streamName, lowerShard, higherShard);
+	/**
+	 * Split the contained Shard at the indicated Hash Key, applying the new
+	 * Shards to the supplied topology
+	 * 
+	 * @param topology
+	 * @param targetHash
+	 * @return
+	 * @throws Exception
+	 */
+	public AdjacentShards doSplit(ShardTopology topology, HashKey targetHash) throws Exception {
+		return topology.split(this, targetHash);
 	}
 
 	@Override
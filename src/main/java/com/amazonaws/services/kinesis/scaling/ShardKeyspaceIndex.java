@@ -0,0 +1,247 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.amazonaws.services.kinesis.scaling.StreamScaler.SortOrder;
+
+import software.amazon.awssdk.services.kinesis.model.Shard;
+
+/**
+ * Immutable index of the open Shards of a Stream over the keyspace. Shards are
+ * held in an array sorted by start hash, so that the Shard owning a Hash Key
+ * can be found by binary search, neighbouring Shards are found by position, and
+ * the Shards can be iterated in ascending or descending order without sorting
+ * again
+ */
+public class ShardKeyspaceIndex {
+	private static final Comparator<ShardHashInfo> BY_START_HASH = new Comparator<ShardHashInfo>() {
+		public int compare(ShardHashInfo o1, ShardHashInfo o2) {
+			return o1.getStartHash().compareTo(o2.getStartHash());
+		}
+	};
+
+	private final String streamName;
+
+	// open shards in the order they were supplied
+	private final ShardHashInfo[] listed;
+
+	// open shards ordered by start hash
+	private final ShardHashInfo[] sorted;
+
+	private final Map<String, Integer> positions;
+
+	private ShardKeyspaceIndex(String streamName, ShardHashInfo[] listed) {
+		this.streamName = streamName;
+		this.listed = listed;
+		this.sorted = Arrays.copyOf(listed, listed.length);
+		Arrays.sort(this.sorted, BY_START_HASH);
+
+		this.positions = new HashMap<>(this.sorted.length * 2);
+		for (int i = 0; i < this.sorted.length; i++) {
+			this.positions.put(this.sorted[i].getShardId(), i);
+		}
+	}
+
+	/**
+	 * Build an index from the output of ListShards. Shards which are the parent
+	 * of another listed Shard are closed, and are not indexed
+	 *
+	 * @param streamName
+	 * @param shards
+	 * @return
+	 */
+	public static ShardKeyspaceIndex build(String streamName, Collection<Shard> shards) {
+		Set<String> closed = new HashSet<>();
+		for (Shard shard : shards) {
+			if (shard.parentShardId() != null) {
+				closed.add(shard.parentShardId());
+			}
+			if (shard.adjacentParentShardId() != null) {
+				closed.add(shard.adjacentParentShardId());
+			}
+		}
+
+		// parents may not have been part of the listing, so size for all shards
+		ShardHashInfo[] open = new ShardHashInfo[shards.size()];
+		int count = 0;
+		for (Shard shard : shards) {
+			if (!closed.contains(shard.shardId())) {
+				open[count++] = new ShardHashInfo(streamName, shard);
+			}
+		}
+
+		return new ShardKeyspaceIndex(streamName, Arrays.copyOf(open, count));
+	}
+
+	/**
+	 * Build an index over a set of already known open Shards
+	 *
+	 * @param streamName
+	 * @param openShards
+	 * @return
+	 */
+	public static ShardKeyspaceIndex of(String streamName, Collection<ShardHashInfo> openShards) {
+		return new ShardKeyspaceIndex(streamName, openShards.toArray(new ShardHashInfo[openShards.size()]));
+	}
+
+	public String getStreamName() {
+		return this.streamName;
+	}
+
+	public int size() {
+		return this.sorted.length;
+	}
+
+	/**
+	 * Get an open Shard by ID
+	 *
+	 * @param shardId
+	 * @return The Shard, or null if it is not an open Shard in the index
+	 */
+	public ShardHashInfo getShard(String shardId) {
+		Integer position = this.positions.get(shardId);
+		return position == null ? null : this.sorted[position];
+	}
+
+	/**
+	 * Find the open Shard whose hash range contains the indicated Hash Key
+	 *
+	 * @param hash
+	 * @return The owning Shard, or null if the Hash Key is not covered by the
+	 *         indexed Shards
+	 */
+	public ShardHashInfo findOwner(HashKey hash) {
+		// find the last shard starting at or before the hash
+		int low = 0;
+		int high = this.sorted.length - 1;
+		int found = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (this.sorted[mid].getStartHash().compareTo(hash) <= 0) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		if (found >= 0 && this.sorted[found].getEndHash().compareTo(hash) >= 0) {
+			return this.sorted[found];
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Get the open Shard which immediately precedes the indicated Shard in the
+	 * keyspace
+	 *
+	 * @param shard
+	 * @return The lower adjacent Shard, or null if there is none
+	 */
+	public ShardHashInfo getLowerNeighbour(ShardHashInfo shard) {
+		Integer position = this.positions.get(shard.getShardId());
+		if (position == null || position == 0) {
+			return null;
+		}
+
+		ShardHashInfo lower = this.sorted[position - 1];
+		return lower.getEndHash().immediatelyPrecedes(shard.getStartHash()) ? lower : null;
+	}
+
+	/**
+	 * Get the open Shard which immediately follows the indicated Shard in the
+	 * keyspace
+	 *
+	 * @param shard
+	 * @return The higher adjacent Shard, or null if there is none
+	 */
+	public ShardHashInfo getHigherNeighbour(ShardHashInfo shard) {
+		Integer position = this.positions.get(shard.getShardId());
+		if (position == null || position == this.sorted.length - 1) {
+			return null;
+		}
+
+		ShardHashInfo higher = this.sorted[position + 1];
+		return shard.getEndHash().immediatelyPrecedes(higher.getStartHash()) ? higher : null;
+	}
+
+	/**
+	 * Get the open Shards ordered by lowest start hash
+	 *
+	 * @return An unmodifiable view of the index
+	 */
+	public List<ShardHashInfo> ascending() {
+		return Collections.unmodifiableList(Arrays.asList(this.sorted));
+	}
+
+	/**
+	 * Get the open Shards ordered by highest start hash
+	 *
+	 * @return An unmodifiable view of the index
+	 */
+	public List<ShardHashInfo> descending() {
+		return new AbstractList<ShardHashInfo>() {
+			@Override
+			public ShardHashInfo get(int index) {
+				return sorted[sorted.length - 1 - index];
+			}
+
+			@Override
+			public int size() {
+				return sorted.length;
+			}
+		};
+	}
+
+	/**
+	 * Get the open Shards as a Map indexed by Shard ID
+	 *
+	 * @param sortOrder The iteration order of the Map. NONE retains the order in
+	 *                  which the Shards were supplied
+	 * @return
+	 */
+	public Map<String, ShardHashInfo> asMap(SortOrder sortOrder) {
+		List<ShardHashInfo> ordered;
+		if (sortOrder.equals(SortOrder.ASCENDING)) {
+			ordered = ascending();
+		} else if (sortOrder.equals(SortOrder.DESCENDING)) {
+			ordered = descending();
+		} else {
+			ordered = Arrays.asList(this.listed);
+		}
+
+		Map<String, ShardHashInfo> shardMap = new LinkedHashMap<>(ordered.size() * 2);
+		for (ShardHashInfo s : ordered) {
+			shardMap.put(s.getShardId(), s);
+		}
+		return shardMap;
+	}
+
+	/**
+	 * Get each pair of adjacent open Shards, in ascending order
+	 *
+	 * @return
+	 * @throws Exception
+	 */
+	public AdjacentShardList getAdjacentShards() throws Exception {
+		return new AdjacentShardList(this.streamName, this);
+	}
+}
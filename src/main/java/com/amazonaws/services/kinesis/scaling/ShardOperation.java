@@ -0,0 +1,50 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.List;
+
+/**
+ * A single Shard modification within a ScalingPlan, which consumes one or more
+ * parent Shards and produces the predicted child Shards
+ */
+public abstract class ShardOperation {
+	/**
+	 * @return the Shards which are closed by this operation
+	 */
+	public abstract List<PlannedShard> getParents();
+
+	/**
+	 * @return the Shards which are created by this operation, ordered by start
+	 *         hash
+	 */
+	public abstract List<PlannedShard> getChildren();
+
+	/**
+	 * @return the change in the number of open Shards when this operation has
+	 *         been run
+	 */
+	public int getShardCountChange() {
+		return getChildren().size() - getParents().size();
+	}
+
+	/**
+	 * @return the lowest Hash Key affected by this operation
+	 */
+	public HashKey getStartHash() {
+		return getParents().get(0).getStartHash();
+	}
+
+	/**
+	 * @return the highest Hash Key affected by this operation
+	 */
+	public HashKey getEndHash() {
+		List<PlannedShard> parents = getParents();
+		return parents.get(parents.size() - 1).getEndHash();
+	}
+}
@@ -0,0 +1,227 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.kinesis.scaling.StreamScaler.SortOrder;
+
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.kinesis.model.Shard;
+
+/**
+ * Cache of the open Shards of a Stream, which is kept up to date as Shards are
+ * split and merged without listing the whole Stream again. The Shards created
+ * by an operation are derived from their parents, and then confirmed with a
+ * single listing of the Shards created after the highest known Shard ID.
+ * Shard ID's are allocated in increasing order, so this listing only returns
+ * the Shards created since the last time the topology was updated
+ */
+public class ShardTopology {
+	private static final Logger LOG = LoggerFactory.getLogger(ShardTopology.class);
+
+	private final KinesisClient kinesisClient;
+
+	private final String streamName;
+
+	private final Map<String, ShardHashInfo> openShards = new HashMap<>();
+
+	private String highestShardId;
+
+	/**
+	 * Create a topology from a set of known open Shards
+	 *
+	 * @param kinesisClient
+	 * @param streamName
+	 * @param openShards     The open Shards to be modified through this topology
+	 * @param highestShardId The highest Shard ID known on the Stream, which may
+	 *                       be a closed Shard or a Shard not supplied in
+	 *                       openShards. If null, the highest of openShards is
+	 *                       used
+	 */
+	public ShardTopology(KinesisClient kinesisClient, String streamName, Collection<ShardHashInfo> openShards,
+			String highestShardId) {
+		this.kinesisClient = kinesisClient;
+		this.streamName = streamName;
+		this.highestShardId = highestShardId;
+
+		for (ShardHashInfo s : openShards) {
+			this.openShards.put(s.getShardId(), s);
+			this.highestShardId = laterShardId(this.highestShardId, s.getShardId());
+		}
+	}
+
+	public ShardTopology(KinesisClient kinesisClient, String streamName, Collection<ShardHashInfo> openShards) {
+		this(kinesisClient, streamName, openShards, null);
+	}
+
+	/**
+	 * Load the topology of a Stream with a full listing of its Shards
+	 *
+	 * @param kinesisClient
+	 * @param streamName
+	 * @return
+	 * @throws Exception
+	 */
+	public static ShardTopology load(KinesisClient kinesisClient, String streamName) throws Exception {
+		return new ShardTopology(kinesisClient, streamName,
+				StreamScalingUtils.getShardIndex(kinesisClient, streamName, null).ascending());
+	}
+
+	public String getStreamName() {
+		return this.streamName;
+	}
+
+	public String getHighestShardId() {
+		return this.highestShardId;
+	}
+
+	public int getOpenShardCount() {
+		return this.openShards.size();
+	}
+
+	/**
+	 * Get an open Shard by ID
+	 *
+	 * @param shardId
+	 * @return The open Shard, or null if the Shard is not open or not known
+	 */
+	public ShardHashInfo getShard(String shardId) {
+		return this.openShards.get(shardId);
+	}
+
+	/**
+	 * Get a keyspace index of the current open Shards
+	 *
+	 * @return
+	 */
+	public ShardKeyspaceIndex getIndex() {
+		return ShardKeyspaceIndex.of(this.streamName, this.openShards.values());
+	}
+
+	/**
+	 * Get the open Shards indexed by Shard ID, ordered by their start hash
+	 *
+	 * @return
+	 */
+	public Map<String, ShardHashInfo> getOpenShards() {
+		return getIndex().asMap(SortOrder.ASCENDING);
+	}
+
+	/**
+	 * Split an open Shard at the indicated Hash Key, which becomes the starting
+	 * Hash Key of the higher of the two new Shards, and apply the result to the
+	 * topology
+	 *
+	 * @param shard
+	 * @param targetHash
+	 * @return
+	 * @throws Exception
+	 */
+	public AdjacentShards split(ShardHashInfo shard, HashKey targetHash) throws Exception {
+		StreamScalingUtils.splitShard(this.kinesisClient, this.streamName, shard.getShardId(), targetHash, true);
+
+		// the new Shards are fully determined by the parent and the target hash
+		// - we only need the service to tell us their ID's
+		ShardHashInfo lowerShard = null;
+		ShardHashInfo higherShard = null;
+		for (ShardHashInfo created : refresh()) {
+			if (shard.getShardId().equals(created.getShard().parentShardId())
+					&& created.getShard().adjacentParentShardId() == null) {
+				if (created.getStartHash().equals(shard.getStartHash())
+						&& created.getEndHash().immediatelyPrecedes(targetHash)) {
+					lowerShard = created;
+				} else if (created.getStartHash().equals(targetHash)
+						&& created.getEndHash().equals(shard.getEndHash())) {
+					higherShard = created;
+				}
+			}
+		}
+
+		if (lowerShard == null || higherShard == null) {
+			throw new Exception(String.format("Unable to resolve high/low shard mapping for Target Hash Value %s",
+					targetHash.toString()));
+		}
+
+		return new AdjacentShards(this.streamName, lowerShard, higherShard);
+	}
+
+	/**
+	 * Merge two adjacent open Shards, and apply the result to the topology
+	 *
+	 * @param shards
+	 * @return The Shard created by the merge
+	 * @throws Exception
+	 */
+	public ShardHashInfo merge(AdjacentShards shards) throws Exception {
+		ShardHashInfo lowerShard = shards.getLowerShard();
+		ShardHashInfo higherShard = shards.getHigherShard();
+		StreamScalingUtils.mergeShards(this.kinesisClient, this.streamName, lowerShard, higherShard, true);
+
+		for (ShardHashInfo created : refresh()) {
+			if (lowerShard.getShardId().equals(created.getShard().parentShardId())
+					&& higherShard.getShardId().equals(created.getShard().adjacentParentShardId())
+					&& created.getStartHash().equals(lowerShard.getStartHash())
+					&& created.getEndHash().equals(higherShard.getEndHash())) {
+				return created;
+			}
+		}
+
+		throw new Exception(String.format("Unable resolve new created Shard for parents %s and %s",
+				lowerShard.getShardId(), higherShard.getShardId()));
+	}
+
+	/**
+	 * Apply all Shards created since the highest known Shard ID to the topology,
+	 * closing their parents. This requires a single listing call unless more
+	 * than a page of Shards has been created since the last refresh
+	 *
+	 * @return The newly created Shards, in order of creation
+	 * @throws Exception
+	 */
+	public List<ShardHashInfo> refresh() throws Exception {
+		List<ShardHashInfo> created = new ArrayList<>();
+
+		for (Shard shard : StreamScalingUtils.listShards(this.kinesisClient, this.streamName, this.highestShardId)) {
+			ShardHashInfo info = new ShardHashInfo(this.streamName, shard);
+			created.add(info);
+			this.openShards.put(shard.shardId(), info);
+			this.highestShardId = laterShardId(this.highestShardId, shard.shardId());
+
+			if (shard.parentShardId() != null) {
+				this.openShards.remove(shard.parentShardId());
+			}
+			if (shard.adjacentParentShardId() != null) {
+				this.openShards.remove(shard.adjacentParentShardId());
+			}
+		}
+
+		if (created.size() > 0) {
+			LOG.debug(String.format("%s: Applied %s new Shards to topology", this.streamName, created.size()));
+		}
+
+		return created;
+	}
+
+	// shard ID's are allocated in increasing order, so the latest created shard
+	// has the highest ID
+	protected static String laterShardId(String current, String candidate) {
+		if (current == null || candidate.compareTo(current) > 0) {
+			return candidate;
+		} else {
+			return current;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Planned split of a Shard at a new starting Hash Key
+ */
+public class SplitShardOperation extends ShardOperation {
+	private final PlannedShard shard;
+
+	private final HashKey newStartingHashKey;
+
+	private final PlannedShard lowerShard;
+
+	private final PlannedShard higherShard;
+
+	protected SplitShardOperation(PlannedShard shard, HashKey newStartingHashKey) {
+		this.shard = shard;
+		this.newStartingHashKey = newStartingHashKey;
+		this.lowerShard = new PlannedShard(null, shard.getStartHash(), newStartingHashKey.decrement());
+		this.higherShard = new PlannedShard(null, newStartingHashKey, shard.getEndHash());
+	}
+
+	public PlannedShard getShard() {
+		return shard;
+	}
+
+	public HashKey getNewStartingHashKey() {
+		return newStartingHashKey;
+	}
+
+	public PlannedShard getLowerShard() {
+		return lowerShard;
+	}
+
+	public PlannedShard getHigherShard() {
+		return higherShard;
+	}
+
+	@Override
+	public List<PlannedShard> getParents() {
+		return Collections.singletonList(this.shard);
+	}
+
+	@Override
+	public List<PlannedShard> getChildren() {
+		return Arrays.asList(this.lowerShard, this.higherShard);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Split %s at %s", this.shard, this.newStartingHashKey);
+	}
+}
@@ -10,12 +10,22 @@ package com.amazonaws.services.kinesis.scaling;
 import java.net.URI;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Stack;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter.Priority;
+
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.kinesis.KinesisClient;
@@ -29,7 +39,8 @@ import software.amazon.awssdk.services.kinesis.model.UpdateShardCountRequest;
  * Utility for scaling a Kinesis Stream. Places a priority on eventual balancing
  * of the Stream Keyspace by using a left leaning balanced tree topology. Also
  * places a priority on low impact to the Stream by making only one Shard
- * modification at any given time.
+ * modification at any given time. The full set of modifications is planned up
+ * front by the {@link ScalingPlanner} and then run in order.
  */
 public class StreamScaler {
 	public enum SortOrder {
@@ -47,6 +58,20 @@ public class StreamScaler {
 		count, pct;
 	}
 
+	/**
+	 * How the Shard operations of a split/merge resize are run. Sequential runs
+	 * each operation and waits for the Stream to become Active before the next.
+	 * Waves groups operations which work on disjoint parts of the keyspace, and
+	 * submits each group together, resolving the new Shards once per group
+	 */
+	public static enum ExecutionMode {
+		sequential, waves;
+	}
+
+	// SplitShard and MergeShards are limited to 5 transactions per second per
+	// account
+	public static final int MAX_OPERATIONS_IN_FLIGHT = 5;
+
 	private final String AWSApplication = "KinesisScalingUtility";
 
 	public static final String version = ".9.8.3";
@@ -59,6 +84,12 @@ public class StreamScaler {
 
 	private static final Region region = Region.US_EAST_1;
 
+	private ExecutionMode executionMode = ExecutionMode.sequential;
+
+	private int maxOperationsInFlight = 1;
+
+	private UpdateShardCountPlanner updateShardCountPlanner = new UpdateShardCountPlanner();
+
 	/** No Args Constructor for scaling a Stream */
 	public StreamScaler() throws Exception {
 		this(region);
@@ -88,6 +119,40 @@ public class StreamScaler {
 		this.kinesisClient = kinesisClient;
 	}
 
+	/**
+	 * Set how split/merge resizes are run, and how many Shard operations may be
+	 * submitted at once when running in waves. Kinesis only accepts a Shard
+	 * operation while the Stream is Active, so the operations in flight are
+	 * called one at a time for each Stream, each waiting for the Stream to return
+	 * to Active without using up its retries
+	 * 
+	 * @param executionMode
+	 * @param maxOperationsInFlight
+	 */
+	public void setExecutionMode(ExecutionMode executionMode, int maxOperationsInFlight) {
+		this.executionMode = executionMode;
+		if (maxOperationsInFlight < 1) {
+			this.maxOperationsInFlight = 1;
+		} else {
+			this.maxOperationsInFlight = Math.min(maxOperationsInFlight, MAX_OPERATIONS_IN_FLIGHT);
+		}
+	}
+
+	public ExecutionMode getExecutionMode() {
+		return this.executionMode;
+	}
+
+	/**
+	 * Set the number of UpdateShardCount calls which each Stream may make in a
+	 * rolling 24 hours, where an account has a limit other than the default.
+	 * Calls already made through this Scaler are no longer counted
+	 * 
+	 * @param dailyLimit
+	 */
+	public void setUpdateShardCountLimit(int dailyLimit) {
+		this.updateShardCountPlanner = new UpdateShardCountPlanner(dailyLimit);
+	}
+
 	/**
 	 * Get a references to the Kinesis Client in use
 	 * 
@@ -116,16 +181,24 @@ public class StreamScaler {
 		return doResize(streamName, currentSize + byShardCount, minShards, maxShards, waitForCompletion);
 	}
 
+	/**
+	 * Scale up a single Shard of a Stream, by splitting it into a number of equally
+	 * sized Shards
+	 * 
+	 * @param streamName   The Stream name to scale
+	 * @param shardId      The Shard to split
+	 * @param byShardCount The number of Shards to split the Shard into
+	 * @return A Map of the final state of the Stream after Sharding, indexed by
+	 *         Shard Name * @throws Exception
+	 */
 	public ScalingOperationReport scaleUp(String streamName, String shardId, int byShardCount, Integer minShards,
 			Integer maxShards) throws Exception {
-		int openShardCount = StreamScalingUtils.getOpenShardCount(this.kinesisClient, streamName);
-
-		// the target percentage for this scaled up stream is the same as if all
-		// shards were scaled to this level
-		double simulatedTargetPct = 1d / (openShardCount * byShardCount);
+		if (byShardCount <= 1) {
+			throw new Exception(streamName + ": Shard Count must be greater than 1 to split a Shard");
+		}
 
 		// scale this specific shard by the count requested
-		return scaleStream(streamName, shardId, byShardCount, 0, 0, System.currentTimeMillis(), minShards, maxShards);
+		return scaleStream(streamName, shardId, byShardCount, System.currentTimeMillis(), minShards, maxShards);
 	}
 
 	/**
@@ -227,14 +300,15 @@ public class StreamScaler {
 
 	public String report(ScalingCompletionStatus endStatus, String streamName) throws Exception {
 		return new ScalingOperationReport(endStatus,
-				StreamScalingUtils.getOpenShards(kinesisClient, streamName, (String) null)).toString();
+				StreamScalingUtils.getShardIndex(kinesisClient, streamName, null).asMap(SortOrder.ASCENDING))
+				.toString();
 	}
 
 	public ScalingOperationReport reportFor(ScalingCompletionStatus endStatus, String streamName, int operationsMade,
 			ScaleDirection scaleDirection) throws Exception {
 		return new ScalingOperationReport(endStatus,
-				StreamScalingUtils.getOpenShards(kinesisClient, streamName, (String) null), operationsMade,
-				scaleDirection);
+				StreamScalingUtils.getShardIndex(kinesisClient, streamName, null).asMap(SortOrder.ASCENDING),
+				operationsMade, scaleDirection);
 	}
 
 	private ScalingOperationReport doResize(String streamName, int targetShardCount, Integer minShards,
@@ -262,180 +336,243 @@ public class StreamScaler {
 		return StreamScalingUtils.getOpenShardCount(this.kinesisClient, streamName);
 	}
 
-	private Stack<ShardHashInfo> getOpenShardStack(String streamName) throws Exception {
-		// populate the stack with the current set of shards
-		Stack<ShardHashInfo> shardStack = new Stack<>();
-		List<ShardHashInfo> shards = new ArrayList<>(
-				StreamScalingUtils.getOpenShards(this.kinesisClient, streamName, SortOrder.DESCENDING, null).values());
-		for (ShardHashInfo s : shards) {
-			shardStack.push(s);
-		}
+	public String getStreamStatus(String streamName) throws Exception {
+		return getStreamStatus(streamName, Priority.LOW);
+	}
 
-		return shardStack;
+	/**
+	 * Get the status of a Stream, taking a token from the control plane rate
+	 * limiter at the given priority
+	 * 
+	 * @param streamName
+	 * @param priority   HIGH while waiting on a modification of the Stream, and
+	 *                   LOW for routine checks
+	 * @return
+	 * @throws Exception
+	 */
+	public String getStreamStatus(String streamName, Priority priority) throws Exception {
+		return StreamScalingUtils.getStreamStatus(this.kinesisClient, streamName, priority);
 	}
 
-	private ScalingOperationReport scaleStream(String streamName, String shardId, int targetShards, int operationsMade,
-			int shardsCompleted, long startTime, Integer minShards, Integer maxShards) throws Exception {
-		Stack<ShardHashInfo> shardStack = new Stack<>();
-		shardStack.add(StreamScalingUtils.getOpenShard(this.kinesisClient, streamName, shardId));
+	private List<ShardHashInfo> getOpenShardList(String streamName) throws Exception {
+		return StreamScalingUtils.getShardIndex(this.kinesisClient, streamName, null).ascending();
+	}
 
-		LOG.info(String.format("Scaling Shard %s:%s into %s Shards", streamName, shardId, targetShards));
+	/**
+	 * Compute the set of Shard operations that would be required to resize a
+	 * Stream to the indicated number of Shards, without modifying the Stream
+	 * 
+	 * @param streamName       The Stream name to plan for
+	 * @param targetShardCount The desired number of shards
+	 * @return The ordered set of split and merge operations
+	 * @throws Exception
+	 */
+	public ScalingPlan plan(String streamName, int targetShardCount, Integer minShards, Integer maxShards)
+			throws Exception {
+		return ScalingPlanner.plan(streamName, getOpenShardList(streamName), targetShardCount, minShards, maxShards);
+	}
+
+	private ScalingOperationReport scaleStream(String streamName, String shardId, int targetShards, long startTime,
+			Integer minShards, Integer maxShards) throws Exception {
+		ShardTopology topology = ShardTopology.load(this.kinesisClient, streamName);
+		ShardHashInfo shard = topology.getShard(shardId);
+		if (shard == null) {
+			throw new Exception(String.format("Shard %s not found in Stream %s", shardId, streamName));
+		}
 
-		return scaleStream(streamName, 1, targetShards, operationsMade, shardsCompleted, startTime, shardStack,
-				minShards, maxShards);
+		LOG.info(String.format("Scaling Shard %s:%s into %s Shards", streamName, shardId, targetShards));
 
+		// the new Shards divide the width of this Shard rather than the whole
+		// keyspace, and the Stream limits apply to the Shards outside of it too
+		int otherShards = topology.getOpenShardCount() - 1;
+		return executePlan(ScalingPlanner.plan(streamName, Collections.singletonList(shard), targetShards,
+				shard.getPctWidth() / targetShards, minShards == null ? null : Math.max(minShards - otherShards, 1),
+				maxShards == null ? null : Math.max(maxShards - otherShards, 1)), topology, startTime);
 	}
 
 	private ScalingOperationReport scaleStream(String streamName, int originalShardCount, int targetShards,
-			int operationsMade, int shardsCompleted, long startTime, Stack<ShardHashInfo> shardStack, Integer minCount,
-			Integer maxCount) throws Exception {
-		final double targetPct = 1d / targetShards;
-		boolean checkMinMax = minCount != null || maxCount != null;
-		String lastShardLower = null;
-		String lastShardHigher = null;
-		ScaleDirection scaleDirection = originalShardCount >= targetShards ? ScaleDirection.DOWN : ScaleDirection.UP;
-
-		// seed the current shard count from the working stack
-		int currentCount = shardStack.size();
-
-		// we'll run iteratively until the shard stack is emptied or we reach
-		// one of the caps
-		ScalingCompletionStatus endStatus = ScalingCompletionStatus.Ok;
-		do {
-			if (checkMinMax) {
-				// stop scaling if we've reached the min or max count
-				boolean stopOnCap = false;
-				String message = null;
-				if (minCount != null && currentCount == minCount && targetShards <= minCount) {
-					stopOnCap = true;
-					if (operationsMade == 0) {
-						endStatus = ScalingCompletionStatus.AlreadyAtMinimum;
-					} else {
-						endStatus = ScalingCompletionStatus.Ok;
-					}
-					message = String.format("%s: Minimum Shard Count of %s Reached", streamName, minCount);
-				}
-				if (maxCount != null && currentCount == maxCount && targetShards >= maxCount) {
-					if (operationsMade == 0) {
-						endStatus = ScalingCompletionStatus.AlreadyAtMaximum;
-					} else {
-						endStatus = ScalingCompletionStatus.Ok;
-					}
-					message = String.format("%s: Maximum Shard Count of %s Reached", streamName, maxCount);
-					stopOnCap = true;
-				}
-				if (stopOnCap) {
-					LOG.info(message);
-					return reportFor(endStatus, streamName, operationsMade, scaleDirection);
-				}
-			}
+			long startTime, Integer minShards, Integer maxShards) throws Exception {
+		LOG.info(String.format("Scaling Stream %s from %s Shards to %s", streamName, originalShardCount, targetShards));
 
-			// report progress every shard completed
-			if (shardsCompleted > 0) {
-				reportProgress(streamName, shardsCompleted, currentCount, shardStack.size(), startTime);
-			}
+		ShardTopology topology = ShardTopology.load(this.kinesisClient, streamName);
 
-			// once the stack is emptied, return a report of the hash space
-			// allocation
-			if (shardStack.empty()) {
-				return reportFor(endStatus, streamName, operationsMade, scaleDirection);
-			}
+		return executePlan(ScalingPlanner.plan(streamName, topology.getIndex().ascending(), targetShards, minShards,
+				maxShards), topology, startTime);
+	}
+
+	private ScalingOperationReport executePlan(ScalingPlan plan, ShardTopology topology, long startTime)
+			throws Exception {
+		LOG.info(plan.toString());
+
+		int operationsMade;
+		if (this.executionMode == ExecutionMode.waves) {
+			operationsMade = executePlanInWaves(plan, topology, startTime);
+		} else {
+			operationsMade = executePlanSequentially(plan, topology, startTime);
+		}
+
+		// the topology has been kept up to date with every operation, so no
+		// further listing of the Stream is needed for the report
+		return new ScalingOperationReport(plan.getEndStatus(), topology.getOpenShards(), operationsMade,
+				plan.getScaleDirection());
+	}
 
-			ShardHashInfo lowerShard = shardStack.pop();
-			if (lowerShard != null) {
-				lastShardLower = lowerShard.getShardId();
+	/**
+	 * Run each of the operations in a ScalingPlan in order, resolving the Shards
+	 * created by each operation so that they can be used by later operations
+	 */
+	private int executePlanSequentially(ScalingPlan plan, ShardTopology topology, long startTime)
+			throws Exception {
+		final String streamName = plan.getStreamName();
+
+		// existing shards are resolved from the topology by ID, and new ones by
+		// the planned shard which predicted them
+		Map<PlannedShard, ShardHashInfo> createdShards = new IdentityHashMap<>();
+
+		int operationsMade = 0;
+		int currentCount = plan.getOriginalShardCount();
+		for (ShardOperation op : plan.getOperations()) {
+			if (op instanceof SplitShardOperation) {
+				SplitShardOperation split = (SplitShardOperation) op;
+				ShardHashInfo shard = resolve(split.getShard(), topology, createdShards);
+
+				AdjacentShards children = shard.doSplit(topology, split.getNewStartingHashKey());
+				createdShards.put(split.getLowerShard(), children.getLowerShard());
+				createdShards.put(split.getHigherShard(), children.getHigherShard());
+
+				LOG.info(String.format("Split Shard %s at %s Creating Shards %s (%s) and %s (%s)",
+						shard.getShardId(), split.getNewStartingHashKey(), children.getLowerShard().getShardId(),
+						pctFormat.format(children.getLowerShard().getPctWidth()),
+						children.getHigherShard().getShardId(),
+						pctFormat.format(children.getHigherShard().getPctWidth())));
 			} else {
-				throw new Exception(String.format("%s: Null ShardHashInfo retrieved after processing %s", streamName,
-						lastShardLower));
+				MergeShardsOperation merge = (MergeShardsOperation) op;
+				ShardHashInfo lowerShard = resolve(merge.getLowerShard(), topology, createdShards);
+				ShardHashInfo higherShard = resolve(merge.getHigherShard(), topology, createdShards);
+
+				LOG.info(String.format("Merging Shard %s with %s", lowerShard.getShardId(),
+						higherShard.getShardId()));
+				ShardHashInfo merged = new AdjacentShards(streamName, lowerShard, higherShard).doMerge(topology);
+				createdShards.put(merge.getMergedShard(), merged);
+
+				LOG.info(String.format("Created Shard %s (%s)", merged.getShardId(),
+						pctFormat.format(merged.getPctWidth())));
 			}
 
-			// first check is if the bottom shard is smaller or larger than our
-			// target width
-			if (StreamScalingUtils.softCompare(lowerShard.getPctWidth(), targetPct) < 0) {
-				if (shardStack.empty()) {
-					// our current shard is smaller than the target size, but
-					// there's nothing else to do
-					return reportFor(endStatus, streamName, operationsMade, scaleDirection);
-				} else {
-					// get the next higher shard
-					ShardHashInfo higherShard = shardStack.pop();
-
-					if (higherShard != null) {
-						lastShardHigher = higherShard.getShardId();
+			operationsMade++;
+			currentCount += op.getShardCountChange();
+			reportProgress(streamName, operationsMade, currentCount, plan.getOperationCount() - operationsMade,
+					startTime);
+		}
+
+		return operationsMade;
+	}
+
+	/**
+	 * Run the operations in a ScalingPlan in waves of independent operations,
+	 * keeping up to the configured number of operations in flight. The Shards
+	 * created by a wave are resolved with a single listing once the Stream is
+	 * Active again
+	 */
+	private int executePlanInWaves(ScalingPlan plan, ShardTopology topology, long startTime) throws Exception {
+		final String streamName = plan.getStreamName();
+		final List<List<ShardOperation>> waves = plan.getWaves();
+
+		LOG.info(String.format("%s: Running %s Operations in %s Waves with up to %s Operations in Flight",
+				streamName, plan.getOperationCount(), waves.size(), this.maxOperationsInFlight));
+
+		final Map<PlannedShard, ShardHashInfo> createdShards = new IdentityHashMap<>();
+
+		int operationsMade = 0;
+		int currentCount = plan.getOriginalShardCount();
+		int wavesCompleted = 0;
+		ExecutorService executor = Executors.newFixedThreadPool(this.maxOperationsInFlight);
+		try {
+			for (List<ShardOperation> wave : waves) {
+				List<Future<?>> submitted = new ArrayList<>();
+				for (final ShardOperation op : wave) {
+					final List<ShardHashInfo> parents = new ArrayList<>();
+					for (PlannedShard p : op.getParents()) {
+						parents.add(resolve(p, topology, createdShards));
 					}
 
-					if (StreamScalingUtils.softCompare(lowerShard.getPctWidth() + higherShard.getPctWidth(),
-							targetPct) > 0) {
-						// The two lowest shards together are larger than the
-						// target size, so split the upper at the target offset
-						// and
-						// merge the lower of the two new shards to the lowest
-						// shard
-						AdjacentShards splitUpper = higherShard.doSplit(kinesisClient,
-								targetPct - lowerShard.getPctWidth(), shardStack.isEmpty() ? higherShard.getShardId()
-										: shardStack.lastElement().getShardId());
-						operationsMade++;
-
-						// place the upper of the two new shards onto the stack
-						shardStack.push(splitUpper.getHigherShard());
-
-						// merge lower of the new shards with the lowest shard
-						LOG.info(String.format("Merging Shard %s with %s", lowerShard.getShardId(),
-								splitUpper.getLowerShard().getShardId()));
-						ShardHashInfo lowerMerged = new AdjacentShards(streamName, lowerShard,
-								splitUpper.getLowerShard()).doMerge(kinesisClient,
-										shardStack.isEmpty() ? splitUpper.getHigherShard().getShardId()
-												: shardStack.lastElement().getShardId());
-						LOG.info(String.format("Created Shard %s (%s)", lowerMerged.getShardId(),
-								pctFormat.format(lowerMerged.getPctWidth())));
-						shardsCompleted++;
-
-						// count of shards is unchanged in this case as we've
-						// just rebalanced, so current count is not updated
-					} else {
-						// The lower and upper shards together are smaller than
-						// the target size, so merge the two shards together
-						ShardHashInfo lowerMerged = new AdjacentShards(streamName, lowerShard, higherShard)
-								.doMerge(kinesisClient, shardStack.isEmpty() ? higherShard.getShardId()
-										: shardStack.lastElement().getShardId());
-						shardsCompleted++;
-						currentCount--;
-
-						// put the new shard back on the stack - it may still be
-						// too small relative to the target
-						shardStack.push(lowerMerged);
+					submitted.add(executor.submit(new Callable<Void>() {
+						public Void call() throws Exception {
+							if (op instanceof SplitShardOperation) {
+								StreamScalingUtils.splitShard(kinesisClient, streamName, parents.get(0).getShardId(),
+										((SplitShardOperation) op).getNewStartingHashKey(), false);
+							} else {
+								StreamScalingUtils.mergeShards(kinesisClient, streamName, parents.get(0),
+										parents.get(1), false);
+							}
+							return null;
+						}
+					}));
+				}
+
+				for (Future<?> f : submitted) {
+					try {
+						f.get();
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof Exception) {
+							throw (Exception) e.getCause();
+						} else {
+							throw e;
+						}
 					}
 				}
-			} else if (StreamScalingUtils.softCompare(lowerShard.getPctWidth(), targetPct) == 0) {
-				// at the correct size - move on
-			} else {
-				// lowest shard is larger than the target size so split at the
-				// target offset
-				AdjacentShards splitLower = lowerShard.doSplit(kinesisClient, targetPct,
-						shardStack.isEmpty() ? lowerShard.getShardId() : shardStack.lastElement().getShardId());
-				operationsMade++;
 
-				LOG.info(String.format("Split Shard %s at %s Creating Final Shard %s and Intermediate Shard %s (%s)",
-						lowerShard.getShardId(), pctFormat.format(targetPct), splitLower.getLowerShard().getShardId(),
-						splitLower.getHigherShard(), pctFormat.format(splitLower.getHigherShard().getPctWidth())));
+				// resolve all the shards created by the wave from a single listing
+				StreamScalingUtils.waitForStreamStatus(this.kinesisClient, streamName, "ACTIVE");
+				Map<HashKey, ShardHashInfo> newShards = new HashMap<>();
+				for (ShardHashInfo s : topology.refresh()) {
+					newShards.put(s.getStartHash(), s);
+				}
 
-				// push the higher of the two splits back onto the stack
-				shardStack.push(splitLower.getHigherShard());
-				shardsCompleted++;
-				currentCount++;
+				for (ShardOperation op : wave) {
+					for (PlannedShard child : op.getChildren()) {
+						ShardHashInfo created = newShards.get(child.getStartHash());
+						if (created == null || !created.getEndHash().equals(child.getEndHash())) {
+							throw new Exception(String.format("%s: Unable to resolve new Shard for %s", streamName,
+									child));
+						}
+						createdShards.put(child, created);
+					}
+					operationsMade++;
+					currentCount += op.getShardCountChange();
+				}
+
+				wavesCompleted++;
+				reportWaveProgress(streamName, wavesCompleted, waves.size(), operationsMade,
+						plan.getOperationCount(), currentCount, startTime);
 			}
-		} while (shardStack.size() > 0 || !shardStack.empty());
+		} finally {
+			executor.shutdown();
+		}
 
-		return reportFor(endStatus, streamName, operationsMade, scaleDirection);
+		return operationsMade;
 	}
 
-	private ScalingOperationReport scaleStream(String streamName, int originalShardCount, int targetShards,
-			int operationsMade, int shardsCompleted, long startTime, Integer minShards, Integer maxShards)
-			throws Exception {
-		LOG.info(String.format("Scaling Stream %s from %s Shards to %s", streamName, originalShardCount, targetShards));
+	private void reportWaveProgress(String streamName, int wavesCompleted, int wavesTotal, int operationsCompleted,
+			int operationsTotal, int currentCount, long startTime) {
+		long elapsedSeconds = (System.currentTimeMillis() - startTime) / 1000;
+		long estRemaining = elapsedSeconds * (wavesTotal - wavesCompleted) / wavesCompleted;
+		LOG.info(String.format(
+				"%s: Wave %s of %s Complete (%s of %s Shard Modifications). Current Size %s Shards with Approx %s Seconds Remaining",
+				streamName, wavesCompleted, wavesTotal, operationsCompleted, operationsTotal, currentCount,
+				estRemaining));
+	}
+
+	private ShardHashInfo resolve(PlannedShard planned, ShardTopology topology,
+			Map<PlannedShard, ShardHashInfo> createdShards) throws Exception {
+		ShardHashInfo shard = planned.isExisting() ? topology.getShard(planned.getShardId())
+				: createdShards.get(planned);
+
+		if (shard == null) {
+			throw new Exception(String.format("Unable to resolve Planned Shard %s", planned));
+		}
 
-		return scaleStream(streamName, originalShardCount, targetShards, operationsMade, shardsCompleted, startTime,
-				getOpenShardStack(streamName), minShards, maxShards);
+		return shard;
 	}
 
 	public ScalingOperationReport updateShardCount(String streamName, int currentShardCount, int targetShardCount,
@@ -459,36 +596,87 @@ public class StreamScaler {
 			targetShardCount = maxShards;
 		}
 
+		// UpdateShardCount can at most double or halve the Shard count, so
+		// larger resizes are made as a chain of calls, as far as the daily
+		// limit of calls allows
+		List<Integer> steps = this.updateShardCountPlanner.plan(streamName, currentShardCount, targetShardCount,
+				System.currentTimeMillis());
+		int shardCount = currentShardCount;
+		int operationsMade = 0;
+
 		try {
-			LOG.info(String.format("Updating Stream %s Shard Count to %s", streamName, targetShardCount));
+			for (int step : steps) {
+				LOG.info(String.format("Updating Stream %s Shard Count from %s to %s (%s of %s)", streamName,
+						shardCount, step, operationsMade + 1, steps.size()));
 
-			UpdateShardCountRequest req = UpdateShardCountRequest.builder()
-					.scalingType(ScalingType.UNIFORM_SCALING).streamName(streamName)
-					.targetShardCount(targetShardCount).build();
-			this.kinesisClient.updateShardCount(req);
+				requestShardCount(streamName, step);
+				this.updateShardCountPlanner.recordCall(streamName, System.currentTimeMillis());
+				operationsMade++;
 
-			// block until the stream transitions back to active state
-			LOG.info("Waiting for Stream to transition back to Active Status");
-			StreamScalingUtils.waitForStreamStatus(this.kinesisClient, streamName, "ACTIVE");
+				// block until the stream transitions back to active state
+				LOG.info("Waiting for Stream to transition back to Active Status");
+				StreamScalingUtils.waitForStreamStatus(this.kinesisClient, streamName, "ACTIVE");
+				shardCount = step;
+			}
+
+			if (shardCount != targetShardCount) {
+				LOG.info(String.format(
+						"UpdateShardCount daily limit of %s calls for Stream %s reached at %s Shards. Falling back to manual scaling",
+						this.updateShardCountPlanner.getDailyLimit(), streamName, shardCount));
+
+				return scaleStream(streamName, shardCount, targetShardCount, System.currentTimeMillis(), minShards,
+						maxShards);
+			}
 
 			// return the current state of the stream
 			if (waitForCompletion) {
-				return reportFor(ScalingCompletionStatus.Ok, streamName, 1, scaleDirection);
+				return reportFor(ScalingCompletionStatus.Ok, streamName, operationsMade, scaleDirection);
 			} else {
 				return null;
 			}
 		} catch (InvalidArgumentException | LimitExceededException ipe) {
 			// this will be raised if the scaling operation we are
 			// trying to make is not within the limits of the
-			// UpdateShardCount API
+			// UpdateShardCount API, or it is still throttled after retries
 			// http://docs.aws.amazon.com/kinesis/latest/APIReference/API_UpdateShardCount.html
 			//
-			// so now we'll default back to the split/merge way
+			// so now we'll default back to the split/merge way from the
+			// Shard count which the chain reached
 			// return the current state of the stream
-			LOG.info("UpdateShardCount API Limit Exceeded. Falling back to manual scaling");
+			LOG.info(String.format("UpdateShardCount API Limit Exceeded at %s Shards. Falling back to manual scaling",
+					shardCount));
 
-			return scaleStream(streamName, currentShardCount, targetShardCount, 0, 0,
-					System.currentTimeMillis(), minShards, maxShards);
+			return scaleStream(streamName, shardCount, targetShardCount, System.currentTimeMillis(), minShards,
+					maxShards);
+		}
+	}
+
+	/*
+	 * Make an UpdateShardCount call, retrying with backoff when it is throttled.
+	 * The LimitExceededException is rethrown once the daily limit has no calls
+	 * left, or the call has been rejected UPDATE_SHARD_COUNT_RETRIES times
+	 */
+	private void requestShardCount(String streamName, int targetShardCount) throws Exception {
+		UpdateShardCountRequest req = UpdateShardCountRequest.builder().scalingType(ScalingType.UNIFORM_SCALING)
+				.streamName(streamName).targetShardCount(targetShardCount).build();
+		int attempts = 0;
+
+		while (true) {
+			ControlPlaneRateLimiter.forClient(this.kinesisClient).acquire(ControlPlaneRateLimiter.UPDATE_SHARD_COUNT,
+					Priority.HIGH);
+			try {
+				this.kinesisClient.updateShardCount(req);
+				return;
+			} catch (LimitExceededException lee) {
+				attempts++;
+				if (attempts >= StreamScalingUtils.UPDATE_SHARD_COUNT_RETRIES || this.updateShardCountPlanner
+						.getRemainingCalls(streamName, System.currentTimeMillis()) == 0) {
+					throw lee;
+				}
+
+				LOG.warn(String.format("UpdateShardCount throttled for Stream %s. Retrying", streamName));
+				Thread.sleep(new Double(Math.pow(2, attempts) * StreamScalingUtils.RETRY_TIMEOUT_MS).longValue());
+			}
 		}
 	}
 
@@ -8,30 +8,35 @@
 package com.amazonaws.services.kinesis.scaling;
 
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter.Priority;
 import com.amazonaws.services.kinesis.scaling.StreamScaler.SortOrder;
 
 import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.kinesis.model.Consumer;
+import software.amazon.awssdk.services.kinesis.model.ConsumerStatus;
 import software.amazon.awssdk.services.kinesis.model.DescribeStreamSummaryRequest;
 import software.amazon.awssdk.services.kinesis.model.DescribeStreamSummaryResponse;
+import software.amazon.awssdk.services.kinesis.model.InvalidArgumentException;
 import software.amazon.awssdk.services.kinesis.model.LimitExceededException;
 import software.amazon.awssdk.services.kinesis.model.ListShardsRequest;
 import software.amazon.awssdk.services.kinesis.model.ListShardsResponse;
+import software.amazon.awssdk.services.kinesis.model.ListStreamConsumersRequest;
+import software.amazon.awssdk.services.kinesis.model.ListStreamConsumersResponse;
 import software.amazon.awssdk.services.kinesis.model.MergeShardsRequest;
 import software.amazon.awssdk.services.kinesis.model.ResourceInUseException;
 import software.amazon.awssdk.services.kinesis.model.Shard;
+import software.amazon.awssdk.services.kinesis.model.ShardFilter;
+import software.amazon.awssdk.services.kinesis.model.ShardFilterType;
 import software.amazon.awssdk.services.kinesis.model.SplitShardRequest;
 import software.amazon.awssdk.services.kinesis.model.StreamDescriptionSummary;
 import software.amazon.awssdk.services.sns.SnsClient;
@@ -52,23 +57,112 @@ public class StreamScalingUtils {
 
 	public static final RoundingMode ROUNDING_MODE = RoundingMode.HALF_DOWN;
 
+	// UpdateShardCount can at most double, or halve, the open Shards of a Stream
+	// in one call, and can be called this many times per Stream in 24 hours
+	public static final int UPDATE_SHARD_COUNT_MAX_FACTOR = 2;
+
+	public static final int UPDATE_SHARD_COUNT_DAILY_LIMIT = 10;
+
+	// UpdateShardCount is also throttled by rate, so a rejected call is retried
+	// this many times while the daily limit has calls left
+	public static final int UPDATE_SHARD_COUNT_RETRIES = 3;
+
+	// whether open shards are listed with the AT_LATEST shard filter
+	private static volatile boolean useShardFilter = true;
+
+	// clients whose endpoint rejected the shard filter, and when. The filter is
+	// tried again after SHARD_FILTER_RETRY_MS
+	private static final Map<KinesisClient, Long> shardFilterRejections = new WeakHashMap<>();
+
+	public static final long SHARD_FILTER_RETRY_MS = 60 * 60 * 1000L;
+
+	// Split and Merge need the Stream to be ACTIVE, so the modifications of each
+	// Stream through a client are made one at a time
+	private static final Map<KinesisClient, Map<String, Object>> modificationLocks = new WeakHashMap<>();
+
 	private static interface KinesisOperation {
 		public Object run(KinesisClient client);
 	}
 
+	// scale factor and accepted variation of the comparison scale expressed as
+	// primitive values, so that softCompare doesn't need to allocate
+	private static final double PCT_COMPARISON_FACTOR = Math.pow(10, PCT_COMPARISON_SCALE);
+
+	private static final long ACCEPTED_VARIATION_UNITS = 10L;
+
+	// largest magnitude which can be scaled by the comparison factor while
+	// still having an exact integer and fractional part in a double
+	private static final double MAX_PRIMITIVE_COMPARISON = 0x1p52 / PCT_COMPARISON_FACTOR;
+
+	// Veltkamp split constants for exact multiplication by the comparison
+	// factor
+	private static final double SPLITTER = 0x1p27 + 1;
+
+	private static final double FACTOR_HIGH = (SPLITTER * PCT_COMPARISON_FACTOR)
+			- ((SPLITTER * PCT_COMPARISON_FACTOR) - PCT_COMPARISON_FACTOR);
+
+	private static final double FACTOR_LOW = PCT_COMPARISON_FACTOR - FACTOR_HIGH;
+
 	/**
 	 * Method to do a fuzzy comparison between two doubles, so that we can make
 	 * generalisations about allocation of keyspace to shards. For example, when we
 	 * have a stream of 3 shards, we'll have shards of 33, 33, and 34% of the
-	 * keyspace - these must all be treated as equal
+	 * keyspace - these must all be treated as equal.
+	 * 
+	 * Values are rounded to PCT_COMPARISON_SCALE decimal places using
+	 * ROUNDING_MODE, and are treated as equal when they differ by less than 1
+	 * order of magnitude greater than the comparison scale
 	 *
 	 * @param a
 	 * @param b
 	 * @return
 	 */
 	public static int softCompare(double a, double b) {
-		// allow variation by 1 order of magnitude greater than the comparison
-		// scale
+		if (!(Math.abs(a) < MAX_PRIMITIVE_COMPARISON && Math.abs(b) < MAX_PRIMITIVE_COMPARISON)) {
+			return decimalSoftCompare(a, b);
+		}
+
+		long first = toComparisonUnits(a);
+		long second = toComparisonUnits(b);
+
+		// if the variation of the two values is within the accepted variation,
+		// then we return 'equal'
+		if (Math.abs(first - second) < ACCEPTED_VARIATION_UNITS) {
+			return 0;
+		} else {
+			return Long.compare(first, second);
+		}
+	}
+
+	/**
+	 * Round a value to an integer count of units of the comparison scale, with
+	 * the same result as BigDecimal.setScale(PCT_COMPARISON_SCALE, HALF_DOWN) on
+	 * the exact binary value of the double
+	 */
+	private static long toComparisonUnits(double value) {
+		double magnitude = Math.abs(value);
+
+		// exact product of magnitude * factor as product + error
+		double product = magnitude * PCT_COMPARISON_FACTOR;
+		double split = SPLITTER * magnitude;
+		double high = split - (split - magnitude);
+		double low = magnitude - high;
+		double error = ((high * FACTOR_HIGH - product) + high * FACTOR_LOW + low * FACTOR_HIGH) + low * FACTOR_LOW;
+
+		double whole = Math.floor(product);
+		long units = (long) whole;
+
+		// the sign of the remainder either side of one half decides the
+		// rounding. Exact halves round down
+		double remainder = (product - whole) - 0.5d;
+		if (remainder + error > 0) {
+			units++;
+		}
+
+		return value < 0 ? -units : units;
+	}
+
+	private static int decimalSoftCompare(double a, double b) {
 		final BigDecimal acceptedVariation = BigDecimal.valueOf(1d)
 				.divide(BigDecimal.valueOf(10d).pow(PCT_COMPARISON_SCALE - 1));
 
@@ -77,8 +171,6 @@ public class StreamScalingUtils {
 
 		BigDecimal variation = first.subtract(second).abs();
 
-		// if the variation of the two values is within the accepted variation,
-		// then we return 'equal'
 		if (variation.compareTo(acceptedVariation) < 0) {
 			return 0;
 		} else {
@@ -87,43 +179,56 @@ public class StreamScalingUtils {
 	}
 
 	/**
-	 * Wait for a Stream to become available or transition to the indicated status
+	 * Wait for a Stream to become available or transition to the indicated status,
+	 * through the shared {@link StreamStatusWaiter}
 	 *
 	 * @param streamName
 	 * @param status
+	 * @throws StreamStatusTimeoutException if the Stream is not in the status
+	 *                                      within the waiter's timeout
 	 * @throws Exception
 	 */
 	public static void waitForStreamStatus(KinesisClient kinesisClient, String streamName, String status)
 			throws Exception {
-		boolean ok = false;
-		String streamStatus;
-		// stream mutation takes around 30 seconds, so we'll start with 20 as
-		// a timeout
-		int waitTimeout = 20000;
-		do {
-			streamStatus = getStreamStatus(kinesisClient, streamName);
-			if (!streamStatus.equals(status)) {
-				Thread.sleep(waitTimeout);
-				// reduce the wait timeout from the initial wait time
-				waitTimeout = 1000;
-			} else {
-				ok = true;
-			}
-		} while (!ok);
+		StreamStatusWaiter.getInstance().waitFor(kinesisClient, streamName, status);
+	}
+
+	/**
+	 * Wait for a Stream to become available or transition to the indicated status
+	 * within a time limit
+	 *
+	 * @param streamName
+	 * @param status
+	 * @param timeoutMillis
+	 * @throws StreamStatusTimeoutException if the Stream is not in the status
+	 *                                      within the time limit
+	 * @throws Exception
+	 */
+	public static void waitForStreamStatus(KinesisClient kinesisClient, String streamName, String status,
+			long timeoutMillis) throws Exception {
+		StreamStatusWaiter.getInstance().waitFor(kinesisClient, streamName, status, timeoutMillis);
 	}
 
 	/**
 	 * Get the status of a Stream
 	 *
 	 * @param streamName
+	 * @param priority   HIGH where the status is polled while the Stream is
+	 *                   being modified, and LOW for routine checks
 	 * @return
 	 */
-	protected static String getStreamStatus(KinesisClient kinesisClient, String streamName) throws Exception {
-		return describeStream(kinesisClient, streamName).streamStatus().name();
+	protected static String getStreamStatus(KinesisClient kinesisClient, String streamName, Priority priority)
+			throws Exception {
+		return describeStream(kinesisClient, streamName, priority).streamStatus().name();
 	}
 
 	public static StreamDescriptionSummary describeStream(final KinesisClient kinesisClient, final String streamName)
 			throws Exception {
+		return describeStream(kinesisClient, streamName, Priority.LOW);
+	}
+
+	private static StreamDescriptionSummary describeStream(final KinesisClient kinesisClient, final String streamName,
+			Priority priority) throws Exception {
 		KinesisOperation describe = new KinesisOperation() {
 			public Object run(KinesisClient client) {
 				DescribeStreamSummaryResponse result = client
@@ -132,7 +237,8 @@ public class StreamScalingUtils {
 				return result.streamDescriptionSummary();
 			}
 		};
-		return (StreamDescriptionSummary) doOperation(kinesisClient, describe, streamName, DESCRIBE_RETRIES, false);
+		return (StreamDescriptionSummary) doOperation(kinesisClient, ControlPlaneRateLimiter.DESCRIBE_STREAM_SUMMARY,
+				priority, describe, streamName, DESCRIBE_RETRIES, false);
 	}
 
 	public static List<Shard> listShards(final KinesisClient kinesisClient, final String streamName,
@@ -143,34 +249,160 @@ public class StreamScalingUtils {
 			LOG.info(String.format("Listing Stream %s", streamName));
 		}
 
-		KinesisOperation describe = new KinesisOperation() {
-			public Object run(KinesisClient client) {
-				boolean hasMoreResults = true;
-				List<Shard> shards = new ArrayList<>();
-				String nextToken = null;
-
-				while (hasMoreResults) {
-					ListShardsRequest.Builder builder = ListShardsRequest.builder().maxResults(1000);
-
-					if (nextToken == null) {
-						builder.streamName(streamName);
-						if (shardIdStart != null) {
-							builder.exclusiveStartShardId(shardIdStart);
-						}
-					} else {
-						builder.nextToken(nextToken);
-					}
+		return listShards(kinesisClient, streamName, shardIdStart, null, Priority.HIGH);
+	}
+
+	/**
+	 * List only the open Shards of a Stream, using a server side Shard filter so
+	 * that closed Shards in the retention period are not returned. Where the
+	 * endpoint does not support Shard filters, all Shards are listed as before
+	 * 
+	 * @param kinesisClient
+	 * @param streamName
+	 * @return The open Shards, and possibly closed Shards if the filter is not
+	 *         supported
+	 * @throws Exception
+	 */
+	public static List<Shard> listOpenShards(final KinesisClient kinesisClient, final String streamName)
+			throws Exception {
+		if (useShardFilter && !isShardFilterRejected(kinesisClient)) {
+			LOG.info(String.format("Listing Open Shards of Stream %s", streamName));
 
-					ListShardsResponse result = client.listShards(builder.build());
-					shards.addAll(result.shards());
+			try {
+				return listShards(kinesisClient, streamName, null,
+						ShardFilter.builder().type(ShardFilterType.AT_LATEST).build(), Priority.LOW);
+			} catch (InvalidArgumentException e) {
+				// other invalid arguments, such as an unknown Stream, are not
+				// about the endpoint
+				if (!rejectsShardFilter(e)) {
+					throw e;
+				}
 
-					nextToken = result.nextToken();
-					hasMoreResults = nextToken != null;
+				LOG.warn(String.format(
+						"Shard Filter not supported when listing Stream %s. Listing all Shards for %s minutes",
+						streamName, SHARD_FILTER_RETRY_MS / 60000));
+				synchronized (shardFilterRejections) {
+					shardFilterRejections.put(kinesisClient, System.currentTimeMillis());
 				}
-				return shards;
 			}
-		};
-		return (List<Shard>) doOperation(kinesisClient, describe, streamName, DESCRIBE_RETRIES, false);
+		}
+
+		return listShards(kinesisClient, streamName, null, null, Priority.LOW);
+	}
+
+	/**
+	 * Set whether open Shards are listed with a server side Shard filter. Enabled
+	 * by default, and disabled automatically if the endpoint rejects the filter
+	 * 
+	 * @param enabled
+	 */
+	public static void setUseShardFilter(boolean enabled) {
+		useShardFilter = enabled;
+		synchronized (shardFilterRejections) {
+			shardFilterRejections.clear();
+		}
+	}
+
+	private static boolean isShardFilterRejected(KinesisClient kinesisClient) {
+		synchronized (shardFilterRejections) {
+			Long rejectedAt = shardFilterRejections.get(kinesisClient);
+			if (rejectedAt == null) {
+				return false;
+			}
+			if (System.currentTimeMillis() - rejectedAt >= SHARD_FILTER_RETRY_MS) {
+				shardFilterRejections.remove(kinesisClient);
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @param e
+	 * @return whether a ListShards call was rejected because of its Shard filter
+	 */
+	static boolean rejectsShardFilter(InvalidArgumentException e) {
+		String message = e.awsErrorDetails() != null && e.awsErrorDetails().errorMessage() != null
+				? e.awsErrorDetails().errorMessage()
+				: e.getMessage();
+		return message != null && message.replace(" ", "").toLowerCase().contains("shardfilter");
+	}
+
+	private static List<Shard> listShards(final KinesisClient kinesisClient, final String streamName,
+			final String shardIdStart, final ShardFilter shardFilter, Priority priority) throws Exception {
+		List<Shard> shards = new ArrayList<>();
+		String nextToken = null;
+
+		// each page is a separate call to the control plane, so takes its own token
+		// from the rate limiter and is retried on its own
+		do {
+			final ListShardsRequest.Builder builder = ListShardsRequest.builder().maxResults(1000);
+
+			if (nextToken == null) {
+				builder.streamName(streamName);
+				if (shardIdStart != null) {
+					builder.exclusiveStartShardId(shardIdStart);
+				}
+				if (shardFilter != null) {
+					builder.shardFilter(shardFilter);
+				}
+			} else {
+				builder.nextToken(nextToken);
+			}
+
+			KinesisOperation describe = new KinesisOperation() {
+				public Object run(KinesisClient client) {
+					return client.listShards(builder.build());
+				}
+			};
+			ListShardsResponse result = (ListShardsResponse) doOperation(kinesisClient,
+					ControlPlaneRateLimiter.LIST_SHARDS, priority, describe, streamName, DESCRIBE_RETRIES, false);
+			shards.addAll(result.shards());
+
+			nextToken = result.nextToken();
+		} while (nextToken != null);
+
+		return shards;
+	}
+
+	/**
+	 * List the active enhanced fan-out consumers registered with a Stream
+	 * 
+	 * @param kinesisClient
+	 * @param streamName
+	 * @return
+	 * @throws Exception
+	 */
+	public static List<Consumer> listStreamConsumers(final KinesisClient kinesisClient, final String streamName)
+			throws Exception {
+		LOG.info(String.format("Listing Enhanced Fan-Out Consumers of Stream %s", streamName));
+		final String streamARN = describeStream(kinesisClient, streamName).streamARN();
+
+		List<Consumer> consumers = new ArrayList<>();
+		String nextToken = null;
+
+		do {
+			final ListStreamConsumersRequest req = ListStreamConsumersRequest.builder().streamARN(streamARN)
+					.nextToken(nextToken).build();
+
+			KinesisOperation list = new KinesisOperation() {
+				public Object run(KinesisClient client) {
+					return client.listStreamConsumers(req);
+				}
+			};
+			ListStreamConsumersResponse result = (ListStreamConsumersResponse) doOperation(kinesisClient,
+					ControlPlaneRateLimiter.LIST_STREAM_CONSUMERS, Priority.LOW, list, streamName, DESCRIBE_RETRIES,
+					false);
+			for (Consumer c : result.consumers()) {
+				if (c.consumerStatus() == ConsumerStatus.ACTIVE) {
+					consumers.add(c);
+				}
+			}
+
+			nextToken = result.nextToken();
+		} while (nextToken != null);
+
+		return consumers;
 	}
 
 	public static Shard getShard(final KinesisClient kinesisClient, final String streamName, final String shardIdStart)
@@ -189,11 +421,12 @@ public class StreamScalingUtils {
 				return result.shards().get(0);
 			}
 		};
-		return (Shard) doOperation(kinesisClient, describe, streamName, DESCRIBE_RETRIES, false);
+		return (Shard) doOperation(kinesisClient, ControlPlaneRateLimiter.LIST_SHARDS, Priority.LOW, describe,
+				streamName, DESCRIBE_RETRIES, false);
 	}
 
 	public static void splitShard(final KinesisClient kinesisClient, final String streamName, final String shardId,
-			final BigInteger targetHash, final boolean waitForActive) throws Exception {
+			final HashKey targetHash, final boolean waitForActive) throws Exception {
 		LOG.info(String.format("Splitting Shard %s at %s", shardId, targetHash.toString()));
 
 		KinesisOperation split = new KinesisOperation() {
@@ -205,7 +438,10 @@ public class StreamScalingUtils {
 				return null;
 			}
 		};
-		doOperation(kinesisClient, split, streamName, MODIFY_RETRIES, waitForActive);
+		synchronized (getModificationLock(kinesisClient, streamName)) {
+			doOperation(kinesisClient, ControlPlaneRateLimiter.SPLIT_SHARD, Priority.HIGH, split, streamName,
+					MODIFY_RETRIES, waitForActive);
+		}
 	}
 
 	public static void mergeShards(final KinesisClient kinesisClient, final String streamName,
@@ -222,17 +458,45 @@ public class StreamScalingUtils {
 				return null;
 			}
 		};
-		doOperation(kinesisClient, merge, streamName, MODIFY_RETRIES, waitForActive);
+		synchronized (getModificationLock(kinesisClient, streamName)) {
+			doOperation(kinesisClient, ControlPlaneRateLimiter.MERGE_SHARDS, Priority.HIGH, merge, streamName,
+					MODIFY_RETRIES, waitForActive);
+		}
+	}
+
+	private static Object getModificationLock(KinesisClient kinesisClient, String streamName) {
+		synchronized (modificationLocks) {
+			Map<String, Object> clientLocks = modificationLocks.get(kinesisClient);
+			if (clientLocks == null) {
+				clientLocks = new HashMap<>();
+				modificationLocks.put(kinesisClient, clientLocks);
+			}
+
+			Object lock = clientLocks.get(streamName);
+			if (lock == null) {
+				lock = new Object();
+				clientLocks.put(streamName, lock);
+			}
+			return lock;
+		}
 	}
 
-	private static Object doOperation(KinesisClient kinesisClient, KinesisOperation operation, String streamName,
-			int retries, boolean waitForActive) throws Exception {
+	/**
+	 * Run an operation once the control plane rate limiter of the client allows a
+	 * call to its API, retrying with backoff when it is throttled, and after the
+	 * Stream is Active again when it is mutating. Only throttled calls count
+	 * towards the retries, as waiting for a mutating Stream is bounded by the
+	 * timeout of the status wait
+	 */
+	private static Object doOperation(KinesisClient kinesisClient, String api, Priority priority,
+			KinesisOperation operation, String streamName, int retries, boolean waitForActive) throws Exception {
+		ControlPlaneRateLimiter rateLimiter = ControlPlaneRateLimiter.forClient(kinesisClient);
 		boolean done = false;
 		int attempts = 0;
 		Object result = null;
 		do {
-			attempts++;
 			try {
+				rateLimiter.acquire(api, priority);
 				result = operation.run(kinesisClient);
 
 				if (waitForActive) {
@@ -240,14 +504,17 @@ public class StreamScalingUtils {
 				}
 				done = true;
 			} catch (ResourceInUseException e) {
-				// thrown when the Shard is mutating - wait until we are able to
+				// thrown when the Stream is mutating - wait until we are able to
 				// do the modification or ResourceNotFoundException is thrown
-				Thread.sleep(1000);
+				waitForStreamStatus(kinesisClient, streamName, "ACTIVE");
 			} catch (LimitExceededException lee) {
 				// API Throttling
 				LOG.warn(String.format("LimitExceededException for Stream %s", streamName));
 
-				Thread.sleep(getTimeoutDuration(attempts));
+				attempts++;
+				if (attempts < retries) {
+					Thread.sleep(getTimeoutDuration(attempts));
+				}
 			}
 		} while (!done && attempts < retries);
 
@@ -263,11 +530,6 @@ public class StreamScalingUtils {
 		return new Double(Math.pow(2, attemptCount) * RETRY_TIMEOUT_MS).longValue();
 	}
 
-	private static final int compareShardsByStartHash(Shard o1, Shard o2) {
-		return new BigInteger(o1.hashKeyRange().startingHashKey())
-				.compareTo(new BigInteger(o2.hashKeyRange().startingHashKey()));
-	}
-
 	public static int getOpenShardCount(KinesisClient kinesisClient, String streamName) throws Exception {
 		return StreamScalingUtils.describeStream(kinesisClient, streamName).openShardCount();
 	}
@@ -296,58 +558,26 @@ public class StreamScalingUtils {
 
 	public static Map<String, ShardHashInfo> getOpenShards(KinesisClient kinesisClient, String streamName,
 			SortOrder sortOrder, String lastShardId) throws Exception {
-		Collection<String> openShardNames = new ArrayList<>();
-		Map<String, ShardHashInfo> shardMap = new LinkedHashMap<>();
-
-		// load all the open shards on the Stream and sort if required
-		for (Shard shard : listShards(kinesisClient, streamName, lastShardId)) {
-			openShardNames.add(shard.shardId());
-			shardMap.put(shard.shardId(), new ShardHashInfo(streamName, shard));
-
-			// remove this Shard's parents from the set of active shards - they
-			// are now closed and cannot be modified or written to
-			if (shard.parentShardId() != null) {
-				openShardNames.remove(shard.parentShardId());
-				shardMap.remove(shard.parentShardId());
-			}
-			if (shard.adjacentParentShardId() != null) {
-				openShardNames.remove(shard.adjacentParentShardId());
-				shardMap.remove(shard.adjacentParentShardId());
-			}
-		}
-
-		// create a List of Open shards for sorting
-		List<Shard> sortShards = new ArrayList<>();
-		for (String s : openShardNames) {
-			// paranoid null check in case we get a null map entry
-			if (s != null) {
-				sortShards.add(shardMap.get(s).getShard());
-			}
-		}
-
-		if (sortOrder.equals(SortOrder.ASCENDING)) {
-			// sort the list into lowest start hash order
-			Collections.sort(sortShards, new Comparator<Shard>() {
-				public int compare(Shard o1, Shard o2) {
-					return compareShardsByStartHash(o1, o2);
-				}
-			});
-		} else if (sortOrder.equals(SortOrder.DESCENDING)) {
-			// sort the list into highest start hash order
-			Collections.sort(sortShards, new Comparator<Shard>() {
-				public int compare(Shard o1, Shard o2) {
-					return compareShardsByStartHash(o1, o2) * -1;
-				}
-			});
-		} // else we were supplied a NONE sort order so no sorting
+		return getShardIndex(kinesisClient, streamName, lastShardId).asMap(sortOrder);
+	}
 
-		// build the Shard map into the correct order
-		shardMap.clear();
-		for (Shard s : sortShards) {
-			shardMap.put(s.shardId(), new ShardHashInfo(streamName, s));
+	/**
+	 * Build a keyspace index of all Open shards on the Stream
+	 *
+	 * @param kinesisClient
+	 * @param streamName
+	 * @param lastShardId   Only index Shards created after this Shard, or null
+	 *                      for all Shards
+	 * @return
+	 * @throws Exception
+	 */
+	public static ShardKeyspaceIndex getShardIndex(KinesisClient kinesisClient, String streamName,
+			String lastShardId) throws Exception {
+		if (lastShardId == null) {
+			return ShardKeyspaceIndex.build(streamName, listOpenShards(kinesisClient, streamName));
+		} else {
+			return ShardKeyspaceIndex.build(streamName, listShards(kinesisClient, streamName, lastShardId));
 		}
-
-		return shardMap;
 	}
 
 	public static void sendNotification(SnsClient snsClient, String notificationARN, String subject, String message) {
@@ -452,4 +682,65 @@ public class StreamScalingUtils {
 
 		return newShardCount;
 	}
+
+	/**
+	 * Calculate the Shard count at which the peak rate of an operation would be at
+	 * the target utilisation of each Shard, rather than moving by a fixed count or
+	 * percentage. The result is limited to the Shard counts which a chain of
+	 * UpdateShardCount calls can reach from the current count within its daily
+	 * limit, and to the min and max Shards allowed
+	 * 
+	 * @param currentShardCount
+	 * @param peakPerSecond          the peak rate of the operation, in Bytes or
+	 *                               Records per second
+	 * @param shardCapacityPerSecond the capacity of a single Shard for the same
+	 *                               metric
+	 * @param targetUtilisationPct   the utilisation of each Shard to resize to
+	 * @param minShardsAllowed
+	 * @param maxShardsAllowed
+	 * @return the new Shard count, of at least 1
+	 */
+	public static int getNewShardCount(int currentShardCount, double peakPerSecond, int shardCapacityPerSecond,
+			int targetUtilisationPct, Integer minShardsAllowed, Integer maxShardsAllowed) {
+		long newShardCount = (long) Math
+				.ceil(peakPerSecond / (shardCapacityPerSecond * targetUtilisationPct / 100D));
+
+		// keep within the reach of the daily UpdateShardCount calls
+		double reach = Math.pow(UPDATE_SHARD_COUNT_MAX_FACTOR, UPDATE_SHARD_COUNT_DAILY_LIMIT);
+		newShardCount = Math.min(newShardCount, (long) (currentShardCount * reach));
+		newShardCount = Math.max(newShardCount, (long) Math.ceil(currentShardCount / reach));
+
+		if (maxShardsAllowed != null && newShardCount > maxShardsAllowed) {
+			newShardCount = maxShardsAllowed;
+		}
+		if (minShardsAllowed != null && newShardCount < minShardsAllowed) {
+			newShardCount = minShardsAllowed;
+		}
+
+		return (int) Math.max(newShardCount, 1);
+	}
+
+	/**
+	 * Break a resize into the target Shard counts of a chain of UpdateShardCount
+	 * calls, each of which at most doubles or halves the Shard count
+	 * 
+	 * @param currentShardCount
+	 * @param targetShardCount
+	 * @return the Shard count after each call, ending with the target, or an
+	 *         empty list if the counts are the same
+	 */
+	public static List<Integer> getUpdateShardCountSteps(int currentShardCount, int targetShardCount) {
+		List<Integer> steps = new ArrayList<>();
+		long shardCount = currentShardCount;
+		while (shardCount != targetShardCount) {
+			if (targetShardCount > shardCount) {
+				shardCount = Math.min(targetShardCount, shardCount * UPDATE_SHARD_COUNT_MAX_FACTOR);
+			} else {
+				shardCount = Math.max(targetShardCount,
+						-Math.floorDiv(-shardCount, (long) UPDATE_SHARD_COUNT_MAX_FACTOR));
+			}
+			steps.add((int) shardCount);
+		}
+		return steps;
+	}
 }
@@ -0,0 +1,53 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+/**
+ * Thrown when a Stream has not reached a status within the time allowed to
+ * wait for it, such as when a Stream is stuck UPDATING after a modification
+ */
+public class StreamStatusTimeoutException extends Exception {
+	private final String streamName;
+
+	private final String status;
+
+	private final String lastStatus;
+
+	private final long waitedMillis;
+
+	public StreamStatusTimeoutException(String streamName, String status, String lastStatus, long waitedMillis) {
+		super(String.format("Stream %s not %s after %s ms (last status %s)", streamName, status, waitedMillis,
+				lastStatus));
+		this.streamName = streamName;
+		this.status = status;
+		this.lastStatus = lastStatus;
+		this.waitedMillis = waitedMillis;
+	}
+
+	public String getStreamName() {
+		return this.streamName;
+	}
+
+	/**
+	 * @return the status which was waited for
+	 */
+	public String getStatus() {
+		return this.status;
+	}
+
+	/**
+	 * @return the last status seen, or null if the status was never checked
+	 */
+	public String getLastStatus() {
+		return this.lastStatus;
+	}
+
+	public long getWaitedMillis() {
+		return this.waitedMillis;
+	}
+}
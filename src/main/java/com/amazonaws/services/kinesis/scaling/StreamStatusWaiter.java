@@ -0,0 +1,399 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter.Priority;
+
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+
+/**
+ * Waits for Streams to reach a status. All the callers waiting on the same
+ * Stream through the same client share a single poll of its status, made by a
+ * small pool of poller Threads, and each caller is released as soon as the
+ * poll sees the status it is waiting for.
+ *
+ * The time each Stream takes to go from UPDATING back to ACTIVE is learned as
+ * a moving average, and the poll closes in on the expected completion by
+ * halving the wait before each check, then backs off again if the Stream is
+ * slower than expected. Callers give up with a
+ * {@link StreamStatusTimeoutException} once their deadline has passed
+ */
+public class StreamStatusWaiter {
+	private static final Logger LOG = LoggerFactory.getLogger(StreamStatusWaiter.class);
+
+	// stream mutation takes around 30 seconds until a Stream's own duration has
+	// been seen
+	public static final long DEFAULT_EXPECTED_UPDATE_MS = 30000;
+
+	public static final long MIN_POLL_MS = 1000;
+
+	public static final long MAX_POLL_MS = 10000;
+
+	public static final long DEFAULT_TIMEOUT_MS = 60 * 60 * 1000L;
+
+	// weight of each newly seen update duration in the moving average
+	private static final double LEARNING_RATE = 0.3;
+
+	private static final int POLLER_THREADS = 4;
+
+	private static final String ACTIVE = "ACTIVE";
+
+	private static StreamStatusWaiter instance = null;
+
+	private class Waiter {
+		private final String status;
+
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private Exception failure;
+
+		Waiter(String status) {
+			this.status = status;
+		}
+	}
+
+	private class Poll implements Runnable {
+		private final KinesisClient kinesisClient;
+
+		private final String streamName;
+
+		private final long startedAt = System.currentTimeMillis();
+
+		private final List<Waiter> waiters = new ArrayList<>();
+
+		private String lastStatus;
+
+		private long lastCheckedAt;
+
+		// when the Stream was first seen in a status other than ACTIVE
+		private long updatingSince = -1;
+
+		private ScheduledFuture<?> next;
+
+		Poll(KinesisClient kinesisClient, String streamName) {
+			this.kinesisClient = kinesisClient;
+			this.streamName = streamName;
+		}
+
+		@Override
+		public void run() {
+			check(this);
+		}
+	}
+
+	private final long defaultExpectedUpdateMillis;
+
+	private final long minPollMillis;
+
+	private final long maxPollMillis;
+
+	private long timeoutMillis = DEFAULT_TIMEOUT_MS;
+
+	private final ScheduledExecutorService poller;
+
+	// active polls by client and Stream
+	private final Map<KinesisClient, Map<String, Poll>> polls = new IdentityHashMap<>();
+
+	private final Map<String, Long> expectedUpdateMillis = new HashMap<>();
+
+	StreamStatusWaiter(long defaultExpectedUpdateMillis, long minPollMillis, long maxPollMillis) {
+		this.defaultExpectedUpdateMillis = defaultExpectedUpdateMillis;
+		this.minPollMillis = minPollMillis;
+		this.maxPollMillis = maxPollMillis;
+		this.poller = Executors.newScheduledThreadPool(POLLER_THREADS, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "StreamStatusPoller");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * @return the waiter shared by all the Scalers and Monitors in the process
+	 */
+	public static synchronized StreamStatusWaiter getInstance() {
+		if (instance == null) {
+			instance = new StreamStatusWaiter(DEFAULT_EXPECTED_UPDATE_MS, MIN_POLL_MS, MAX_POLL_MS);
+		}
+		return instance;
+	}
+
+	/**
+	 * Replace the shared waiter, such as with one which polls more often
+	 *
+	 * @param waiter
+	 */
+	static synchronized void setInstance(StreamStatusWaiter waiter) {
+		instance = waiter;
+	}
+
+	/**
+	 * Set how long callers wait for a Stream status when they don't give a time
+	 * themselves
+	 *
+	 * @param timeoutMillis
+	 */
+	public synchronized void setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public synchronized long getTimeoutMillis() {
+		return this.timeoutMillis;
+	}
+
+	/**
+	 * @param streamName
+	 * @return the time the Stream is expected to take to become ACTIVE after a
+	 *         modification
+	 */
+	public synchronized long getExpectedUpdateMillis(String streamName) {
+		Long expected = this.expectedUpdateMillis.get(streamName);
+		return expected == null ? this.defaultExpectedUpdateMillis : expected;
+	}
+
+	/**
+	 * Wait for a Stream to reach the indicated status within the default timeout
+	 *
+	 * @param kinesisClient
+	 * @param streamName
+	 * @param status
+	 * @throws StreamStatusTimeoutException if the Stream has not reached the
+	 *                                      status within the timeout
+	 * @throws Exception                    if the status of the Stream cannot be
+	 *                                      checked
+	 */
+	public void waitFor(KinesisClient kinesisClient, String streamName, String status) throws Exception {
+		waitFor(kinesisClient, streamName, status, getTimeoutMillis());
+	}
+
+	/**
+	 * Wait for a Stream to reach the indicated status
+	 *
+	 * @param kinesisClient
+	 * @param streamName
+	 * @param status
+	 * @param timeoutMillis how long to wait before giving up
+	 * @throws StreamStatusTimeoutException if the Stream has not reached the
+	 *                                      status within the timeout
+	 * @throws Exception                    if the status of the Stream cannot be
+	 *                                      checked
+	 */
+	public void waitFor(KinesisClient kinesisClient, String streamName, String status, long timeoutMillis)
+			throws Exception {
+		Waiter waiter = new Waiter(status);
+		Poll poll;
+
+		synchronized (this) {
+			Map<String, Poll> clientPolls = this.polls.get(kinesisClient);
+			if (clientPolls == null) {
+				clientPolls = new HashMap<>();
+				this.polls.put(kinesisClient, clientPolls);
+			}
+
+			poll = clientPolls.get(streamName);
+			if (poll == null) {
+				// check straight away, as the Stream is often already in the
+				// status
+				poll = new Poll(kinesisClient, streamName);
+				clientPolls.put(streamName, poll);
+				poll.next = this.poller.schedule(poll, 0, TimeUnit.MILLISECONDS);
+			} else if (status.equals(poll.lastStatus)
+					&& System.currentTimeMillis() - poll.lastCheckedAt < this.minPollMillis) {
+				// the shared poll has just seen the status
+				return;
+			}
+			poll.waiters.add(waiter);
+		}
+
+		boolean released = false;
+		try {
+			released = waiter.done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+		} finally {
+			if (!released) {
+				synchronized (this) {
+					// the poll may have released the waiter as the wait ended
+					released = waiter.done.getCount() == 0;
+					if (!released) {
+						remove(poll, waiter);
+					}
+				}
+			}
+		}
+
+		if (waiter.failure != null) {
+			throw waiter.failure;
+		}
+		if (!released) {
+			String lastStatus;
+			synchronized (this) {
+				lastStatus = poll.lastStatus;
+			}
+			LOG.warn(String.format("Stream %s not %s after %s ms", streamName, status, timeoutMillis));
+			throw new StreamStatusTimeoutException(streamName, status, lastStatus, timeoutMillis);
+		}
+	}
+
+	/*
+	 * Stop waiting for a Stream, ending its poll if no one else is waiting
+	 */
+	private void remove(Poll poll, Waiter waiter) {
+		poll.waiters.remove(waiter);
+		if (poll.waiters.isEmpty()) {
+			end(poll);
+		}
+	}
+
+	private void end(Poll poll) {
+		if (poll.next != null) {
+			poll.next.cancel(false);
+		}
+
+		Map<String, Poll> clientPolls = this.polls.get(poll.kinesisClient);
+		if (clientPolls != null && clientPolls.get(poll.streamName) == poll) {
+			clientPolls.remove(poll.streamName);
+			if (clientPolls.isEmpty()) {
+				this.polls.remove(poll.kinesisClient);
+			}
+		}
+	}
+
+	private boolean isActive(Poll poll) {
+		Map<String, Poll> clientPolls = this.polls.get(poll.kinesisClient);
+		return clientPolls != null && clientPolls.get(poll.streamName) == poll;
+	}
+
+	/*
+	 * Check the status of the Stream of a poll, release the callers waiting for
+	 * it and schedule the next check if any remain
+	 */
+	private void check(Poll poll) {
+		String status = null;
+		Exception failure = null;
+		try {
+			status = StreamScalingUtils.getStreamStatus(poll.kinesisClient, poll.streamName, Priority.HIGH);
+		} catch (Exception e) {
+			failure = e;
+		}
+
+		synchronized (this) {
+			if (!isActive(poll)) {
+				return;
+			}
+
+			if (failure != null) {
+				for (Waiter waiter : poll.waiters) {
+					waiter.failure = failure;
+					waiter.done.countDown();
+				}
+				poll.waiters.clear();
+				end(poll);
+				return;
+			}
+
+			long now = System.currentTimeMillis();
+			if (!status.equals(ACTIVE)) {
+				if (poll.updatingSince < 0) {
+					poll.updatingSince = now;
+				}
+			} else if (poll.lastStatus != null && !poll.lastStatus.equals(ACTIVE)) {
+				// the Stream became ACTIVE between the last two checks
+				learn(poll.streamName, (poll.lastCheckedAt + now) / 2 - poll.updatingSince);
+			}
+			poll.lastStatus = status;
+			poll.lastCheckedAt = now;
+
+			Iterator<Waiter> waiters = poll.waiters.iterator();
+			while (waiters.hasNext()) {
+				Waiter waiter = waiters.next();
+				if (waiter.status.equals(status)) {
+					waiters.remove();
+					waiter.done.countDown();
+				}
+			}
+
+			if (poll.waiters.isEmpty()) {
+				end(poll);
+			} else {
+				poll.next = this.poller.schedule(poll,
+						getPollDelay(getExpectedUpdateMillis(poll.streamName), now - poll.startedAt,
+								this.minPollMillis, this.maxPollMillis),
+						TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	private void learn(String streamName, long updateMillis) {
+		long learned = Math.round(getExpectedUpdateMillis(streamName) * (1 - LEARNING_RATE)
+				+ Math.max(updateMillis, 0) * LEARNING_RATE);
+		this.expectedUpdateMillis.put(streamName, learned);
+		LOG.debug(String.format("Stream %s updated in %s ms. Expecting updates of %s ms", streamName, updateMillis,
+				learned));
+	}
+
+	/**
+	 * Get the delay before the next check of a Stream's status. Before the
+	 * expected completion the delay is half of the time remaining, and after it
+	 * the delay grows with the time overrun, between the minimum and maximum
+	 * poll interval
+	 *
+	 * @param expectedMillis how long the Stream is expected to take
+	 * @param elapsedMillis  how long the Stream has been waited on
+	 * @param minPollMillis
+	 * @param maxPollMillis
+	 * @return
+	 */
+	static long getPollDelay(long expectedMillis, long elapsedMillis, long minPollMillis, long maxPollMillis) {
+		long remaining = expectedMillis - elapsedMillis;
+		long delay = remaining > 0 ? remaining / 2 : -remaining / 4;
+		return Math.max(Math.min(delay, maxPollMillis), minPollMillis);
+	}
+
+	/**
+	 * @return the number of Streams being polled
+	 */
+	synchronized int getPollCount() {
+		int count = 0;
+		for (Map<String, Poll> clientPolls : this.polls.values()) {
+			count += clientPolls.size();
+		}
+		return count;
+	}
+
+	/**
+	 * @param streamName
+	 * @return the number of callers waiting on a Stream, through any client
+	 */
+	synchronized int getWaiterCount(String streamName) {
+		int count = 0;
+		for (Map<String, Poll> clientPolls : this.polls.values()) {
+			Poll poll = clientPolls.get(streamName);
+			if (poll != null) {
+				count += poll.waiters.size();
+			}
+		}
+		return count;
+	}
+}
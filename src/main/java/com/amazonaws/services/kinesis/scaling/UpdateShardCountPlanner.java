@@ -0,0 +1,99 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plans a resize as a chain of UpdateShardCount calls, each of which at most
+ * doubles or halves the Shard count, and keeps the chain within the number of
+ * calls which each Stream may make in a rolling 24 hours. The calls made
+ * through this planner are tracked per Stream, so a chain which would exceed
+ * the remaining calls is cut short, and the rest of the resize is left to
+ * split/merge scaling
+ *
+ * http://docs.aws.amazon.com/kinesis/latest/APIReference/API_UpdateShardCount.html
+ */
+public class UpdateShardCountPlanner {
+	public static final long QUOTA_PERIOD_MS = 24 * 60 * 60 * 1000L;
+
+	private final int dailyLimit;
+
+	private final Map<String, Deque<Long>> calls = new HashMap<>();
+
+	public UpdateShardCountPlanner() {
+		this(StreamScalingUtils.UPDATE_SHARD_COUNT_DAILY_LIMIT);
+	}
+
+	public UpdateShardCountPlanner(int dailyLimit) {
+		this.dailyLimit = Math.max(dailyLimit, 0);
+	}
+
+	public int getDailyLimit() {
+		return this.dailyLimit;
+	}
+
+	/**
+	 * Get the number of UpdateShardCount calls which a Stream may still make in
+	 * the 24 hours up to the indicated time
+	 *
+	 * @param streamName
+	 * @param now
+	 * @return
+	 */
+	public synchronized int getRemainingCalls(String streamName, long now) {
+		Deque<Long> made = this.calls.get(streamName);
+		if (made == null) {
+			return this.dailyLimit;
+		}
+		while (!made.isEmpty() && made.peekFirst() <= now - QUOTA_PERIOD_MS) {
+			made.removeFirst();
+		}
+		return Math.max(this.dailyLimit - made.size(), 0);
+	}
+
+	/**
+	 * Plan the UpdateShardCount calls which move a Stream towards the target Shard
+	 * count within its remaining calls
+	 *
+	 * @param streamName
+	 * @param currentShardCount
+	 * @param targetShardCount
+	 * @param now
+	 * @return the Shard count after each call, ending with the target if the
+	 *         remaining calls allow for it. Empty if the counts are the same, or
+	 *         the calls are exhausted
+	 */
+	public synchronized List<Integer> plan(String streamName, int currentShardCount, int targetShardCount,
+			long now) {
+		List<Integer> steps = StreamScalingUtils.getUpdateShardCountSteps(currentShardCount, targetShardCount);
+		int remaining = getRemainingCalls(streamName, now);
+
+		return steps.size() > remaining ? new ArrayList<>(steps.subList(0, remaining)) : steps;
+	}
+
+	/**
+	 * Record an UpdateShardCount call accepted for a Stream
+	 *
+	 * @param streamName
+	 * @param now
+	 */
+	public synchronized void recordCall(String streamName, long now) {
+		Deque<Long> made = this.calls.get(streamName);
+		if (made == null) {
+			made = new ArrayDeque<>();
+			this.calls.put(streamName, made);
+		}
+		made.addLast(now);
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.List;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.kinesis.scaling.ScaleDirection;
+
+/**
+ * Base class of the Scaling Policies, with the checks of throttling and
+ * iterator age which are common to them
+ */
+public abstract class AbstractScalingPolicy implements ScalingPolicy {
+	protected final Logger LOG = LoggerFactory.getLogger(getClass());
+
+	protected final DateTimeFormatter formatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT)
+			.withLocale(Locale.UK).withZone(ZoneId.systemDefault());
+
+	protected final AutoscalingConfiguration config;
+
+	public AbstractScalingPolicy(AutoscalingConfiguration config) {
+		this.config = config;
+	}
+
+	/*
+	 * log a reason for the decision, and add it to the reasons
+	 */
+	protected void addReason(List<String> reasons, String reason) {
+		LOG.info(reason);
+		reasons.add(reason);
+	}
+
+	/*
+	 * count the periods in which the rate of throttled requests was above the
+	 * threshold
+	 */
+	protected int getThrottledSamples(KinesisOperationType op, UtilisationSeries throttles, double throttleThreshold) {
+		int throttledSamples = 0;
+		for (int i = 0; i < (throttles == null ? 0 : throttles.getPeriodCount()); i++) {
+			if (throttles.isPresent(i) && throttles.get(i) > throttleThreshold) {
+				LOG.info(String.format("%s requests throttled at %.2f per second at %s", op.name(), throttles.get(i),
+						formatter.format(throttles.getTimestamp(i))));
+				throttledSamples++;
+			}
+		}
+		return throttledSamples;
+	}
+
+	/*
+	 * requests which are throttled are not counted in the volume metrics, so a
+	 * Stream which is rejecting requests can look under utilised. Vote to scale
+	 * up on sustained throttling, and never scale down while requests are being
+	 * throttled
+	 */
+	protected ScaleDirection getThrottleVote(KinesisOperationType op, UtilisationSeries throttles,
+			ScaleDirection vote, List<String> reasons) {
+		Double throttleThreshold = this.config.getScaleUp().getThrottleThreshold();
+		if (throttleThreshold == null) {
+			return vote;
+		}
+
+		int throttledSamples = getThrottledSamples(op, throttles, throttleThreshold);
+
+		if (throttledSamples >= this.config.getScaleUp().getThrottleAfterMins()) {
+			addReason(reasons, String.format("%s requests were throttled in %s Minutes", op, throttledSamples));
+			return ScaleDirection.UP;
+		} else if (throttledSamples > 0 && vote == ScaleDirection.DOWN) {
+			addReason(reasons, String.format("Not scaling down %s as requests were throttled in %s Minutes", op,
+					throttledSamples));
+			return ScaleDirection.NONE;
+		}
+		return vote;
+	}
+
+	/*
+	 * vote to scale up if the iterator age has been above the threshold for the
+	 * scale up scaleAfterMins, or is above the floor and rising faster than the
+	 * configured rate, and don't scale down while it is above the floor
+	 */
+	protected ScaleDirection getIteratorAgeVote(UtilisationSeries ages, ScaleDirection vote, List<String> reasons) {
+		IteratorAgeConfig iteratorAge = this.config.getIteratorAge();
+		Double latestAge = ages == null ? null : ages.getLatest();
+		if (latestAge == null) {
+			return vote;
+		}
+		boolean aboveFloor = iteratorAge.getFloorMillis() == null || latestAge > iteratorAge.getFloorMillis();
+
+		if (iteratorAge.getScaleThresholdMillis() != null) {
+			int highSamples = 0;
+			for (int i = 0; i < ages.getPeriodCount(); i++) {
+				if (ages.isPresent(i) && ages.get(i) > iteratorAge.getScaleThresholdMillis()) {
+					highSamples++;
+				}
+			}
+
+			if (highSamples >= this.config.getScaleUp().getScaleAfterMins()) {
+				addReason(reasons, String.format("Iterator Age has been above %sms for %s Minutes",
+						iteratorAge.getScaleThresholdMillis(), highSamples));
+				return ScaleDirection.UP;
+			}
+		}
+
+		if (iteratorAge.getMaxIncreaseMillisPerMin() != null && aboveFloor && ages.getSlope() != null) {
+			double increasePerMin = ages.getSlope() * 60 / StreamMonitor.CLOUDWATCH_PERIOD;
+
+			if (increasePerMin > iteratorAge.getMaxIncreaseMillisPerMin()) {
+				addReason(reasons, String.format("Iterator Age of %.0fms is rising by %.0fms per Minute",
+						latestAge, increasePerMin));
+				return ScaleDirection.UP;
+			}
+		}
+
+		if (vote == ScaleDirection.DOWN && iteratorAge.getFloorMillis() != null && aboveFloor) {
+			addReason(reasons, String.format("Not scaling down GET as Iterator Age of %.0fms is above %sms",
+					latestAge, iteratorAge.getFloorMillis()));
+			return ScaleDirection.NONE;
+		}
+
+		return vote;
+	}
+}
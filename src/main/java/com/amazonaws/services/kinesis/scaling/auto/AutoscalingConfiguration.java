@@ -23,6 +23,8 @@ import org.apache.commons.lang3.RandomStringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.amazonaws.services.kinesis.scaling.StreamScaler;
+import com.amazonaws.services.kinesis.scaling.StreamScaler.ExecutionMode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
@@ -59,6 +61,20 @@ public class AutoscalingConfiguration implements Serializable {
 
 	private Integer checkInterval = 45;
 
+	private ExecutionMode executionMode = ExecutionMode.sequential;
+
+	private Integer maxOperationsInFlight = 1;
+
+	private Boolean scaleHotShards = false;
+
+	private IteratorAgeConfig iteratorAge;
+
+	private ForecastConfig forecast;
+
+	private ScalingPolicyType scalingPolicy = ScalingPolicyType.voteMatrix;
+
+	private Integer targetUtilisationPct;
+
 	public String getStreamName() {
 		return streamName;
 	}
@@ -135,6 +151,66 @@ public class AutoscalingConfiguration implements Serializable {
 		this.checkInterval = checkInterval;
 	}
 
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+
+	public void setExecutionMode(ExecutionMode executionMode) {
+		this.executionMode = executionMode;
+	}
+
+	public Integer getMaxOperationsInFlight() {
+		return maxOperationsInFlight == null ? 1 : maxOperationsInFlight;
+	}
+
+	public void setMaxOperationsInFlight(Integer maxOperationsInFlight) {
+		this.maxOperationsInFlight = maxOperationsInFlight;
+	}
+
+	public Boolean getScaleHotShards() {
+		return scaleHotShards;
+	}
+
+	public void setScaleHotShards(Boolean scaleHotShards) {
+		this.scaleHotShards = scaleHotShards;
+	}
+
+	public IteratorAgeConfig getIteratorAge() {
+		return iteratorAge;
+	}
+
+	public void setIteratorAge(IteratorAgeConfig iteratorAge) {
+		this.iteratorAge = iteratorAge;
+	}
+
+	public ForecastConfig getForecast() {
+		return forecast;
+	}
+
+	public void setForecast(ForecastConfig forecast) {
+		this.forecast = forecast;
+	}
+
+	public ScalingPolicyType getScalingPolicy() {
+		return scalingPolicy;
+	}
+
+	public void setScalingPolicy(ScalingPolicyType scalingPolicy) {
+		this.scalingPolicy = scalingPolicy;
+	}
+
+	/**
+	 * @return the utilisation of each Shard which the targetTracking Scaling
+	 *         Policy resizes the Stream to
+	 */
+	public Integer getTargetUtilisationPct() {
+		return targetUtilisationPct;
+	}
+
+	public void setTargetUtilisationPct(int targetUtilisationPct) {
+		this.targetUtilisationPct = targetUtilisationPct;
+	}
+
 	public static AutoscalingConfiguration[] loadFromURL(String url) throws IOException, InvalidConfigurationException {
 		File configFile = null;
 
@@ -217,6 +293,59 @@ public class AutoscalingConfiguration implements Serializable {
 					String.format("Scale Down Percentage of %s is invalid or null", this.scaleDown.getScalePct()));
 		}
 
+		if (this.scaleUp != null && this.scaleUp.getThrottleThreshold() != null
+				&& (this.scaleUp.getThrottleThreshold() < 0 || this.scaleUp.getThrottleAfterMins() < 1)) {
+			throw new InvalidConfigurationException(String.format(
+					"Scale Up Throttle Threshold of %s after %s Minutes is invalid",
+					this.scaleUp.getThrottleThreshold(), this.scaleUp.getThrottleAfterMins()));
+		}
+
+		if (this.iteratorAge != null && ((this.iteratorAge.getScaleThresholdMillis() != null
+				&& this.iteratorAge.getScaleThresholdMillis() < 0)
+				|| (this.iteratorAge.getMaxIncreaseMillisPerMin() != null
+						&& this.iteratorAge.getMaxIncreaseMillisPerMin() <= 0)
+				|| (this.iteratorAge.getFloorMillis() != null && this.iteratorAge.getFloorMillis() < 0))) {
+			throw new InvalidConfigurationException(String.format(
+					"Iterator Age Threshold of %s, Max Increase of %s per Minute or Floor of %s is invalid",
+					this.iteratorAge.getScaleThresholdMillis(), this.iteratorAge.getMaxIncreaseMillisPerMin(),
+					this.iteratorAge.getFloorMillis()));
+		}
+
+		if (this.forecast != null && (this.forecast.getPeriodMins() <= 0 || this.forecast.getLeadTimeMins() <= 0
+				|| this.forecast.getSeasonMins() % this.forecast.getPeriodMins() != 0
+				|| this.forecast.getSeasonMins() / this.forecast.getPeriodMins() < 2
+				|| this.forecast.getHistorySeasons() < 2 || this.forecast.getConfidencePct() == null
+				|| this.forecast.getConfidencePct() < 50 || this.forecast.getConfidencePct() >= 100)) {
+			throw new InvalidConfigurationException(String.format(
+					"Forecast Lead Time of %s Minutes, Season of %s Minutes, Period of %s Minutes, History of %s Seasons or Confidence of %s%% is invalid",
+					this.forecast.getLeadTimeMins(), this.forecast.getSeasonMins(), this.forecast.getPeriodMins(),
+					this.forecast.getHistorySeasons(), this.forecast.getConfidencePct()));
+		}
+
+		if (this.scalingPolicy == null) {
+			this.scalingPolicy = ScalingPolicyType.voteMatrix;
+		}
+
+		if (this.scalingPolicy == ScalingPolicyType.targetTracking && (this.targetUtilisationPct == null
+				|| this.targetUtilisationPct <= 0 || this.targetUtilisationPct > 100)) {
+			throw new InvalidConfigurationException(String.format(
+					"Target Utilisation of %s%% is invalid for the targetTracking Scaling Policy",
+					this.targetUtilisationPct));
+		}
+
+		if (this.executionMode == null) {
+			this.executionMode = ExecutionMode.sequential;
+		}
+
+		if (this.maxOperationsInFlight == null) {
+			this.maxOperationsInFlight = 1;
+		} else if (this.maxOperationsInFlight < 1
+				|| this.maxOperationsInFlight > StreamScaler.MAX_OPERATIONS_IN_FLIGHT) {
+			throw new InvalidConfigurationException(String.format(
+					"Max Operations in Flight of %s is invalid. Must be between 1 and %s", this.maxOperationsInFlight,
+					StreamScaler.MAX_OPERATIONS_IN_FLIGHT));
+		}
+
 		if (this.minShards != null && this.maxShards != null && this.minShards > this.maxShards) {
 			throw new InvalidConfigurationException("Min Shard Count must be less than Max Shard Count");
 		}
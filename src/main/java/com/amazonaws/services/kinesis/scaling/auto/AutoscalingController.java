@@ -7,18 +7,34 @@
  */
 package com.amazonaws.services.kinesis.scaling.auto;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter;
+import com.amazonaws.services.kinesis.scaling.StreamStatusWaiter;
+
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
 /**
- * The AutoscalingController runs StreamMonitors in a Thread Pool for each of
- * the configured set of AutoscalingConfigurations provided
+ * The AutoscalingController runs StreamMonitors for each of the configured set
+ * of AutoscalingConfigurations provided. The checks of all the monitors are
+ * run by a single scheduler with a small pool of Threads, rather than a Thread
+ * per Stream which spends most of its time asleep, and the first check of each
+ * monitor is jittered over its check interval so that the checks are spread
+ * out
  */
 public class AutoscalingController implements Runnable {
 	public static final String CONFIGURATION = "autoscaling-config";
@@ -27,6 +43,24 @@ public class AutoscalingController implements Runnable {
 	
 	public static final String SUPPRESS_ABORT_ON_FATAL = "suppress-abort-on-fatal";
 
+	public static final String MONITOR_THREADS_PARAM = "monitor-threads";
+
+	// CloudWatch namespace to publish the queue depths of the control plane rate
+	// limiters to. Queue depths are only logged if not set
+	public static final String RATE_LIMITER_METRICS_NAMESPACE_PARAM = "rate-limiter-metrics-namespace";
+
+	public static final String RATE_LIMITER_QUEUE_DEPTH_METRIC = "ControlPlaneQueueDepth";
+
+	// minutes a scaling action waits for a Stream to become ACTIVE again
+	public static final String STATUS_WAIT_TIMEOUT_PARAM = "status-wait-timeout-mins";
+
+	// checks spend most of their time waiting on Kinesis and CloudWatch, so
+	// several can share each processor
+	public static final int DEFAULT_MONITOR_THREADS_PER_PROCESSOR = 4;
+
+	// seconds to wait for running checks to complete on stop
+	private static final int STOP_TIMEOUT_SECONDS = 60;
+
 	private static final Logger LOG = LoggerFactory.getLogger(AutoscalingController.class);
 
 	// configurations we're responsible for
@@ -37,8 +71,14 @@ public class AutoscalingController implements Runnable {
 
 	private Map<Integer, Future<?>> monitorFutures = new HashMap<>();
 
-	// set up the executor thread pool
-	private ExecutorService executor;
+	// CloudWatch metric batchers shared by the monitors of each Region, and the
+	// clients which they use
+	private Map<String, MetricDataBatcher> metricDataBatchers = new HashMap<>();
+
+	private Map<String, RegionClients> batcherClients = new HashMap<>();
+
+	// scheduler shared by all the stream monitors
+	private ScheduledExecutorService scheduler;
 
 	private static AutoscalingController controller;
 
@@ -49,7 +89,31 @@ public class AutoscalingController implements Runnable {
 
 	private AutoscalingController(AutoscalingConfiguration[] config) {
 		this.config = config;
-		this.executor = Executors.newFixedThreadPool(this.config.length);
+		this.scheduler = Executors.newScheduledThreadPool(getMonitorThreads(this.config.length));
+
+		String statusWaitTimeout = System.getProperty(STATUS_WAIT_TIMEOUT_PARAM);
+		if (statusWaitTimeout != null && !statusWaitTimeout.equals("")) {
+			StreamStatusWaiter.getInstance().setTimeoutMillis(Long.parseLong(statusWaitTimeout) * 60 * 1000L);
+		}
+	}
+
+	/**
+	 * Get the number of Threads which run the checks of the monitors. Each scaling
+	 * action holds a Thread until the Stream is Active, so this is also the
+	 * number of Streams which can be scaled at once
+	 * 
+	 * @param monitors
+	 * @return the -Dmonitor-threads value if set, or otherwise a number for the
+	 *         processors available, and no more than the number of monitors
+	 */
+	static int getMonitorThreads(int monitors) {
+		String threads = System.getProperty(MONITOR_THREADS_PARAM);
+		if (threads != null && !threads.equals("")) {
+			return Math.max(Integer.parseInt(threads), 1);
+		}
+
+		return Math.max(Math.min(monitors, Runtime.getRuntime().availableProcessors()
+				* DEFAULT_MONITOR_THREADS_PER_PROCESSOR), 1);
 	}
 
 	private static void handleFatal(Exception e) {
@@ -110,15 +174,67 @@ public class AutoscalingController implements Runnable {
 			StreamMonitor monitor = entry.getValue();
 			LOG.info("Stopping Stream Monitor: " + monitor.getConfig().getStreamName() + " ...");
 			monitor.stop();
-			// block until the Future returns that the Stream Monitor has
-			// stopped
-			monitorFutures.get(entry.getKey()).get();
 			LOG.info("Stream Monitor: " + monitor.getConfig().getStreamName() + " stopped");
 		}
+
+		// block until any running checks have completed
+		scheduler.shutdown();
+		if (!scheduler.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+			LOG.warn(String.format("Stream Monitor checks still running after %s seconds", STOP_TIMEOUT_SECONDS));
+		}
+
+		for (RegionClients clients : batcherClients.values()) {
+			ClientRegistry.release(clients);
+		}
+		batcherClients.clear();
+	}
+
+	private MetricDataBatcher getMetricDataBatcher(String region) {
+		if (!metricDataBatchers.containsKey(region)) {
+			RegionClients clients = ClientRegistry.acquire(region);
+			batcherClients.put(region, clients);
+			metricDataBatchers.put(region, new MetricDataBatcher(clients.getCloudWatchClient()));
+		}
+		return metricDataBatchers.get(region);
+	}
+
+	/**
+	 * Log the peak number of calls which have waited for each control plane API
+	 * of each Region since the last report, and publish them to CloudWatch when a
+	 * namespace has been configured
+	 */
+	private void reportRateLimiterQueueDepths() {
+		String namespace = System.getProperty(RATE_LIMITER_METRICS_NAMESPACE_PARAM);
+
+		for (Map.Entry<String, RegionClients> entry : batcherClients.entrySet()) {
+			ControlPlaneRateLimiter limiter = ControlPlaneRateLimiter.get(ControlPlaneRateLimiter.DEFAULT_ACCOUNT,
+					entry.getKey());
+			List<MetricDatum> data = new ArrayList<>();
+
+			for (Map.Entry<String, Integer> depth : limiter.getPeakQueueDepths().entrySet()) {
+				if (depth.getValue() > 0) {
+					LOG.info(String.format("Control plane calls queued for %s in Region %s: %s", depth.getKey(),
+							entry.getKey(), depth.getValue()));
+				}
+				data.add(MetricDatum.builder().metricName(RATE_LIMITER_QUEUE_DEPTH_METRIC)
+						.dimensions(Dimension.builder().name("Api").value(depth.getKey()).build())
+						.value(depth.getValue().doubleValue()).unit(StandardUnit.COUNT).build());
+			}
+
+			if (namespace != null && !namespace.equals("") && !data.isEmpty()) {
+				try {
+					entry.getValue().getCloudWatchClient()
+							.putMetricData(PutMetricDataRequest.builder().namespace(namespace).metricData(data).build());
+				} catch (Exception e) {
+					LOG.warn(String.format("Unable to publish control plane queue depths for Region %s: %s",
+							entry.getKey(), e.getMessage()));
+				}
+			}
+		}
 	}
 
 	public void startMonitors() {
-		// run all the configured monitors in a thread pool
+		// schedule all the configured monitors on the shared scheduler
 		try {
 			int i = 0;
 			for (AutoscalingConfiguration streamConfig : this.config) {
@@ -126,9 +242,11 @@ public class AutoscalingController implements Runnable {
 				try {
 					LOG.info(String.format("AutoscalingController creating Stream Monitor for Stream %s",
 							streamConfig.getStreamName()));
-					monitor = new StreamMonitor(streamConfig);
+					monitor = new StreamMonitor(streamConfig, getMetricDataBatcher(streamConfig.getRegion()));
 					runningMonitors.put(i, monitor);
-					monitorFutures.put(i, executor.submit(monitor));
+					long jitterMillis = ThreadLocalRandom.current()
+							.nextLong(Math.max(streamConfig.getCheckInterval() * 1000L, 1));
+					monitorFutures.put(i, monitor.schedule(scheduler, jitterMillis));
 					i++;
 				} catch (Exception e) {
 					LOG.error(e.getMessage(), e);
@@ -150,16 +268,15 @@ public class AutoscalingController implements Runnable {
 					}
 				}
 
+				reportRateLimiterQueueDepths();
+
 				Thread.sleep(60000);
 			}
 		} catch (InterruptedException e) {
 			try {
 				stopAll();
 
-				// stop the executor service
 				LOG.error(e.getMessage(), e);
-				LOG.info("Terminating Thread Pool");
-				executor.shutdown();
 			} catch (Exception e1) {
 				LOG.error(e1.getMessage(), e1);
 			}
@@ -0,0 +1,106 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter;
+
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.sns.SnsClient;
+
+/**
+ * Registry of the AWS clients used by Stream Monitors, keyed by Region. Each
+ * client has its own HTTP connection pool, so rather than building clients for
+ * every Stream, all the monitors in a Region share one set, along with a
+ * single refreshing credentials provider. The clients are reference counted:
+ * each {@link #acquire(String)} must be matched by a {@link #release(RegionClients)},
+ * and the clients of a Region are closed when the last user releases them
+ */
+public class ClientRegistry {
+	private static final Logger LOG = LoggerFactory.getLogger(ClientRegistry.class);
+
+	private static final Map<String, RegionClients> regionClients = new HashMap<>();
+
+	// shared by the clients of every Region, and closed with the last of them
+	private static DefaultCredentialsProvider credentials = null;
+
+	private ClientRegistry() {
+	}
+
+	/**
+	 * Get the clients of a Region, building them if they are not already in use
+	 * 
+	 * @param region
+	 * @return
+	 */
+	public static synchronized RegionClients acquire(String region) {
+		RegionClients clients = regionClients.get(region);
+
+		if (clients == null) {
+			LOG.info(String.format("Creating Kinesis, CloudWatch and SNS Clients for Region %s", region));
+
+			if (credentials == null) {
+				credentials = DefaultCredentialsProvider.builder().asyncCredentialUpdateEnabled(true).build();
+			}
+			Region setRegion = Region.of(region);
+			clients = new RegionClients(region,
+					KinesisClient.builder().credentialsProvider(credentials).region(setRegion).build(),
+					CloudWatchClient.builder().credentialsProvider(credentials).region(setRegion).build(),
+					SnsClient.builder().credentialsProvider(credentials).region(setRegion).build());
+			regionClients.put(region, clients);
+
+			// the clients are all built from the default credentials, so share the
+			// rate limiter of the default account in the Region
+			ControlPlaneRateLimiter.register(clients.getKinesisClient(), ControlPlaneRateLimiter.DEFAULT_ACCOUNT, region);
+			ControlPlaneRateLimiter.register(clients.getCloudWatchClient(), ControlPlaneRateLimiter.DEFAULT_ACCOUNT,
+					region);
+		}
+
+		clients.acquire();
+		return clients;
+	}
+
+	/**
+	 * Release clients acquired from the registry, closing them if there are no
+	 * other users. Releasing clients which have already been closed has no effect
+	 * 
+	 * @param clients
+	 */
+	public static synchronized void release(RegionClients clients) {
+		if (regionClients.get(clients.getRegion()) != clients || clients.release() > 0) {
+			return;
+		}
+
+		LOG.info(String.format("Closing Kinesis, CloudWatch and SNS Clients for Region %s", clients.getRegion()));
+		regionClients.remove(clients.getRegion());
+		clients.close();
+
+		if (regionClients.isEmpty() && credentials != null) {
+			credentials.close();
+			credentials = null;
+		}
+	}
+
+	/**
+	 * @param region
+	 * @return the number of users of the clients of a Region, or 0 if they are
+	 *         not in use
+	 */
+	static synchronized int getReferences(String region) {
+		RegionClients clients = regionClients.get(region);
+		return clients == null ? 0 : clients.getReferences();
+	}
+}
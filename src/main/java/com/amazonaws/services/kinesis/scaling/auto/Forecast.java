@@ -0,0 +1,86 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.time.Instant;
+
+/**
+ * Transfer Object for the forecast peak per second rate of a single operation
+ * type and metric of a Stream, over the periods from the start time until the
+ * end of the lead time
+ */
+public class Forecast {
+	private final KinesisOperationType operationType;
+
+	private final StreamMetric metric;
+
+	private final Instant startTime;
+
+	private final Instant endTime;
+
+	private final double peak;
+
+	private final double upperBound;
+
+	public Forecast(KinesisOperationType operationType, StreamMetric metric, Instant startTime, Instant endTime,
+			double peak, double upperBound) {
+		this.operationType = operationType;
+		this.metric = metric;
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.peak = peak;
+		this.upperBound = upperBound;
+	}
+
+	public KinesisOperationType getOperationType() {
+		return this.operationType;
+	}
+
+	public StreamMetric getMetric() {
+		return this.metric;
+	}
+
+	public Instant getStartTime() {
+		return this.startTime;
+	}
+
+	public Instant getEndTime() {
+		return this.endTime;
+	}
+
+	/**
+	 * @return the highest forecast value of any period
+	 */
+	public double getPeak() {
+		return this.peak;
+	}
+
+	/**
+	 * @return the highest upper bound of the forecast of any period, at the
+	 *         configured confidence
+	 */
+	public double getUpperBound() {
+		return this.upperBound;
+	}
+
+	/**
+	 * @param thresholdPct the utilisation of each Shard to provision for
+	 * @return the number of Shards needed for the upper bound to be within the
+	 *         threshold utilisation
+	 */
+	public int getRequiredShards(int thresholdPct) {
+		double shardCapacity = this.operationType.getMaxCapacity().get(this.metric) * thresholdPct / 100D;
+		return (int) Math.ceil(this.upperBound / shardCapacity);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s forecast between %s and %s: peak %.2f, upper bound %.2f", this.operationType,
+				this.metric, this.startTime, this.endTime, this.peak, this.upperBound);
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+
+/**
+ * Replays the CloudWatch history of a Stream through the forecaster of its
+ * Autoscaling Configuration. At the start of each forecast period, only the
+ * history before it is known, and the forecast over the lead time is compared
+ * with the actual peak rate over the lead time. CloudWatch keeps one minute
+ * datapoints for 15 days, which bounds the history plus the replayed days.
+ *
+ * Run with -Dconfig-file-url=&lt;url&gt; and optionally -Dbacktest-days=&lt;days&gt;
+ * to backtest every configuration which has a forecast
+ */
+public class ForecastBacktest {
+	private static final Logger LOG = LoggerFactory.getLogger(ForecastBacktest.class);
+
+	public static final String BACKTEST_DAYS_PARAM = "backtest-days";
+
+	public static final int DEFAULT_BACKTEST_DAYS = 7;
+
+	private final AutoscalingConfiguration config;
+
+	private final CloudWatchClient cloudWatchClient;
+
+	public ForecastBacktest(AutoscalingConfiguration config, CloudWatchClient cloudWatchClient) {
+		this.config = config;
+		this.cloudWatchClient = cloudWatchClient;
+	}
+
+	/**
+	 * Backtest the forecasts made between the start and end times, using the
+	 * configured history before the start time
+	 *
+	 * @param startTime
+	 * @param endTime
+	 * @return the accuracy of the forecasts of each operation type and metric
+	 * @throws Exception
+	 */
+	public List<ForecastBacktestResult> run(DateTime startTime, DateTime endTime) throws Exception {
+		ForecastConfig forecastConfig = this.config.getForecast();
+		UtilisationForecaster forecaster = new UtilisationForecaster(forecastConfig);
+		long periodMillis = forecastConfig.getPeriodMins() * 60_000L;
+		long leadMillis = forecastConfig.getLeadTimeMins() * 60_000L;
+
+		// fetch the history before the start, and the actuals after the end
+		DateTime fetchStartTime = startTime.minusMinutes(forecaster.getHistoryMins());
+		DateTime fetchEndTime = endTime.plusMillis((int) (leadMillis + periodMillis));
+		int fetchMins = (int) ((fetchEndTime.getMillis() - fetchStartTime.getMillis()) / 60_000);
+
+		StreamMetricManager metricManager = new StreamMetricManager(this.config.getStreamName(),
+				this.config.getScaleOnOperations(), this.cloudWatchClient, null);
+		metricManager.setConsumerMetrics(false);
+		Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> utilisation = metricManager
+				.queryCurrentUtilisationMetrics(fetchMins, fetchStartTime, fetchEndTime);
+
+		List<ForecastBacktestResult> results = new ArrayList<>();
+		Map<UtilisationSeries, Integer> replayed = new HashMap<>();
+
+		// step through the forecast periods, adding the minutes before each to the
+		// history before forecasting from it
+		long firstMillis = -Math.floorDiv(-startTime.getMillis(), periodMillis) * periodMillis;
+		for (long nowMillis = firstMillis; nowMillis < endTime.getMillis(); nowMillis += periodMillis) {
+			Instant now = Instant.ofEpochMilli(nowMillis);
+
+			for (Map.Entry<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> op : utilisation.entrySet()) {
+				for (StreamMetric metric : StreamMetric.values()) {
+					if (!metric.isVolume()) {
+						continue;
+					}
+					UtilisationSeries series = op.getValue().get(metric);
+
+					int next = replayed.containsKey(series) ? replayed.get(series) : 0;
+					for (; next < series.getPeriodCount() && series.getTimestamp(next).isBefore(now); next++) {
+						if (series.isPresent(next)) {
+							forecaster.add(op.getKey(), metric, series.getTimestamp(next), series.get(next));
+						}
+					}
+					replayed.put(series, next);
+
+					Forecast forecast = forecaster.getForecast(op.getKey(), metric, now);
+					if (forecast == null) {
+						continue;
+					}
+
+					double actualPeak = 0d;
+					for (int i = next; i < series.getPeriodCount()
+							&& series.getTimestamp(i).isBefore(forecast.getEndTime()); i++) {
+						if (series.isPresent(i)) {
+							actualPeak = Math.max(actualPeak, series.get(i));
+						}
+					}
+
+					ForecastBacktestResult result = null;
+					for (ForecastBacktestResult r : results) {
+						if (r.getOperationType() == op.getKey() && r.getMetric() == metric) {
+							result = r;
+						}
+					}
+					if (result == null) {
+						result = new ForecastBacktestResult(op.getKey(), metric);
+						results.add(result);
+					}
+					result.add(forecast, actualPeak, this.config.getScaleUp().getScaleThresholdPct());
+				}
+			}
+		}
+
+		return results;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String configPath = System.getProperty(AutoscalingController.CONFIG_URL_PARAM);
+		if (configPath == null || configPath.equals("")) {
+			throw new Exception(String.format("Unable to run Backtest without -D%s",
+					AutoscalingController.CONFIG_URL_PARAM));
+		}
+		int days = System.getProperty(BACKTEST_DAYS_PARAM) == null ? DEFAULT_BACKTEST_DAYS
+				: Integer.parseInt(System.getProperty(BACKTEST_DAYS_PARAM));
+
+		DateTime endTime = new DateTime(System.currentTimeMillis());
+		DateTime startTime = endTime.minusDays(days);
+
+		for (AutoscalingConfiguration config : AutoscalingConfiguration.loadFromURL(configPath)) {
+			if (config.getForecast() == null) {
+				continue;
+			}
+
+			int historyMins = new UtilisationForecaster(config.getForecast()).getHistoryMins();
+			if (days * 24 * 60 + historyMins > StreamMonitor.MAX_HISTORY_MINS) {
+				LOG.warn(String.format(
+						"Backtest of %s days and %s Minutes of history for Stream %s exceeds the %s Minutes which CloudWatch keeps",
+						days, historyMins, config.getStreamName(), StreamMonitor.MAX_HISTORY_MINS));
+			}
+
+			try (DefaultCredentialsProvider credentials = DefaultCredentialsProvider.builder().build();
+					CloudWatchClient cloudWatchClient = CloudWatchClient.builder().credentialsProvider(credentials)
+							.region(Region.of(config.getRegion())).build()) {
+				for (ForecastBacktestResult result : new ForecastBacktest(config, cloudWatchClient).run(startTime,
+						endTime)) {
+					LOG.info(String.format("Stream %s %s", config.getStreamName(), result));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+/**
+ * Transfer Object for the accuracy of the forecasts of a single operation type
+ * and metric over a backtest, comparing each forecast with the actual peak
+ * rate over its lead time
+ */
+public class ForecastBacktestResult {
+	private final KinesisOperationType operationType;
+
+	private final StreamMetric metric;
+
+	private int forecasts = 0;
+
+	private int covered = 0;
+
+	private int underProvisioned = 0;
+
+	private double absoluteError = 0d;
+
+	private double actualTotal = 0d;
+
+	private long forecastShards = 0;
+
+	private long actualShards = 0;
+
+	public ForecastBacktestResult(KinesisOperationType operationType, StreamMetric metric) {
+		this.operationType = operationType;
+		this.metric = metric;
+	}
+
+	/**
+	 * Record a forecast against the actual peak rate over its lead time
+	 *
+	 * @param forecast
+	 * @param actualPeak
+	 * @param thresholdPct the utilisation of each Shard to provision for
+	 */
+	public void add(Forecast forecast, double actualPeak, int thresholdPct) {
+		double shardCapacity = this.operationType.getMaxCapacity().get(this.metric) * thresholdPct / 100D;
+		int forecastShards = forecast.getRequiredShards(thresholdPct);
+		int actualShards = (int) Math.ceil(actualPeak / shardCapacity);
+
+		this.forecasts++;
+		if (actualPeak <= forecast.getUpperBound()) {
+			this.covered++;
+		}
+		if (forecastShards < actualShards) {
+			this.underProvisioned++;
+		}
+		this.absoluteError += Math.abs(forecast.getPeak() - actualPeak);
+		this.actualTotal += actualPeak;
+		this.forecastShards += forecastShards;
+		this.actualShards += actualShards;
+	}
+
+	public KinesisOperationType getOperationType() {
+		return this.operationType;
+	}
+
+	public StreamMetric getMetric() {
+		return this.metric;
+	}
+
+	public int getForecasts() {
+		return this.forecasts;
+	}
+
+	/**
+	 * @return the share of forecasts whose upper bound was at or above the actual
+	 *         peak
+	 */
+	public double getCoverage() {
+		return this.forecasts == 0 ? 0d : this.covered / (double) this.forecasts;
+	}
+
+	/**
+	 * @return the number of forecasts which needed fewer Shards than the actual
+	 *         peak
+	 */
+	public int getUnderProvisioned() {
+		return this.underProvisioned;
+	}
+
+	/**
+	 * @return the total absolute error of the forecast peaks, as a share of the
+	 *         total of the actual peaks
+	 */
+	public double getWeightedError() {
+		return this.actualTotal == 0d ? 0d : this.absoluteError / this.actualTotal;
+	}
+
+	/**
+	 * @return the total of the Shards needed by the forecasts
+	 */
+	public long getForecastShards() {
+		return this.forecastShards;
+	}
+
+	/**
+	 * @return the total of the Shards needed by the actual peaks
+	 */
+	public long getActualShards() {
+		return this.actualShards;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%s %s: %s forecasts, %.1f%% within upper bound, %.1f%% weighted error, %s under provisioned, %s forecast Shard periods against %s needed",
+				this.operationType, this.metric, this.forecasts, getCoverage() * 100, getWeightedError() * 100,
+				this.underProvisioned, this.forecastShards, this.actualShards);
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+/**
+ * Transfer object for predictive scaling. An Autoscaling Configuration may have
+ * one, in which case a seasonal forecast of the Stream utilisation is used to
+ * scale up ahead of forecast peaks
+ */
+public class ForecastConfig {
+
+	private Integer leadTimeMins = 15, seasonMins = 1440, periodMins = 5, historySeasons = 3;
+
+	private Double confidencePct = 95D;
+
+	/**
+	 * @return how far ahead the forecast peak is provisioned for. This should
+	 *         cover the time taken to resize the Stream
+	 */
+	public Integer getLeadTimeMins() {
+		return leadTimeMins;
+	}
+
+	public void setLeadTimeMins(int leadTimeMins) {
+		this.leadTimeMins = leadTimeMins;
+	}
+
+	/**
+	 * @return the length of the repeating pattern of traffic, such as 1440 for
+	 *         daily or 10080 for weekly
+	 */
+	public Integer getSeasonMins() {
+		return seasonMins;
+	}
+
+	public void setSeasonMins(int seasonMins) {
+		this.seasonMins = seasonMins;
+	}
+
+	/**
+	 * @return the interval of the forecast model. The peak minute of each
+	 *         interval is modelled
+	 */
+	public Integer getPeriodMins() {
+		return periodMins;
+	}
+
+	public void setPeriodMins(int periodMins) {
+		this.periodMins = periodMins;
+	}
+
+	/**
+	 * @return the number of seasons of history to keep and fit the model to. At
+	 *         least two are needed before a forecast is made
+	 */
+	public Integer getHistorySeasons() {
+		return historySeasons;
+	}
+
+	public void setHistorySeasons(int historySeasons) {
+		this.historySeasons = historySeasons;
+	}
+
+	/**
+	 * @return the one sided confidence of the upper bound of the forecast which
+	 *         is provisioned for
+	 */
+	public Double getConfidencePct() {
+		return confidencePct;
+	}
+
+	public void setConfidencePct(Double confidencePct) {
+		this.confidencePct = confidencePct;
+	}
+}
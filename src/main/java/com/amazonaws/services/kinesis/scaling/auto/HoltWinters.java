@@ -0,0 +1,144 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+/**
+ * Additive Holt-Winters (triple exponential smoothing) model of a seasonal time
+ * series. The level, trend and seasonal smoothing parameters are chosen from a
+ * grid to minimise the one step ahead error over the history, and the standard
+ * deviation of that error is kept so that forecasts can be given an upper
+ * bound
+ */
+public class HoltWinters {
+	private static final double[] ALPHAS = { 0.1, 0.2, 0.3, 0.5, 0.7, 0.9 };
+
+	private static final double[] BETAS = { 0.0, 0.01, 0.05, 0.1 };
+
+	private static final double[] GAMMAS = { 0.05, 0.1, 0.2, 0.4 };
+
+	private final int seasonLength;
+
+	private final double alpha, beta, gamma;
+
+	private double level, trend;
+
+	private final double[] seasonals;
+
+	private int observations;
+
+	private double errorStdDev;
+
+	private HoltWinters(int seasonLength, double alpha, double beta, double gamma) {
+		this.seasonLength = seasonLength;
+		this.alpha = alpha;
+		this.beta = beta;
+		this.gamma = gamma;
+		this.seasonals = new double[seasonLength];
+	}
+
+	/**
+	 * Fit a model to a series of at least two seasons
+	 *
+	 * @param values       the series, in time order at a fixed interval
+	 * @param seasonLength the number of values in a season
+	 * @return the fitted model, or null if the series is shorter than two seasons
+	 */
+	public static HoltWinters fit(double[] values, int seasonLength) {
+		if (seasonLength < 2 || values.length < 2 * seasonLength) {
+			return null;
+		}
+
+		HoltWinters best = null;
+		for (double alpha : ALPHAS) {
+			for (double beta : BETAS) {
+				for (double gamma : GAMMAS) {
+					HoltWinters model = new HoltWinters(seasonLength, alpha, beta, gamma);
+					model.smooth(values);
+					if (best == null || model.errorStdDev < best.errorStdDev) {
+						best = model;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * initialise from the first two seasons, then smooth over the whole series,
+	 * measuring the one step ahead error from the second season on
+	 */
+	private void smooth(double[] values) {
+		double firstMean = 0d, secondMean = 0d;
+		for (int i = 0; i < this.seasonLength; i++) {
+			firstMean += values[i];
+			secondMean += values[i + this.seasonLength];
+		}
+		firstMean /= this.seasonLength;
+		secondMean /= this.seasonLength;
+
+		this.level = firstMean;
+		this.trend = (secondMean - firstMean) / this.seasonLength;
+		for (int i = 0; i < this.seasonLength; i++) {
+			this.seasonals[i] = values[i] - firstMean;
+		}
+
+		double sumSquaredError = 0d;
+		int errors = 0;
+		for (int t = this.seasonLength; t < values.length; t++) {
+			int s = t % this.seasonLength;
+			double error = values[t] - (this.level + this.trend + this.seasonals[s]);
+			sumSquaredError += error * error;
+			errors++;
+
+			double previousLevel = this.level;
+			this.level = this.alpha * (values[t] - this.seasonals[s])
+					+ (1 - this.alpha) * (previousLevel + this.trend);
+			this.trend = this.beta * (this.level - previousLevel) + (1 - this.beta) * this.trend;
+			this.seasonals[s] = this.gamma * (values[t] - this.level) + (1 - this.gamma) * this.seasonals[s];
+		}
+
+		this.observations = values.length;
+		this.errorStdDev = Math.sqrt(sumSquaredError / errors);
+	}
+
+	/**
+	 * @param steps the number of intervals ahead of the last value of the series
+	 * @return the forecast value, which is never negative
+	 */
+	public double forecast(int steps) {
+		int s = (this.observations - 1 + steps) % this.seasonLength;
+		return Math.max(0d, this.level + steps * this.trend + this.seasonals[s]);
+	}
+
+	/**
+	 * @param steps the number of intervals ahead of the last value of the series
+	 * @param z     the number of standard deviations of the bound
+	 * @return the upper bound of the forecast value, widening with the square
+	 *         root of the number of steps ahead
+	 */
+	public double upperBound(int steps, double z) {
+		return forecast(steps) + z * this.errorStdDev * Math.sqrt(steps);
+	}
+
+	/**
+	 * @return the standard deviation of the one step ahead error over the series
+	 */
+	public double getErrorStdDev() {
+		return this.errorStdDev;
+	}
+
+	public int getSeasonLength() {
+		return this.seasonLength;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Holt-Winters(alpha=%s, beta=%s, gamma=%s, season=%s, error std dev=%.2f)", this.alpha,
+				this.beta, this.gamma, this.seasonLength, this.errorStdDev);
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+/**
+ * Transfer object for scaling on the GetRecords.IteratorAgeMilliseconds metric,
+ * which shows how far consumers of the Stream are behind the latest record. An
+ * Autoscaling Configuration may have one, which adds to the GET scaling vote
+ */
+public class IteratorAgeConfig {
+
+	private Long scaleThresholdMillis, maxIncreaseMillisPerMin, floorMillis;
+
+	/**
+	 * @return the iterator age above which a minute counts as a high sample for
+	 *         the scale up scaleAfterMins. Null if the age is not compared to a
+	 *         threshold
+	 */
+	public Long getScaleThresholdMillis() {
+		return scaleThresholdMillis;
+	}
+
+	public void setScaleThresholdMillis(long scaleThresholdMillis) {
+		this.scaleThresholdMillis = scaleThresholdMillis;
+	}
+
+	/**
+	 * @return the rate of increase of iterator age, over the sample, above which
+	 *         we scale up. Null if the trend of the age is not used
+	 */
+	public Long getMaxIncreaseMillisPerMin() {
+		return maxIncreaseMillisPerMin;
+	}
+
+	public void setMaxIncreaseMillisPerMin(long maxIncreaseMillisPerMin) {
+		this.maxIncreaseMillisPerMin = maxIncreaseMillisPerMin;
+	}
+
+	/**
+	 * @return the iterator age below which consumers are considered caught up.
+	 *         The Stream is not scaled down while the latest age is above it,
+	 *         and is not scaled up on a rising age until it is above it
+	 */
+	public Long getFloorMillis() {
+		return floorMillis;
+	}
+
+	public void setFloorMillis(long floorMillis) {
+		this.floorMillis = floorMillis;
+	}
+}
@@ -27,6 +27,7 @@ public enum KinesisOperationType {
 			metricsToFetch.add("PutRecords.Bytes");
 			metricsToFetch.add("PutRecord.Success");
 			metricsToFetch.add("PutRecords.Records");
+			metricsToFetch.add("WriteProvisionedThroughputExceeded");
 			return metricsToFetch;
 		}
 	},
@@ -44,6 +45,8 @@ public enum KinesisOperationType {
 			List<String> metricsToFetch = new ArrayList<>();
 			metricsToFetch.add("GetRecords.Bytes");
 			metricsToFetch.add("GetRecords.Records");
+			metricsToFetch.add("ReadProvisionedThroughputExceeded");
+			metricsToFetch.add("GetRecords.IteratorAgeMilliseconds");
 			return metricsToFetch;
 		}
 	};
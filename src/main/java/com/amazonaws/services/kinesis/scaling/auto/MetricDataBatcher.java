@@ -0,0 +1,341 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter;
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter.Priority;
+
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.cloudwatch.model.CloudWatchException;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataResponse;
+import software.amazon.awssdk.services.cloudwatch.model.InvalidNextTokenException;
+import software.amazon.awssdk.services.cloudwatch.model.InvalidParameterCombinationException;
+import software.amazon.awssdk.services.cloudwatch.model.InvalidParameterValueException;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+import software.amazon.awssdk.services.cloudwatch.model.MissingRequiredParameterException;
+import software.amazon.awssdk.services.cloudwatch.model.StatusCode;
+
+/**
+ * The MetricDataBatcher fetches CloudWatch metrics with GetMetricData, and
+ * combines the queries of all the StreamMetricManagers that share it into
+ * requests of up to 500 queries. Queries submitted for the same start and end
+ * time within the gather interval are sent together, so that a set of Stream
+ * Monitors which check at the same time make one request rather than one
+ * request per Stream. Queries for other start times, such as the first full
+ * fetch of a Stream, are sent separately, so that the other Streams still only
+ * fetch their own windows
+ */
+public class MetricDataBatcher {
+	private static final Logger LOG = LoggerFactory.getLogger(MetricDataBatcher.class);
+
+	// maximum number of queries in a single GetMetricData request
+	public static final int MAX_QUERIES_PER_REQUEST = 500;
+
+	public static final long DEFAULT_GATHER_MILLIS = 1000;
+
+	// a failed GetMetricData request is retried with backoff up to this many
+	// times, sleeping for at most MAX_RETRY_SLEEP_MILLIS each time
+	private static final int MAX_TRIES = 20;
+
+	private static final long MAX_RETRY_SLEEP_MILLIS = 2000;
+
+	// how long the queries of a batch wait for the request made on their behalf,
+	// beyond the gather interval, covering the retries of a few result pages
+	public static final long REQUEST_TIMEOUT_MILLIS = 3 * MAX_TRIES * MAX_RETRY_SLEEP_MILLIS;
+
+	private final CloudWatchClient cloudWatchClient;
+
+	private final long gatherMillis;
+
+	// batches which are still accepting queries, by start and end time
+	private final Map<List<Instant>, Batch> openBatches = new HashMap<>();
+
+	private int requestCount = 0;
+
+	private class Submission {
+		private final List<MetricDataQuery> queries;
+		private final Map<String, MetricDataResult> results = new HashMap<>();
+
+		Submission(List<MetricDataQuery> queries) {
+			this.queries = queries;
+		}
+	}
+
+	private class Batch {
+		private final Instant startTime;
+		private final Instant endTime;
+		private final List<Submission> submissions = new ArrayList<>();
+		private final CountDownLatch full = new CountDownLatch(1);
+		private final CountDownLatch done = new CountDownLatch(1);
+		private int queryCount = 0;
+		private Exception exception;
+
+		Batch(Instant startTime, Instant endTime) {
+			this.startTime = startTime;
+			this.endTime = endTime;
+		}
+	}
+
+	public MetricDataBatcher(CloudWatchClient cloudWatchClient) {
+		this(cloudWatchClient, DEFAULT_GATHER_MILLIS);
+	}
+
+	/**
+	 * Create a batcher which waits up to gatherMillis for the queries of other
+	 * Streams before sending a request which is not full. A gather interval of 0
+	 * sends each submission as soon as it is made
+	 *
+	 * @param cloudWatchClient
+	 * @param gatherMillis
+	 */
+	public MetricDataBatcher(CloudWatchClient cloudWatchClient, long gatherMillis) {
+		this.cloudWatchClient = cloudWatchClient;
+		this.gatherMillis = gatherMillis;
+	}
+
+	public CloudWatchClient getCloudWatchClient() {
+		return this.cloudWatchClient;
+	}
+
+	/**
+	 * @return the number of GetMetricData requests sent, including pages
+	 */
+	public synchronized int getRequestCount() {
+		return this.requestCount;
+	}
+
+	/**
+	 * @return the number of submissions waiting in batches which are still
+	 *         accepting queries
+	 */
+	synchronized int getOpenSubmissionCount() {
+		int count = 0;
+		for (Batch batch : this.openBatches.values()) {
+			count += batch.submissions.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Fetch the metric data for a set of queries. The returned results are keyed
+	 * by the ids of the supplied queries
+	 *
+	 * @param queries
+	 * @param startTime
+	 * @param endTime
+	 * @return
+	 * @throws Exception
+	 */
+	public Map<String, MetricDataResult> getMetricData(List<MetricDataQuery> queries, Instant startTime,
+			Instant endTime) throws Exception {
+		if (queries.size() > MAX_QUERIES_PER_REQUEST) {
+			Map<String, MetricDataResult> results = new HashMap<>();
+			for (int i = 0; i < queries.size(); i += MAX_QUERIES_PER_REQUEST) {
+				results.putAll(getMetricData(
+						queries.subList(i, Math.min(i + MAX_QUERIES_PER_REQUEST, queries.size())), startTime,
+						endTime));
+			}
+			return results;
+		}
+
+		Submission submission = new Submission(queries);
+		List<Instant> window = Arrays.asList(startTime, endTime);
+		Batch batch;
+		boolean leader = false;
+
+		synchronized (this) {
+			batch = this.openBatches.get(window);
+
+			if (batch == null || batch.queryCount + queries.size() > MAX_QUERIES_PER_REQUEST) {
+				if (batch != null) {
+					// the open batch can't take these queries, so send it now
+					this.openBatches.remove(window);
+					batch.full.countDown();
+				}
+				batch = new Batch(startTime, endTime);
+				this.openBatches.put(window, batch);
+				leader = true;
+			}
+
+			batch.submissions.add(submission);
+			batch.queryCount += queries.size();
+
+			if (batch.queryCount == MAX_QUERIES_PER_REQUEST) {
+				this.openBatches.remove(window);
+				batch.full.countDown();
+			}
+		}
+
+		if (leader) {
+			// the submission which opened the batch waits for other submissions,
+			// and then sends the request on behalf of all of them. The batch is
+			// always released, so that the other submissions don't wait on a
+			// leader which has been interrupted
+			try {
+				if (this.gatherMillis > 0) {
+					batch.full.await(this.gatherMillis, TimeUnit.MILLISECONDS);
+				}
+				close(window, batch);
+
+				send(batch);
+			} catch (InterruptedException e) {
+				close(window, batch);
+				batch.exception = new Exception(
+						String.format("Interrupted requesting Metric Data for %s Streams", batch.submissions.size()),
+						e);
+				Thread.currentThread().interrupt();
+			} catch (Exception e) {
+				batch.exception = e;
+			} finally {
+				batch.done.countDown();
+			}
+		} else if (!batch.done.await(this.gatherMillis + REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+			throw new Exception(String.format("Timed out after %s ms waiting for Metric Data",
+					this.gatherMillis + REQUEST_TIMEOUT_MILLIS));
+		}
+
+		if (batch.exception != null) {
+			throw batch.exception;
+		}
+
+		return submission.results;
+	}
+
+	/*
+	 * stop a batch taking more queries
+	 */
+	private synchronized void close(List<Instant> window, Batch batch) {
+		if (this.openBatches.get(window) == batch) {
+			this.openBatches.remove(window);
+		}
+	}
+
+	private void send(Batch batch) throws Exception {
+		// assign request unique ids to the queries of each submission
+		List<MetricDataQuery> queries = new ArrayList<>(batch.queryCount);
+		Map<String, Submission> submissionsById = new HashMap<>();
+		Map<String, String> originalIds = new HashMap<>();
+
+		for (Submission s : batch.submissions) {
+			for (MetricDataQuery q : s.queries) {
+				String id = "q" + queries.size();
+				queries.add(q.toBuilder().id(id).build());
+				submissionsById.put(id, s);
+				originalIds.put(id, q.id());
+			}
+		}
+
+		LOG.debug(String.format("Requesting CloudWatch Metric Data for %s Queries from %s Streams", queries.size(),
+				batch.submissions.size()));
+
+		for (MetricDataResult r : fetchAllPages(queries, batch.startTime, batch.endTime).values()) {
+			submissionsById.get(r.id()).results.put(originalIds.get(r.id()),
+					r.toBuilder().id(originalIds.get(r.id())).build());
+		}
+	}
+
+	/*
+	 * Send a single GetMetricData request, following all result pages, and
+	 * merging the datapoints of each query into a single result
+	 */
+	private Map<String, MetricDataResult> fetchAllPages(List<MetricDataQuery> queries, Instant startTime,
+			Instant endTime) throws Exception {
+		Map<String, List<Instant>> timestamps = new HashMap<>();
+		Map<String, List<Double>> values = new HashMap<>();
+		Map<String, MetricDataResult> results = new LinkedHashMap<>();
+		String nextToken = null;
+
+		do {
+			GetMetricDataRequest req = GetMetricDataRequest.builder().metricDataQueries(queries).startTime(startTime)
+					.endTime(endTime).nextToken(nextToken).build();
+			GetMetricDataResponse response = null;
+
+			boolean ok = false;
+			int tryCount = 1;
+			while (!ok) {
+				ControlPlaneRateLimiter.forClient(this.cloudWatchClient).acquire(ControlPlaneRateLimiter.GET_METRIC_DATA,
+						Priority.LOW);
+				try {
+					synchronized (this) {
+						this.requestCount++;
+					}
+					response = this.cloudWatchClient.getMetricData(req);
+					ok = true;
+				} catch (InvalidParameterValueException e) {
+					throw e;
+				} catch (MissingRequiredParameterException e) {
+					throw e;
+				} catch (InvalidParameterCombinationException e) {
+					throw e;
+				} catch (InvalidNextTokenException e) {
+					throw e;
+				} catch (CloudWatchException e) {
+					if (e.statusCode() == 403) {
+						// not authorised for GetMetricData, so retrying won't help
+						throw e;
+					}
+
+					tryCount++;
+					if (tryCount >= MAX_TRIES) {
+						throw e;
+					}
+					long sleepFor = new Double(Math.pow(2, tryCount) * 100).longValue();
+					Thread.sleep(sleepFor > MAX_RETRY_SLEEP_MILLIS ? MAX_RETRY_SLEEP_MILLIS : sleepFor);
+				} catch (Exception e) {
+					// this is probably just a transient error, so retry
+					// after backoff
+					tryCount++;
+					if (tryCount >= MAX_TRIES) {
+						throw e;
+					}
+					long sleepFor = new Double(Math.pow(2, tryCount) * 100).longValue();
+					Thread.sleep(sleepFor > MAX_RETRY_SLEEP_MILLIS ? MAX_RETRY_SLEEP_MILLIS : sleepFor);
+				}
+			}
+
+			for (MetricDataResult r : response.metricDataResults()) {
+				if (!results.containsKey(r.id())) {
+					timestamps.put(r.id(), new ArrayList<Instant>());
+					values.put(r.id(), new ArrayList<Double>());
+				}
+				// the status of the query is that of its last page
+				results.put(r.id(), r);
+				timestamps.get(r.id()).addAll(r.timestamps());
+				values.get(r.id()).addAll(r.values());
+
+				if (r.statusCode() == StatusCode.INTERNAL_ERROR) {
+					LOG.warn(String.format("CloudWatch returned an Internal Error for Metric Data Query %s", r.id()));
+				}
+			}
+
+			nextToken = response.nextToken();
+		} while (nextToken != null);
+
+		for (Map.Entry<String, MetricDataResult> entry : results.entrySet()) {
+			entry.setValue(entry.getValue().toBuilder().timestamps(timestamps.get(entry.getKey()))
+					.values(values.get(entry.getKey())).build());
+		}
+
+		return results;
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sliding window of the values of a single CloudWatch metric, held as a ring
+ * buffer of period sized buckets. A bucket is identified by the number of
+ * periods since the epoch, and is held in slot (bucket mod capacity), so
+ * writing a new bucket replaces the one which has fallen out of the window.
+ * Writing an existing bucket revises its value, so that datapoints which
+ * CloudWatch publishes late replace earlier partial values
+ */
+public class MetricWindow {
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private final long periodMillis;
+
+	private final long[] buckets;
+
+	private final double[] values;
+
+	public MetricWindow(int capacity, int periodSeconds) {
+		this.periodMillis = periodSeconds * 1000L;
+		this.buckets = new long[capacity];
+		this.values = new double[capacity];
+		for (int i = 0; i < capacity; i++) {
+			this.buckets[i] = EMPTY;
+		}
+	}
+
+	public int getCapacity() {
+		return this.buckets.length;
+	}
+
+	private long bucketOf(Instant timestamp) {
+		return Math.floorDiv(timestamp.toEpochMilli(), this.periodMillis);
+	}
+
+	private int slotOf(long bucket) {
+		return (int) Math.floorMod(bucket, (long) this.buckets.length);
+	}
+
+	/**
+	 * Set the value of the bucket containing the timestamp
+	 *
+	 * @param timestamp
+	 * @param value
+	 */
+	public void put(Instant timestamp, double value) {
+		long bucket = bucketOf(timestamp);
+		int slot = slotOf(bucket);
+		this.buckets[slot] = bucket;
+		this.values[slot] = value;
+	}
+
+	/**
+	 * Remove all buckets which start before the timestamp
+	 *
+	 * @param timestamp
+	 */
+	public void evictBefore(Instant timestamp) {
+		long first = bucketOf(timestamp);
+		for (int i = 0; i < this.buckets.length; i++) {
+			if (this.buckets[i] != EMPTY && this.buckets[i] < first) {
+				this.buckets[i] = EMPTY;
+			}
+		}
+	}
+
+	/**
+	 * @param startTime inclusive
+	 * @param endTime   exclusive
+	 * @return the start times of the buckets held between the start and end
+	 *         times, in time order
+	 */
+	public List<Instant> getTimestamps(Instant startTime, Instant endTime) {
+		List<Instant> timestamps = new ArrayList<>();
+		for (long bucket = bucketOf(startTime); bucket * this.periodMillis < endTime.toEpochMilli(); bucket++) {
+			if (this.buckets[slotOf(bucket)] == bucket) {
+				timestamps.add(Instant.ofEpochMilli(bucket * this.periodMillis));
+			}
+		}
+		return timestamps;
+	}
+
+	/**
+	 * @param timestamp
+	 * @return the value of the bucket containing the timestamp, or null if the
+	 *         bucket is not held
+	 */
+	public Double get(Instant timestamp) {
+		long bucket = bucketOf(timestamp);
+		int slot = slotOf(bucket);
+		return this.buckets[slot] == bucket ? this.values[slot] : null;
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.sns.SnsClient;
+
+/**
+ * The Kinesis, CloudWatch and SNS clients of a single Region, shared through
+ * the {@link ClientRegistry} by all the Stream Monitors in the Region. The
+ * clients must not be closed by their users, and are closed by the registry
+ * when the last user releases them
+ */
+public class RegionClients {
+	private final String region;
+
+	private final KinesisClient kinesisClient;
+
+	private final CloudWatchClient cloudWatchClient;
+
+	private final SnsClient snsClient;
+
+	// number of users which have acquired these clients and not yet released them
+	private int references = 0;
+
+	RegionClients(String region, KinesisClient kinesisClient, CloudWatchClient cloudWatchClient,
+			SnsClient snsClient) {
+		this.region = region;
+		this.kinesisClient = kinesisClient;
+		this.cloudWatchClient = cloudWatchClient;
+		this.snsClient = snsClient;
+	}
+
+	public String getRegion() {
+		return this.region;
+	}
+
+	public KinesisClient getKinesisClient() {
+		return this.kinesisClient;
+	}
+
+	public CloudWatchClient getCloudWatchClient() {
+		return this.cloudWatchClient;
+	}
+
+	public SnsClient getSnsClient() {
+		return this.snsClient;
+	}
+
+	int getReferences() {
+		return this.references;
+	}
+
+	int acquire() {
+		return ++this.references;
+	}
+
+	int release() {
+		return --this.references;
+	}
+
+	void close() {
+		this.kinesisClient.close();
+		this.cloudWatchClient.close();
+		this.snsClient.close();
+	}
+}
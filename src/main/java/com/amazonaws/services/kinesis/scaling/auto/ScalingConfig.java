@@ -15,6 +15,8 @@ public class ScalingConfig {
 
 	private Integer scaleAfterMins, coolOffMins, scaleCount, scaleThresholdPct, scalePct;
 	private String notificationARN;
+	private Double throttleThreshold;
+	private Integer throttleAfterMins = 2;
 
 	public Integer getScaleThresholdPct() {
 		return scaleThresholdPct;
@@ -56,6 +58,27 @@ public class ScalingConfig {
 		this.scalePct = scalePct;
 	}
 
+	/**
+	 * @return the number of throttled requests per second, across the Stream,
+	 *         above which a minute is counted as throttled. Null if throttling
+	 *         is not used to scale
+	 */
+	public Double getThrottleThreshold() {
+		return throttleThreshold;
+	}
+
+	public void setThrottleThreshold(Double throttleThreshold) {
+		this.throttleThreshold = throttleThreshold;
+	}
+
+	public Integer getThrottleAfterMins() {
+		return throttleAfterMins;
+	}
+
+	public void setThrottleAfterMins(int throttleAfterMins) {
+		this.throttleAfterMins = throttleAfterMins;
+	}
+
 	public String getNotificationARN() {
 		return notificationARN;
 	}
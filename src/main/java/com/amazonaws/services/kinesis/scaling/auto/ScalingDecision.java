@@ -0,0 +1,50 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.services.kinesis.scaling.ScaleDirection;
+
+/**
+ * Transfer Object for the decision of a Scaling Policy: the direction and
+ * target Shard count of the Stream, and the reasons for it
+ */
+public class ScalingDecision {
+	private final ScaleDirection direction;
+
+	private final int targetShardCount;
+
+	private final List<String> reasons;
+
+	public ScalingDecision(ScaleDirection direction, int targetShardCount, List<String> reasons) {
+		this.direction = direction;
+		this.targetShardCount = targetShardCount;
+		this.reasons = Collections.unmodifiableList(new ArrayList<>(reasons));
+	}
+
+	public ScaleDirection getDirection() {
+		return this.direction;
+	}
+
+	public int getTargetShardCount() {
+		return this.targetShardCount;
+	}
+
+	public List<String> getReasons() {
+		return this.reasons;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s to %s Shards: %s", this.direction, this.targetShardCount,
+				String.join("; ", this.reasons));
+	}
+}
@@ -0,0 +1,25 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+/**
+ * Policy which decides the number of Shards a Stream should have from a
+ * snapshot of its utilisation. A Stream Monitor asks its policy for a decision
+ * at each check, and applies the cool off periods, limits and notifications of
+ * its configuration to carry it out
+ */
+public interface ScalingPolicy {
+
+	/**
+	 * @param snapshot          the utilisation of the Stream over the sample
+	 * @param currentShardCount the number of open Shards in the Stream
+	 * @return the direction and target Shard count, with the reasons for it
+	 */
+	ScalingDecision decide(UtilisationSnapshot snapshot, int currentShardCount);
+
+}
@@ -0,0 +1,36 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+/**
+ * The Scaling Policies which can be configured for a Stream
+ */
+public enum ScalingPolicyType {
+	/**
+	 * Vote on the direction of each operation type from the number of high and
+	 * low samples, and scale by the configured scaleCount or scalePct
+	 */
+	voteMatrix {
+		@Override
+		public ScalingPolicy create(AutoscalingConfiguration config) {
+			return new VoteMatrixScalingPolicy(config);
+		}
+	},
+	/**
+	 * Scale to the number of Shards at which the peak of the sample would have
+	 * been at the targetUtilisationPct
+	 */
+	targetTracking {
+		@Override
+		public ScalingPolicy create(AutoscalingConfiguration config) {
+			return new TargetTrackingScalingPolicy(config);
+		}
+	};
+
+	public abstract ScalingPolicy create(AutoscalingConfiguration config);
+}
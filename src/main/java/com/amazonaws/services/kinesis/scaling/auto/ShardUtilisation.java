@@ -0,0 +1,90 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+/**
+ * Transfer Object for the PUT utilisation of a single Shard, built from the
+ * Shard level IncomingBytes, IncomingRecords and
+ * WriteProvisionedThroughputExceeded metrics, which are available when enhanced
+ * monitoring is enabled on the Stream
+ */
+public class ShardUtilisation {
+	private final String shardId;
+
+	private final UtilisationSeries bytes;
+
+	private final UtilisationSeries records;
+
+	private final UtilisationSeries throttledRecords;
+
+	public ShardUtilisation(String shardId, UtilisationSeries bytes, UtilisationSeries records,
+			UtilisationSeries throttledRecords) {
+		this.shardId = shardId;
+		this.bytes = bytes;
+		this.records = records;
+		this.throttledRecords = throttledRecords;
+	}
+
+	public String getShardId() {
+		return this.shardId;
+	}
+
+	public UtilisationSeries getBytes() {
+		return this.bytes;
+	}
+
+	public UtilisationSeries getRecords() {
+		return this.records;
+	}
+
+	public UtilisationSeries getThrottledRecords() {
+		return this.throttledRecords;
+	}
+
+	/**
+	 * @param period
+	 * @return the higher of the Bytes and Records utilisation of the Shard in the
+	 *         period, as a fraction of the capacity of a Shard
+	 */
+	public double getUtilisation(int period) {
+		StreamMetrics capacity = KinesisOperationType.PUT.getMaxCapacity();
+		double bytesPct = this.bytes.isPresent(period) ? this.bytes.get(period) / capacity.get(StreamMetric.Bytes)
+				: 0d;
+		double recordsPct = this.records.isPresent(period)
+				? this.records.get(period) / capacity.get(StreamMetric.Records)
+				: 0d;
+		return Math.max(bytesPct, recordsPct);
+	}
+
+	/**
+	 * @return the highest utilisation of the Shard in any period
+	 */
+	public double getPeakUtilisation() {
+		double peak = 0d;
+		for (int i = 0; i < this.bytes.getPeriodCount(); i++) {
+			peak = Math.max(peak, getUtilisation(i));
+		}
+		return peak;
+	}
+
+	/**
+	 * @param thresholdPct utilisation threshold, as a fraction of Shard capacity
+	 * @return the number of periods in which the Shard was above the threshold,
+	 *         or had writes throttled
+	 */
+	public int getHighPeriods(double thresholdPct) {
+		int high = 0;
+		for (int i = 0; i < this.bytes.getPeriodCount(); i++) {
+			if (getUtilisation(i) > thresholdPct
+					|| (this.throttledRecords.isPresent(i) && this.throttledRecords.get(i) > 0)) {
+				high++;
+			}
+		}
+		return high;
+	}
+}
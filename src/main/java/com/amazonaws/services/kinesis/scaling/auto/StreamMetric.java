@@ -7,8 +7,10 @@
  */
 package com.amazonaws.services.kinesis.scaling.auto;
 
+import software.amazon.awssdk.services.cloudwatch.model.Statistic;
+
 public enum StreamMetric {
-	Bytes("BYTES"), Records("COUNT");
+	Bytes("BYTES"), Records("COUNT"), Throttles("COUNT"), IteratorAge("MILLISECONDS");
 
 	private final String unit;
 
@@ -16,6 +18,44 @@ public enum StreamMetric {
 		this.unit = u;
 	}
 
+	public String getUnit() {
+		return this.unit;
+	}
+
+	/**
+	 * @return true if the metric measures the volume of data sent to or read from
+	 *         the Stream, and so can be compared with the Stream capacity
+	 */
+	public boolean isVolume() {
+		return this == Bytes || this == Records;
+	}
+
+	/**
+	 * @return the CloudWatch statistic to request. Counts are summed and reported
+	 *         per second, while iterator age is the maximum in each period
+	 */
+	public Statistic getStatistic() {
+		return this == IteratorAge ? Statistic.MAXIMUM : Statistic.SUM;
+	}
+
+	/**
+	 * Resolve the metric measured by a Kinesis CloudWatch metric name, such as
+	 * PutRecords.Bytes, GetRecords.Records, WriteProvisionedThroughputExceeded or
+	 * GetRecords.IteratorAgeMilliseconds
+	 * 
+	 * @param metricName
+	 * @return
+	 */
+	public static StreamMetric fromMetricName(String metricName) {
+		if (metricName.endsWith("IteratorAgeMilliseconds")) {
+			return IteratorAge;
+		}
+		if (metricName.endsWith("ProvisionedThroughputExceeded")) {
+			return Throttles;
+		}
+		return metricName.endsWith(".Bytes") ? Bytes : Records;
+	}
+
 	public static StreamMetric fromUnit(String unit) {
 		for (StreamMetric m : values()) {
 			if (m.unit.toUpperCase().equals(unit)) {
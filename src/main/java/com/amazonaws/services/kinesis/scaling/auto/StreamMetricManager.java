@@ -7,7 +7,9 @@
  */
 package com.amazonaws.services.kinesis.scaling.auto;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -18,24 +20,40 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter;
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter.Priority;
 import com.amazonaws.services.kinesis.scaling.StreamScalingUtils;
 
 import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.cloudwatch.model.CloudWatchException;
 import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
 import software.amazon.awssdk.services.cloudwatch.model.Dimension;
 import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
 import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsResponse;
 import software.amazon.awssdk.services.cloudwatch.model.InvalidParameterCombinationException;
 import software.amazon.awssdk.services.cloudwatch.model.InvalidParameterValueException;
+import software.amazon.awssdk.services.cloudwatch.model.Metric;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+import software.amazon.awssdk.services.cloudwatch.model.MetricStat;
 import software.amazon.awssdk.services.cloudwatch.model.MissingRequiredParameterException;
 import software.amazon.awssdk.services.cloudwatch.model.Statistic;
 import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.kinesis.model.Consumer;
+import software.amazon.awssdk.services.kinesis.model.KinesisException;
 
 /**
  * The StreamMetricsManager class is responsible for extracting current Stream
  * utilisation metrics using a CloudWatch client, as well as for being able to
  * extract the maximum capacity metrics for a Stream for the Kinesis Operation
- * Types that are to be tracked for automatic scaling purposes
+ * Types that are to be tracked for automatic scaling purposes. Metrics are
+ * fetched with a single GetMetricData request per Stream, or shared requests
+ * across Streams when a MetricDataBatcher is shared, and with one
+ * GetMetricStatistics request per metric if GetMetricData is not permitted.
+ * GetMetricData values are held in a sliding window per metric, so that each
+ * query only fetches the periods since the previous query. Enhanced fan-out
+ * consumers registered with the Stream each have their own GET capacity, so
+ * their SubscribeToShardEvent metrics are tracked per consumer
  * 
  * @author meyersi
  *
@@ -58,6 +76,56 @@ public class StreamMetricManager {
 	// metrics in future
 	private Map<KinesisOperationType, List<GetMetricStatisticsRequest.Builder>> cloudwatchRequestTemplates = new HashMap<>();
 
+	// GetMetricData queries for all tracked metrics, and the operation type and
+	// metric that each query id is for
+	private List<MetricDataQuery> metricDataQueries = new ArrayList<>();
+
+	private Map<String, KinesisOperationType> metricDataQueryOperations = new HashMap<>();
+
+	private Map<String, StreamMetric> metricDataQueryMetrics = new HashMap<>();
+
+	private MetricDataBatcher metricDataBatcher;
+
+	private volatile boolean useGetMetricData = true;
+
+	// number of periods before the end of the last fetch which are fetched again,
+	// as CloudWatch may still be adding late data to them
+	public static final int DEFAULT_REVISION_PERIODS = 3;
+
+	private int revisionPeriods = DEFAULT_REVISION_PERIODS;
+
+	// sliding windows of the values fetched for each query id, and the end of the
+	// last fetch into them
+	private Map<String, MetricWindow> metricWindows = new HashMap<>();
+
+	private Instant metricWindowsEndTime;
+
+	// Shard level metrics, by the query id of each metric of each open Shard
+	public static final String SHARD_INCOMING_BYTES = "IncomingBytes";
+
+	public static final String SHARD_INCOMING_RECORDS = "IncomingRecords";
+
+	public static final String SHARD_WRITE_THROTTLED = "WriteProvisionedThroughputExceeded";
+
+	private boolean shardLevelMetrics = false;
+
+	private List<MetricDataQuery> shardDataQueries = new ArrayList<>();
+
+	private Map<String, Map<String, String>> shardDataQueryIds = new HashMap<>();
+
+	private Map<String, ShardUtilisation> shardUtilisation = new HashMap<>();
+
+	// enhanced fan-out consumer metrics, by the query id of each consumer
+	public static final String CONSUMER_BYTES = "SubscribeToShardEvent.Bytes";
+
+	private boolean consumerMetrics = true;
+
+	private List<MetricDataQuery> consumerDataQueries = new ArrayList<>();
+
+	private Map<String, String> consumerDataQueryIds = new HashMap<>();
+
+	private Map<String, Map<StreamMetric, UtilisationSeries>> consumerUtilisation = new HashMap<>();
+
 	public StreamMetricManager(String streamName, List<KinesisOperationType> types, CloudWatchClient cloudWatchClient,
 			KinesisClient kinesisClient) {
 		this(streamName, StreamMonitor.CLOUDWATCH_PERIOD, types, cloudWatchClient, kinesisClient);
@@ -70,6 +138,7 @@ public class StreamMetricManager {
 		this.cloudWatchClient = cloudWatchClient;
 		this.kinesisClient = kinesisClient;
 		this.cloudWatchPeriod = cloudWatchPeriod;
+		this.metricDataBatcher = new MetricDataBatcher(cloudWatchClient, 0);
 
 		for (KinesisOperationType op : this.trackedOperations) {
 			// create CloudWatch request templates for the information we have
@@ -79,7 +148,8 @@ public class StreamMetricManager {
 
 				cwRequestBuilder.namespace(CW_NAMESPACE)
 						.dimensions(Dimension.builder().name("StreamName").value(this.streamName).build())
-						.period(cloudWatchPeriod).statistics(Statistic.SUM).metricName(metricName);
+						.period(cloudWatchPeriod).statistics(StreamMetric.fromMetricName(metricName).getStatistic())
+						.metricName(metricName);
 
 				if (!this.cloudwatchRequestTemplates.containsKey(op)) {
 					this.cloudwatchRequestTemplates.put(op, new ArrayList<GetMetricStatisticsRequest.Builder>() {
@@ -90,10 +160,97 @@ public class StreamMetricManager {
 				} else {
 					this.cloudwatchRequestTemplates.get(op).add(cwRequestBuilder);
 				}
+
+				// query ids must start with a lower case letter, and be unique in
+				// the request
+				String queryId = String.format("%s_%s", op.name().toLowerCase(), this.metricDataQueries.size());
+				this.metricDataQueries.add(metricDataQuery(queryId, metricName,
+						StreamMetric.fromMetricName(metricName).getStatistic(),
+						Dimension.builder().name("StreamName").value(this.streamName).build()));
+				this.metricDataQueryOperations.put(queryId, op);
+				this.metricDataQueryMetrics.put(queryId, StreamMetric.fromMetricName(metricName));
 			}
 		}
 	}
 
+	private MetricDataQuery metricDataQuery(String queryId, String metricName, Statistic statistic,
+			Dimension... dimensions) {
+		return MetricDataQuery.builder().id(queryId)
+				.metricStat(MetricStat.builder()
+						.metric(Metric.builder().namespace(CW_NAMESPACE).dimensions(dimensions).metricName(metricName)
+								.build())
+						.period(this.cloudWatchPeriod).stat(statistic.toString()).build())
+				.label(metricName).returnData(true).build();
+	}
+
+	/**
+	 * Set whether Shard level metrics are fetched along with the Stream metrics,
+	 * so that individual Shards which are over utilised can be found. Requires
+	 * enhanced monitoring of the Shard level metrics on the Stream
+	 * 
+	 * @param enabled
+	 */
+	public void setShardLevelMetrics(boolean enabled) {
+		this.shardLevelMetrics = enabled;
+	}
+
+	/**
+	 * @return the utilisation of each open Shard from the last query, by Shard ID.
+	 *         Empty unless Shard level metrics are enabled
+	 */
+	public Map<String, ShardUtilisation> getShardUtilisation() {
+		return this.shardUtilisation;
+	}
+
+	/**
+	 * Set whether the enhanced fan-out consumers of the Stream are discovered, and
+	 * their GET utilisation tracked. Enabled by default when GET is tracked, and
+	 * disabled automatically if the consumers can't be listed
+	 * 
+	 * @param enabled
+	 */
+	public void setConsumerMetrics(boolean enabled) {
+		this.consumerMetrics = enabled;
+	}
+
+	/**
+	 * @return the GET utilisation of each enhanced fan-out consumer from the last
+	 *         query, by consumer name
+	 */
+	public Map<String, Map<StreamMetric, UtilisationSeries>> getConsumerUtilisation() {
+		return this.consumerUtilisation;
+	}
+
+	/**
+	 * Share a MetricDataBatcher with other StreamMetricManagers, so that their
+	 * metrics are fetched in the same GetMetricData requests
+	 * 
+	 * @param metricDataBatcher
+	 */
+	public void setMetricDataBatcher(MetricDataBatcher metricDataBatcher) {
+		this.metricDataBatcher = metricDataBatcher;
+	}
+
+	/**
+	 * Set the number of periods at the end of the previous fetch which are fetched
+	 * again on the next query, so that late arriving CloudWatch data revises them
+	 * 
+	 * @param revisionPeriods
+	 */
+	public void setRevisionPeriods(int revisionPeriods) {
+		this.revisionPeriods = revisionPeriods;
+	}
+
+	/**
+	 * Set whether metrics are fetched with GetMetricData. Enabled by default, and
+	 * disabled automatically if the caller is not authorised to use it
+	 * 
+	 * @param enabled
+	 */
+	public void setUseGetMetricData(boolean enabled) {
+		this.useGetMetricData = enabled;
+	}
+
 	public Map<KinesisOperationType, StreamMetrics> getStreamMaxCapacity() {
 		return this.streamMaxCapacity;
 	}
@@ -106,7 +263,15 @@ public class StreamMetricManager {
 	 */
 	public void loadMaxCapacity() throws Exception {
 		LOG.info(String.format("Refreshing Stream %s Throughput Information", this.streamName));
-		Integer openShards = StreamScalingUtils.getOpenShardCount(this.kinesisClient, this.streamName);
+		Integer openShards;
+		if (this.shardLevelMetrics) {
+			Set<String> shardIds = StreamScalingUtils.getOpenShards(this.kinesisClient, this.streamName, (String) null)
+					.keySet();
+			openShards = shardIds.size();
+			loadShardDataQueries(shardIds);
+		} else {
+			openShards = StreamScalingUtils.getOpenShardCount(this.kinesisClient, this.streamName);
+		}
 
 		for (KinesisOperationType op : this.trackedOperations) {
 			int maxBytes = openShards.intValue() * op.getMaxCapacity().get(StreamMetric.Bytes);
@@ -120,6 +285,79 @@ public class StreamMetricManager {
 			LOG.info(String.format("Stream Capacity for %s: %s Open Shards, %,d Bytes/Second, %d Records/Second",
 					op.toString(), openShards, maxBytes, maxRecords));
 		}
+
+		if (this.consumerMetrics && this.trackedOperations.contains(KinesisOperationType.GET)) {
+			try {
+				loadConsumerDataQueries(StreamScalingUtils.listStreamConsumers(this.kinesisClient, this.streamName));
+			} catch (KinesisException e) {
+				LOG.warn(String.format(
+						"Unable to list Enhanced Fan-Out Consumers of Stream %s. GET utilisation is only tracked for GetRecords: %s",
+						this.streamName, e.getMessage()));
+				this.consumerMetrics = false;
+				loadConsumerDataQueries(new ArrayList<Consumer>());
+			}
+
+			if (!this.consumerDataQueryIds.isEmpty()) {
+				LOG.info(String.format("Stream Capacity for each of %s Enhanced Fan-Out Consumers: %,d Bytes/Second",
+						this.consumerDataQueryIds.size(),
+						this.streamMaxCapacity.get(KinesisOperationType.GET).get(StreamMetric.Bytes)));
+			}
+		}
+	}
+
+	/*
+	 * build the consumer queries for the current set of enhanced fan-out
+	 * consumers. The metric windows start again if the consumers have changed
+	 */
+	private void loadConsumerDataQueries(List<Consumer> consumers) {
+		Set<String> consumerNames = new HashSet<>();
+		for (Consumer c : consumers) {
+			consumerNames.add(c.consumerName());
+		}
+		if (consumerNames.equals(this.consumerDataQueryIds.keySet())) {
+			return;
+		}
+
+		this.consumerDataQueries.clear();
+		this.consumerDataQueryIds.clear();
+		for (String consumerName : consumerNames) {
+			String queryId = String.format("consumer_%s", this.consumerDataQueries.size());
+			this.consumerDataQueries.add(metricDataQuery(queryId, CONSUMER_BYTES, Statistic.SUM,
+					Dimension.builder().name("StreamName").value(this.streamName).build(),
+					Dimension.builder().name("ConsumerName").value(consumerName).build()));
+			this.consumerDataQueryIds.put(consumerName, queryId);
+		}
+
+		this.metricWindows.clear();
+		this.metricWindowsEndTime = null;
+	}
+
+	/*
+	 * build the Shard level queries for the current set of open Shards. The
+	 * metric windows start again if the Shards have changed
+	 */
+	private void loadShardDataQueries(Set<String> shardIds) {
+		if (shardIds.equals(this.shardDataQueryIds.keySet())) {
+			return;
+		}
+
+		this.shardDataQueries.clear();
+		this.shardDataQueryIds.clear();
+		for (String shardId : shardIds) {
+			Map<String, String> queryIds = new HashMap<>();
+			for (String metricName : Arrays.asList(SHARD_INCOMING_BYTES, SHARD_INCOMING_RECORDS,
+					SHARD_WRITE_THROTTLED)) {
+				String queryId = String.format("shard_%s", this.shardDataQueries.size());
+				this.shardDataQueries.add(metricDataQuery(queryId, metricName, Statistic.SUM,
+						Dimension.builder().name("StreamName").value(this.streamName).build(),
+						Dimension.builder().name("ShardId").value(shardId).build()));
+				queryIds.put(metricName, queryId);
+			}
+			this.shardDataQueryIds.put(shardId, queryIds);
+		}
+
+		this.metricWindows.clear();
+		this.metricWindowsEndTime = null;
 	}
 
 	/**
@@ -132,27 +370,167 @@ public class StreamMetricManager {
 	 * @return
 	 * @throws Exception
 	 */
-	public Map<KinesisOperationType, Map<StreamMetric, Map<Datapoint, Double>>> queryCurrentUtilisationMetrics(
+	public Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> queryCurrentUtilisationMetrics(
 			int cwSampleDuration, DateTime metricStartTime, DateTime metricEndTime) throws Exception {
-		Map<KinesisOperationType, Map<StreamMetric, Map<Datapoint, Double>>> currentUtilisationMetrics = new HashMap<>();
+		Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> currentUtilisationMetrics = new HashMap<>();
 
-		// seed the current utilisation objects with default Maps to simplify
+		// align the window to the period in the same way that GetMetricStatistics
+		// does, so that the same datapoints are returned, and so that requests of
+		// Streams checked in the same period can share a request
+		long periodMillis = this.cloudWatchPeriod * 1000L;
+		Instant startTime = Instant
+				.ofEpochMilli(Math.floorDiv(metricStartTime.getMillis(), periodMillis) * periodMillis);
+		Instant endTime = Instant.ofEpochMilli(-Math.floorDiv(-metricEndTime.getMillis(), periodMillis) * periodMillis);
+
+		// seed the current utilisation objects with empty series to simplify
 		// object creation later
 		for (KinesisOperationType op : this.trackedOperations) {
+			Map<StreamMetric, UtilisationSeries> metrics = new HashMap<>();
 			for (StreamMetric m : StreamMetric.values()) {
-				currentUtilisationMetrics.put(op, new HashMap<StreamMetric, Map<Datapoint, Double>>() {
-					{
-						put(m, new HashMap<Datapoint, Double>());
-					}
-				});
+				metrics.put(m, new UtilisationSeries(startTime, endTime, this.cloudWatchPeriod));
+			}
+			currentUtilisationMetrics.put(op, metrics);
+		}
+
+		if (this.useGetMetricData) {
+			try {
+				queryMetricData(currentUtilisationMetrics, cwSampleDuration, startTime, endTime);
+				return currentUtilisationMetrics;
+			} catch (CloudWatchException e) {
+				if (e.statusCode() != 403) {
+					throw e;
+				}
+				LOG.warn(String.format(
+						"Not authorised to call GetMetricData for Stream %s. Requesting each metric with GetMetricStatistics",
+						this.streamName));
+				this.useGetMetricData = false;
+			}
+		}
+
+		if (this.shardLevelMetrics) {
+			LOG.warn(String.format("Shard level metrics for Stream %s are only available with GetMetricData",
+					this.streamName));
+			this.shardUtilisation = new HashMap<>();
+		}
+		if (!this.consumerDataQueryIds.isEmpty()) {
+			LOG.warn(String.format(
+					"Enhanced Fan-Out Consumer metrics for Stream %s are only available with GetMetricData",
+					this.streamName));
+			this.consumerUtilisation = new HashMap<>();
+		}
+		queryMetricStatistics(currentUtilisationMetrics, cwSampleDuration, metricStartTime, metricEndTime);
+
+		return currentUtilisationMetrics;
+	}
+
+	private void queryMetricData(
+			Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> currentUtilisationMetrics,
+			int cwSampleDuration, Instant startTime, Instant endTime) throws Exception {
+		long periodMillis = this.cloudWatchPeriod * 1000L;
+
+		// only fetch from the end of the previous fetch, less the periods which may
+		// still be revised, if the windows already hold the rest of the sample
+		List<MetricDataQuery> queries = new ArrayList<>(this.metricDataQueries);
+		if (this.shardLevelMetrics) {
+			queries.addAll(this.shardDataQueries);
+		}
+		queries.addAll(this.consumerDataQueries);
+
+		int periods = (int) ((endTime.toEpochMilli() - startTime.toEpochMilli()) / periodMillis);
+		if (this.metricWindowsEndTime == null || this.metricWindows.isEmpty()
+				|| this.metricWindows.values().iterator().next().getCapacity() < periods + this.revisionPeriods) {
+			this.metricWindows.clear();
+			for (MetricDataQuery q : queries) {
+				this.metricWindows.put(q.id(), new MetricWindow(periods + this.revisionPeriods, this.cloudWatchPeriod));
+			}
+			this.metricWindowsEndTime = null;
+		}
+
+		Instant fetchStartTime = startTime;
+		if (this.metricWindowsEndTime != null) {
+			Instant revisable = this.metricWindowsEndTime.minusMillis(this.revisionPeriods * periodMillis);
+			if (revisable.isAfter(fetchStartTime)) {
+				fetchStartTime = revisable.isBefore(endTime) ? revisable : endTime.minusMillis(periodMillis);
 			}
 		}
 
+		LOG.info(String.format("Requesting %s minutes of CloudWatch Data for %s Stream Metrics",
+				(endTime.toEpochMilli() - fetchStartTime.toEpochMilli()) / 60_000, queries.size()));
+
+		Map<String, MetricDataResult> results = this.metricDataBatcher.getMetricData(queries, fetchStartTime,
+				endTime);
+
+		for (Map.Entry<String, MetricDataResult> entry : results.entrySet()) {
+			MetricWindow window = this.metricWindows.get(entry.getKey());
+			MetricDataResult r = entry.getValue();
+
+			for (int i = 0; i < r.timestamps().size(); i++) {
+				window.put(r.timestamps().get(i), r.values().get(i));
+			}
+		}
+		this.metricWindowsEndTime = endTime;
+
+		// add the windows into the utilisation series
+		for (MetricDataQuery q : this.metricDataQueries) {
+			MetricWindow window = this.metricWindows.get(q.id());
+			StreamMetric metric = this.metricDataQueryMetrics.get(q.id());
+			UtilisationSeries series = currentUtilisationMetrics.get(this.metricDataQueryOperations.get(q.id()))
+					.get(metric);
+
+			window.evictBefore(startTime);
+			for (Instant timestamp : window.getTimestamps(startTime, endTime)) {
+				series.add(timestamp, seriesValue(metric, window.get(timestamp)));
+			}
+		}
+
+		// and the Shard level windows into the Shard utilisation table
+		if (this.shardLevelMetrics) {
+			Map<String, ShardUtilisation> shards = new HashMap<>();
+			for (Map.Entry<String, Map<String, String>> entry : this.shardDataQueryIds.entrySet()) {
+				shards.put(entry.getKey(),
+						new ShardUtilisation(entry.getKey(),
+								windowSeries(entry.getValue().get(SHARD_INCOMING_BYTES), startTime, endTime),
+								windowSeries(entry.getValue().get(SHARD_INCOMING_RECORDS), startTime, endTime),
+								windowSeries(entry.getValue().get(SHARD_WRITE_THROTTLED), startTime, endTime)));
+			}
+			this.shardUtilisation = shards;
+		}
+
+		// and the consumer windows into the consumer utilisation table
+		Map<String, Map<StreamMetric, UtilisationSeries>> consumers = new HashMap<>();
+		for (Map.Entry<String, String> entry : this.consumerDataQueryIds.entrySet()) {
+			Map<StreamMetric, UtilisationSeries> metrics = new HashMap<>();
+			metrics.put(StreamMetric.Bytes, windowSeries(entry.getValue(), startTime, endTime));
+			consumers.put(entry.getKey(), metrics);
+		}
+		this.consumerUtilisation = consumers;
+	}
+
+	private UtilisationSeries windowSeries(String queryId, Instant startTime, Instant endTime) {
+		UtilisationSeries series = new UtilisationSeries(startTime, endTime, this.cloudWatchPeriod);
+		MetricWindow window = this.metricWindows.get(queryId);
+
+		window.evictBefore(startTime);
+		for (Instant timestamp : window.getTimestamps(startTime, endTime)) {
+			series.add(timestamp, window.get(timestamp) / this.cloudWatchPeriod);
+		}
+		return series;
+	}
+
+	/*
+	 * summed metrics are reported as a rate per second, and others as the value
+	 * CloudWatch returned for the period
+	 */
+	private double seriesValue(StreamMetric metric, double value) {
+		return metric.getStatistic() == Statistic.SUM ? value / this.cloudWatchPeriod : value;
+	}
+
+	private void queryMetricStatistics(
+			Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> currentUtilisationMetrics,
+			int cwSampleDuration, DateTime metricStartTime, DateTime metricEndTime) throws Exception {
 		for (Map.Entry<KinesisOperationType, List<GetMetricStatisticsRequest.Builder>> entry : this.cloudwatchRequestTemplates
 				.entrySet()) {
 			for (GetMetricStatisticsRequest.Builder reqBuilder : this.cloudwatchRequestTemplates.get(entry.getKey())) {
-				double sampleMetric = 0D;
-
 				reqBuilder.startTime(metricStartTime.toDate().toInstant()).endTime(metricEndTime.toDate().toInstant());
 
 				GetMetricStatisticsRequest req = reqBuilder.build();
@@ -167,6 +545,8 @@ public class StreamMetricManager {
 				long sleepCap = 2000;
 				int tryCap = 20;
 				while (!ok) {
+					ControlPlaneRateLimiter.forClient(this.cloudWatchClient)
+							.acquire(ControlPlaneRateLimiter.GET_METRIC_STATISTICS, Priority.LOW);
 					try {
 						cloudWatchMetrics = this.cloudWatchClient.getMetricStatistics(req);
 						ok = true;
@@ -188,30 +568,15 @@ public class StreamMetricManager {
 					}
 				}
 
-				// aggregate the sample metrics by datapoint into a map,
-				// so that PutRecords and PutRecord measures are added
-				// together
-
+				// aggregate the sample metrics by period, so that PutRecords and
+				// PutRecord measures are added together
+				StreamMetric metric = StreamMetric.fromMetricName(req.metricName());
+				UtilisationSeries series = currentUtilisationMetrics.get(entry.getKey()).get(metric);
 				for (Datapoint d : cloudWatchMetrics.datapoints()) {
-					StreamMetric metric = StreamMetric.fromUnit(d.unit().name());
-
-					Map<Datapoint, Double> metrics = currentUtilisationMetrics.get(entry.getKey()).get(metric);
-					if (metrics == null) {
-						metrics = new HashMap<>();
-					}
-					if (metrics.containsKey(d)) {
-						sampleMetric = metrics.get(d);
-					} else {
-						sampleMetric = 0d;
-					}
-					sampleMetric += (d.sum() / cloudWatchPeriod);
-					metrics.put(d, sampleMetric);
-					currentUtilisationMetrics.get(entry.getKey()).put(metric, metrics);
+					series.add(d.timestamp(),
+							seriesValue(metric, metric.getStatistic() == Statistic.MAXIMUM ? d.maximum() : d.sum()));
 				}
-
 			}
 		}
-
-		return currentUtilisationMetrics;
 	}
 }
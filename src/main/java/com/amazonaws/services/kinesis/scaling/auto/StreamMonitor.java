@@ -7,29 +7,31 @@
  */
 package com.amazonaws.services.kinesis.scaling.auto;
 
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Locale;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
-import org.javatuples.Triplet;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazonaws.services.kinesis.scaling.AlreadyOneShardException;
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter.Priority;
 import com.amazonaws.services.kinesis.scaling.ScaleDirection;
 import com.amazonaws.services.kinesis.scaling.ScalingCompletionStatus;
 import com.amazonaws.services.kinesis.scaling.ScalingOperationReport;
 import com.amazonaws.services.kinesis.scaling.StreamScaler;
 import com.amazonaws.services.kinesis.scaling.StreamScalingUtils;
+import com.amazonaws.services.kinesis.scaling.StreamStatusTimeoutException;
 
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
-import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
 import software.amazon.awssdk.services.kinesis.KinesisClient;
 import software.amazon.awssdk.services.sns.SnsClient;
 
@@ -37,6 +39,9 @@ public class StreamMonitor implements Runnable {
 	private final Logger LOG = LoggerFactory.getLogger(StreamMonitor.class);;
 	public static final int CLOUDWATCH_PERIOD = 60;
 
+	// CloudWatch keeps one minute datapoints for 15 days
+	public static final int MAX_HISTORY_MINS = 15 * 24 * 60;
+
 	private KinesisClient kinesisClient;
 	private CloudWatchClient cloudWatchClient;
 	private SnsClient snsClient;
@@ -46,228 +51,327 @@ public class StreamMonitor implements Runnable {
 	private DateTime lastScaleUp = null;
 	private StreamScaler scaler = null;
 	private Exception exception;
-	private DefaultCredentialsProvider credentials;
-	private final DateTimeFormatter formatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT)
-			.withLocale(Locale.UK).withZone(ZoneId.systemDefault());
+	private RegionClients clients = null;
+	private MetricDataBatcher metricDataBatcher;
+	private UtilisationForecaster forecaster = null;
+	private Integer forecastShards = null;
+	private ScalingPolicy scalingPolicy = null;
+	private StreamMetricManager metricManager = null;
+	private DateTime lastShardCapacityRefreshTime = null;
+	private ScheduledFuture<?> scheduledCheck = null;
+	// set when a scaling action gave up waiting for the Stream to be ACTIVE
+	private StreamStatusTimeoutException statusTimeout = null;
 
 	/* partial constructor only for testing */
 	protected StreamMonitor(AutoscalingConfiguration config, StreamScaler scaler) throws Exception {
 		this.config = config;
 		this.scaler = scaler;
+		if (config.getForecast() != null) {
+			this.forecaster = new UtilisationForecaster(config.getForecast());
+		}
+	}
+
+	/* constructor only for testing, with the clients to monitor and scale through */
+	protected StreamMonitor(AutoscalingConfiguration config, KinesisClient kinesisClient,
+			CloudWatchClient cloudWatchClient) throws Exception {
+		this(config, new StreamScaler(kinesisClient));
+		this.kinesisClient = kinesisClient;
+		this.cloudWatchClient = cloudWatchClient;
 	}
 
 	public StreamMonitor(AutoscalingConfiguration config) throws Exception {
-		this.config = config;
-		Region setRegion = Region.of(this.config.getRegion());
+		this(config, (MetricDataBatcher) null);
+	}
 
-		// setup credential refresh
-		this.credentials = DefaultCredentialsProvider.builder().asyncCredentialUpdateEnabled(true).build();
+	/**
+	 * Create a Stream Monitor which fetches CloudWatch metrics through a
+	 * MetricDataBatcher shared with other Stream Monitors in the same Region. The
+	 * CloudWatch client of the batcher is used, and is not closed when the
+	 * monitor stops. The other clients are acquired from the
+	 * {@link ClientRegistry}, and released when the monitor stops
+	 * 
+	 * @param config
+	 * @param metricDataBatcher
+	 * @throws Exception
+	 */
+	public StreamMonitor(AutoscalingConfiguration config, MetricDataBatcher metricDataBatcher) throws Exception {
+		this.config = config;
+		this.metricDataBatcher = metricDataBatcher;
 
-		// create scaler class and clients
-		this.cloudWatchClient = CloudWatchClient.builder().credentialsProvider(this.credentials).region(setRegion)
-				.build();
-		this.kinesisClient = KinesisClient.builder().credentialsProvider(this.credentials).region(setRegion).build();
-		this.snsClient = SnsClient.builder().credentialsProvider(this.credentials).region(setRegion).build();
+		// create scaler class, and share the clients of the Region
+		this.clients = ClientRegistry.acquire(this.config.getRegion());
+		if (metricDataBatcher != null) {
+			this.cloudWatchClient = metricDataBatcher.getCloudWatchClient();
+		} else {
+			this.cloudWatchClient = this.clients.getCloudWatchClient();
+		}
+		this.kinesisClient = this.clients.getKinesisClient();
+		this.snsClient = this.clients.getSnsClient();
 
 		this.scaler = new StreamScaler(this.kinesisClient);
+		this.scaler.setExecutionMode(this.config.getExecutionMode(), this.config.getMaxOperationsInFlight());
+
+		if (this.config.getForecast() != null) {
+			this.forecaster = new UtilisationForecaster(this.config.getForecast());
+		}
 	}
 
 	public void stop() {
 		LOG.info(String.format("Signalling Monitor for Stream %s to Stop", config.getStreamName()));
 
-		// tell the background thread to stop, and close all client background and
-		// credential refresh threads
+		// tell the background thread to stop, and release the shared clients,
+		// which are closed once no other monitor in the Region uses them
 		this.keepRunning = false;
-		this.kinesisClient.close();
-		this.cloudWatchClient.close();
-		this.snsClient.close();
-		this.credentials.close();
+		synchronized (this) {
+			if (this.scheduledCheck != null) {
+				this.scheduledCheck.cancel(false);
+			}
+			if (this.clients != null) {
+				ClientRegistry.release(this.clients);
+				this.clients = null;
+			}
+		}
 
 		LOG.info("Waiting for Shutdown");
 	}
 
-	/* method has been lifted out of run() for unit testing purposes */
-	protected ScalingOperationReport processCloudwatchMetrics(
-			Map<KinesisOperationType, Map<StreamMetric, Map<Datapoint, Double>>> currentUtilisationMetrics,
-			Map<KinesisOperationType, StreamMetrics> streamMaxCapacity, int cwSampleDuration, DateTime now) {
+	/**
+	 * Split the Shards which have been over the scale up threshold, or which have
+	 * had writes throttled, for the scale up period. Each hot Shard is split into
+	 * enough Shards that its peak rate would have been under the threshold, rather
+	 * than resizing the whole Stream uniformly
+	 * 
+	 * @param shardUtilisation
+	 * @param now
+	 * @return a report of the Stream after the Shards have been split, or null if
+	 *         no Shards needed to be split
+	 */
+	protected ScalingOperationReport processShardUtilisation(Map<String, ShardUtilisation> shardUtilisation,
+			DateTime now) {
+		double thresholdPct = this.config.getScaleUp().getScaleThresholdPct() / 100D;
+
+		List<ShardUtilisation> hotShards = new ArrayList<>();
+		for (ShardUtilisation s : shardUtilisation.values()) {
+			if (s.getHighPeriods(thresholdPct) >= this.config.getScaleUp().getScaleAfterMins()) {
+				hotShards.add(s);
+			}
+		}
+
+		if (hotShards.size() == 0) {
+			return null;
+		}
+
+		if (lastScaleUp != null && now.minusMinutes(this.config.getScaleUp().getCoolOffMins()).isBefore(lastScaleUp)) {
+			LOG.info(String.format(
+					"Stream %s: Deferring Split of %s Hot Shards until Cool Off Period of %s Minutes has elapsed",
+					this.config.getStreamName(), hotShards.size(), this.config.getScaleUp().getCoolOffMins()));
+			return null;
+		}
+
+		// split the hottest shards first, in case the max shard count is reached
+		Collections.sort(hotShards, new Comparator<ShardUtilisation>() {
+			public int compare(ShardUtilisation o1, ShardUtilisation o2) {
+				return Double.compare(o2.getPeakUtilisation(), o1.getPeakUtilisation());
+			}
+		});
+
 		ScalingOperationReport report = null;
-		ScaleDirection finalScaleDirection = null;
-
-		// for each type of operation that the customer has requested profiling
-		// (PUT, GET)
-		Map<KinesisOperationType, ScaleDirection> scaleVotes = new HashMap<>();
-
-		for (Map.Entry<KinesisOperationType, Map<StreamMetric, Map<Datapoint, Double>>> entry : currentUtilisationMetrics
-				.entrySet()) {
-			// set the default scaling vote to 'do nothing'
-			scaleVotes.put(entry.getKey(), ScaleDirection.NONE);
-
-			Map<StreamMetric, Triplet<Integer, Integer, Double>> perMetricSamples = new HashMap<>();
-			StreamMetric higherUtilisationMetric;
-			Double higherUtilisationPct;
-
-			// process each metric type, including Records and Bytes
-			for (StreamMetric metric : StreamMetric.values()) {
-				double streamMax = 0D;
-				double currentMax = 0D;
-				double currentPct = 0D;
-				double latestPct = 0d;
-				double latestMax = 0d;
-				double latestAvg = 0d;
-				DateTime lastTime = null;
-				int lowSamples = 0;
-				int highSamples = 0;
-
-				Map<Datapoint, Double> metrics = new HashMap<>();
-
-				if (!currentUtilisationMetrics.containsKey(entry.getKey()) || !entry.getValue().containsKey(metric)) {
-					// we have no samples for this type of metric which is ok -
-					// they'll later be counted as low metrics
-				} else {
-					metrics = entry.getValue().get(metric);
-				}
+		int operationsMade = 0;
+		int openShardsBefore = -1;
+		try {
+			openShardsBefore = this.scaler.getOpenShardCount(this.config.getStreamName());
 
-				// if we got nothing back, then there are no operations of the
-				// given type happening, so this is a full 'low sample'
-				if (metrics.size() == 0) {
-					lowSamples = this.config.getScaleDown().getScaleAfterMins();
-				}
+			for (ShardUtilisation s : hotShards) {
+				int splitInto = Math.max(2, (int) Math.ceil(s.getPeakUtilisation() / thresholdPct));
 
-				// process the data point aggregates retrieved from CloudWatch
-				// and log scale up/down votes by period
-				for (Map.Entry<Datapoint, Double> datapointEntry : metrics.entrySet()) {
-					currentMax = datapointEntry.getValue();
-					streamMax = streamMaxCapacity.get(entry.getKey()).get(metric);
-					currentPct = currentMax / streamMax;
+				LOG.info(String.format(
+						"Requesting Split of Shard %s:%s into %s Shards as it has been above %s%% for %s Minutes, with a peak of %.2f%%",
+						this.config.getStreamName(), s.getShardId(), splitInto,
+						this.config.getScaleUp().getScaleThresholdPct(), this.config.getScaleUp().getScaleAfterMins(),
+						s.getPeakUtilisation() * 100));
 
-					LOG.info(String.format(
-							"Utilisation of %s %s %.2f%% at %s upon current value of %.2f and Stream max of %.2f",
-							entry.getKey().name(), metric, currentPct * 100,
-							formatter.format(datapointEntry.getKey().timestamp()), currentMax, streamMax));
-
-					// keep track of the last measures
-					if (lastTime == null
-							|| new DateTime(datapointEntry.getKey().timestamp().toEpochMilli()).isAfter(lastTime)) {
-						latestPct = currentPct;
-						latestMax = currentMax;
-
-						// latest average is a simple moving average
-						latestAvg = latestAvg == 0d ? currentPct : (latestAvg + currentPct) / 2;
-					}
-					lastTime = new DateTime(datapointEntry.getKey().timestamp().toEpochMilli());
-
-					// if the pct for the datapoint exceeds the configured threshold, then count a
-					// high sample, otherwise it's a low sample
-					if (new Double(currentPct) > new Double(this.config.getScaleUp().getScaleThresholdPct()) / 100D) {
-						highSamples++;
-					} else if (new Double(currentPct) < new Double(this.config.getScaleDown().getScaleThresholdPct())
-							/ 100D) {
-						lowSamples++;
-					}
-				}
+				report = this.scaler.scaleUp(this.config.getStreamName(), s.getShardId(), splitInto,
+						this.config.getMinShards(), this.config.getMaxShards());
+				operationsMade += report.getOperationsMade();
 
-				// add low samples for the periods which we didn't get any
-				// data points, if there are any
-				if (metrics.size() < cwSampleDuration) {
-					lowSamples += cwSampleDuration - metrics.size();
+				if (report.getEndStatus() == ScalingCompletionStatus.AlreadyAtMaximum) {
+					break;
 				}
+			}
+		} catch (Exception e) {
+			if (e instanceof StreamStatusTimeoutException) {
+				onStatusTimeout((StreamStatusTimeoutException) e);
+			} else {
+				LOG.error("Failed to split hot shards of stream " + this.config.getStreamName(), e);
+			}
 
-				LOG.info(String.format("%s %s performance analysis: %s high samples, and %s low samples",
-						entry.getKey().name(), metric, highSamples, lowSamples));
+			ScalingOperationReport partial = getPartialSplitReport(openShardsBefore);
+			if (partial != null) {
+				report = partial;
+				operationsMade = partial.getOperationsMade();
+			}
+		}
 
-				// merge the per-stream metric samples together for the
-				// operation
-				if (!perMetricSamples.containsKey(metric)) {
-					// create a new sample entry
-					perMetricSamples.put(metric, new Triplet<>(highSamples, lowSamples, latestAvg));
-				} else {
-					// merge the samples
-					Triplet<Integer, Integer, Double> previousHighLow = perMetricSamples.get(metric);
-					Triplet<Integer, Integer, Double> newHighLow = new Triplet<>(
-							previousHighLow.getValue0() + highSamples, previousHighLow.getValue1() + lowSamples,
-							(previousHighLow.getValue2() + latestAvg) / 2);
-					perMetricSamples.put(metric, newHighLow);
-				}
+		if (report == null) {
+			return null;
+		}
+
+		report = new ScalingOperationReport(report.getEndStatus(), report.getLayout(), operationsMade,
+				ScaleDirection.UP);
+		lastScaleUp = new DateTime(System.currentTimeMillis());
+
+		// send SNS notifications
+		if (this.config.getScaleUp().getNotificationARN() != null && this.snsClient != null) {
+			try {
+				StreamScalingUtils.sendNotification(this.snsClient, this.config.getScaleUp().getNotificationARN(),
+						"Kinesis Autoscaling - Hot Shard Split", report.asJson());
+			} catch (Exception e) {
+				LOG.error(e.getMessage(), e);
 			}
+		}
 
-			/*-
-			 * we now have per metric samples for this operation type
-			 * 
-			 * For Example: 
-			 * 
-			 * Metric  | High Samples | Low Samples | Pct Used
-			 * Bytes   | 3            | 0           | .98
-			 * Records | 0            | 10          | .2
-			 * 
-			 * Check these values against the provided configuration. If we have
-			 * been above the 'scaleAfterMins' with high samples for either
-			 * metric, then we scale up. If not, then if we've been below the
-			 * scaleAfterMins with low samples, then we scale down. Otherwise
-			 * the vote stays as NONE
-			 */
-
-			// first find out which of the dimensions of stream utilisation are
-			// higher - we'll use the higher of the two for time checks
-			if (perMetricSamples.get(StreamMetric.Bytes).getValue2() >= perMetricSamples.get(StreamMetric.Records)
-					.getValue2()) {
-				higherUtilisationMetric = StreamMetric.Bytes;
-				higherUtilisationPct = perMetricSamples.get(StreamMetric.Bytes).getValue2();
-			} else {
-				higherUtilisationMetric = StreamMetric.Records;
-				higherUtilisationPct = perMetricSamples.get(StreamMetric.Records).getValue2();
+		return report;
+	}
+
+	/*
+	 * report the Shards which were added before splitting the hot Shards failed,
+	 * as the splits which landed are a scale up even though the rest did not
+	 */
+	private ScalingOperationReport getPartialSplitReport(int openShardsBefore) {
+		if (openShardsBefore < 0) {
+			return null;
+		}
+
+		try {
+			int shardsAdded = this.scaler.getOpenShardCount(this.config.getStreamName()) - openShardsBefore;
+			if (shardsAdded > 0) {
+				return this.scaler.reportFor(ScalingCompletionStatus.Error, this.config.getStreamName(), shardsAdded,
+						ScaleDirection.UP);
+			}
+		} catch (Exception e) {
+			LOG.error(String.format("Unable to report the Shards split on Stream %s: %s",
+					this.config.getStreamName(), e.getMessage()));
+		}
+		return null;
+	}
+
+	/**
+	 * Scale up ahead of the forecast peak utilisation of the Stream, so that the
+	 * upper bound of the forecast over the lead time is within the scale up
+	 * threshold. The forecast is never used to scale down, but sets the floor
+	 * below which the reactive scale down will not go
+	 * 
+	 * @param now
+	 * @return a report of the Stream after it has been scaled up, or null if no
+	 *         scaling was needed or none could be forecast
+	 */
+	protected ScalingOperationReport processForecast(DateTime now) {
+		this.forecastShards = this.forecaster.getRequiredShards(this.config.getScaleUp().getScaleThresholdPct(),
+				Instant.ofEpochMilli(now.getMillis()));
+		if (this.forecastShards == null) {
+			return null;
+		}
+
+		ScalingOperationReport report = null;
+		try {
+			int currentShardCount = this.scaler.getOpenShardCount(this.config.getStreamName());
+			int newTarget = this.forecastShards;
+			if (this.config.getMaxShards() != null) {
+				newTarget = Math.min(newTarget, this.config.getMaxShards());
+			}
+
+			if (newTarget <= currentShardCount) {
+				return null;
+			}
+
+			if (lastScaleUp != null
+					&& now.minusMinutes(this.config.getScaleUp().getCoolOffMins()).isBefore(lastScaleUp)) {
+				LOG.info(String.format(
+						"Stream %s: Deferring Predictive Scale Up until Cool Off Period of %s Minutes has elapsed",
+						this.config.getStreamName(), this.config.getScaleUp().getCoolOffMins()));
+				return null;
 			}
 
 			LOG.info(String.format(
-					"Will decide scaling action based on metric %s[%s] due to highest utilisation metric value %.2f%%",
-					entry.getKey(), higherUtilisationMetric, higherUtilisationPct * 100));
-
-			if (perMetricSamples.get(higherUtilisationMetric).getValue0() >= config.getScaleUp().getScaleAfterMins()) {
-				scaleVotes.put(entry.getKey(), ScaleDirection.UP);
-			} else if (perMetricSamples.get(higherUtilisationMetric).getValue1() >= config.getScaleDown()
-					.getScaleAfterMins()) {
-				scaleVotes.put(entry.getKey(), ScaleDirection.DOWN);
+					"Requesting Predictive Scale Up of Stream %s from %s to %s as %s are forecast to need %s Shards at %s%% in the next %s Minutes",
+					this.config.getStreamName(), currentShardCount, newTarget,
+					this.config.getScaleOnOperations().toString(), this.forecastShards,
+					this.config.getScaleUp().getScaleThresholdPct(), this.config.getForecast().getLeadTimeMins()));
+
+			// wait for the report, so that the check refreshes the capacity of the
+			// Stream rather than applying the other policies to the old capacity
+			report = this.scaler.updateShardCount(this.config.getStreamName(), currentShardCount, newTarget,
+					this.config.getMinShards(), this.config.getMaxShards(), true);
+
+			lastScaleUp = new DateTime(System.currentTimeMillis());
+
+			// send SNS notifications
+			if (report != null && this.config.getScaleUp().getNotificationARN() != null && this.snsClient != null) {
+				StreamScalingUtils.sendNotification(this.snsClient, this.config.getScaleUp().getNotificationARN(),
+						"Kinesis Autoscaling - Predictive Scale Up", report.asJson());
 			}
+		} catch (StreamStatusTimeoutException e) {
+			onStatusTimeout(e);
+		} catch (Exception e) {
+			LOG.error("Failed to forecast scale up of stream " + this.config.getStreamName(), e);
 		}
 
-		// process the scaling votes
-		ScaleDirection getVote = scaleVotes.get(KinesisOperationType.GET);
-		ScaleDirection putVote = scaleVotes.get(KinesisOperationType.PUT);
-
-		LOG.info(String.format("Scaling Votes - GET: %s, PUT: %s", getVote, putVote));
-
-		// check if we have both get and put votes - if we have both then
-		// implement the decision matrix
-		if (getVote != null && putVote != null) {
-			// If either of the votes are to scale up, then do so.
-			// If both votes are DOWN, then scale down.
-			// Otherwise do nothing.
-			if (getVote == ScaleDirection.UP || putVote == ScaleDirection.UP) {
-				finalScaleDirection = ScaleDirection.UP;
-			} else if (getVote == ScaleDirection.DOWN && putVote == ScaleDirection.DOWN) {
-				finalScaleDirection = ScaleDirection.DOWN;
-			} else {
-				finalScaleDirection = ScaleDirection.NONE;
-			}
-		} else {
-			// we only have get or put votes, so use the non-null one
-			finalScaleDirection = (getVote == null ? putVote : getVote);
+		return report;
+	}
+
+	/*
+	 * load the history which CloudWatch still holds into the forecaster, so that
+	 * forecasts can be made without waiting for two seasons
+	 */
+	private void loadForecastHistory(DateTime now) {
+		int historyMins = Math.min(this.forecaster.getHistoryMins(), MAX_HISTORY_MINS);
+		StreamMetricManager historyManager = new StreamMetricManager(this.config.getStreamName(),
+				this.config.getScaleOnOperations(), this.cloudWatchClient, this.kinesisClient);
+		historyManager.setConsumerMetrics(false);
+
+		try {
+			this.forecaster.add(historyManager.queryCurrentUtilisationMetrics(historyMins,
+					now.minusMinutes(historyMins), now));
+		} catch (Exception e) {
+			LOG.warn(String.format("Unable to load %s Minutes of history of Stream %s for forecasting: %s",
+					historyMins, this.config.getStreamName(), e.getMessage()));
 		}
+	}
+
+	/* method has been lifted out of run() for unit testing purposes */
+	protected ScalingOperationReport processCloudwatchMetrics(
+			Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> currentUtilisationMetrics,
+			Map<KinesisOperationType, StreamMetrics> streamMaxCapacity, int cwSampleDuration, DateTime now) {
+		return processCloudwatchMetrics(currentUtilisationMetrics,
+				new HashMap<String, Map<StreamMetric, UtilisationSeries>>(), streamMaxCapacity, cwSampleDuration, now);
+	}
 
-		LOG.debug(String.format("Determined Scaling Direction %s", finalScaleDirection));
+	/*
+	 * as above, with the GET utilisation of each enhanced fan-out consumer, by
+	 * consumer name
+	 */
+	protected ScalingOperationReport processCloudwatchMetrics(
+			Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> currentUtilisationMetrics,
+			Map<String, Map<StreamMetric, UtilisationSeries>> consumerUtilisationMetrics,
+			Map<KinesisOperationType, StreamMetrics> streamMaxCapacity, int cwSampleDuration, DateTime now) {
+		ScalingOperationReport report = null;
 
 		try {
 			int currentShardCount = this.scaler.getOpenShardCount(this.config.getStreamName());
 
 			LOG.debug(String.format("Current Shard Count: %s", currentShardCount));
 
-			// if the metric stats indicate a scale up or down, then do the action
+			// ask the scaling policy for the target shard count
+			ScalingDecision decision = getScalingPolicy().decide(new UtilisationSnapshot(currentUtilisationMetrics,
+					consumerUtilisationMetrics, streamMaxCapacity, cwSampleDuration, now), currentShardCount);
+
+			LOG.debug(String.format("Determined Scaling Decision %s", decision));
+
+			int newTarget = decision.getTargetShardCount();
 			Integer minShards = this.config.getMinShards();
 			Integer maxShards = this.config.getMaxShards();
 
-			if (finalScaleDirection.equals(ScaleDirection.UP)) {
-				Integer scaleCount = this.config.getScaleUp().getScaleCount();
-				Integer scalePct = this.config.getScaleUp().getScalePct();
-
+			if (decision.getDirection().equals(ScaleDirection.UP)) {
 				// check the cool down interval
 				if (lastScaleUp != null
 						&& now.minusMinutes(this.config.getScaleUp().getCoolOffMins()).isBefore(lastScaleUp)) {
@@ -276,28 +380,13 @@ public class StreamMonitor implements Runnable {
 							this.config.getStreamName(), this.config.getScaleUp().getCoolOffMins()));
 				} else {
 					// submit a scale up task
-
-					int newTarget = StreamScalingUtils.getNewShardCount(currentShardCount, scaleCount, scalePct,
-							ScaleDirection.UP, minShards, maxShards);
-
-					LOG.debug(String.format("Calculated new Target Shard Count of %s", newTarget));
-
 					if (newTarget != currentShardCount && newTarget > 0) {
-						LOG.info(String.format(
-								"Requesting Scale Up of Stream %s by %s to %s as %s has been above %s%% for %s Minutes",
-								this.config.getStreamName(), (scaleCount != null) ? scaleCount : scalePct + "%",
-								newTarget, this.config.getScaleOnOperations().toString(),
-								this.config.getScaleUp().getScaleThresholdPct(),
-								this.config.getScaleUp().getScaleAfterMins()));
-
-						if (scaleCount != null) {
-							report = this.scaler.updateShardCount(this.config.getStreamName(), currentShardCount,
-									newTarget, minShards, maxShards, false);
-						} else {
-							report = this.scaler.updateShardCount(this.config.getStreamName(), currentShardCount,
-									newTarget, minShards, maxShards, false);
+						LOG.info(String.format("Requesting Scale Up of Stream %s from %s to %s as %s",
+								this.config.getStreamName(), currentShardCount, newTarget,
+								String.join("; ", decision.getReasons())));
 
-						}
+						report = this.scaler.updateShardCount(this.config.getStreamName(), currentShardCount,
+								newTarget, minShards, maxShards, false);
 
 						lastScaleUp = new DateTime(System.currentTimeMillis());
 
@@ -313,10 +402,7 @@ public class StreamMonitor implements Runnable {
 								"Not requesting a scaling action because new shard count equals current shard count, or new shard count is 0");
 					}
 				}
-			} else if (finalScaleDirection.equals(ScaleDirection.DOWN)) {
-				Integer scaleCount = this.config.getScaleDown().getScaleCount();
-				Integer scalePct = this.config.getScaleDown().getScalePct();
-
+			} else if (decision.getDirection().equals(ScaleDirection.DOWN)) {
 				// check the cool down interval
 				if (lastScaleDown != null
 						&& now.minusMinutes(this.config.getScaleDown().getCoolOffMins()).isBefore(lastScaleDown)) {
@@ -324,18 +410,17 @@ public class StreamMonitor implements Runnable {
 							"Stream %s: Deferring Scale Down until Cool Off Period of %s Minutes has elapsed",
 							this.config.getStreamName(), this.config.getScaleDown().getCoolOffMins()));
 				} else {
+					// don't scale down below the Shards which the forecast needs
+					if (this.forecastShards != null && newTarget < this.forecastShards) {
+						newTarget = Math.min(this.forecastShards, currentShardCount);
+					}
+
 					// submit a scale down
 					try {
-						int newTarget = StreamScalingUtils.getNewShardCount(currentShardCount, scaleCount, scalePct,
-								ScaleDirection.DOWN, minShards, maxShards);
-
 						if (newTarget != currentShardCount && newTarget > 0) {
-							LOG.info(String.format(
-									"Requesting Scale Down of Stream %s by %s to %s as %s has been below %s%% for %s Minutes",
-									this.config.getStreamName(), (scaleCount != null) ? scaleCount : scalePct + "%",
-									newTarget, config.getScaleOnOperations().toString(),
-									this.config.getScaleDown().getScaleThresholdPct(),
-									this.config.getScaleDown().getScaleAfterMins()));
+							LOG.info(String.format("Requesting Scale Down of Stream %s from %s to %s as %s",
+									this.config.getStreamName(), currentShardCount, newTarget,
+									String.join("; ", decision.getReasons())));
 
 							report = this.scaler.updateShardCount(this.config.getStreamName(), currentShardCount,
 									newTarget, minShards, maxShards, false);
@@ -364,8 +449,10 @@ public class StreamMonitor implements Runnable {
 				// up or down - everything fine
 				LOG.info("No Scaling required - Stream capacity within specified tolerances");
 				return this.scaler.reportFor(ScalingCompletionStatus.NoActionRequired, this.config.getStreamName(), 0,
-						finalScaleDirection);
+						decision.getDirection());
 			}
+		} catch (StreamStatusTimeoutException e) {
+			onStatusTimeout(e);
 		} catch (Exception e) {
 			LOG.error("Failed to process stream " + this.config.getStreamName(), e);
 		}
@@ -373,73 +460,216 @@ public class StreamMonitor implements Runnable {
 		return report;
 	}
 
-	@Override
-	public void run() {
+	/*
+	 * the scaling policy is created on first use, so that it reflects changes
+	 * made to the configuration after the monitor is created
+	 */
+	private ScalingPolicy getScalingPolicy() {
+		if (this.scalingPolicy == null) {
+			this.scalingPolicy = this.config.getScalingPolicy().create(this.config);
+		}
+		return this.scalingPolicy;
+	}
+
+	/**
+	 * Load the capacity of the Stream and any forecast history before the first
+	 * check
+	 */
+	private void startMonitoring() throws Exception {
 		LOG.info(String.format("Started Stream Monitor for %s", config.getStreamName()));
-		DateTime lastShardCapacityRefreshTime = new DateTime(System.currentTimeMillis());
+		this.lastShardCapacityRefreshTime = new DateTime(System.currentTimeMillis());
 
 		// create a StreamMetricManager object
 		StreamMetricManager metricManager = new StreamMetricManager(this.config.getStreamName(),
 				this.config.getScaleOnOperations(), this.cloudWatchClient, this.kinesisClient);
+		if (this.metricDataBatcher != null) {
+			metricManager.setMetricDataBatcher(this.metricDataBatcher);
+		}
+
+		if (this.config.getScaleHotShards()) {
+			metricManager.setShardLevelMetrics(true);
+		}
 
 		LOG.info(String.format("Using Stream Scaler Version %s", StreamScaler.version));
 
-		try {
-			// load the current configured max capacity
-			metricManager.loadMaxCapacity();
+		// load the current configured max capacity
+		metricManager.loadMaxCapacity();
+		this.metricManager = metricManager;
 
-			// configure the duration to request from cloudwatch
-			int cwSampleDuration = Math.max(config.getScaleUp().getScaleAfterMins(),
-					config.getScaleDown().getScaleAfterMins());
+		if (this.forecaster != null) {
+			loadForecastHistory(new DateTime(System.currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * Run a single check cycle: query the current metrics of the Stream and make
+	 * any scaling action they call for. Exceptions from the scaling action are
+	 * logged and the check completes, while exceptions querying the metrics are
+	 * thrown
+	 */
+	private void check() throws Exception {
+		DateTime now = new DateTime(System.currentTimeMillis());
+
+		// configure the duration to request from cloudwatch
+		int cwSampleDuration = Math.max(config.getScaleUp().getScaleAfterMins(),
+				config.getScaleDown().getScaleAfterMins());
+
+		// fetch only the last N minutes metrics
+		DateTime metricStartTime = now.minusMinutes(cwSampleDuration);
+
+		// load the current cloudwatch metrics for the stream via the
+		// metrics manager
+		Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> currentUtilisationMetrics = metricManager
+				.queryCurrentUtilisationMetrics(cwSampleDuration, metricStartTime, now);
+
+		if (this.forecaster != null) {
+			this.forecaster.add(currentUtilisationMetrics);
+		}
+
+		// process the aggregated set of Cloudwatch Datapoints
+		try {
+			if (isAwaitingActive(now)) {
+				return;
+			}
 
 			ScalingOperationReport report = null;
 
-			do {
-				DateTime now = new DateTime(System.currentTimeMillis());
+			// scale up ahead of forecast peaks
+			if (this.forecaster != null) {
+				report = processForecast(now);
+			}
 
-				// fetch only the last N minutes metrics
-				DateTime metricStartTime = now.minusMinutes(cwSampleDuration);
+			// split individual hot shards in preference to resizing the
+			// whole Stream
+			if (report == null && this.statusTimeout == null && this.config.getScaleHotShards()) {
+				report = processShardUtilisation(metricManager.getShardUtilisation(), now);
+			}
 
-				// load the current cloudwatch metrics for the stream via the
-				// metrics manager
-				@SuppressWarnings("rawtypes")
-				Map currentUtilisationMetrics = metricManager.queryCurrentUtilisationMetrics(cwSampleDuration,
-						metricStartTime, now);
+			if (report == null && this.statusTimeout == null) {
+				report = processCloudwatchMetrics(currentUtilisationMetrics, metricManager.getConsumerUtilisation(),
+						metricManager.getStreamMaxCapacity(), cwSampleDuration, now);
+			}
 
-				// process the aggregated set of Cloudwatch Datapoints
-				try {
-					report = processCloudwatchMetrics(currentUtilisationMetrics, metricManager.getStreamMaxCapacity(),
-							cwSampleDuration, now);
-
-					if (report != null) {
-						// refresh the current max capacity after the
-						// modification
-						metricManager.loadMaxCapacity();
-						lastShardCapacityRefreshTime = now;
-
-						// notify all report listeners that we've completed a
-						// scaling operation
-						if (this.config.getScalingOperationReportListener() != null) {
-							this.config.getScalingOperationReportListener().onReport(report);
-						}
+			if (report != null) {
+				// refresh the current max capacity after the
+				// modification
+				metricManager.loadMaxCapacity();
+				lastShardCapacityRefreshTime = now;
 
-						if (report.getScaleDirection() != ScaleDirection.NONE) {
-							LOG.info(report.toString());
-						}
-						report = null;
-					}
-				} catch (Exception e) {
-					// keep running even though the scaling action had an exception
-					LOG.error(e.getMessage());
+				// notify all report listeners that we've completed a
+				// scaling operation
+				if (this.config.getScalingOperationReportListener() != null) {
+					this.config.getScalingOperationReportListener().onReport(report);
 				}
 
-				// refresh shard stats every configured period, in case someone
-				// has manually updated the number of shards manually
-				if (now.minusMinutes(this.config.getRefreshShardsNumberAfterMin())
-						.isAfter(lastShardCapacityRefreshTime)) {
-					metricManager.loadMaxCapacity();
-					lastShardCapacityRefreshTime = now;
+				if (report.getScaleDirection() != ScaleDirection.NONE) {
+					LOG.info(report.toString());
 				}
+			}
+		} catch (Exception e) {
+			// keep running even though the scaling action had an exception
+			LOG.error(e.getMessage());
+		}
+
+		// refresh shard stats every configured period, in case someone
+		// has manually updated the number of shards manually
+		if (now.minusMinutes(this.config.getRefreshShardsNumberAfterMin()).isAfter(lastShardCapacityRefreshTime)) {
+			metricManager.loadMaxCapacity();
+			lastShardCapacityRefreshTime = now;
+		}
+	}
+
+	/*
+	 * a scaling action which times out leaves the Stream mid-modification, so no
+	 * more are made until the Stream is seen ACTIVE again
+	 */
+	private void onStatusTimeout(StreamStatusTimeoutException e) {
+		LOG.error(String.format("Stream %s: Scaling action timed out after %s ms with the Stream %s",
+				this.config.getStreamName(), e.getWaitedMillis(), e.getLastStatus()));
+		this.statusTimeout = e;
+	}
+
+	/*
+	 * check whether a Stream whose scaling action timed out is ACTIVE again,
+	 * refreshing its capacity if so as the modification may have completed
+	 */
+	private boolean isAwaitingActive(DateTime now) throws Exception {
+		if (this.statusTimeout == null) {
+			return false;
+		}
+
+		// a routine check, which should not hold up the waits of Streams being
+		// modified
+		String status = this.scaler.getStreamStatus(this.config.getStreamName(), Priority.LOW);
+		if (!status.equals("ACTIVE")) {
+			LOG.warn(String.format("Stream %s: Deferring Scaling until the Stream is ACTIVE (currently %s)",
+					this.config.getStreamName(), status));
+			return true;
+		}
+
+		LOG.info(String.format("Stream %s: ACTIVE again after a timed out Scaling action. Resuming Scaling",
+				this.config.getStreamName()));
+		this.statusTimeout = null;
+		metricManager.loadMaxCapacity();
+		lastShardCapacityRefreshTime = now;
+		return false;
+	}
+
+	/**
+	 * Run the checks of this Monitor on a scheduler shared with other Monitors,
+	 * rather than in a Thread of its own. The first check is made after the
+	 * initial delay, and each following check the configured check interval after
+	 * the previous one completes. If a check fails, the exception is kept and no
+	 * more checks are scheduled, so the returned Future is done.
+	 * 
+	 * Resizes are still made through the blocking StreamScaler, so a check which
+	 * resizes the Stream holds a scheduler Thread until the Stream is Active
+	 * again
+	 * 
+	 * @param scheduler
+	 * @param initialDelayMillis
+	 * @return
+	 */
+	public synchronized ScheduledFuture<?> schedule(ScheduledExecutorService scheduler, long initialDelayMillis) {
+		this.scheduledCheck = scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				runScheduledCheck();
+			}
+		}, initialDelayMillis, this.config.getCheckInterval() * 1000L, TimeUnit.MILLISECONDS);
+
+		return this.scheduledCheck;
+	}
+
+	private void runScheduledCheck() {
+		if (!this.keepRunning) {
+			return;
+		}
+
+		try {
+			if (this.metricManager == null) {
+				startMonitoring();
+			}
+			check();
+			LOG.info(String.format("Next Check Cycle for Stream %s in %s seconds", this.config.getStreamName(),
+					this.config.getCheckInterval()));
+		} catch (Exception e) {
+			LOG.error(String.format("Stream Monitor for %s in %s Failed", this.config.getStreamName(),
+					this.config.getRegion()), e);
+			this.exception = e;
+			synchronized (this) {
+				this.scheduledCheck.cancel(false);
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			startMonitoring();
+
+			do {
+				check();
 
 				try {
 					LOG.info(String.format("Next Check Cycle in %s seconds", this.config.getCheckInterval()));
@@ -473,4 +703,8 @@ public class StreamMonitor implements Runnable {
 	AutoscalingConfiguration getConfig() {
 		return this.config;
 	}
+
+	UtilisationForecaster getForecaster() {
+		return this.forecaster;
+	}
 }
@@ -0,0 +1,158 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.kinesis.scaling.ScaleDirection;
+import com.amazonaws.services.kinesis.scaling.StreamScalingUtils;
+
+/**
+ * Scaling Policy which resizes the Stream in one step to the number of Shards
+ * at which the peak rate of the sample would have been at the target
+ * utilisation. Every volume metric of every operation type, and each enhanced
+ * fan-out consumer, needs its own number of Shards, and the highest is used.
+ * Sustained throttling or iterator age increase the target by the configured
+ * scale up, and any throttling or an iterator age above its floor prevent the
+ * Stream getting smaller. A metric without enough samples holds the Stream at
+ * its current size, and the Stream shrinks by at most the configured scale
+ * down step at a time
+ */
+public class TargetTrackingScalingPolicy extends AbstractScalingPolicy {
+
+	public TargetTrackingScalingPolicy(AutoscalingConfiguration config) {
+		super(config);
+	}
+
+	/*
+	 * the number of Shards at which the peak of the series would be at the
+	 * target utilisation. A series with too few samples to move the Stream in
+	 * a direction holds the current number of Shards: growing needs the scale up
+	 * scaleAfterMins of samples, and shrinking needs the full scale down
+	 * scaleAfterMins of samples, so a gap in the metrics doesn't look like a
+	 * quiet Stream
+	 */
+	private int getRequiredShards(String name, KinesisOperationType op, StreamMetric metric,
+			UtilisationSeries series, int currentShardCount) {
+		double peak = 0d;
+		int samples = 0;
+		for (int i = 0; i < (series == null ? 0 : series.getPeriodCount()); i++) {
+			if (series.isPresent(i)) {
+				peak = Math.max(peak, series.get(i));
+				samples++;
+			}
+		}
+
+		int requiredShards = StreamScalingUtils.getNewShardCount(currentShardCount, peak,
+				op.getMaxCapacity().get(metric), this.config.getTargetUtilisationPct(), null, null);
+
+		if ((requiredShards > currentShardCount && samples < this.config.getScaleUp().getScaleAfterMins())
+				|| (requiredShards < currentShardCount
+						&& samples < this.config.getScaleDown().getScaleAfterMins())) {
+			LOG.info(String.format("%s %s has %s samples, which is too few to resize from %s to %s Shards", name,
+					metric, samples, currentShardCount, requiredShards));
+			return currentShardCount;
+		}
+
+		LOG.info(String.format("%s %s peak of %.2f per second needs %s Shards at %s%%", name, metric, peak,
+				requiredShards, this.config.getTargetUtilisationPct()));
+		return requiredShards;
+	}
+
+	@Override
+	public ScalingDecision decide(UtilisationSnapshot snapshot, int currentShardCount) {
+		List<String> reasons = new ArrayList<>();
+		// without any metrics the Stream stays at its current size
+		int targetShardCount = snapshot.getUtilisation().isEmpty() ? currentShardCount : 1;
+		String targetReason = null;
+
+		for (Map.Entry<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> entry : snapshot.getUtilisation()
+				.entrySet()) {
+			KinesisOperationType op = entry.getKey();
+
+			for (StreamMetric metric : StreamMetric.values()) {
+				if (!metric.isVolume()) {
+					continue;
+				}
+
+				int requiredShards = getRequiredShards(op.name(), op, metric, entry.getValue().get(metric),
+						currentShardCount);
+				if (requiredShards > targetShardCount) {
+					targetShardCount = requiredShards;
+					targetReason = String.format("%s %s needs %s Shards at %s%%", op, metric, requiredShards,
+							this.config.getTargetUtilisationPct());
+				}
+			}
+
+			// each enhanced fan-out consumer has the whole GET capacity
+			if (op == KinesisOperationType.GET) {
+				for (Map.Entry<String, Map<StreamMetric, UtilisationSeries>> consumer : snapshot
+						.getConsumerUtilisation().entrySet()) {
+					String name = String.format("GET[%s]", consumer.getKey());
+					int requiredShards = getRequiredShards(name, op, StreamMetric.Bytes,
+							consumer.getValue().get(StreamMetric.Bytes), currentShardCount);
+					if (requiredShards > targetShardCount) {
+						targetShardCount = requiredShards;
+						targetReason = String.format("%s Bytes needs %s Shards at %s%%", name, requiredShards,
+								this.config.getTargetUtilisationPct());
+					}
+				}
+			}
+
+			// throttled requests and consumers falling behind aren't in the volume
+			// metrics, so scale up by the configured step, and don't scale down
+			ScaleDirection vote = targetShardCount < currentShardCount ? ScaleDirection.DOWN : ScaleDirection.NONE;
+			vote = getThrottleVote(op, entry.getValue().get(StreamMetric.Throttles), vote, reasons);
+			if (op == KinesisOperationType.GET && this.config.getIteratorAge() != null) {
+				vote = getIteratorAgeVote(entry.getValue().get(StreamMetric.IteratorAge), vote, reasons);
+			}
+
+			if (vote == ScaleDirection.UP) {
+				targetShardCount = Math.max(targetShardCount,
+						StreamScalingUtils.getNewShardCount(currentShardCount, this.config.getScaleUp().getScaleCount(),
+								this.config.getScaleUp().getScalePct(), ScaleDirection.UP, null, null));
+			} else if (vote == ScaleDirection.NONE) {
+				targetShardCount = Math.max(targetShardCount, currentShardCount);
+			}
+		}
+
+		if (targetReason != null) {
+			reasons.add(targetReason);
+		}
+
+		// shrink by at most the configured scale down step, as the vote matrix
+		// does, so that a quiet spell is followed gradually
+		if (targetShardCount < currentShardCount) {
+			int stepShardCount = StreamScalingUtils.getNewShardCount(currentShardCount,
+					this.config.getScaleDown().getScaleCount(), this.config.getScaleDown().getScalePct(),
+					ScaleDirection.DOWN);
+			if (targetShardCount < stepShardCount) {
+				targetShardCount = stepShardCount;
+				reasons.add(String.format("Scale DOWN limited to %s",
+						this.config.getScaleDown().getScaleCount() != null
+								? this.config.getScaleDown().getScaleCount()
+								: this.config.getScaleDown().getScalePct() + "%"));
+			}
+		}
+
+		// keep within the configured bounds
+		if (this.config.getMinShards() != null && targetShardCount < this.config.getMinShards()) {
+			targetShardCount = this.config.getMinShards();
+		}
+		if (this.config.getMaxShards() != null && targetShardCount > this.config.getMaxShards()) {
+			targetShardCount = this.config.getMaxShards();
+		}
+
+		ScaleDirection direction = targetShardCount > currentShardCount ? ScaleDirection.UP
+				: targetShardCount < currentShardCount ? ScaleDirection.DOWN : ScaleDirection.NONE;
+
+		return new ScalingDecision(direction, targetShardCount, reasons);
+	}
+}
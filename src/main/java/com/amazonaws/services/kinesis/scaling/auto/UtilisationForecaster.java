@@ -0,0 +1,194 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Forecast of the utilisation of a Stream, from a longer history than the
+ * scaling sample. The peak per second rate of each minute is kept for each
+ * operation type and volume metric, at the forecast period, for the configured
+ * number of seasons. Once two seasons of history are held, a Holt-Winters model
+ * is fitted to it at the start of each period, and is used to forecast the
+ * peak rate over the lead time
+ */
+public class UtilisationForecaster {
+	private static final Logger LOG = LoggerFactory.getLogger(UtilisationForecaster.class);
+
+	private final ForecastConfig config;
+
+	private final long periodMillis;
+
+	private final int seasonLength;
+
+	private final int historyPeriods;
+
+	private final int leadPeriods;
+
+	private final double z;
+
+	private final Map<KinesisOperationType, Map<StreamMetric, History>> history = new HashMap<>();
+
+	/* the history of a single operation type and metric */
+	private class History {
+		private final MetricWindow window = new MetricWindow(historyPeriods + 1, config.getPeriodMins() * 60);
+
+		private long firstMillis = Long.MAX_VALUE;
+
+		private HoltWinters model;
+
+		private long modelEndMillis;
+	}
+
+	public UtilisationForecaster(ForecastConfig config) {
+		this.config = config;
+		this.periodMillis = config.getPeriodMins() * 60_000L;
+		this.seasonLength = config.getSeasonMins() / config.getPeriodMins();
+		this.historyPeriods = this.seasonLength * config.getHistorySeasons();
+		this.leadPeriods = (int) Math.ceil(config.getLeadTimeMins() / (double) config.getPeriodMins());
+		this.z = zScore(config.getConfidencePct());
+	}
+
+	/*
+	 * Shore's approximation of the standard normal quantile, which is within 0.01
+	 * of the true value for the confidences which are used for a bound
+	 */
+	static double zScore(double confidencePct) {
+		double p = confidencePct / 100D;
+		return 5.5556D * (1 - Math.pow((1 - p) / p, 0.1186D));
+	}
+
+	/**
+	 * @return the number of minutes of history which is kept
+	 */
+	public int getHistoryMins() {
+		return this.config.getSeasonMins() * this.config.getHistorySeasons();
+	}
+
+	/**
+	 * Add the per second rate of a minute of a volume metric to the history
+	 *
+	 * @param op
+	 * @param metric
+	 * @param timestamp
+	 * @param value
+	 */
+	public void add(KinesisOperationType op, StreamMetric metric, Instant timestamp, double value) {
+		if (!metric.isVolume()) {
+			return;
+		}
+		if (!this.history.containsKey(op)) {
+			this.history.put(op, new HashMap<StreamMetric, History>());
+		}
+		if (!this.history.get(op).containsKey(metric)) {
+			this.history.get(op).put(metric, new History());
+		}
+		History h = this.history.get(op).get(metric);
+
+		// keep the peak minute of each period. CloudWatch only revises values
+		// upwards, so the peak is also correct for revised minutes
+		Double current = h.window.get(timestamp);
+		h.window.put(timestamp, current == null ? value : Math.max(current, value));
+		h.firstMillis = Math.min(h.firstMillis, timestamp.toEpochMilli());
+	}
+
+	/**
+	 * Add the values of all volume metrics of a utilisation query to the history
+	 *
+	 * @param utilisation
+	 */
+	public void add(Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> utilisation) {
+		for (Map.Entry<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> op : utilisation.entrySet()) {
+			for (Map.Entry<StreamMetric, UtilisationSeries> metric : op.getValue().entrySet()) {
+				UtilisationSeries series = metric.getValue();
+				for (int i = 0; i < series.getPeriodCount(); i++) {
+					if (series.isPresent(i)) {
+						add(op.getKey(), metric.getKey(), series.getTimestamp(i), series.get(i));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forecast the peak rate of an operation type and metric from the start of
+	 * the current period until the end of the lead time. The current period is
+	 * still filling, so is forecast rather than included in the history
+	 *
+	 * @param op
+	 * @param metric
+	 * @param now
+	 * @return the forecast, or null if less than two seasons of history are held
+	 */
+	public Forecast getForecast(KinesisOperationType op, StreamMetric metric, Instant now) {
+		History h = this.history.containsKey(op) ? this.history.get(op).get(metric) : null;
+		if (h == null) {
+			return null;
+		}
+
+		long endMillis = Math.floorDiv(now.toEpochMilli(), this.periodMillis) * this.periodMillis;
+		long startMillis = Math.max(endMillis - this.historyPeriods * this.periodMillis,
+				Math.floorDiv(h.firstMillis, this.periodMillis) * this.periodMillis);
+		int periods = (int) ((endMillis - startMillis) / this.periodMillis);
+		if (periods < 2 * this.seasonLength) {
+			return null;
+		}
+
+		// refit once per period. Periods with no datapoints had no requests
+		if (h.model == null || h.modelEndMillis != endMillis) {
+			double[] values = new double[periods];
+			for (int i = 0; i < periods; i++) {
+				Double value = h.window.get(Instant.ofEpochMilli(startMillis + i * this.periodMillis));
+				values[i] = value == null ? 0d : value;
+			}
+			h.model = HoltWinters.fit(values, this.seasonLength);
+			h.modelEndMillis = endMillis;
+
+			LOG.debug(String.format("Fitted %s to %s periods of %s %s", h.model, periods, op, metric));
+		}
+
+		double peak = 0d;
+		double upperBound = 0d;
+		for (int step = 1; step <= this.leadPeriods + 1; step++) {
+			peak = Math.max(peak, h.model.forecast(step));
+			upperBound = Math.max(upperBound, h.model.upperBound(step, this.z));
+		}
+
+		return new Forecast(op, metric, Instant.ofEpochMilli(endMillis),
+				Instant.ofEpochMilli(endMillis + (this.leadPeriods + 1) * this.periodMillis), peak, upperBound);
+	}
+
+	/**
+	 * @param thresholdPct the utilisation of each Shard to provision for
+	 * @param now
+	 * @return the highest number of Shards needed by the forecast of any
+	 *         operation type and metric, or null if none can be forecast yet
+	 */
+	public Integer getRequiredShards(int thresholdPct, Instant now) {
+		Integer requiredShards = null;
+		for (Map.Entry<KinesisOperationType, Map<StreamMetric, History>> op : this.history.entrySet()) {
+			for (StreamMetric metric : op.getValue().keySet()) {
+				Forecast forecast = getForecast(op.getKey(), metric, now);
+				if (forecast != null) {
+					LOG.info(forecast.toString());
+
+					int shards = forecast.getRequiredShards(thresholdPct);
+					if (requiredShards == null || shards > requiredShards) {
+						requiredShards = shards;
+					}
+				}
+			}
+		}
+		return requiredShards;
+	}
+}
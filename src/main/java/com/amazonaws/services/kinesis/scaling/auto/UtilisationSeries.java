@@ -0,0 +1,128 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.time.Instant;
+
+/**
+ * Time series of the utilisation of a Stream for a single operation type and
+ * metric, with one value per CloudWatch period. Values added for the same
+ * period are summed, so that metrics such as PutRecord.Bytes and
+ * PutRecords.Bytes aggregate into one value per period. Periods for which no
+ * value was added are reported as not present
+ */
+public class UtilisationSeries {
+	private final long startMillis;
+
+	private final long periodMillis;
+
+	private final double[] values;
+
+	private final boolean[] present;
+
+	private int size = 0;
+
+	/**
+	 * Create an empty series of the periods between the start and end times. The
+	 * start time is rounded down to the start of its period
+	 *
+	 * @param startTime     inclusive
+	 * @param endTime       exclusive
+	 * @param periodSeconds
+	 */
+	public UtilisationSeries(Instant startTime, Instant endTime, int periodSeconds) {
+		this.periodMillis = periodSeconds * 1000L;
+		this.startMillis = Math.floorDiv(startTime.toEpochMilli(), this.periodMillis) * this.periodMillis;
+		int periods = (int) Math.max(0,
+				-Math.floorDiv(-(endTime.toEpochMilli() - this.startMillis), this.periodMillis));
+		this.values = new double[periods];
+		this.present = new boolean[periods];
+	}
+
+	/**
+	 * Add a value to the period containing the timestamp. Values outside of the
+	 * series are ignored
+	 *
+	 * @param timestamp
+	 * @param value
+	 */
+	public void add(Instant timestamp, double value) {
+		long period = Math.floorDiv(timestamp.toEpochMilli() - this.startMillis, this.periodMillis);
+		if (period < 0 || period >= this.values.length) {
+			return;
+		}
+
+		int i = (int) period;
+		if (!this.present[i]) {
+			this.present[i] = true;
+			this.size++;
+		}
+		this.values[i] += value;
+	}
+
+	/**
+	 * @return the number of periods covered by the series
+	 */
+	public int getPeriodCount() {
+		return this.values.length;
+	}
+
+	/**
+	 * @return the number of periods which have a value
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isPresent(int period) {
+		return this.present[period];
+	}
+
+	public double get(int period) {
+		return this.values[period];
+	}
+
+	/**
+	 * @return the value of the latest period which has a value, or null if no
+	 *         period has a value
+	 */
+	public Double getLatest() {
+		for (int i = this.values.length - 1; i >= 0; i--) {
+			if (this.present[i]) {
+				return this.values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the least squares slope of the values of the present periods, as
+	 *         the change in value per period, or null if fewer than two periods
+	 *         have a value
+	 */
+	public Double getSlope() {
+		if (this.size < 2) {
+			return null;
+		}
+
+		double sumX = 0d, sumY = 0d, sumXY = 0d, sumXX = 0d;
+		for (int i = 0; i < this.values.length; i++) {
+			if (this.present[i]) {
+				sumX += i;
+				sumY += this.values[i];
+				sumXY += i * this.values[i];
+				sumXX += (double) i * i;
+			}
+		}
+		return (this.size * sumXY - sumX * sumY) / (this.size * sumXX - sumX * sumX);
+	}
+
+	public Instant getTimestamp(int period) {
+		return Instant.ofEpochMilli(this.startMillis + period * this.periodMillis);
+	}
+}
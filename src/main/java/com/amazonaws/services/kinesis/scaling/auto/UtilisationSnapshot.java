@@ -0,0 +1,82 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+
+/**
+ * Read only view of the utilisation of a Stream over a sample, which is given
+ * to a Scaling Policy. The maps of the snapshot are copied and can't be
+ * modified, and the series must not be added to once the snapshot is taken
+ */
+public class UtilisationSnapshot {
+	private final Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> utilisation;
+
+	private final Map<String, Map<StreamMetric, UtilisationSeries>> consumerUtilisation;
+
+	private final Map<KinesisOperationType, StreamMetrics> streamMaxCapacity;
+
+	private final int sampleDuration;
+
+	private final DateTime timestamp;
+
+	public UtilisationSnapshot(Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> utilisation,
+			Map<String, Map<StreamMetric, UtilisationSeries>> consumerUtilisation,
+			Map<KinesisOperationType, StreamMetrics> streamMaxCapacity, int sampleDuration, DateTime timestamp) {
+		this.utilisation = copy(utilisation);
+		this.consumerUtilisation = copy(consumerUtilisation);
+		this.streamMaxCapacity = Collections.unmodifiableMap(new HashMap<>(streamMaxCapacity));
+		this.sampleDuration = sampleDuration;
+		this.timestamp = timestamp;
+	}
+
+	private static <K> Map<K, Map<StreamMetric, UtilisationSeries>> copy(
+			Map<K, Map<StreamMetric, UtilisationSeries>> metrics) {
+		Map<K, Map<StreamMetric, UtilisationSeries>> copy = new HashMap<>();
+		for (Map.Entry<K, Map<StreamMetric, UtilisationSeries>> entry : metrics.entrySet()) {
+			copy.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+		}
+		return Collections.unmodifiableMap(copy);
+	}
+
+	/**
+	 * @return the series of each metric of each operation type which is scaled on
+	 */
+	public Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> getUtilisation() {
+		return this.utilisation;
+	}
+
+	/**
+	 * @return the GET series of each enhanced fan-out consumer, by consumer name
+	 */
+	public Map<String, Map<StreamMetric, UtilisationSeries>> getConsumerUtilisation() {
+		return this.consumerUtilisation;
+	}
+
+	/**
+	 * @return the capacity of the Stream for each operation type
+	 */
+	public Map<KinesisOperationType, StreamMetrics> getStreamMaxCapacity() {
+		return this.streamMaxCapacity;
+	}
+
+	/**
+	 * @return the number of minutes in the sample
+	 */
+	public int getSampleDuration() {
+		return this.sampleDuration;
+	}
+
+	public DateTime getTimestamp() {
+		return this.timestamp;
+	}
+}
@@ -0,0 +1,261 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.javatuples.Triplet;
+
+import com.amazonaws.services.kinesis.scaling.ScaleDirection;
+import com.amazonaws.services.kinesis.scaling.StreamScalingUtils;
+
+/**
+ * The default Scaling Policy. Each operation type votes to scale up if the
+ * higher of its Bytes and Records utilisation has been above the scale up
+ * threshold for scaleAfterMins, or down if below the scale down threshold for
+ * scaleAfterMins. Throttling, iterator age and enhanced fan-out consumers can
+ * change the vote. The Stream is scaled up if either of PUT or GET votes up,
+ * and down only if both vote down, by the configured scaleCount or scalePct
+ */
+public class VoteMatrixScalingPolicy extends AbstractScalingPolicy {
+
+	public VoteMatrixScalingPolicy(AutoscalingConfiguration config) {
+		super(config);
+	}
+
+	/*
+	 * vote on the scaling action from the volume metrics of an operation, or of
+	 * a single consumer, compared with the capacity of the Stream
+	 */
+	private ScaleDirection getUtilisationVote(String name, Map<StreamMetric, UtilisationSeries> samples,
+			StreamMetrics streamMaxCapacity, int cwSampleDuration, List<String> reasons) {
+		Map<StreamMetric, Triplet<Integer, Integer, Double>> perMetricSamples = new HashMap<>();
+		StreamMetric higherUtilisationMetric;
+		Double higherUtilisationPct;
+
+		// process each metric type, including Records and Bytes
+		for (StreamMetric metric : StreamMetric.values()) {
+			// throttles and iterator age aren't a share of the Stream
+			// capacity, and are processed separately
+			if (!metric.isVolume()) {
+				continue;
+			}
+
+			double streamMax = 0D;
+			double currentMax = 0D;
+			double currentPct = 0D;
+			double latestPct = 0d;
+			double latestMax = 0d;
+			double latestAvg = 0d;
+			int lowSamples = 0;
+			int highSamples = 0;
+
+			UtilisationSeries metrics = null;
+
+			if (!samples.containsKey(metric)) {
+				// we have no samples for this type of metric which is ok -
+				// they'll later be counted as low metrics
+			} else {
+				metrics = samples.get(metric);
+			}
+			int sampleCount = metrics == null ? 0 : metrics.size();
+
+			// if we got nothing back, then there are no operations of the
+			// given type happening, so this is a full 'low sample'
+			if (sampleCount == 0) {
+				lowSamples = this.config.getScaleDown().getScaleAfterMins();
+			}
+
+			// process the per period aggregates retrieved from CloudWatch
+			// in time order, and log scale up/down votes by period
+			for (int i = 0; i < (metrics == null ? 0 : metrics.getPeriodCount()); i++) {
+				if (!metrics.isPresent(i)) {
+					continue;
+				}
+				currentMax = metrics.get(i);
+				streamMax = streamMaxCapacity.get(metric);
+				currentPct = currentMax / streamMax;
+
+				LOG.info(String.format(
+						"Utilisation of %s %s %.2f%% at %s upon current value of %.2f and Stream max of %.2f",
+						name, metric, currentPct * 100, formatter.format(metrics.getTimestamp(i)),
+						currentMax, streamMax));
+
+				// keep track of the last measures
+				latestPct = currentPct;
+				latestMax = currentMax;
+
+				// latest average is a simple moving average
+				latestAvg = latestAvg == 0d ? currentPct : (latestAvg + currentPct) / 2;
+
+				// if the pct for the datapoint exceeds the configured threshold, then count a
+				// high sample, otherwise it's a low sample
+				if (currentPct > this.config.getScaleUp().getScaleThresholdPct() / 100D) {
+					highSamples++;
+				} else if (currentPct < this.config.getScaleDown().getScaleThresholdPct() / 100D) {
+					lowSamples++;
+				}
+			}
+
+			// add low samples for the periods which we didn't get any
+			// data points, if there are any
+			if (sampleCount < cwSampleDuration) {
+				lowSamples += cwSampleDuration - sampleCount;
+			}
+
+			LOG.info(String.format("%s %s performance analysis: %s high samples, and %s low samples",
+					name, metric, highSamples, lowSamples));
+
+			// merge the per-stream metric samples together for the
+			// operation
+			if (!perMetricSamples.containsKey(metric)) {
+				// create a new sample entry
+				perMetricSamples.put(metric, new Triplet<>(highSamples, lowSamples, latestAvg));
+			} else {
+				// merge the samples
+				Triplet<Integer, Integer, Double> previousHighLow = perMetricSamples.get(metric);
+				Triplet<Integer, Integer, Double> newHighLow = new Triplet<>(
+						previousHighLow.getValue0() + highSamples, previousHighLow.getValue1() + lowSamples,
+						(previousHighLow.getValue2() + latestAvg) / 2);
+				perMetricSamples.put(metric, newHighLow);
+			}
+		}
+
+		/*-
+		 * we now have per metric samples for this operation type
+		 * 
+		 * For Example: 
+		 * 
+		 * Metric  | High Samples | Low Samples | Pct Used
+		 * Bytes   | 3            | 0           | .98
+		 * Records | 0            | 10          | .2
+		 * 
+		 * Check these values against the provided configuration. If we have
+		 * been above the 'scaleAfterMins' with high samples for either
+		 * metric, then we scale up. If not, then if we've been below the
+		 * scaleAfterMins with low samples, then we scale down. Otherwise
+		 * the vote stays as NONE
+		 */
+
+		// first find out which of the dimensions of stream utilisation are
+		// higher - we'll use the higher of the two for time checks
+		if (perMetricSamples.get(StreamMetric.Bytes).getValue2() >= perMetricSamples.get(StreamMetric.Records)
+				.getValue2()) {
+			higherUtilisationMetric = StreamMetric.Bytes;
+			higherUtilisationPct = perMetricSamples.get(StreamMetric.Bytes).getValue2();
+		} else {
+			higherUtilisationMetric = StreamMetric.Records;
+			higherUtilisationPct = perMetricSamples.get(StreamMetric.Records).getValue2();
+		}
+
+		LOG.info(String.format(
+				"Will decide scaling action based on metric %s[%s] due to highest utilisation metric value %.2f%%",
+				name, higherUtilisationMetric, higherUtilisationPct * 100));
+
+		if (perMetricSamples.get(higherUtilisationMetric).getValue0() >= config.getScaleUp().getScaleAfterMins()) {
+			addReason(reasons, String.format("%s %s has been above %s%% for %s Minutes", name,
+					higherUtilisationMetric, config.getScaleUp().getScaleThresholdPct(),
+					perMetricSamples.get(higherUtilisationMetric).getValue0()));
+			return ScaleDirection.UP;
+		} else if (perMetricSamples.get(higherUtilisationMetric).getValue1() >= config.getScaleDown()
+				.getScaleAfterMins()) {
+			addReason(reasons, String.format("%s %s has been below %s%% for %s Minutes", name,
+					higherUtilisationMetric, config.getScaleDown().getScaleThresholdPct(),
+					perMetricSamples.get(higherUtilisationMetric).getValue1()));
+			return ScaleDirection.DOWN;
+		} else {
+			return ScaleDirection.NONE;
+		}
+	}
+
+	@Override
+	public ScalingDecision decide(UtilisationSnapshot snapshot, int currentShardCount) {
+		List<String> reasons = new ArrayList<>();
+		ScaleDirection finalScaleDirection = null;
+
+		// for each type of operation that the customer has requested profiling
+		// (PUT, GET)
+		Map<KinesisOperationType, ScaleDirection> scaleVotes = new HashMap<>();
+
+		for (Map.Entry<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> entry : snapshot.getUtilisation()
+				.entrySet()) {
+			StreamMetrics streamMaxCapacity = snapshot.getStreamMaxCapacity().get(entry.getKey());
+
+			// set the scaling vote from the volume of the operation
+			ScaleDirection vote = getUtilisationVote(entry.getKey().name(), entry.getValue(), streamMaxCapacity,
+					snapshot.getSampleDuration(), reasons);
+
+			// each enhanced fan-out consumer has its own read throughput, so any
+			// one of them can need more Shards. Only scale down if all are low
+			if (entry.getKey() == KinesisOperationType.GET) {
+				for (Map.Entry<String, Map<StreamMetric, UtilisationSeries>> consumer : snapshot
+						.getConsumerUtilisation().entrySet()) {
+					ScaleDirection consumerVote = getUtilisationVote(String.format("GET[%s]", consumer.getKey()),
+							consumer.getValue(), streamMaxCapacity, snapshot.getSampleDuration(), reasons);
+
+					if (consumerVote == ScaleDirection.UP) {
+						vote = ScaleDirection.UP;
+					} else if (consumerVote != ScaleDirection.DOWN && vote == ScaleDirection.DOWN) {
+						vote = ScaleDirection.NONE;
+					}
+				}
+			}
+
+			vote = getThrottleVote(entry.getKey(), entry.getValue().get(StreamMetric.Throttles), vote, reasons);
+
+			// consumers falling behind show as a growing iterator age, which
+			// the GET volume metrics don't reflect
+			if (entry.getKey() == KinesisOperationType.GET && this.config.getIteratorAge() != null) {
+				vote = getIteratorAgeVote(entry.getValue().get(StreamMetric.IteratorAge), vote, reasons);
+			}
+
+			scaleVotes.put(entry.getKey(), vote);
+		}
+
+		// process the scaling votes
+		ScaleDirection getVote = scaleVotes.get(KinesisOperationType.GET);
+		ScaleDirection putVote = scaleVotes.get(KinesisOperationType.PUT);
+
+		LOG.info(String.format("Scaling Votes - GET: %s, PUT: %s", getVote, putVote));
+
+		// check if we have both get and put votes - if we have both then
+		// implement the decision matrix
+		if (getVote != null && putVote != null) {
+			// If either of the votes are to scale up, then do so.
+			// If both votes are DOWN, then scale down.
+			// Otherwise do nothing.
+			if (getVote == ScaleDirection.UP || putVote == ScaleDirection.UP) {
+				finalScaleDirection = ScaleDirection.UP;
+			} else if (getVote == ScaleDirection.DOWN && putVote == ScaleDirection.DOWN) {
+				finalScaleDirection = ScaleDirection.DOWN;
+			} else {
+				finalScaleDirection = ScaleDirection.NONE;
+			}
+		} else {
+			// we only have get or put votes, so use the non-null one
+			finalScaleDirection = (getVote == null ? putVote : getVote);
+		}
+
+		// scale by the configured count or percentage of the direction
+		int newTarget = currentShardCount;
+		if (finalScaleDirection == ScaleDirection.UP || finalScaleDirection == ScaleDirection.DOWN) {
+			ScalingConfig scaling = finalScaleDirection == ScaleDirection.UP ? this.config.getScaleUp()
+					: this.config.getScaleDown();
+			newTarget = StreamScalingUtils.getNewShardCount(currentShardCount, scaling.getScaleCount(),
+					scaling.getScalePct(), finalScaleDirection, this.config.getMinShards(),
+					this.config.getMaxShards());
+			reasons.add(String.format("Scale %s by %s", finalScaleDirection,
+					scaling.getScaleCount() != null ? scaling.getScaleCount() : scaling.getScalePct() + "%"));
+		}
+
+		return new ScalingDecision(finalScaleDirection, newTarget, reasons);
+	}
+}
@@ -0,0 +1,629 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import software.amazon.awssdk.services.kinesis.KinesisClient;
+import software.amazon.awssdk.services.kinesis.model.Consumer;
+import software.amazon.awssdk.services.kinesis.model.ConsumerStatus;
+import software.amazon.awssdk.services.kinesis.model.DescribeStreamSummaryRequest;
+import software.amazon.awssdk.services.kinesis.model.DescribeStreamSummaryResponse;
+import software.amazon.awssdk.services.kinesis.model.HashKeyRange;
+import software.amazon.awssdk.services.kinesis.model.InvalidArgumentException;
+import software.amazon.awssdk.services.kinesis.model.LimitExceededException;
+import software.amazon.awssdk.services.kinesis.model.ListShardsRequest;
+import software.amazon.awssdk.services.kinesis.model.ListShardsResponse;
+import software.amazon.awssdk.services.kinesis.model.ListStreamConsumersRequest;
+import software.amazon.awssdk.services.kinesis.model.ListStreamConsumersResponse;
+import software.amazon.awssdk.services.kinesis.model.MergeShardsRequest;
+import software.amazon.awssdk.services.kinesis.model.MergeShardsResponse;
+import software.amazon.awssdk.services.kinesis.model.ResourceInUseException;
+import software.amazon.awssdk.services.kinesis.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.kinesis.model.SequenceNumberRange;
+import software.amazon.awssdk.services.kinesis.model.Shard;
+import software.amazon.awssdk.services.kinesis.model.ShardFilterType;
+import software.amazon.awssdk.services.kinesis.model.SplitShardRequest;
+import software.amazon.awssdk.services.kinesis.model.SplitShardResponse;
+import software.amazon.awssdk.services.kinesis.model.StreamDescriptionSummary;
+import software.amazon.awssdk.services.kinesis.model.StreamStatus;
+import software.amazon.awssdk.services.kinesis.model.UpdateShardCountRequest;
+import software.amazon.awssdk.services.kinesis.model.UpdateShardCountResponse;
+
+/**
+ * In-memory model of the Kinesis control plane, for exercising the scaling
+ * engine without AWS. Models:
+ * <ul>
+ * <li>Shard lineage, with closed Shards retained in ListShards output</li>
+ * <li>SplitShard and MergeShards, with validation of the Shards and hash keys
+ * supplied</li>
+ * <li>UpdateShardCount with uniform scaling, limited to between half and double
+ * the open Shard count, and to a quota of calls per rolling 24 hours</li>
+ * <li>Streams moving to UPDATING on each modification, and back to ACTIVE after
+ * a configurable latency. Modifications while UPDATING raise
+ * ResourceInUseException</li>
+ * <li>ListShards paging, exclusive start Shard ID and the AT_LATEST Shard
+ * filter</li>
+ * <li>Per-operation transaction rate limits and injected throttling, raising
+ * LimitExceededException</li>
+ * <li>Enhanced fan-out consumers registered with a Stream, listed by Stream
+ * ARN</li>
+ * </ul>
+ * The simulated clock can be advanced to move through UPDATING and quota
+ * periods without waiting.
+ */
+public class SimulatedKinesisClient implements KinesisClient {
+	public static final BigInteger MAX_HASH = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+
+	public static final String LIST_SHARDS = "ListShards";
+
+	public static final String DESCRIBE_STREAM_SUMMARY = "DescribeStreamSummary";
+
+	public static final String SPLIT_SHARD = "SplitShard";
+
+	public static final String MERGE_SHARDS = "MergeShards";
+
+	public static final String UPDATE_SHARD_COUNT = "UpdateShardCount";
+
+	public static final String LIST_STREAM_CONSUMERS = "ListStreamConsumers";
+
+	private static final String ARN_PREFIX = "arn:aws:kinesis:us-east-1:123456789012:stream/";
+
+	private static final long ONE_SECOND_MS = 1000L;
+
+	private static final long ONE_DAY_MS = 24 * 60 * 60 * 1000L;
+
+	private static class SimulatedStream {
+		private final String name;
+
+		private final List<Shard> shards = new ArrayList<>();
+
+		private final Map<String, Integer> positions = new HashMap<>();
+
+		private final Deque<Long> updateShardCountCalls = new ArrayDeque<>();
+
+		private final List<Consumer> consumers = new ArrayList<>();
+
+		private int openShardCount = 0;
+
+		private long activeAt = 0L;
+
+		SimulatedStream(String name) {
+			this.name = name;
+		}
+	}
+
+	private final Map<String, SimulatedStream> streams = new HashMap<>();
+
+	private final Map<String, Integer> callCounts = new HashMap<>();
+
+	private final Map<String, Deque<Long>> recentCalls = new HashMap<>();
+
+	private final Map<String, Integer> transactionLimits = new HashMap<>();
+
+	private final Map<String, Integer> pendingThrottles = new HashMap<>();
+
+	private boolean supportsShardFilter = true;
+
+	private long listShardsLatencyMs = 0L;
+
+	private long updateLatencyMs = 0L;
+
+	private long clockOffsetMs = 0L;
+
+	private int updateShardCountQuota = 10;
+
+	private int shardLimit = 20000;
+
+	public SimulatedKinesisClient() {
+		// default control plane limits per Stream
+		transactionLimits.put(LIST_SHARDS, 1000);
+		transactionLimits.put(DESCRIBE_STREAM_SUMMARY, 20);
+		transactionLimits.put(SPLIT_SHARD, 5);
+		transactionLimits.put(MERGE_SHARDS, 5);
+		transactionLimits.put(LIST_STREAM_CONSUMERS, 5);
+	}
+
+	/**
+	 * Create a simulator with a single Stream of evenly distributed Shards
+	 *
+	 * @param streamName
+	 * @param openShards
+	 */
+	public SimulatedKinesisClient(String streamName, int openShards) {
+		this();
+		createStream(streamName, openShards);
+	}
+
+	public synchronized void createStream(String streamName, int openShards) {
+		SimulatedStream stream = new SimulatedStream(streamName);
+		for (Range r : uniformRanges(openShards)) {
+			add(stream, null, null, r.start, r.end);
+		}
+		streams.put(streamName, stream);
+	}
+
+	public synchronized int getCallCount(String operation) {
+		Integer count = callCounts.get(operation);
+		return count == null ? 0 : count;
+	}
+
+	public int getListShardsCalls() {
+		return getCallCount(LIST_SHARDS);
+	}
+
+	public synchronized int getTotalShardCount(String streamName) {
+		return getStream(streamName).shards.size();
+	}
+
+	public synchronized int getOpenShardCount(String streamName) {
+		return getStream(streamName).openShardCount;
+	}
+
+	/**
+	 * Get the open Shards of a Stream, ordered by start hash
+	 */
+	public synchronized List<Shard> getOpenShards(String streamName) {
+		return openShards(getStream(streamName));
+	}
+
+	public synchronized void setSupportsShardFilter(boolean supportsShardFilter) {
+		this.supportsShardFilter = supportsShardFilter;
+	}
+
+	public synchronized void setListShardsLatencyMs(long listShardsLatencyMs) {
+		this.listShardsLatencyMs = listShardsLatencyMs;
+	}
+
+	/**
+	 * Set how long a Stream stays UPDATING after each modification
+	 */
+	public synchronized void setUpdateLatencyMs(long updateLatencyMs) {
+		this.updateLatencyMs = updateLatencyMs;
+	}
+
+	public synchronized void setUpdateShardCountQuota(int updateShardCountQuota) {
+		this.updateShardCountQuota = updateShardCountQuota;
+	}
+
+	public synchronized void registerConsumer(String streamName, String consumerName) {
+		SimulatedStream stream = getStream(streamName);
+		stream.consumers.add(Consumer.builder().consumerName(consumerName)
+				.consumerARN(String.format("%s%s/consumer/%s", ARN_PREFIX, streamName, consumerName))
+				.consumerStatus(ConsumerStatus.ACTIVE).build());
+	}
+
+	public synchronized void setShardLimit(int shardLimit) {
+		this.shardLimit = shardLimit;
+	}
+
+	/**
+	 * Set the transactions per second allowed for an operation, or null for
+	 * unlimited
+	 */
+	public synchronized void setTransactionLimit(String operation, Integer transactionsPerSecond) {
+		if (transactionsPerSecond == null) {
+			transactionLimits.remove(operation);
+		} else {
+			transactionLimits.put(operation, transactionsPerSecond);
+		}
+	}
+
+	/**
+	 * Throttle the next calls to an operation with LimitExceededException
+	 */
+	public synchronized void throttleNext(String operation, int calls) {
+		pendingThrottles.put(operation, calls);
+	}
+
+	/**
+	 * Move the simulated clock forward
+	 */
+	public synchronized void advanceClock(long ms) {
+		clockOffsetMs += ms;
+	}
+
+	private long now() {
+		return System.currentTimeMillis() + clockOffsetMs;
+	}
+
+	/**
+	 * Build up closed Shard history by splitting every open Shard in half and
+	 * merging the halves back together, leaving the open layout unchanged
+	 *
+	 * @param streamName
+	 * @param cycles
+	 */
+	public synchronized void churn(String streamName, int cycles) {
+		SimulatedStream stream = getStream(streamName);
+		for (int c = 0; c < cycles; c++) {
+			for (Shard s : openShards(stream)) {
+				Shard[] children = doSplit(stream, s, start(s).add(end(s)).shiftRight(1).add(BigInteger.ONE));
+				doMerge(stream, children[0], children[1]);
+			}
+		}
+	}
+
+	@Override
+	public ListShardsResponse listShards(ListShardsRequest req) {
+		long latency;
+		synchronized (this) {
+			latency = listShardsLatencyMs;
+		}
+		if (latency > 0) {
+			try {
+				Thread.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		synchronized (this) {
+			// the next token encodes the stream, the filter and the position to
+			// continue from
+			SimulatedStream stream;
+			boolean openOnly;
+			int from;
+			if (req.nextToken() != null) {
+				if (req.streamName() != null || req.exclusiveStartShardId() != null || req.shardFilter() != null) {
+					throw invalidArgument("NextToken cannot be combined with other request parameters");
+				}
+				String[] token = req.nextToken().split("\\|");
+				stream = getStream(token[0]);
+				checkThrottle(LIST_SHARDS, stream);
+				openOnly = Boolean.parseBoolean(token[1]);
+				from = Integer.parseInt(token[2]);
+			} else {
+				stream = getStream(req.streamName());
+				checkThrottle(LIST_SHARDS, stream);
+				openOnly = req.shardFilter() != null && req.shardFilter().type() == ShardFilterType.AT_LATEST;
+				if (req.shardFilter() != null && !supportsShardFilter) {
+					throw invalidArgument("ShardFilter not supported");
+				}
+				from = 0;
+				if (req.exclusiveStartShardId() != null) {
+					while (from < stream.shards.size()
+							&& stream.shards.get(from).shardId().compareTo(req.exclusiveStartShardId()) <= 0) {
+						from++;
+					}
+				}
+			}
+
+			int limit = req.maxResults() == null ? 1000 : req.maxResults();
+			if (limit < 1 || limit > 10000) {
+				throw invalidArgument("MaxResults must be between 1 and 10000");
+			}
+
+			List<Shard> page = new ArrayList<>();
+			int i = from;
+			while (i < stream.shards.size() && page.size() < limit) {
+				if (!openOnly || isOpen(stream.shards.get(i))) {
+					page.add(stream.shards.get(i));
+				}
+				i++;
+			}
+
+			return ListShardsResponse.builder().shards(page)
+					.nextToken(i < stream.shards.size() ? String.format("%s|%s|%s", stream.name, openOnly, i) : null)
+					.build();
+		}
+	}
+
+	@Override
+	public synchronized SplitShardResponse splitShard(SplitShardRequest req) {
+		SimulatedStream stream = getStream(req.streamName());
+		checkThrottle(SPLIT_SHARD, stream);
+		checkActive(stream);
+
+		Shard parent = getOpenShard(stream, req.shardToSplit());
+		BigInteger newStart = new BigInteger(req.newStartingHashKey());
+		if (newStart.compareTo(start(parent)) <= 0 || newStart.compareTo(end(parent)) > 0) {
+			throw invalidArgument(String.format("NewStartingHashKey %s is outside of the hash key range of Shard %s",
+					newStart, parent.shardId()));
+		}
+		if (stream.openShardCount + 1 > shardLimit) {
+			throw LimitExceededException.builder().message("Shard limit exceeded").build();
+		}
+
+		doSplit(stream, parent, newStart);
+		setUpdating(stream);
+
+		return SplitShardResponse.builder().build();
+	}
+
+	@Override
+	public synchronized MergeShardsResponse mergeShards(MergeShardsRequest req) {
+		SimulatedStream stream = getStream(req.streamName());
+		checkThrottle(MERGE_SHARDS, stream);
+		checkActive(stream);
+
+		Shard lower = getOpenShard(stream, req.shardToMerge());
+		Shard higher = getOpenShard(stream, req.adjacentShardToMerge());
+		if (!end(lower).add(BigInteger.ONE).equals(start(higher))) {
+			throw invalidArgument(
+					String.format("Shards %s and %s are not adjacent", lower.shardId(), higher.shardId()));
+		}
+
+		doMerge(stream, lower, higher);
+		setUpdating(stream);
+
+		return MergeShardsResponse.builder().build();
+	}
+
+	@Override
+	public synchronized UpdateShardCountResponse updateShardCount(UpdateShardCountRequest req) {
+		SimulatedStream stream = getStream(req.streamName());
+		checkThrottle(UPDATE_SHARD_COUNT, stream);
+		checkActive(stream);
+
+		int current = stream.openShardCount;
+		int target = req.targetShardCount();
+		if (target < 1 || target > current * 2 || target * 2 < current) {
+			throw invalidArgument(String.format(
+					"TargetShardCount %s must be between half and double the current Shard count of %s", target,
+					current));
+		}
+		if (target > shardLimit) {
+			throw LimitExceededException.builder().message("Shard limit exceeded").build();
+		}
+
+		// rolling 24 hour quota of scaling operations
+		long now = now();
+		while (!stream.updateShardCountCalls.isEmpty()
+				&& stream.updateShardCountCalls.peekFirst() <= now - ONE_DAY_MS) {
+			stream.updateShardCountCalls.removeFirst();
+		}
+		if (stream.updateShardCountCalls.size() >= updateShardCountQuota) {
+			throw LimitExceededException.builder()
+					.message(String.format("UpdateShardCount limit of %s per 24 hours exceeded", updateShardCountQuota))
+					.build();
+		}
+		stream.updateShardCountCalls.addLast(now);
+
+		if (target != current) {
+			reshard(stream, target);
+		}
+		setUpdating(stream);
+
+		return UpdateShardCountResponse.builder().streamName(stream.name).currentShardCount(current)
+				.targetShardCount(target).build();
+	}
+
+	@Override
+	public synchronized DescribeStreamSummaryResponse describeStreamSummary(DescribeStreamSummaryRequest req) {
+		SimulatedStream stream = getStream(req.streamName());
+		checkThrottle(DESCRIBE_STREAM_SUMMARY, stream);
+
+		StreamStatus status = now() >= stream.activeAt ? StreamStatus.ACTIVE : StreamStatus.UPDATING;
+		return DescribeStreamSummaryResponse.builder()
+				.streamDescriptionSummary(StreamDescriptionSummary.builder().streamName(stream.name)
+						.streamARN(ARN_PREFIX + stream.name)
+						.streamStatus(status).openShardCount(stream.openShardCount).build())
+				.build();
+	}
+
+	@Override
+	public synchronized ListStreamConsumersResponse listStreamConsumers(ListStreamConsumersRequest req) {
+		String streamARN = req.streamARN();
+		SimulatedStream stream = getStream(
+				streamARN != null && streamARN.startsWith(ARN_PREFIX) ? streamARN.substring(ARN_PREFIX.length())
+						: null);
+		checkThrottle(LIST_STREAM_CONSUMERS, stream);
+
+		return ListStreamConsumersResponse.builder().consumers(stream.consumers).build();
+	}
+
+	@Override
+	public String serviceName() {
+		return SERVICE_NAME;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/*
+	 * uniform scaling, done as Kinesis does with a set of splits at each new
+	 * boundary followed by merges of the pieces within each new Shard, so that
+	 * lineage only ever has two parents
+	 */
+	private void reshard(SimulatedStream stream, int target) {
+		List<Range> ranges = uniformRanges(target);
+
+		List<List<Shard>> pieces = new ArrayList<>();
+		for (int i = 0; i < target; i++) {
+			pieces.add(new ArrayList<Shard>());
+		}
+
+		int range = 0;
+		for (Shard s : openShards(stream)) {
+			Shard remaining = s;
+			while (true) {
+				while (ranges.get(range).end.compareTo(start(remaining)) < 0) {
+					range++;
+				}
+				if (ranges.get(range).end.compareTo(end(remaining)) < 0) {
+					Shard[] children = doSplit(stream, remaining, ranges.get(range).end.add(BigInteger.ONE));
+					pieces.get(range).add(children[0]);
+					remaining = children[1];
+				} else {
+					pieces.get(range).add(remaining);
+					break;
+				}
+			}
+		}
+
+		for (List<Shard> p : pieces) {
+			Shard merged = p.get(0);
+			for (int i = 1; i < p.size(); i++) {
+				merged = doMerge(stream, merged, p.get(i));
+			}
+		}
+	}
+
+	private Shard[] doSplit(SimulatedStream stream, Shard parent, BigInteger newStart) {
+		close(stream, parent);
+		return new Shard[] { add(stream, parent.shardId(), null, start(parent), newStart.subtract(BigInteger.ONE)),
+				add(stream, parent.shardId(), null, newStart, end(parent)) };
+	}
+
+	private Shard doMerge(SimulatedStream stream, Shard lower, Shard higher) {
+		close(stream, lower);
+		close(stream, higher);
+		return add(stream, lower.shardId(), higher.shardId(), start(lower), end(higher));
+	}
+
+	private Shard add(SimulatedStream stream, String parent, String adjacentParent, BigInteger start,
+			BigInteger end) {
+		Shard s = Shard.builder().shardId(String.format("shardId-%012d", stream.shards.size()))
+				.parentShardId(parent).adjacentParentShardId(adjacentParent)
+				.hashKeyRange(HashKeyRange.builder().startingHashKey(start.toString())
+						.endingHashKey(end.toString()).build())
+				.sequenceNumberRange(SequenceNumberRange.builder().startingSequenceNumber("0").build()).build();
+		stream.positions.put(s.shardId(), stream.shards.size());
+		stream.shards.add(s);
+		stream.openShardCount++;
+		return s;
+	}
+
+	private void close(SimulatedStream stream, Shard s) {
+		int position = stream.positions.get(s.shardId());
+		stream.shards.set(position,
+				s.toBuilder()
+						.sequenceNumberRange(s.sequenceNumberRange().toBuilder().endingSequenceNumber("1").build())
+						.build());
+		stream.openShardCount--;
+	}
+
+	private void setUpdating(SimulatedStream stream) {
+		stream.activeAt = now() + updateLatencyMs;
+	}
+
+	private void checkActive(SimulatedStream stream) {
+		if (now() < stream.activeAt) {
+			throw ResourceInUseException.builder()
+					.message(String.format("Stream %s is currently being updated", stream.name)).build();
+		}
+	}
+
+	private void checkThrottle(String operation, SimulatedStream stream) {
+		Integer count = callCounts.get(operation);
+		callCounts.put(operation, count == null ? 1 : count + 1);
+
+		Integer pending = pendingThrottles.get(operation);
+		if (pending != null && pending > 0) {
+			pendingThrottles.put(operation, pending - 1);
+			throw LimitExceededException.builder().message(String.format("Rate exceeded for %s", operation))
+					.build();
+		}
+
+		Integer limit = transactionLimits.get(operation);
+		if (limit != null) {
+			String key = operation + "|" + stream.name;
+			Deque<Long> calls = recentCalls.get(key);
+			if (calls == null) {
+				calls = new ArrayDeque<>();
+				recentCalls.put(key, calls);
+			}
+
+			long now = now();
+			while (!calls.isEmpty() && calls.peekFirst() <= now - ONE_SECOND_MS) {
+				calls.removeFirst();
+			}
+			if (calls.size() >= limit) {
+				throw LimitExceededException.builder()
+						.message(String.format("Rate exceeded for %s on Stream %s", operation, stream.name)).build();
+			}
+			calls.addLast(now);
+		}
+	}
+
+	private SimulatedStream getStream(String streamName) {
+		SimulatedStream stream = streamName == null ? null : streams.get(streamName);
+		if (stream == null) {
+			throw ResourceNotFoundException.builder().message(String.format("Stream %s not found", streamName))
+					.build();
+		}
+		return stream;
+	}
+
+	private Shard getOpenShard(SimulatedStream stream, String shardId) {
+		Integer position = shardId == null ? null : stream.positions.get(shardId);
+		if (position == null) {
+			throw ResourceNotFoundException.builder().message(String.format("Shard %s not found", shardId)).build();
+		}
+
+		Shard s = stream.shards.get(position);
+		if (!isOpen(s)) {
+			throw invalidArgument(String.format("Shard %s is closed", shardId));
+		}
+		return s;
+	}
+
+	private static List<Shard> openShards(SimulatedStream stream) {
+		List<Shard> open = new ArrayList<>(stream.openShardCount);
+		for (Shard s : stream.shards) {
+			if (isOpen(s)) {
+				open.add(s);
+			}
+		}
+		Collections.sort(open, new Comparator<Shard>() {
+			public int compare(Shard o1, Shard o2) {
+				return start(o1).compareTo(start(o2));
+			}
+		});
+		return open;
+	}
+
+	private static boolean isOpen(Shard s) {
+		return s.sequenceNumberRange().endingSequenceNumber() == null;
+	}
+
+	private static BigInteger start(Shard s) {
+		return new BigInteger(s.hashKeyRange().startingHashKey());
+	}
+
+	private static BigInteger end(Shard s) {
+		return new BigInteger(s.hashKeyRange().endingHashKey());
+	}
+
+	private static InvalidArgumentException invalidArgument(String message) {
+		return InvalidArgumentException.builder().message(message).build();
+	}
+
+	private static class Range {
+		private final BigInteger start;
+
+		private final BigInteger end;
+
+		Range(BigInteger start, BigInteger end) {
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	private static List<Range> uniformRanges(int count) {
+		List<Range> ranges = new ArrayList<>(count);
+		BigInteger start = BigInteger.ZERO;
+		for (int i = 0; i < count; i++) {
+			BigInteger end = i == count - 1 ? MAX_HASH
+					: MAX_HASH.multiply(BigInteger.valueOf(i + 1)).divide(BigInteger.valueOf(count));
+			ranges.add(new Range(start, end));
+			start = end.add(BigInteger.ONE);
+		}
+		return ranges;
+	}
+}
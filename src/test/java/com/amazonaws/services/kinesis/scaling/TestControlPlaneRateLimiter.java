@@ -0,0 +1,147 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter.Priority;
+
+public class TestControlPlaneRateLimiter {
+	private static final String API = "TestApi";
+
+	private static Thread caller(final ControlPlaneRateLimiter limiter, final Priority priority,
+			final List<Priority> order) {
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					limiter.acquire(API, priority);
+					order.add(priority);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		t.start();
+		return t;
+	}
+
+	private static void awaitQueueDepth(ControlPlaneRateLimiter limiter, int depth) throws Exception {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (limiter.getQueueDepth(API) < depth && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(depth, limiter.getQueueDepth(API));
+	}
+
+	@Test
+	public void testRateIsEnforced() throws Exception {
+		ControlPlaneRateLimiter limiter = new ControlPlaneRateLimiter("test");
+		limiter.setTransactionLimit(API, 10);
+
+		// a second of calls is available at once, and the next five wait for
+		// tokens at 10 per second
+		long start = System.nanoTime();
+		for (int i = 0; i < 15; i++) {
+			limiter.acquire(API, Priority.LOW);
+		}
+		long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+		assertTrue(elapsedMillis >= 400);
+		assertTrue(elapsedMillis < 2_000);
+
+		// APIs without a limit are not delayed
+		start = System.nanoTime();
+		for (int i = 0; i < 1000; i++) {
+			limiter.acquire("Unlimited", Priority.LOW);
+		}
+		assertTrue((System.nanoTime() - start) / 1_000_000 < 100);
+	}
+
+	@Test
+	public void testHighPriorityCallsGoFirst() throws Exception {
+		ControlPlaneRateLimiter limiter = new ControlPlaneRateLimiter("test");
+		limiter.setTransactionLimit(API, 2);
+		limiter.acquire(API, Priority.LOW);
+		limiter.acquire(API, Priority.LOW);
+
+		// with the bucket empty, queue routine calls before a mutating call
+		List<Priority> order = Collections.synchronizedList(new ArrayList<Priority>());
+		List<Thread> threads = new ArrayList<>();
+		threads.add(caller(limiter, Priority.LOW, order));
+		threads.add(caller(limiter, Priority.LOW, order));
+		awaitQueueDepth(limiter, 2);
+		threads.add(caller(limiter, Priority.HIGH, order));
+		awaitQueueDepth(limiter, 3);
+
+		for (Thread t : threads) {
+			t.join(10_000);
+		}
+		assertEquals(3, order.size());
+		assertEquals(Priority.HIGH, order.get(0));
+		assertEquals(0, limiter.getQueueDepth(API));
+		assertEquals(3, limiter.getPeakQueueDepths().get(API).intValue());
+		assertEquals(0, limiter.getPeakQueueDepths().get(API).intValue());
+	}
+
+	@Test
+	public void testRemovingLimitReleasesWaitingCalls() throws Exception {
+		ControlPlaneRateLimiter limiter = new ControlPlaneRateLimiter("test");
+		limiter.setTransactionLimit(API, 1);
+		limiter.acquire(API, Priority.HIGH);
+
+		List<Priority> order = Collections.synchronizedList(new ArrayList<Priority>());
+		Thread t = caller(limiter, Priority.LOW, order);
+		awaitQueueDepth(limiter, 1);
+		limiter.setTransactionLimit(API, null);
+		t.join(500);
+		assertEquals(1, order.size());
+	}
+
+	@Test
+	public void testClientsShareAccountLimiter() throws Exception {
+		Object first = new Object();
+		Object second = new Object();
+		Object other = new Object();
+		ControlPlaneRateLimiter.register(first, ControlPlaneRateLimiter.DEFAULT_ACCOUNT, "test-region-1");
+		ControlPlaneRateLimiter.register(second, ControlPlaneRateLimiter.DEFAULT_ACCOUNT, "test-region-1");
+		ControlPlaneRateLimiter.register(other, ControlPlaneRateLimiter.DEFAULT_ACCOUNT, "test-region-2");
+
+		assertSame(ControlPlaneRateLimiter.forClient(first), ControlPlaneRateLimiter.forClient(second));
+		assertSame(ControlPlaneRateLimiter.get(ControlPlaneRateLimiter.DEFAULT_ACCOUNT, "test-region-1"),
+				ControlPlaneRateLimiter.forClient(first));
+		assertNotSame(ControlPlaneRateLimiter.forClient(first), ControlPlaneRateLimiter.forClient(other));
+
+		// unregistered clients are limited on their own
+		Object unregistered = new Object();
+		assertSame(ControlPlaneRateLimiter.forClient(unregistered), ControlPlaneRateLimiter.forClient(unregistered));
+		assertNotSame(ControlPlaneRateLimiter.forClient(first), ControlPlaneRateLimiter.forClient(unregistered));
+	}
+
+	@Test
+	public void testEachPageTakesAToken() throws Exception {
+		// 2,500 Shards are listed in 3 pages, and the Stream allows 2 ListShards
+		// calls a second
+		SimulatedKinesisClient client = new SimulatedKinesisClient("TestStream", 2_500);
+		client.setTransactionLimit(SimulatedKinesisClient.LIST_SHARDS, 2);
+		ControlPlaneRateLimiter.forClient(client).setTransactionLimit(ControlPlaneRateLimiter.LIST_SHARDS, 1);
+
+		// pages are spaced by the limiter, so none of them is throttled and
+		// retried
+		assertEquals(2_500, StreamScalingUtils.listOpenShards(client, "TestStream").size());
+		assertEquals(3, client.getCallCount(SimulatedKinesisClient.LIST_SHARDS));
+	}
+}
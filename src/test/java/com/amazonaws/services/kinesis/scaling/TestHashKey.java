@@ -0,0 +1,120 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Test;
+
+import software.amazon.awssdk.services.kinesis.model.HashKeyRange;
+import software.amazon.awssdk.services.kinesis.model.Shard;
+
+public class TestHashKey {
+	private static final BigInteger MAX_HASH = new BigInteger("340282366920938463463374607431768211455");
+
+	private BigInteger random(Random r) {
+		return new BigInteger(128, r);
+	}
+
+	@Test
+	public void testStringRoundTrip() {
+		assertEquals("0", HashKey.MIN.toString());
+		assertEquals(MAX_HASH.toString(), HashKey.MAX.toString());
+		assertEquals(HashKey.MAX, HashKey.fromString(MAX_HASH.toString()));
+
+		Random r = new Random(1);
+		for (int i = 0; i < 10_000; i++) {
+			BigInteger b = random(r);
+			assertEquals(b.toString(), HashKey.fromString(b.toString()).toString());
+		}
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testOverflowRejected() {
+		HashKey.fromString(MAX_HASH.add(BigInteger.ONE).toString());
+	}
+
+	@Test
+	public void testArithmeticMatchesBigInteger() {
+		Random r = new Random(2);
+		for (int i = 0; i < 10_000; i++) {
+			BigInteger a = random(r);
+			BigInteger b = random(r);
+			BigInteger low = a.min(b);
+			BigInteger high = a.max(b);
+			HashKey lowKey = HashKey.fromString(low.toString());
+			HashKey highKey = HashKey.fromString(high.toString());
+
+			assertEquals(high.subtract(low).toString(), HashKey.width(lowKey, highKey).toString());
+			assertEquals(a.compareTo(b), HashKey.fromString(a.toString()).compareTo(HashKey.fromString(b.toString())));
+
+			if (high.add(low).compareTo(MAX_HASH) <= 0) {
+				assertEquals(high.add(low).toString(), highKey.add(lowKey).toString());
+			}
+
+			// keyspace fraction should agree with the decimal division to well
+			// within the comparison scale
+			double expected = new BigDecimal(high.subtract(low))
+					.divide(new BigDecimal(MAX_HASH), StreamScalingUtils.PCT_COMPARISON_SCALE,
+							StreamScalingUtils.ROUNDING_MODE)
+					.doubleValue();
+			assertEquals(expected, HashKey.width(lowKey, highKey).fraction(), 1e-10);
+		}
+	}
+
+	@Test
+	public void testAdjacency() {
+		HashKey boundary = HashKey.fromString("18446744073709551615");
+		assertTrue(boundary.immediatelyPrecedes(HashKey.fromString("18446744073709551616")));
+		assertTrue(HashKey.MIN.immediatelyPrecedes(HashKey.ONE));
+		assertFalse(HashKey.ONE.immediatelyPrecedes(HashKey.ONE));
+		assertFalse(HashKey.MAX.immediatelyPrecedes(HashKey.MIN));
+	}
+
+	@Test
+	public void testAtFraction() {
+		assertEquals(HashKey.MIN, HashKey.atFraction(0d));
+		assertEquals(HashKey.MAX, HashKey.atFraction(1d));
+
+		Random r = new Random(3);
+		for (int i = 0; i < 10_000; i++) {
+			double pct = r.nextDouble();
+			BigInteger expected = new BigDecimal(MAX_HASH).multiply(BigDecimal.valueOf(pct)).toBigInteger();
+			BigInteger actual = new BigInteger(HashKey.atFraction(pct).toString());
+
+			// the offset can differ only in the bits beyond the precision of a double
+			assertTrue(expected.subtract(actual).abs().compareTo(BigInteger.ONE.shiftLeft(76)) < 0);
+		}
+	}
+
+	@Test
+	public void testSplitPoints() {
+		// pins the split points of the binary fraction offsets, which differ from
+		// the decimal product with the maximum Hash Key in the lowest bits
+		ShardHashInfo stream = new ShardHashInfo("TestStream",
+				Shard.builder().shardId("shardId-000000000000").hashKeyRange(HashKeyRange.builder()
+						.startingHashKey("0").endingHashKey(MAX_HASH.toString()).build()).build());
+		assertEquals(1d, stream.getPctWidth(), 0d);
+
+		assertEquals("170141183460469231731687303715884105728", stream.getHashAtPctOffset(0.5).toString());
+		assertEquals("85070591730234615865843651857942052864", stream.getHashAtPctOffset(0.25).toString());
+		assertEquals("113427455640312814857969558651062452224", stream.getHashAtPctOffset(1d / 3).toString());
+		assertEquals("226854911280625629715939117302124904448", stream.getHashAtPctOffset(2d / 3).toString());
+		assertEquals("68056473384187696470568107782069813248", stream.getHashAtPctOffset(0.2).toString());
+
+		// and the widths of the new Shards are unrounded binary fractions
+		assertEquals(0.5d, ShardHashInfo.getPctOfKeyspace(stream.getHashAtPctOffset(0.5)), 0d);
+		assertEquals(1d / 3, ShardHashInfo.getPctOfKeyspace(stream.getHashAtPctOffset(1d / 3)), 0d);
+	}
+}
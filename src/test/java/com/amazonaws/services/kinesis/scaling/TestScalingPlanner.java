@@ -0,0 +1,148 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import software.amazon.awssdk.services.kinesis.model.HashKeyRange;
+import software.amazon.awssdk.services.kinesis.model.Shard;
+
+public class TestScalingPlanner {
+	private static final BigInteger MAX_HASH = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+
+	private static final String STREAM = "TestStream";
+
+	/* create a set of open shards evenly distributed over the keyspace */
+	private static List<ShardHashInfo> uniformShards(int count) {
+		List<ShardHashInfo> shards = new ArrayList<>();
+		BigInteger start = BigInteger.ZERO;
+		for (int i = 0; i < count; i++) {
+			BigInteger end = i == count - 1 ? MAX_HASH
+					: MAX_HASH.multiply(BigInteger.valueOf(i + 1)).divide(BigInteger.valueOf(count));
+			Shard s = Shard.builder().shardId(String.format("shardId-%012d", i))
+					.hashKeyRange(HashKeyRange.builder().startingHashKey(start.toString())
+							.endingHashKey(end.toString()).build())
+					.build();
+			shards.add(new ShardHashInfo(STREAM, s));
+			start = end.add(BigInteger.ONE);
+		}
+		return shards;
+	}
+
+	private static void assertContiguous(List<PlannedShard> layout) {
+		assertEquals(HashKey.MIN, layout.get(0).getStartHash());
+		assertEquals(HashKey.MAX, layout.get(layout.size() - 1).getEndHash());
+		for (int i = 1; i < layout.size(); i++) {
+			assertTrue(layout.get(i - 1).getEndHash().immediatelyPrecedes(layout.get(i).getStartHash()));
+		}
+	}
+
+	@Test
+	public void testDoublingPlansOneSplitPerShard() throws Exception {
+		ScalingPlan plan = ScalingPlanner.plan(STREAM, uniformShards(4), 8, null, null);
+
+		assertEquals(4, plan.getOperationCount());
+		assertEquals(4, plan.getSplitCount());
+		assertEquals(8, plan.getFinalLayout().size());
+		assertEquals(ScaleDirection.UP, plan.getScaleDirection());
+		assertContiguous(plan.getFinalLayout());
+	}
+
+	@Test
+	public void testHalvingPlansOneMergePerPair() throws Exception {
+		ScalingPlan plan = ScalingPlanner.plan(STREAM, uniformShards(8), 4, null, null);
+
+		assertEquals(4, plan.getOperationCount());
+		assertEquals(4, plan.getMergeCount());
+		assertEquals(4, plan.getFinalLayout().size());
+		assertEquals(ScaleDirection.DOWN, plan.getScaleDirection());
+		assertContiguous(plan.getFinalLayout());
+	}
+
+	@Test
+	public void testUnevenResizeIsBalanced() throws Exception {
+		int[][] resizes = new int[][] { { 3, 5 }, { 5, 3 }, { 1, 7 }, { 10, 13 }, { 13, 10 }, { 7, 1 }, { 100, 37 } };
+		for (int[] resize : resizes) {
+			ScalingPlan plan = ScalingPlanner.plan(STREAM, uniformShards(resize[0]), resize[1], null, null);
+			List<PlannedShard> layout = plan.getFinalLayout();
+
+			assertEquals(String.format("%s -> %s", resize[0], resize[1]), resize[1], layout.size());
+			assertContiguous(layout);
+
+			// every shard other than the last is at the target width
+			for (int i = 0; i < layout.size() - 1; i++) {
+				assertEquals(0, StreamScalingUtils.softCompare(layout.get(i).getPctWidth(), 1d / resize[1]));
+			}
+		}
+	}
+
+	@Test
+	public void testOperationsChainPlannedShards() throws Exception {
+		ScalingPlan plan = ScalingPlanner.plan(STREAM, uniformShards(3), 5, null, null);
+
+		// every parent is either an existing shard, or a child of an earlier
+		// operation
+		List<PlannedShard> available = new ArrayList<>();
+		for (ShardOperation op : plan.getOperations()) {
+			for (PlannedShard parent : op.getParents()) {
+				assertTrue(parent.isExisting() || available.remove(parent));
+			}
+			available.addAll(op.getChildren());
+		}
+	}
+
+	@Test
+	public void testWavesAreIndependent() throws Exception {
+		// doubling splits every shard independently
+		assertEquals(1, ScalingPlanner.plan(STREAM, uniformShards(4), 8, null, null).getWaves().size());
+
+		ScalingPlan plan = ScalingPlanner.plan(STREAM, uniformShards(10), 13, null, null);
+		List<PlannedShard> created = new ArrayList<>();
+		int operations = 0;
+		for (List<ShardOperation> wave : plan.getWaves()) {
+			// no operation in a wave may use a shard created in the same wave,
+			// and the keyspace ranges of a wave never overlap
+			List<PlannedShard> createdInWave = new ArrayList<>();
+			HashKey previousEnd = null;
+			for (ShardOperation op : wave) {
+				for (PlannedShard parent : op.getParents()) {
+					assertTrue(parent.isExisting() || created.contains(parent));
+				}
+				assertTrue(previousEnd == null || previousEnd.compareTo(op.getStartHash()) < 0);
+				previousEnd = op.getEndHash();
+				createdInWave.addAll(op.getChildren());
+				operations++;
+			}
+			created.addAll(createdInWave);
+		}
+		assertEquals(plan.getOperationCount(), operations);
+	}
+
+	@Test
+	public void testNoOperationsAtTarget() throws Exception {
+		ScalingPlan plan = ScalingPlanner.plan(STREAM, uniformShards(6), 6, null, null);
+
+		assertEquals(0, plan.getOperationCount());
+		assertEquals(6, plan.getFinalLayout().size());
+	}
+
+	@Test
+	public void testAlreadyAtMaximum() throws Exception {
+		ScalingPlan plan = ScalingPlanner.plan(STREAM, uniformShards(4), 8, 1, 4);
+
+		assertEquals(0, plan.getOperationCount());
+		assertEquals(ScalingCompletionStatus.AlreadyAtMaximum, plan.getEndStatus());
+	}
+}
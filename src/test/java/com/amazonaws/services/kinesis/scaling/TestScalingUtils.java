@@ -0,0 +1,252 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import software.amazon.awssdk.services.kinesis.model.InvalidArgumentException;
+
+public class TestScalingUtils {
+	/*
+	 * reference implementation of softCompare using BigDecimal, which the
+	 * primitive implementation must always agree with
+	 */
+	private static int decimalSoftCompare(double a, double b) {
+		final BigDecimal acceptedVariation = BigDecimal.valueOf(1d)
+				.divide(BigDecimal.valueOf(10d).pow(StreamScalingUtils.PCT_COMPARISON_SCALE - 1));
+
+		BigDecimal first = new BigDecimal(a).setScale(StreamScalingUtils.PCT_COMPARISON_SCALE,
+				StreamScalingUtils.ROUNDING_MODE);
+		BigDecimal second = new BigDecimal(b).setScale(StreamScalingUtils.PCT_COMPARISON_SCALE,
+				StreamScalingUtils.ROUNDING_MODE);
+
+		BigDecimal variation = first.subtract(second).abs();
+
+		if (variation.compareTo(acceptedVariation) < 0) {
+			return 0;
+		} else {
+			return first.compareTo(second);
+		}
+	}
+
+	private static void assertSoftCompareMatches(double a, double b) {
+		assertEquals(String.format("softCompare(%s, %s)", a, b), decimalSoftCompare(a, b),
+				StreamScalingUtils.softCompare(a, b));
+		assertEquals(String.format("softCompare(%s, %s)", b, a), decimalSoftCompare(b, a),
+				StreamScalingUtils.softCompare(b, a));
+	}
+
+	@Test
+	public void testSoftCompareRandomValues() {
+		Random r = new Random(1);
+		for (int i = 0; i < 200_000; i++) {
+			assertSoftCompareMatches(r.nextDouble(), r.nextDouble());
+		}
+	}
+
+	@Test
+	public void testSoftCompareNearAcceptedVariation() {
+		// pairs of values either side of the 1e-9 equality window
+		Random r = new Random(2);
+		for (int i = 0; i < 200_000; i++) {
+			double a = r.nextDouble();
+			double offset = (r.nextInt(31) - 15) * 1e-10 + (r.nextDouble() - .5d) * 1e-11;
+			assertSoftCompareMatches(a, a + offset);
+		}
+	}
+
+	@Test
+	public void testSoftCompareRoundingBoundaries() {
+		// values which are exactly half way between two units of the comparison
+		// scale, and their immediate neighbours
+		for (int i = 1; i < 2048; i += 2) {
+			double tie = i / 2048d;
+			for (double v : new double[] { Math.nextDown(tie), tie, Math.nextUp(tie) }) {
+				assertSoftCompareMatches(v, v + 1e-9);
+				assertSoftCompareMatches(v, v - 1e-9);
+				assertSoftCompareMatches(v, 0.5d);
+			}
+		}
+
+		Random r = new Random(3);
+		for (int i = 0; i < 100_000; i++) {
+			double halfUnit = (r.nextInt(1_000_000_000) * 10L + 5) / 1e11;
+			double v = r.nextBoolean() ? Math.nextUp(halfUnit) : Math.nextDown(halfUnit);
+			assertSoftCompareMatches(v, halfUnit + 1e-9);
+			assertSoftCompareMatches(halfUnit, v - 1e-9);
+		}
+	}
+
+	@Test
+	public void testSoftCompareShardWidths() {
+		// the comparisons made while scaling, of shard widths against a target
+		// width of 1/n of the keyspace
+		Random r = new Random(4);
+		for (int n = 1; n <= 10_000; n++) {
+			double target = 1d / n;
+			double width = HashKey.atFraction(r.nextDouble() * 2 * target).fraction();
+			assertSoftCompareMatches(width, target);
+			assertSoftCompareMatches(width + target, target);
+			assertSoftCompareMatches(target, 1d / (n + 1));
+			assertSoftCompareMatches(target * n, 1d);
+		}
+	}
+
+	@Test
+	public void testSoftCompareEdgeValues() {
+		double[] values = new double[] { 0d, -0d, 1d, -1d, Double.MIN_VALUE, Double.MIN_NORMAL, 1e-10, 5e-11,
+				Math.nextUp(5e-11), 1e-9, 2d, 1e6, -1e6 };
+		for (double a : values) {
+			for (double b : values) {
+				assertSoftCompareMatches(a, b);
+			}
+		}
+	}
+
+	@Test
+	public void testUnboundedScaleUpScenarios() {
+		// Test whether we can fractionally scale up. Even a tiny amount of scale up
+		// will be treated as a directive to scale
+		assertEquals(2, StreamScalingUtils.getNewShardCount(1, null, 15, ScaleDirection.UP));
+
+		// Test whether we can fractionally scale up with a larger %. This will be
+		// treated as a raw addition to the overall number of shards
+		assertEquals(2, StreamScalingUtils.getNewShardCount(1, null, 70, ScaleDirection.UP));
+		assertEquals(17, StreamScalingUtils.getNewShardCount(10, null, 70, ScaleDirection.UP));
+
+		// Test scaling up by a fraction greater than 100 is treated as an incremental
+		// increase, not doubling
+		assertEquals(6, StreamScalingUtils.getNewShardCount(5, null, 110, ScaleDirection.UP));
+
+		// Test scaling by double
+		assertEquals(14, StreamScalingUtils.getNewShardCount(7, null, 200, ScaleDirection.UP));
+
+		// Test scaling by triple
+		assertEquals(6, StreamScalingUtils.getNewShardCount(2, null, 300, ScaleDirection.UP));
+
+		// Test scaling by more than 10x
+		assertEquals(88, StreamScalingUtils.getNewShardCount(8, null, 1100, ScaleDirection.UP));
+
+		// scaling down by a tiny fraction that's too small to yield a change
+		assertEquals(3, StreamScalingUtils.getNewShardCount(3, null, 15, ScaleDirection.DOWN));
+	}
+
+	@Test
+	public void testBoundedScalingScenarios() {
+		// try to scale from 10 to 17 by scaling by 70%, with a max of 15
+		assertEquals(15, StreamScalingUtils.getNewShardCount(10, null, 70, ScaleDirection.UP, null, 15));
+
+		// try to scale down by 12x on a large shard count, but limit to 3 shards
+		assertEquals(3, StreamScalingUtils.getNewShardCount(10, null, 1200, ScaleDirection.DOWN, 3, null));
+	}
+
+	@Test
+	public void testTargetUtilisationScenarios() {
+		// 5MB/sec at 50% of 1MB/sec per shard needs 10 shards, from any count
+		assertEquals(10, StreamScalingUtils.getNewShardCount(2, 5_000_000, 1_000_000, 50, null, null));
+		assertEquals(10, StreamScalingUtils.getNewShardCount(40, 5_000_000, 1_000_000, 50, null, null));
+
+		// bounded by min and max shards
+		assertEquals(8, StreamScalingUtils.getNewShardCount(2, 5_000_000, 1_000_000, 50, null, 8));
+		assertEquals(3, StreamScalingUtils.getNewShardCount(2, 0, 1_000_000, 50, 3, null));
+
+		// never below a single shard
+		assertEquals(1, StreamScalingUtils.getNewShardCount(4, 0, 1_000_000, 50, null, null));
+
+		// and never beyond the reach of a day of UpdateShardCount calls
+		assertEquals(1024, StreamScalingUtils.getNewShardCount(1, 5_000_000_000D, 1_000_000, 50, null, null));
+		assertEquals(2, StreamScalingUtils.getNewShardCount(2048, 0, 1_000_000, 50, null, null));
+	}
+
+	@Test
+	public void testUnboundedScaleDownScenarios() {
+		// test edge condition of scaling down a single shard by a huge amount - should
+		// never go below 1
+		assertEquals(1, StreamScalingUtils.getNewShardCount(1, null, 500, ScaleDirection.DOWN));
+
+		// test edge condition of scaling down large number of shards by a huge amount -
+		// should never go below 1
+		assertEquals(1, StreamScalingUtils.getNewShardCount(10, null, 1200, ScaleDirection.DOWN));
+
+		// scale down by a fractional amount using both large and small shard counts
+		// where we may/may not observe a change
+		assertEquals(1, StreamScalingUtils.getNewShardCount(1, null, 20, ScaleDirection.DOWN));
+		assertEquals(8, StreamScalingUtils.getNewShardCount(10, null, 20, ScaleDirection.DOWN));
+
+		// scale down by 50% using 2 representations - both 50% and 200% are valid
+		assertEquals(3, StreamScalingUtils.getNewShardCount(6, null, 50, ScaleDirection.DOWN));
+		assertEquals(3, StreamScalingUtils.getNewShardCount(6, null, 200, ScaleDirection.DOWN));
+
+		// scale down by a fractional percent - in this case 'down by 10%', which will
+		// round down
+		assertEquals(4, StreamScalingUtils.getNewShardCount(5, null, 110, ScaleDirection.DOWN));
+
+		// now scale down by a factor, rounding down
+		assertEquals(3, StreamScalingUtils.getNewShardCount(10, null, 300, ScaleDirection.DOWN));
+	}
+
+	@Test
+	public void testOpenShardsListedWithShardFilter() throws Exception {
+		// 100 open shards with 3 closed shards each in their history
+		SimulatedKinesisClient client = new SimulatedKinesisClient("TestStream", 100);
+		client.churn("TestStream", 10);
+
+		Map<String, ShardHashInfo> open = StreamScalingUtils.getOpenShards(client, "TestStream", (String) null);
+
+		assertEquals(100, open.size());
+		assertEquals(1, client.getListShardsCalls());
+	}
+
+	@Test
+	public void testOpenShardsFallBackWithoutShardFilter() throws Exception {
+		SimulatedKinesisClient filtered = new SimulatedKinesisClient("TestStream", 100);
+		filtered.churn("TestStream", 10);
+		SimulatedKinesisClient unfiltered = new SimulatedKinesisClient("TestStream", 100);
+		unfiltered.churn("TestStream", 10);
+		unfiltered.setSupportsShardFilter(false);
+
+		try {
+			Map<String, ShardHashInfo> expected = StreamScalingUtils.getOpenShards(filtered, "TestStream",
+					(String) null);
+			Map<String, ShardHashInfo> actual = StreamScalingUtils.getOpenShards(unfiltered, "TestStream",
+					(String) null);
+
+			assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+
+			// one rejected filtered call, then the 3100 shard history in 4 pages
+			assertEquals(5, unfiltered.getListShardsCalls());
+
+			// the rejection only stops the filter for the client which made it
+			StreamScalingUtils.getOpenShards(unfiltered, "TestStream", (String) null);
+			assertEquals(9, unfiltered.getListShardsCalls());
+			StreamScalingUtils.getOpenShards(filtered, "TestStream", (String) null);
+			assertEquals(2, filtered.getListShardsCalls());
+		} finally {
+			StreamScalingUtils.setUseShardFilter(true);
+		}
+	}
+
+	@Test
+	public void testOnlyShardFilterErrorsDisableFilter() throws Exception {
+		assertTrue(StreamScalingUtils.rejectsShardFilter(
+				InvalidArgumentException.builder().message("ShardFilter not supported").build()));
+		assertTrue(StreamScalingUtils.rejectsShardFilter(
+				InvalidArgumentException.builder().message("Unknown parameter: Shard Filter").build()));
+		assertFalse(StreamScalingUtils.rejectsShardFilter(
+				InvalidArgumentException.builder().message("Shard shardId-000000000001 is closed").build()));
+	}
+}
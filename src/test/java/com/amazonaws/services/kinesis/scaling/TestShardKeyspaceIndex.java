@@ -0,0 +1,120 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.scaling.StreamScaler.SortOrder;
+
+import software.amazon.awssdk.services.kinesis.model.HashKeyRange;
+import software.amazon.awssdk.services.kinesis.model.Shard;
+
+public class TestShardKeyspaceIndex {
+	private static final BigInteger MAX_HASH = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+
+	private static final String STREAM = "TestStream";
+
+	private static Shard shard(int id, String parent, String adjacentParent, BigInteger start, BigInteger end) {
+		return Shard.builder().shardId(String.format("shardId-%012d", id)).parentShardId(parent)
+				.adjacentParentShardId(adjacentParent).hashKeyRange(HashKeyRange.builder()
+						.startingHashKey(start.toString()).endingHashKey(end.toString()).build())
+				.build();
+	}
+
+	/* a listing of randomly sized open shards, shuffled */
+	private static List<Shard> randomListing(int count, Random r) {
+		List<BigInteger> boundaries = new ArrayList<>();
+		while (boundaries.size() < count - 1) {
+			BigInteger b = new BigInteger(128, r);
+			if (!boundaries.contains(b) && b.signum() > 0) {
+				boundaries.add(b);
+			}
+		}
+		Collections.sort(boundaries);
+		boundaries.add(MAX_HASH.add(BigInteger.ONE));
+
+		List<Shard> shards = new ArrayList<>();
+		BigInteger start = BigInteger.ZERO;
+		for (int i = 0; i < count; i++) {
+			shards.add(shard(i, null, null, start, boundaries.get(i).subtract(BigInteger.ONE)));
+			start = boundaries.get(i);
+		}
+		Collections.shuffle(shards, r);
+		return shards;
+	}
+
+	@Test
+	public void testClosedParentsExcluded() {
+		BigInteger mid = MAX_HASH.shiftRight(1);
+		List<Shard> listing = new ArrayList<>();
+		listing.add(shard(0, null, null, BigInteger.ZERO, MAX_HASH));
+		listing.add(shard(1, "shardId-000000000000", null, BigInteger.ZERO, mid));
+		listing.add(shard(2, "shardId-000000000000", null, mid.add(BigInteger.ONE), MAX_HASH));
+		listing.add(shard(3, "shardId-000000000001", "shardId-000000000002", BigInteger.ZERO, MAX_HASH));
+		listing.add(shard(4, "shardId-000000000003", null, BigInteger.ZERO, mid));
+		listing.add(shard(5, "shardId-000000000003", null, mid.add(BigInteger.ONE), MAX_HASH));
+
+		ShardKeyspaceIndex index = ShardKeyspaceIndex.build(STREAM, listing);
+
+		assertEquals(2, index.size());
+		assertEquals("shardId-000000000004", index.ascending().get(0).getShardId());
+		assertEquals("shardId-000000000005", index.descending().get(0).getShardId());
+		assertNull(index.getShard("shardId-000000000003"));
+	}
+
+	@Test
+	public void testFindOwnerMatchesLinearScan() {
+		Random r = new Random(4);
+		ShardKeyspaceIndex index = ShardKeyspaceIndex.build(STREAM, randomListing(200, r));
+
+		for (int i = 0; i < 10_000; i++) {
+			HashKey hash = HashKey.fromString(new BigInteger(128, r).toString());
+			ShardHashInfo expected = null;
+			for (ShardHashInfo s : index.ascending()) {
+				if (s.getStartHash().compareTo(hash) <= 0 && s.getEndHash().compareTo(hash) >= 0) {
+					expected = s;
+				}
+			}
+			assertEquals(expected, index.findOwner(hash));
+		}
+
+		assertEquals(index.ascending().get(0), index.findOwner(HashKey.MIN));
+		assertEquals(index.descending().get(0), index.findOwner(HashKey.MAX));
+	}
+
+	@Test
+	public void testOrderingAndAdjacency() throws Exception {
+		ShardKeyspaceIndex index = ShardKeyspaceIndex.build(STREAM, randomListing(50, new Random(5)));
+		List<ShardHashInfo> ascending = index.ascending();
+		List<ShardHashInfo> descending = index.descending();
+
+		for (int i = 0; i < ascending.size(); i++) {
+			assertEquals(ascending.get(i), descending.get(ascending.size() - 1 - i));
+			if (i > 0) {
+				assertTrue(ascending.get(i - 1).getStartHash().compareTo(ascending.get(i).getStartHash()) < 0);
+				assertEquals(ascending.get(i - 1), index.getLowerNeighbour(ascending.get(i)));
+				assertEquals(ascending.get(i), index.getHigherNeighbour(ascending.get(i - 1)));
+			}
+		}
+		assertNull(index.getLowerNeighbour(ascending.get(0)));
+		assertNull(index.getHigherNeighbour(descending.get(0)));
+
+		assertEquals(new ArrayList<>(index.asMap(SortOrder.DESCENDING).values()), new ArrayList<>(descending));
+		assertEquals(49, index.getAdjacentShards().size());
+	}
+}
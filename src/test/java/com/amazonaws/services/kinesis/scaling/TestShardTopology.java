@@ -0,0 +1,84 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestShardTopology {
+	private static final String STREAM = "TestStream";
+
+	@Test
+	public void testSplitAppliedWithSingleListing() throws Exception {
+		// enough history that a full listing of the Stream needs several pages
+		SimulatedKinesisClient client = new SimulatedKinesisClient(STREAM, 2500);
+		ShardTopology topology = ShardTopology.load(client, STREAM);
+		assertEquals(2500, topology.getOpenShardCount());
+		assertEquals(3, client.getListShardsCalls());
+
+		ShardHashInfo shard = topology.getShard("shardId-000000000010");
+		HashKey target = shard.getHashAtPctOffset(shard.getPctWidth() / 2);
+		AdjacentShards children = shard.doSplit(topology, target);
+
+		assertEquals(4, client.getListShardsCalls());
+		assertEquals(2501, topology.getOpenShardCount());
+		assertNull(topology.getShard(shard.getShardId()));
+		assertEquals(shard.getStartHash(), children.getLowerShard().getStartHash());
+		assertEquals(target, children.getHigherShard().getStartHash());
+		assertEquals(shard.getEndHash(), children.getHigherShard().getEndHash());
+		assertEquals("shardId-000000002501", topology.getHighestShardId());
+	}
+
+	@Test
+	public void testMergeAppliedWithSingleListing() throws Exception {
+		SimulatedKinesisClient client = new SimulatedKinesisClient(STREAM, 2500);
+		ShardTopology topology = ShardTopology.load(client, STREAM);
+		int calls = client.getListShardsCalls();
+
+		ShardHashInfo merged = new AdjacentShards(STREAM, topology.getShard("shardId-000000000000"),
+				topology.getShard("shardId-000000000001")).doMerge(topology);
+
+		assertEquals(calls + 1, client.getListShardsCalls());
+		assertEquals(2499, topology.getOpenShardCount());
+		assertEquals(HashKey.MIN, merged.getStartHash());
+		assertEquals(merged, topology.getShard(merged.getShardId()));
+	}
+
+	@Test
+	public void testTopologyMatchesFullListing() throws Exception {
+		SimulatedKinesisClient client = new SimulatedKinesisClient(STREAM, 5);
+		ShardTopology topology = ShardTopology.load(client, STREAM);
+
+		ScalingPlan plan = ScalingPlanner.plan(STREAM, new ArrayList<>(topology.getOpenShards().values()), 7, null,
+				null);
+		for (ShardOperation op : plan.getOperations()) {
+			if (op instanceof SplitShardOperation) {
+				SplitShardOperation split = (SplitShardOperation) op;
+				ShardHashInfo shard = null;
+				for (ShardHashInfo s : topology.getOpenShards().values()) {
+					if (s.getStartHash().equals(split.getStartHash())) {
+						shard = s;
+					}
+				}
+				shard.doSplit(topology, split.getNewStartingHashKey());
+			}
+		}
+
+		List<String> expected = new ArrayList<>(
+				StreamScalingUtils.getOpenShards(client, STREAM, (String) null).keySet());
+		List<String> actual = new ArrayList<>(topology.getOpenShards().keySet());
+		assertEquals(expected, actual);
+		assertTrue(actual.size() > 5);
+	}
+}
@@ -0,0 +1,267 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter.Priority;
+import com.amazonaws.services.kinesis.scaling.StreamScaler.ExecutionMode;
+
+import software.amazon.awssdk.services.kinesis.model.ResourceInUseException;
+import software.amazon.awssdk.services.kinesis.model.Shard;
+import software.amazon.awssdk.services.kinesis.model.SplitShardRequest;
+
+public class TestStreamScaler {
+	private static final String STREAM = "TestStream";
+
+	/* simulator without rate limits, so that tests don't back off */
+	private static SimulatedKinesisClient unthrottled(int openShards) {
+		SimulatedKinesisClient client = new SimulatedKinesisClient(STREAM, openShards);
+		for (String op : new String[] { SimulatedKinesisClient.LIST_SHARDS,
+				SimulatedKinesisClient.DESCRIBE_STREAM_SUMMARY, SimulatedKinesisClient.SPLIT_SHARD,
+				SimulatedKinesisClient.MERGE_SHARDS }) {
+			client.setTransactionLimit(op, null);
+		}
+		return client;
+	}
+
+	private static void assertContiguous(ScalingOperationReport report, int expectedShards) {
+		List<ShardHashInfo> layout = new ArrayList<>(report.getLayout().values());
+		assertEquals(expectedShards, layout.size());
+		assertEquals(HashKey.MIN, layout.get(0).getStartHash());
+		assertEquals(HashKey.MAX, layout.get(layout.size() - 1).getEndHash());
+		for (int i = 1; i < layout.size(); i++) {
+			assertTrue(layout.get(i - 1).getEndHash().immediatelyPrecedes(layout.get(i).getStartHash()));
+		}
+	}
+
+	private static List<String> startHashes(SimulatedKinesisClient client) {
+		List<String> hashes = new ArrayList<>();
+		for (Shard s : client.getOpenShards(STREAM)) {
+			hashes.add(s.hashKeyRange().startingHashKey());
+		}
+		return hashes;
+	}
+
+	@Test
+	public void testResizeWithUpdateShardCount() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		ScalingOperationReport report = new StreamScaler(client).resize(STREAM, 6, null, null, true);
+
+		assertEquals(1, client.getCallCount(SimulatedKinesisClient.UPDATE_SHARD_COUNT));
+		assertEquals(0, client.getCallCount(SimulatedKinesisClient.SPLIT_SHARD));
+		assertEquals(ScaleDirection.UP, report.getScaleDirection());
+		assertContiguous(report, 6);
+	}
+
+	@Test
+	public void testResizeBeyondUpdateShardCountLimitsFallsBack() throws Exception {
+		// without UpdateShardCount quota, the resize is made with splits
+		SimulatedKinesisClient client = unthrottled(4);
+		client.setUpdateShardCountQuota(0);
+		ScalingOperationReport report = new StreamScaler(client).resize(STREAM, 20, null, null, true);
+
+		assertEquals(20, client.getOpenShardCount(STREAM));
+		assertTrue(client.getCallCount(SimulatedKinesisClient.SPLIT_SHARD) > 0);
+		assertEquals(client.getCallCount(SimulatedKinesisClient.SPLIT_SHARD)
+				+ client.getCallCount(SimulatedKinesisClient.MERGE_SHARDS), report.getOperationsMade());
+		assertContiguous(report, 20);
+
+		// every shard other than the last is at the target width
+		List<ShardHashInfo> layout = new ArrayList<>(report.getLayout().values());
+		for (int i = 0; i < layout.size() - 1; i++) {
+			assertEquals(0, StreamScalingUtils.softCompare(layout.get(i).getPctWidth(), 1d / 20));
+		}
+	}
+
+	@Test
+	public void testResizeChainsUpdateShardCount() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		StreamScaler scaler = new StreamScaler(client);
+
+		// 4 to 20 is more than doubling, so is made as 8, 16, 20
+		scaler.updateShardCount(STREAM, 4, 20, null, null, false);
+		assertEquals(20, client.getOpenShardCount(STREAM));
+		assertEquals(3, client.getCallCount(SimulatedKinesisClient.UPDATE_SHARD_COUNT));
+		assertEquals(0, client.getCallCount(SimulatedKinesisClient.SPLIT_SHARD));
+
+		// and back down as 10, 5, 3
+		scaler.updateShardCount(STREAM, 20, 3, null, null, false);
+		assertEquals(3, client.getOpenShardCount(STREAM));
+		assertEquals(6, client.getCallCount(SimulatedKinesisClient.UPDATE_SHARD_COUNT));
+		assertEquals(0, client.getCallCount(SimulatedKinesisClient.MERGE_SHARDS));
+	}
+
+	@Test
+	public void testThrottledUpdateShardCountIsRetried() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		StreamScaler scaler = new StreamScaler(client);
+
+		// a throttled call is retried while the daily limit has calls left
+		client.throttleNext(SimulatedKinesisClient.UPDATE_SHARD_COUNT, 2);
+		scaler.updateShardCount(STREAM, 4, 8, null, null, false);
+		assertEquals(8, client.getOpenShardCount(STREAM));
+		assertEquals(3, client.getCallCount(SimulatedKinesisClient.UPDATE_SHARD_COUNT));
+		assertEquals(0, client.getCallCount(SimulatedKinesisClient.SPLIT_SHARD));
+
+		// and falls back to splits once it has been rejected too often
+		client.throttleNext(SimulatedKinesisClient.UPDATE_SHARD_COUNT, StreamScalingUtils.UPDATE_SHARD_COUNT_RETRIES);
+		scaler.updateShardCount(STREAM, 8, 16, null, null, false);
+		assertEquals(16, client.getOpenShardCount(STREAM));
+		assertEquals(3 + StreamScalingUtils.UPDATE_SHARD_COUNT_RETRIES,
+				client.getCallCount(SimulatedKinesisClient.UPDATE_SHARD_COUNT));
+		assertTrue(client.getCallCount(SimulatedKinesisClient.SPLIT_SHARD) > 0);
+	}
+
+	@Test
+	public void testResizeChainFallsBackWhenQuotaRunsOut() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		client.setUpdateShardCountQuota(1);
+
+		// the first call reaches 8 Shards, and splits make up the rest
+		new StreamScaler(client).updateShardCount(STREAM, 4, 20, null, null, false);
+		assertEquals(20, client.getOpenShardCount(STREAM));
+
+		SimulatedKinesisClient fromEight = unthrottled(8);
+		fromEight.setUpdateShardCountQuota(0);
+		new StreamScaler(fromEight).updateShardCount(STREAM, 8, 20, null, null, false);
+		assertEquals(fromEight.getCallCount(SimulatedKinesisClient.SPLIT_SHARD),
+				client.getCallCount(SimulatedKinesisClient.SPLIT_SHARD));
+		assertEquals(fromEight.getCallCount(SimulatedKinesisClient.MERGE_SHARDS),
+				client.getCallCount(SimulatedKinesisClient.MERGE_SHARDS));
+	}
+
+	@Test
+	public void testUpdateShardCountSteps() throws Exception {
+		assertEquals(Arrays.asList(8, 16, 20), StreamScalingUtils.getUpdateShardCountSteps(4, 20));
+		assertEquals(Arrays.asList(10, 5, 3), StreamScalingUtils.getUpdateShardCountSteps(20, 3));
+		assertEquals(Arrays.asList(6), StreamScalingUtils.getUpdateShardCountSteps(4, 6));
+		assertTrue(StreamScalingUtils.getUpdateShardCountSteps(4, 4).isEmpty());
+	}
+
+	@Test
+	public void testWavesMatchSequentialExecution() throws Exception {
+		SimulatedKinesisClient sequential = unthrottled(10);
+		sequential.setUpdateShardCountQuota(0);
+		new StreamScaler(sequential).resize(STREAM, 13, null, null, true);
+
+		SimulatedKinesisClient waves = unthrottled(10);
+		waves.setUpdateShardCountQuota(0);
+		StreamScaler scaler = new StreamScaler(waves);
+		scaler.setExecutionMode(ExecutionMode.waves, 1);
+		ScalingOperationReport report = scaler.resize(STREAM, 13, null, null, true);
+
+		assertContiguous(report, 13);
+		assertEquals(startHashes(sequential), startHashes(waves));
+	}
+
+	@Test
+	public void testWavesWithOperationsInFlight() throws Exception {
+		SimulatedKinesisClient sequential = unthrottled(4);
+		sequential.setUpdateShardCountQuota(0);
+		new StreamScaler(sequential).resize(STREAM, 24, null, null, true);
+
+		// the Stream is UPDATING after each split, so the other splits of the
+		// wave wait for it to be Active again rather than failing the resize
+		SimulatedKinesisClient waves = unthrottled(4);
+		waves.setUpdateShardCountQuota(0);
+		waves.setUpdateLatencyMs(50);
+		StreamScaler scaler = new StreamScaler(waves);
+		scaler.setExecutionMode(ExecutionMode.waves, StreamScaler.MAX_OPERATIONS_IN_FLIGHT);
+
+		StreamStatusWaiter.setInstance(new StreamStatusWaiter(50, 10, 100));
+		try {
+			ScalingOperationReport report = scaler.resize(STREAM, 24, null, null, true);
+
+			assertContiguous(report, 24);
+			assertEquals(20, report.getOperationsMade());
+			assertEquals(startHashes(sequential), startHashes(waves));
+		} finally {
+			StreamStatusWaiter.setInstance(null);
+		}
+	}
+
+	@Test
+	public void testThrottledOperationsAreRetried() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		client.setUpdateShardCountQuota(0);
+		client.throttleNext(SimulatedKinesisClient.SPLIT_SHARD, 2);
+		client.throttleNext(SimulatedKinesisClient.LIST_SHARDS, 1);
+
+		ScalingOperationReport report = new StreamScaler(client).resize(STREAM, 7, null, null, true);
+
+		assertContiguous(report, 7);
+	}
+
+	@Test
+	public void testModificationWhileUpdatingRejected() throws Exception {
+		SimulatedKinesisClient client = unthrottled(2);
+		client.setUpdateLatencyMs(30000);
+		List<Shard> open = client.getOpenShards(STREAM);
+
+		client.splitShard(SplitShardRequest.builder().streamName(STREAM).shardToSplit(open.get(0).shardId())
+				.newStartingHashKey("100").build());
+		assertEquals("UPDATING", StreamScalingUtils.getStreamStatus(client, STREAM, Priority.LOW));
+		try {
+			client.splitShard(SplitShardRequest.builder().streamName(STREAM).shardToSplit(open.get(1).shardId())
+					.newStartingHashKey(SimulatedKinesisClient.MAX_HASH.toString()).build());
+			fail("Split accepted while Stream UPDATING");
+		} catch (ResourceInUseException e) {
+		}
+
+		client.advanceClock(30000);
+		assertEquals("ACTIVE", StreamScalingUtils.getStreamStatus(client, STREAM, Priority.LOW));
+		client.splitShard(SplitShardRequest.builder().streamName(STREAM).shardToSplit(open.get(1).shardId())
+				.newStartingHashKey(SimulatedKinesisClient.MAX_HASH.toString()).build());
+		assertEquals(4, client.getOpenShardCount(STREAM));
+	}
+
+	@Test
+	public void testLargeStreamResize() throws Exception {
+		SimulatedKinesisClient client = unthrottled(10000);
+		ScalingOperationReport report = new StreamScaler(client).resize(STREAM, 20000, null, null, true);
+
+		assertContiguous(report, 20000);
+		assertEquals(1, client.getCallCount(SimulatedKinesisClient.UPDATE_SHARD_COUNT));
+	}
+
+	@Test
+	public void testScaleUpShardDividesShardWidth() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		String shardId = client.getOpenShards(STREAM).get(1).shardId();
+
+		ScalingOperationReport report = new StreamScaler(client).scaleUp(STREAM, shardId, 3, null, null);
+
+		assertContiguous(report, 6);
+		assertEquals(2, report.getOperationsMade());
+		List<ShardHashInfo> layout = new ArrayList<>(report.getLayout().values());
+		for (int i = 0; i < layout.size(); i++) {
+			assertEquals(0, StreamScalingUtils.softCompare(layout.get(i).getPctWidth(),
+					i >= 1 && i <= 3 ? 1d / 12 : 1d / 4));
+		}
+	}
+
+	@Test
+	public void testScaleUpShardLimitedByMaxShards() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		String shardId = client.getOpenShards(STREAM).get(0).shardId();
+
+		ScalingOperationReport report = new StreamScaler(client).scaleUp(STREAM, shardId, 4, null, 5);
+
+		assertEquals(5, client.getOpenShardCount(STREAM));
+		assertContiguous(report, 5);
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.scaling.ControlPlaneRateLimiter.Priority;
+
+import software.amazon.awssdk.services.kinesis.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.kinesis.model.UpdateShardCountRequest;
+
+public class TestStreamStatusWaiter {
+	private static final String STREAM = "TestStream";
+
+	private static SimulatedKinesisClient updating(long latencyMs) {
+		SimulatedKinesisClient client = new SimulatedKinesisClient(STREAM, 2);
+		client.setTransactionLimit(SimulatedKinesisClient.DESCRIBE_STREAM_SUMMARY, null);
+		ControlPlaneRateLimiter.forClient(client).setTransactionLimit(ControlPlaneRateLimiter.DESCRIBE_STREAM_SUMMARY,
+				null);
+		client.setUpdateLatencyMs(latencyMs);
+		client.updateShardCount(UpdateShardCountRequest.builder().streamName(STREAM).targetShardCount(4).build());
+		return client;
+	}
+
+	private static Thread waitOn(final StreamStatusWaiter waiter, final SimulatedKinesisClient client,
+			final List<Exception> failures) {
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					waiter.waitFor(client, STREAM, "ACTIVE", 5_000);
+				} catch (Exception e) {
+					failures.add(e);
+				}
+			}
+		});
+		t.start();
+		return t;
+	}
+
+	@Test
+	public void testWaitLearnsUpdateDuration() throws Exception {
+		StreamStatusWaiter waiter = new StreamStatusWaiter(1_000, 10, 100);
+		assertEquals(1_000, waiter.getExpectedUpdateMillis(STREAM));
+
+		// an Active Stream is checked once
+		SimulatedKinesisClient client = new SimulatedKinesisClient(STREAM, 2);
+		waiter.waitFor(client, STREAM, "ACTIVE", 1_000);
+		assertEquals(1, client.getCallCount(SimulatedKinesisClient.DESCRIBE_STREAM_SUMMARY));
+
+		// the Stream takes 300ms to update, so the expected duration moves from
+		// 1 second towards it. The poll closes in on the expected second at
+		// most every 100ms, rather than waiting for all of it
+		client = updating(300);
+		long start = System.currentTimeMillis();
+		waiter.waitFor(client, STREAM, "ACTIVE", 5_000);
+		assertTrue(System.currentTimeMillis() - start >= 250);
+		assertEquals("ACTIVE", StreamScalingUtils.getStreamStatus(client, STREAM, Priority.LOW));
+		assertTrue(client.getCallCount(SimulatedKinesisClient.DESCRIBE_STREAM_SUMMARY) > 2);
+		assertTrue(waiter.getExpectedUpdateMillis(STREAM) < 1_000);
+		assertTrue(waiter.getExpectedUpdateMillis(STREAM) > 300);
+		assertEquals(0, waiter.getPollCount());
+	}
+
+	@Test
+	public void testCallersSharePoll() throws Exception {
+		StreamStatusWaiter waiter = new StreamStatusWaiter(300, 10, 100);
+		SimulatedKinesisClient client = updating(500);
+		List<Exception> failures = Collections.synchronizedList(new ArrayList<Exception>());
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			threads.add(waitOn(waiter, client, failures));
+		}
+
+		long deadline = System.currentTimeMillis() + 2_000;
+		while (waiter.getWaiterCount(STREAM) < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(3, waiter.getWaiterCount(STREAM));
+		assertEquals(1, waiter.getPollCount());
+
+		for (Thread t : threads) {
+			t.join(10_000);
+		}
+		assertTrue(failures.isEmpty());
+		assertEquals(0, waiter.getPollCount());
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		StreamStatusWaiter waiter = new StreamStatusWaiter(300, 10, 100);
+		SimulatedKinesisClient client = updating(60_000);
+
+		try {
+			waiter.waitFor(client, STREAM, "ACTIVE", 200);
+			fail("Wait for stuck Stream returned");
+		} catch (StreamStatusTimeoutException e) {
+			assertEquals(STREAM, e.getStreamName());
+			assertEquals("ACTIVE", e.getStatus());
+			assertEquals("UPDATING", e.getLastStatus());
+			assertEquals(200, e.getWaitedMillis());
+		}
+
+		// and the poll of the Stream stops with the wait
+		assertEquals(0, waiter.getPollCount());
+		int checks = client.getCallCount(SimulatedKinesisClient.DESCRIBE_STREAM_SUMMARY);
+		Thread.sleep(300);
+		assertEquals(checks, client.getCallCount(SimulatedKinesisClient.DESCRIBE_STREAM_SUMMARY));
+	}
+
+	@Test
+	public void testFailedCheckReleasesCallers() throws Exception {
+		StreamStatusWaiter waiter = new StreamStatusWaiter(300, 10, 100);
+		SimulatedKinesisClient client = new SimulatedKinesisClient(STREAM, 2);
+
+		Exception failure = null;
+		try {
+			waiter.waitFor(client, "MissingStream", "ACTIVE", 1_000);
+		} catch (Exception e) {
+			failure = e;
+		}
+		assertTrue(failure instanceof ResourceNotFoundException);
+		assertEquals(0, waiter.getPollCount());
+	}
+
+	@Test
+	public void testPollDelay() throws Exception {
+		// close in on the expected completion, halving the wait
+		assertEquals(10_000, StreamStatusWaiter.getPollDelay(30_000, 0, 1_000, 10_000));
+		assertEquals(5_000, StreamStatusWaiter.getPollDelay(30_000, 20_000, 1_000, 10_000));
+		assertEquals(1_000, StreamStatusWaiter.getPollDelay(30_000, 29_000, 1_000, 10_000));
+
+		// and back off when the Stream is slower than expected
+		assertEquals(1_000, StreamStatusWaiter.getPollDelay(30_000, 32_000, 1_000, 10_000));
+		assertEquals(5_000, StreamStatusWaiter.getPollDelay(30_000, 50_000, 1_000, 10_000));
+		assertEquals(10_000, StreamStatusWaiter.getPollDelay(30_000, 300_000, 1_000, 10_000));
+	}
+}
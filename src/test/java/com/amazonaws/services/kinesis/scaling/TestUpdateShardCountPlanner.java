@@ -0,0 +1,73 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestUpdateShardCountPlanner {
+	private static final String STREAM = "TestStream";
+
+	private static final long HOUR = 60 * 60 * 1000L;
+
+	@Test
+	public void testPlanChainsWithinFactor() throws Exception {
+		UpdateShardCountPlanner planner = new UpdateShardCountPlanner();
+
+		assertEquals(Arrays.asList(20, 40, 80, 160, 200), planner.plan(STREAM, 10, 200, 0));
+		assertEquals(Arrays.asList(100, 50, 25, 13, 10), planner.plan(STREAM, 200, 10, 0));
+		assertTrue(planner.plan(STREAM, 10, 10, 0).isEmpty());
+	}
+
+	@Test
+	public void testPlanWithinRollingQuota() throws Exception {
+		UpdateShardCountPlanner planner = new UpdateShardCountPlanner(3);
+		planner.recordCall(STREAM, 0);
+		planner.recordCall(STREAM, HOUR);
+
+		// a single call remains, so only the first step is planned
+		assertEquals(1, planner.getRemainingCalls(STREAM, 2 * HOUR));
+		assertEquals(Arrays.asList(20), planner.plan(STREAM, 10, 200, 2 * HOUR));
+
+		// calls are counted per Stream
+		assertEquals(3, planner.getRemainingCalls("OtherStream", 2 * HOUR));
+
+		// and the first call leaves the window after 24 hours
+		planner.recordCall(STREAM, 2 * HOUR);
+		assertTrue(planner.plan(STREAM, 20, 200, 3 * HOUR).isEmpty());
+		assertEquals(Arrays.asList(40), planner.plan(STREAM, 20, 200, 24 * HOUR));
+	}
+
+	@Test
+	public void testScalerFallsBackWhenQuotaExhausted() throws Exception {
+		SimulatedKinesisClient client = new SimulatedKinesisClient(STREAM, 4);
+		for (String op : new String[] { SimulatedKinesisClient.LIST_SHARDS,
+				SimulatedKinesisClient.DESCRIBE_STREAM_SUMMARY, SimulatedKinesisClient.SPLIT_SHARD,
+				SimulatedKinesisClient.MERGE_SHARDS }) {
+			client.setTransactionLimit(op, null);
+		}
+		StreamScaler scaler = new StreamScaler(client);
+		scaler.setUpdateShardCountLimit(2);
+
+		// two calls reach 16 Shards, and splits make up the rest without a
+		// rejected call
+		scaler.updateShardCount(STREAM, 4, 20, null, null, false);
+		assertEquals(20, client.getOpenShardCount(STREAM));
+		assertEquals(2, client.getCallCount(SimulatedKinesisClient.UPDATE_SHARD_COUNT));
+		assertTrue(client.getCallCount(SimulatedKinesisClient.SPLIT_SHARD) > 0);
+
+		// with the quota used, the next resize is all split/merge
+		scaler.updateShardCount(STREAM, 20, 10, null, null, false);
+		assertEquals(10, client.getOpenShardCount(STREAM));
+		assertEquals(2, client.getCallCount(SimulatedKinesisClient.UPDATE_SHARD_COUNT));
+	}
+}
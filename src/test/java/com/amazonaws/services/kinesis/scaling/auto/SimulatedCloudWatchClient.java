@@ -0,0 +1,232 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.cloudwatch.model.CloudWatchException;
+import software.amazon.awssdk.services.cloudwatch.model.Datapoint;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataResponse;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricStatisticsResponse;
+import software.amazon.awssdk.services.cloudwatch.model.InvalidParameterValueException;
+import software.amazon.awssdk.services.cloudwatch.model.Metric;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+import software.amazon.awssdk.services.cloudwatch.model.StatusCode;
+
+/**
+ * In-memory model of the CloudWatch metric read APIs, holding one value per
+ * minute per Stream and metric name, which is returned for any statistic.
+ * GetMetricData validates query ids and the 500 query limit, and pages its
+ * results by datapoint count. Either API can be made to reject callers as not
+ * authorised
+ */
+public class SimulatedCloudWatchClient implements CloudWatchClient {
+	public static final String GET_METRIC_DATA = "GetMetricData";
+
+	public static final String GET_METRIC_STATISTICS = "GetMetricStatistics";
+
+	private static final int MAX_QUERIES = 500;
+
+	// stream, stream/shard or stream/consumer/name -> metric name -> timestamp ->
+	// value
+	private final Map<String, Map<String, TreeMap<Instant, Double>>> metrics = new HashMap<>();
+
+	private final Map<String, Integer> callCounts = new HashMap<>();
+
+	private final List<Integer> queriesPerRequest = new ArrayList<>();
+
+	private final Set<String> deniedOperations = new HashSet<>();
+
+	private int maxDatapointsPerPage = 100_800;
+
+	private int datapointsReturned = 0;
+
+	public synchronized void putMetric(String streamName, String metricName, Instant timestamp, double sum) {
+		if (!metrics.containsKey(streamName)) {
+			metrics.put(streamName, new HashMap<String, TreeMap<Instant, Double>>());
+		}
+		if (!metrics.get(streamName).containsKey(metricName)) {
+			metrics.get(streamName).put(metricName, new TreeMap<Instant, Double>());
+		}
+		metrics.get(streamName).get(metricName).put(timestamp, sum);
+	}
+
+	public void putShardMetric(String streamName, String shardId, String metricName, Instant timestamp,
+			double sum) {
+		putMetric(streamName + "/" + shardId, metricName, timestamp, sum);
+	}
+
+	public void putConsumerMetric(String streamName, String consumerName, String metricName, Instant timestamp,
+			double sum) {
+		putMetric(streamName + "/consumer/" + consumerName, metricName, timestamp, sum);
+	}
+
+	public synchronized void setMaxDatapointsPerPage(int maxDatapointsPerPage) {
+		this.maxDatapointsPerPage = maxDatapointsPerPage;
+	}
+
+	public synchronized void setDenied(String operation, boolean denied) {
+		if (denied) {
+			deniedOperations.add(operation);
+		} else {
+			deniedOperations.remove(operation);
+		}
+	}
+
+	public synchronized int getCallCount(String operation) {
+		Integer count = callCounts.get(operation);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * @return the total number of datapoints returned by GetMetricData
+	 */
+	public synchronized int getDatapointsReturned() {
+		return datapointsReturned;
+	}
+
+	/**
+	 * @return the number of queries in each GetMetricData call, in call order
+	 */
+	public synchronized List<Integer> getQueriesPerRequest() {
+		return new ArrayList<>(queriesPerRequest);
+	}
+
+	private void recordCall(String operation) {
+		callCounts.put(operation, getCallCount(operation) + 1);
+
+		if (deniedOperations.contains(operation)) {
+			throw (CloudWatchException) CloudWatchException.builder().statusCode(403)
+					.message(String.format("Not authorized to perform cloudwatch:%s", operation)).build();
+		}
+	}
+
+	private List<Map.Entry<Instant, Double>> datapoints(Metric metric, Instant startTime, Instant endTime) {
+		String streamName = null;
+		String shardId = null;
+		String consumerName = null;
+		for (Dimension d : metric.dimensions()) {
+			if (d.name().equals("StreamName")) {
+				streamName = d.value();
+			} else if (d.name().equals("ShardId")) {
+				shardId = d.value();
+			} else if (d.name().equals("ConsumerName")) {
+				consumerName = d.value();
+			}
+		}
+		if (shardId != null) {
+			streamName = streamName + "/" + shardId;
+		} else if (consumerName != null) {
+			streamName = streamName + "/consumer/" + consumerName;
+		}
+
+		List<Map.Entry<Instant, Double>> datapoints = new ArrayList<>();
+		if (metrics.containsKey(streamName) && metrics.get(streamName).containsKey(metric.metricName())) {
+			datapoints.addAll(
+					metrics.get(streamName).get(metric.metricName()).subMap(startTime, endTime).entrySet());
+		}
+		return datapoints;
+	}
+
+	@Override
+	public synchronized GetMetricDataResponse getMetricData(GetMetricDataRequest request) {
+		recordCall(GET_METRIC_DATA);
+
+		List<MetricDataQuery> queries = request.metricDataQueries();
+		if (queries.size() > MAX_QUERIES) {
+			throw InvalidParameterValueException.builder()
+					.message(String.format("%s queries exceeds the limit of %s", queries.size(), MAX_QUERIES))
+					.build();
+		}
+		Set<String> ids = new HashSet<>();
+		for (MetricDataQuery q : queries) {
+			if (!q.id().matches("^[a-z][a-zA-Z0-9_]*$") || !ids.add(q.id())) {
+				throw InvalidParameterValueException.builder()
+						.message(String.format("Invalid or duplicate query id %s", q.id())).build();
+			}
+		}
+		if (request.nextToken() == null) {
+			queriesPerRequest.add(queries.size());
+		}
+
+		// page through the datapoints of all queries in order, newest first
+		int offset = request.nextToken() == null ? 0 : Integer.parseInt(request.nextToken());
+		int position = 0;
+		int remaining = maxDatapointsPerPage;
+		List<MetricDataResult> results = new ArrayList<>();
+
+		for (MetricDataQuery q : queries) {
+			List<Map.Entry<Instant, Double>> datapoints = datapoints(q.metricStat().metric(), request.startTime(),
+					request.endTime());
+			Collections.reverse(datapoints);
+
+			List<Instant> timestamps = new ArrayList<>();
+			List<Double> values = new ArrayList<>();
+			for (Map.Entry<Instant, Double> d : datapoints) {
+				if (position >= offset && remaining > 0) {
+					timestamps.add(d.getKey());
+					values.add(d.getValue());
+					remaining--;
+					datapointsReturned++;
+				}
+				position++;
+			}
+
+			results.add(MetricDataResult.builder().id(q.id()).label(q.label()).timestamps(timestamps).values(values)
+					.statusCode(remaining > 0 ? StatusCode.COMPLETE : StatusCode.PARTIAL_DATA).build());
+		}
+
+		String nextToken = offset + maxDatapointsPerPage < position
+				? String.valueOf(offset + maxDatapointsPerPage)
+				: null;
+
+		return GetMetricDataResponse.builder().metricDataResults(results).nextToken(nextToken).build();
+	}
+
+	@Override
+	public synchronized GetMetricStatisticsResponse getMetricStatistics(GetMetricStatisticsRequest request) {
+		recordCall(GET_METRIC_STATISTICS);
+
+		// start times are rounded down to the minute
+		Instant startTime = Instant.ofEpochSecond(request.startTime().getEpochSecond() / 60 * 60);
+
+		List<Datapoint> datapoints = new ArrayList<>();
+		for (Map.Entry<Instant, Double> d : datapoints(
+				Metric.builder().metricName(request.metricName()).dimensions(request.dimensions()).build(),
+				startTime, request.endTime())) {
+			datapoints.add(Datapoint.builder().timestamp(d.getKey()).sum(d.getValue()).maximum(d.getValue())
+					.unit(request.metricName().endsWith(".Bytes") ? StandardUnit.BYTES : StandardUnit.COUNT)
+					.build());
+		}
+
+		return GetMetricStatisticsResponse.builder().label(request.metricName()).datapoints(datapoints).build();
+	}
+
+	@Override
+	public String serviceName() {
+		return SERVICE_NAME;
+	}
+
+	@Override
+	public void close() {
+	}
+}
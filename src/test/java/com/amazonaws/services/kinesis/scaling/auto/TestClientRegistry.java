@@ -0,0 +1,64 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TestClientRegistry {
+	private static final String REGION = "eu-west-1";
+
+	private static final String OTHER_REGION = "ap-southeast-2";
+
+	@Test
+	public void testClientsSharedByRegion() throws Exception {
+		RegionClients first = ClientRegistry.acquire(REGION);
+		RegionClients second = ClientRegistry.acquire(REGION);
+		RegionClients other = ClientRegistry.acquire(OTHER_REGION);
+
+		try {
+			assertSame(first, second);
+			assertSame(first.getKinesisClient(), second.getKinesisClient());
+			assertNotSame(first, other);
+			assertEquals(2, ClientRegistry.getReferences(REGION));
+			assertEquals(1, ClientRegistry.getReferences(OTHER_REGION));
+		} finally {
+			ClientRegistry.release(first);
+			ClientRegistry.release(second);
+			ClientRegistry.release(other);
+		}
+	}
+
+	@Test
+	public void testClientsClosedWithLastRelease() throws Exception {
+		RegionClients first = ClientRegistry.acquire(REGION);
+		RegionClients second = ClientRegistry.acquire(REGION);
+
+		// the clients stay open while any user remains
+		ClientRegistry.release(first);
+		assertEquals(1, ClientRegistry.getReferences(REGION));
+		assertSame(second, ClientRegistry.acquire(REGION));
+		ClientRegistry.release(second);
+		ClientRegistry.release(second);
+		assertEquals(0, ClientRegistry.getReferences(REGION));
+
+		// released clients are closed, so new ones are built, and releasing the
+		// closed ones again has no effect
+		RegionClients third = ClientRegistry.acquire(REGION);
+		try {
+			assertNotSame(first, third);
+			ClientRegistry.release(first);
+			assertEquals(1, ClientRegistry.getReferences(REGION));
+		} finally {
+			ClientRegistry.release(third);
+		}
+	}
+}
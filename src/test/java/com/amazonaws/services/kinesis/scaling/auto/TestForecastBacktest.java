@@ -0,0 +1,86 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+public class TestForecastBacktest {
+	private static final String STREAM = "TestStream";
+
+	private static final DateTime START = new DateTime(1_600_000_000_000L).withTimeAtStartOfDay();
+
+	/* an hourly pattern of PUT bytes per second, peaking at 3 Shards at minute 45 */
+	private static double putBytesPerSecond(int minute) {
+		return 1_048_576 * (1.75 + 1.25 * Math.sin(2 * Math.PI * (minute % 60 - 30) / 60));
+	}
+
+	private static AutoscalingConfiguration config() {
+		ScalingConfig scaleUp = new ScalingConfig();
+		scaleUp.setScaleThresholdPct(80);
+		ForecastConfig forecast = new ForecastConfig();
+		forecast.setSeasonMins(60);
+		forecast.setPeriodMins(5);
+		forecast.setHistorySeasons(3);
+		forecast.setLeadTimeMins(10);
+
+		AutoscalingConfiguration config = new AutoscalingConfiguration();
+		config.setStreamName(STREAM);
+		config.setScaleOnOperation(Arrays.asList(KinesisOperationType.PUT));
+		config.setScaleUp(scaleUp);
+		config.setForecast(forecast);
+		return config;
+	}
+
+	@Test
+	public void testBacktestReplaysHistory() throws Exception {
+		SimulatedCloudWatchClient cloudWatch = new SimulatedCloudWatchClient();
+		for (int minute = 0; minute < 8 * 60; minute++) {
+			Instant timestamp = Instant.ofEpochMilli(START.plusMinutes(minute).getMillis());
+			cloudWatch.putMetric(STREAM, "PutRecords.Bytes", timestamp, putBytesPerSecond(minute) * 60);
+			cloudWatch.putMetric(STREAM, "PutRecords.Records", timestamp, 100 * 60);
+		}
+
+		// replay the last four hours, after three hours of history
+		List<ForecastBacktestResult> results = new ForecastBacktest(config(), cloudWatch).run(START.plusHours(3),
+				START.plusHours(7));
+
+		assertEquals(2, results.size());
+		for (ForecastBacktestResult result : results) {
+			assertEquals(4 * 60 / 5, result.getForecasts());
+		}
+
+		ForecastBacktestResult bytes = results.get(0).getMetric() == StreamMetric.Bytes ? results.get(0)
+				: results.get(1);
+		assertTrue(bytes.toString(), bytes.getCoverage() > 0.95);
+		assertTrue(bytes.toString(), bytes.getWeightedError() < 0.05);
+		assertEquals(bytes.toString(), 0, bytes.getUnderProvisioned());
+
+		// provisioning for each lead time is a saving on the peak for the whole
+		// period
+		assertTrue(bytes.toString(), bytes.getForecastShards() < 4 * 60 / 5 * 4);
+	}
+
+	@Test
+	public void testNoForecastWithoutHistory() throws Exception {
+		SimulatedCloudWatchClient cloudWatch = new SimulatedCloudWatchClient();
+		for (int minute = 0; minute < 60; minute++) {
+			cloudWatch.putMetric(STREAM, "PutRecords.Bytes",
+					Instant.ofEpochMilli(START.plusMinutes(minute).getMillis()), putBytesPerSecond(minute) * 60);
+		}
+
+		assertEquals(0, new ForecastBacktest(config(), cloudWatch).run(START, START.plusHours(1)).size());
+	}
+}
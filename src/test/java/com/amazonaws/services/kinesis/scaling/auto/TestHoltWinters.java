@@ -0,0 +1,77 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestHoltWinters {
+	private static final int SEASON = 24;
+
+	/* a daily pattern with a peak of 1000 at hour 18, a rising trend and noise */
+	private static double[] seasonal(int seasons, double noise) {
+		Random random = new Random(42);
+		double[] values = new double[seasons * SEASON];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 600 + 400 * Math.sin(2 * Math.PI * (i % SEASON - 12) / SEASON) + i * 0.5
+					+ random.nextGaussian() * noise;
+		}
+		return values;
+	}
+
+	@Test
+	public void testNeedsTwoSeasons() throws Exception {
+		assertNull(HoltWinters.fit(new double[2 * SEASON - 1], SEASON));
+		assertNotNull(HoltWinters.fit(new double[2 * SEASON], SEASON));
+	}
+
+	@Test
+	public void testForecastFollowsSeason() throws Exception {
+		double[] history = seasonal(4, 0);
+		HoltWinters model = HoltWinters.fit(history, SEASON);
+
+		// the next day repeats the pattern on the trend
+		for (int step = 1; step <= SEASON; step++) {
+			int i = history.length - 1 + step;
+			double expected = 600 + 400 * Math.sin(2 * Math.PI * (i % SEASON - 12) / SEASON) + i * 0.5;
+			assertEquals(expected, model.forecast(step), 25);
+		}
+	}
+
+	@Test
+	public void testUpperBoundCoversNoise() throws Exception {
+		double[] series = seasonal(6, 50);
+		double[] history = new double[4 * SEASON];
+		System.arraycopy(series, 0, history, 0, history.length);
+		HoltWinters model = HoltWinters.fit(history, SEASON);
+
+		// a 95% bound covers most of the following values, while the forecast
+		// itself is under about half of them
+		int covered = 0;
+		for (int step = 1; step <= 2 * SEASON; step++) {
+			if (series[history.length - 1 + step] <= model.upperBound(step, UtilisationForecaster.zScore(95))) {
+				covered++;
+			}
+			assertTrue(model.upperBound(step, 1.645) > model.forecast(step));
+		}
+		assertTrue(String.format("%s of %s covered", covered, 2 * SEASON), covered >= 0.9 * 2 * SEASON);
+	}
+
+	@Test
+	public void testZScore() throws Exception {
+		assertEquals(0, UtilisationForecaster.zScore(50), 0.01);
+		assertEquals(1.645, UtilisationForecaster.zScore(95), 0.01);
+		assertEquals(2.326, UtilisationForecaster.zScore(99), 0.01);
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.scaling.SimulatedKinesisClient;
+
+public class TestMonitorScheduling {
+	private static final String STREAM = "TestStream";
+
+	private static StreamMonitor monitor(String streamName, SimulatedCloudWatchClient cloudWatch)
+			throws Exception {
+		ScalingConfig scaleUp = new ScalingConfig();
+		scaleUp.setScaleThresholdPct(75);
+		scaleUp.setScaleAfterMins(1);
+		scaleUp.setScalePct(100);
+		scaleUp.setCoolOffMins(0);
+		ScalingConfig scaleDown = new ScalingConfig();
+		scaleDown.setScaleThresholdPct(25);
+		scaleDown.setScaleAfterMins(1);
+		scaleDown.setScalePct(50);
+		scaleDown.setCoolOffMins(0);
+
+		AutoscalingConfiguration config = new AutoscalingConfiguration();
+		config.setStreamName(streamName);
+		config.setScaleOnOperation(Arrays.asList(KinesisOperationType.PUT));
+		config.setScaleUp(scaleUp);
+		config.setScaleDown(scaleDown);
+		config.setCheckInterval(1);
+
+		return new StreamMonitor(config, new SimulatedKinesisClient(STREAM, 2), cloudWatch);
+	}
+
+	private static void awaitChecks(SimulatedCloudWatchClient cloudWatch, int checks) throws Exception {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (cloudWatch.getCallCount(SimulatedCloudWatchClient.GET_METRIC_DATA) < checks
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+	}
+
+	@Test
+	public void testMonitorsShareScheduler() throws Exception {
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+		SimulatedCloudWatchClient first = new SimulatedCloudWatchClient();
+		SimulatedCloudWatchClient second = new SimulatedCloudWatchClient();
+		StreamMonitor firstMonitor = monitor(STREAM, first);
+		StreamMonitor secondMonitor = monitor(STREAM, second);
+
+		try {
+			// both monitors check repeatedly on the one Thread
+			ScheduledFuture<?> firstFuture = firstMonitor.schedule(scheduler, 0);
+			ScheduledFuture<?> secondFuture = secondMonitor.schedule(scheduler, 100);
+			awaitChecks(first, 2);
+			awaitChecks(second, 2);
+			assertTrue(first.getCallCount(SimulatedCloudWatchClient.GET_METRIC_DATA) >= 2);
+			assertTrue(second.getCallCount(SimulatedCloudWatchClient.GET_METRIC_DATA) >= 2);
+
+			// stopping one monitor leaves the other scheduled
+			firstMonitor.stop();
+			assertTrue(firstFuture.isDone());
+			assertFalse(secondFuture.isDone());
+			assertNull(firstMonitor.getException());
+		} finally {
+			secondMonitor.stop();
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailedCheckIsNotRescheduled() throws Exception {
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+		SimulatedCloudWatchClient cloudWatch = new SimulatedCloudWatchClient();
+
+		try {
+			// the Stream doesn't exist, so loading its capacity fails
+			StreamMonitor monitor = monitor("MissingStream", cloudWatch);
+			ScheduledFuture<?> future = monitor.schedule(scheduler, 0);
+
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (!future.isDone() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+			}
+			assertTrue(future.isDone());
+			assertNotNull(monitor.getException());
+			assertEquals(0, cloudWatch.getCallCount(SimulatedCloudWatchClient.GET_METRIC_DATA));
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testMonitorThreads() throws Exception {
+		assertEquals(1, AutoscalingController.getMonitorThreads(1));
+		assertTrue(AutoscalingController.getMonitorThreads(4000) < 4000);
+
+		System.setProperty(AutoscalingController.MONITOR_THREADS_PARAM, "8");
+		try {
+			assertEquals(8, AutoscalingController.getMonitorThreads(4000));
+		} finally {
+			System.clearProperty(AutoscalingController.MONITOR_THREADS_PARAM);
+		}
+	}
+}
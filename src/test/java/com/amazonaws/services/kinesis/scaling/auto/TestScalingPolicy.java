@@ -0,0 +1,226 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.scaling.ScaleDirection;
+import com.amazonaws.services.kinesis.scaling.SimulatedKinesisClient;
+import com.amazonaws.services.kinesis.scaling.StreamScaler;
+
+public class TestScalingPolicy {
+	private static final String STREAM = "TestStream";
+
+	private static final int MINUTES = 5;
+
+	private static final DateTime NOW = new DateTime(1_600_000_000_000L);
+
+	private static AutoscalingConfiguration config(ScalingPolicyType policy) {
+		ScalingConfig scaleUp = new ScalingConfig();
+		scaleUp.setScaleThresholdPct(75);
+		scaleUp.setScaleAfterMins(3);
+		scaleUp.setScalePct(200);
+		scaleUp.setCoolOffMins(0);
+		ScalingConfig scaleDown = new ScalingConfig();
+		scaleDown.setScaleThresholdPct(25);
+		scaleDown.setScaleAfterMins(MINUTES);
+		scaleDown.setScalePct(50);
+		scaleDown.setCoolOffMins(0);
+
+		AutoscalingConfiguration config = new AutoscalingConfiguration();
+		config.setStreamName(STREAM);
+		config.setScaleOnOperation(Arrays.asList(KinesisOperationType.PUT));
+		config.setScaleUp(scaleUp);
+		config.setScaleDown(scaleDown);
+		config.setScalingPolicy(policy);
+		config.setTargetUtilisationPct(50);
+		return config;
+	}
+
+	/* PUT bytes at a share of the capacity of the shards, and throttled in the given minutes */
+	private static UtilisationSnapshot snapshot(double bytesPct, int openShards, int throttledMinutes) {
+		Instant end = Instant.ofEpochMilli(NOW.getMillis());
+		Map<StreamMetric, UtilisationSeries> metrics = new HashMap<>();
+		for (StreamMetric m : StreamMetric.values()) {
+			metrics.put(m, new UtilisationSeries(end.minusSeconds(MINUTES * 60), end, 60));
+		}
+		StreamMetrics capacity = KinesisOperationType.PUT.getMaxCapacity();
+		for (int i = 0; i < MINUTES; i++) {
+			Instant minute = metrics.get(StreamMetric.Bytes).getTimestamp(i);
+			metrics.get(StreamMetric.Bytes).add(minute, bytesPct * openShards * capacity.get(StreamMetric.Bytes));
+			metrics.get(StreamMetric.Records).add(minute, 10);
+			metrics.get(StreamMetric.Throttles).add(minute, i < throttledMinutes ? 50 : 0);
+		}
+
+		Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> utilisation = new HashMap<>();
+		utilisation.put(KinesisOperationType.PUT, metrics);
+
+		capacity.put(StreamMetric.Bytes, openShards * capacity.get(StreamMetric.Bytes));
+		capacity.put(StreamMetric.Records, openShards * capacity.get(StreamMetric.Records));
+		Map<KinesisOperationType, StreamMetrics> streamMaxCapacity = new HashMap<>();
+		streamMaxCapacity.put(KinesisOperationType.PUT, capacity);
+
+		return new UtilisationSnapshot(utilisation, new HashMap<String, Map<StreamMetric, UtilisationSeries>>(),
+				streamMaxCapacity, MINUTES, NOW);
+	}
+
+	@Test
+	public void testVoteMatrixScalesByConfiguredStep() throws Exception {
+		ScalingPolicy policy = ScalingPolicyType.voteMatrix.create(config(ScalingPolicyType.voteMatrix));
+
+		ScalingDecision up = policy.decide(snapshot(0.9, 4, 0), 4);
+		assertEquals(ScaleDirection.UP, up.getDirection());
+		assertEquals(8, up.getTargetShardCount());
+		assertFalse(up.getReasons().isEmpty());
+
+		ScalingDecision down = policy.decide(snapshot(0.1, 4, 0), 4);
+		assertEquals(ScaleDirection.DOWN, down.getDirection());
+		assertEquals(2, down.getTargetShardCount());
+
+		ScalingDecision none = policy.decide(snapshot(0.5, 4, 0), 4);
+		assertEquals(ScaleDirection.NONE, none.getDirection());
+		assertEquals(4, none.getTargetShardCount());
+	}
+
+	@Test
+	public void testTargetTrackingJumpsToSetPoint() throws Exception {
+		ScalingPolicy policy = ScalingPolicyType.targetTracking.create(config(ScalingPolicyType.targetTracking));
+
+		// a spike to 5 times capacity needs 40 shards at 50%, in one step
+		ScalingDecision up = policy.decide(snapshot(5, 4, 0), 4);
+		assertEquals(ScaleDirection.UP, up.getDirection());
+		assertEquals(40, up.getTargetShardCount());
+		assertTrue(up.toString(), up.getReasons().get(up.getReasons().size() - 1).contains("PUT Bytes needs 40"));
+
+		// 10% of 4 shards needs 1 shard at 50%, but shrinks by the 50% scale
+		// down step
+		ScalingDecision down = policy.decide(snapshot(0.1, 4, 0), 4);
+		assertEquals(ScaleDirection.DOWN, down.getDirection());
+		assertEquals(2, down.getTargetShardCount());
+
+		// 50% of 4 shards is on the set point
+		assertEquals(ScaleDirection.NONE, policy.decide(snapshot(0.5, 4, 0), 4).getDirection());
+	}
+
+	@Test
+	public void testTargetTrackingLimits() throws Exception {
+		AutoscalingConfiguration config = config(ScalingPolicyType.targetTracking);
+		config.setMinShards(2);
+		config.setMaxShards(10);
+		ScalingPolicy policy = config.getScalingPolicy().create(config);
+
+		assertEquals(10, policy.decide(snapshot(5, 4, 0), 4).getTargetShardCount());
+		assertEquals(2, policy.decide(snapshot(0.1, 4, 0), 4).getTargetShardCount());
+	}
+
+	@Test
+	public void testTargetTrackingThrottling() throws Exception {
+		AutoscalingConfiguration config = config(ScalingPolicyType.targetTracking);
+		config.getScaleUp().setThrottleThreshold(10D);
+		config.getScaleUp().setThrottleAfterMins(2);
+		ScalingPolicy policy = config.getScalingPolicy().create(config);
+
+		// throttled writes aren't in the bytes, so the configured step is used
+		ScalingDecision up = policy.decide(snapshot(0.1, 4, 2), 4);
+		assertEquals(ScaleDirection.UP, up.getDirection());
+		assertEquals(8, up.getTargetShardCount());
+
+		// a single throttled minute holds the shard count
+		assertEquals(ScaleDirection.NONE, policy.decide(snapshot(0.1, 4, 1), 4).getDirection());
+	}
+
+	@Test
+	public void testMonitorUsesConfiguredPolicy() throws Exception {
+		SimulatedKinesisClient client = new SimulatedKinesisClient(STREAM, 4);
+		for (String op : new String[] { SimulatedKinesisClient.LIST_SHARDS,
+				SimulatedKinesisClient.DESCRIBE_STREAM_SUMMARY, SimulatedKinesisClient.SPLIT_SHARD,
+				SimulatedKinesisClient.MERGE_SHARDS }) {
+			client.setTransactionLimit(op, null);
+		}
+		StreamMonitor monitor = new StreamMonitor(config(ScalingPolicyType.targetTracking), new StreamScaler(client));
+
+		UtilisationSnapshot snapshot = snapshot(1.5, 4, 0);
+		monitor.processCloudwatchMetrics(snapshot.getUtilisation(), snapshot.getStreamMaxCapacity(), MINUTES, NOW);
+		assertEquals(12, client.getOpenShardCount(STREAM));
+	}
+
+	@Test
+	public void testTargetTrackingNeedsSetPoint() throws Exception {
+		AutoscalingConfiguration config = config(ScalingPolicyType.targetTracking);
+		config.setTargetUtilisationPct(0);
+		try {
+			config.validate();
+			fail("Target Utilisation of 0% should be invalid");
+		} catch (InvalidConfigurationException e) {
+		}
+	}
+
+	@Test
+	public void testMaxOperationsInFlightIsValidated() throws Exception {
+		// an unset value is sequential
+		AutoscalingConfiguration config = config(ScalingPolicyType.voteMatrix);
+		config.setMaxOperationsInFlight(null);
+		assertEquals(1, config.getMaxOperationsInFlight().intValue());
+		config.validate();
+		assertEquals(1, config.getMaxOperationsInFlight().intValue());
+
+		for (int invalid : new int[] { 0, StreamScaler.MAX_OPERATIONS_IN_FLIGHT + 1 }) {
+			config.setMaxOperationsInFlight(invalid);
+			try {
+				config.validate();
+				fail(String.format("Max Operations in Flight of %s should be invalid", invalid));
+			} catch (InvalidConfigurationException e) {
+			}
+		}
+	}
+
+	/* the PUT utilisation of a snapshot in only its latest minutes */
+	private static UtilisationSnapshot latest(UtilisationSnapshot snapshot, int minutes) {
+		Instant end = Instant.ofEpochMilli(NOW.getMillis());
+		Map<StreamMetric, UtilisationSeries> metrics = new HashMap<>();
+		for (StreamMetric m : StreamMetric.values()) {
+			UtilisationSeries full = snapshot.getUtilisation().get(KinesisOperationType.PUT).get(m);
+			UtilisationSeries series = new UtilisationSeries(end.minusSeconds(MINUTES * 60), end, 60);
+			for (int i = MINUTES - minutes; i < MINUTES; i++) {
+				series.add(full.getTimestamp(i), full.get(i));
+			}
+			metrics.put(m, series);
+		}
+
+		Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> utilisation = new HashMap<>();
+		utilisation.put(KinesisOperationType.PUT, metrics);
+		return new UtilisationSnapshot(utilisation, new HashMap<String, Map<StreamMetric, UtilisationSeries>>(),
+				snapshot.getStreamMaxCapacity(), MINUTES, NOW);
+	}
+
+	@Test
+	public void testTargetTrackingHoldsWithoutSamples() throws Exception {
+		ScalingPolicy policy = ScalingPolicyType.targetTracking.create(config(ScalingPolicyType.targetTracking));
+
+		// a gap in the metrics isn't a quiet Stream
+		ScalingDecision gap = policy.decide(latest(snapshot(0.1, 4, 0), 0), 4);
+		assertEquals(ScaleDirection.NONE, gap.getDirection());
+		assertEquals(4, gap.getTargetShardCount());
+
+		// and low samples for less than the scale down window don't shrink it
+		assertEquals(ScaleDirection.NONE, policy.decide(latest(snapshot(0.1, 4, 0), 2), 4).getDirection());
+		assertEquals(ScaleDirection.DOWN,
+				policy.decide(latest(snapshot(0.1, 4, 0), MINUTES), 4).getDirection());
+	}
+}
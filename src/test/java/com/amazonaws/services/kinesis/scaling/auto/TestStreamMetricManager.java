@@ -0,0 +1,424 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.scaling.SimulatedKinesisClient;
+
+import software.amazon.awssdk.services.kinesis.model.Shard;
+
+
+public class TestStreamMetricManager {
+	private static final String STREAM = "TestStream";
+
+	private static final List<KinesisOperationType> OPERATIONS = Arrays.asList(KinesisOperationType.PUT,
+			KinesisOperationType.GET);
+
+	// the number of metrics fetched for each stream, one query each
+	private static final int STREAM_QUERIES = KinesisOperationType.PUT.getMetricsToFetch().size()
+			+ KinesisOperationType.GET.getMetricsToFetch().size();
+
+	// a time part way through a minute, as the monitor uses
+	private static final DateTime NOW = new DateTime(1_600_000_000_000L + 25_000L);
+
+	/* one datapoint per minute for every metric of the stream, scaled by factor */
+	private static void putMetrics(SimulatedCloudWatchClient client, String streamName, int minutes,
+			double factor) {
+		for (KinesisOperationType op : OPERATIONS) {
+			for (String metricName : op.getMetricsToFetch()) {
+				for (int i = 0; i <= minutes; i++) {
+					client.putMetric(streamName, metricName,
+							Instant.ofEpochMilli(NOW.minusMinutes(i).getMillis() / 60_000 * 60_000),
+							factor * (metricName.hashCode() % 1000 + 1000 * i));
+				}
+			}
+		}
+	}
+
+	private static List<Double> values(UtilisationSeries series) {
+		List<Double> values = new ArrayList<>();
+		for (int i = 0; i < series.getPeriodCount(); i++) {
+			if (series.isPresent(i)) {
+				values.add(series.get(i));
+			}
+		}
+		return values;
+	}
+
+	/* the per-second values of each operation and metric, in time order */
+	private static Map<String, List<Double>> summarise(
+			Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> utilisation) {
+		Map<String, List<Double>> summary = new TreeMap<>();
+		for (Map.Entry<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> op : utilisation.entrySet()) {
+			for (Map.Entry<StreamMetric, UtilisationSeries> metric : op.getValue().entrySet()) {
+				summary.put(op.getKey() + "." + metric.getKey(), values(metric.getValue()));
+			}
+		}
+		return summary;
+	}
+
+	private static Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> query(
+			StreamMetricManager manager, int minutes) throws Exception {
+		return query(manager, minutes, NOW);
+	}
+
+	private static Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> query(
+			StreamMetricManager manager, int minutes, DateTime now) throws Exception {
+		return manager.queryCurrentUtilisationMetrics(minutes, now.minusMinutes(minutes), now);
+	}
+
+	@Test
+	public void testSingleRequestMatchesGetMetricStatistics() throws Exception {
+		SimulatedCloudWatchClient client = new SimulatedCloudWatchClient();
+		putMetrics(client, STREAM, 10, 1);
+
+		StreamMetricManager manager = new StreamMetricManager(STREAM, OPERATIONS, client, null);
+		Map<String, List<Double>> metricData = summarise(query(manager, 5));
+
+		assertEquals(1, client.getCallCount(SimulatedCloudWatchClient.GET_METRIC_DATA));
+		assertEquals(Arrays.asList(STREAM_QUERIES), client.getQueriesPerRequest());
+		assertEquals(0, client.getCallCount(SimulatedCloudWatchClient.GET_METRIC_STATISTICS));
+
+		manager.setUseGetMetricData(false);
+		Map<String, List<Double>> metricStatistics = summarise(query(manager, 5));
+
+		assertEquals(STREAM_QUERIES, client.getCallCount(SimulatedCloudWatchClient.GET_METRIC_STATISTICS));
+		assertEquals(metricStatistics, metricData);
+		assertEquals(2 * 6, metricData.get("PUT.Bytes").size() + metricData.get("PUT.Records").size());
+	}
+
+	@Test
+	public void testPutMetricsAggregateByPeriod() throws Exception {
+		SimulatedCloudWatchClient client = new SimulatedCloudWatchClient();
+		Instant minute = Instant.ofEpochMilli(NOW.getMillis() / 60_000 * 60_000).minusSeconds(120);
+		client.putMetric(STREAM, "PutRecord.Bytes", minute, 60_000);
+		client.putMetric(STREAM, "PutRecords.Bytes", minute, 120_000);
+		client.putMetric(STREAM, "PutRecord.Success", minute, 600);
+		client.putMetric(STREAM, "PutRecords.Records", minute, 6_000);
+		client.putMetric(STREAM, "PutRecords.Bytes", minute.plusSeconds(60), 60_000);
+		client.putMetric(STREAM, "WriteProvisionedThroughputExceeded", minute.plusSeconds(60), 300);
+		client.putMetric(STREAM, "GetRecords.IteratorAgeMilliseconds", minute, 45_000);
+
+		StreamMetricManager manager = new StreamMetricManager(STREAM, OPERATIONS, client, null);
+		for (boolean useGetMetricData : new boolean[] { true, false }) {
+			manager.setUseGetMetricData(useGetMetricData);
+			Map<String, List<Double>> utilisation = summarise(query(manager, 5));
+
+			// PutRecord and PutRecords are summed into one value per minute
+			assertEquals(Arrays.asList(3_000d, 1_000d), utilisation.get("PUT.Bytes"));
+			assertEquals(Arrays.asList(110d), utilisation.get("PUT.Records"));
+			// throttled requests are kept apart from the volume metrics
+			assertEquals(Arrays.asList(5d), utilisation.get("PUT.Throttles"));
+			// iterator age is the maximum in the minute, rather than a rate
+			assertEquals(Arrays.asList(45_000d), utilisation.get("GET.IteratorAge"));
+			assertEquals(0, utilisation.get("GET.Bytes").size());
+		}
+	}
+
+	@Test
+	public void testResultPagesAreMerged() throws Exception {
+		SimulatedCloudWatchClient client = new SimulatedCloudWatchClient();
+		putMetrics(client, STREAM, 30, 1);
+
+		StreamMetricManager manager = new StreamMetricManager(STREAM, OPERATIONS, client, null);
+		manager.setUseGetMetricData(false);
+		Map<String, List<Double>> expected = summarise(query(manager, 30));
+
+		client.setMaxDatapointsPerPage(7);
+		manager.setUseGetMetricData(true);
+		Map<String, List<Double>> actual = summarise(query(manager, 30));
+
+		assertEquals(expected, actual);
+		assertEquals((STREAM_QUERIES * 31 + 6) / 7, client.getCallCount(SimulatedCloudWatchClient.GET_METRIC_DATA));
+	}
+
+	@Test
+	public void testStreamsShareRequests() throws Exception {
+		final int streams = 100;
+		final SimulatedCloudWatchClient client = new SimulatedCloudWatchClient();
+		final MetricDataBatcher batcher = new MetricDataBatcher(client, 500);
+		List<StreamMetricManager> managers = new ArrayList<>();
+		for (int i = 0; i < streams; i++) {
+			putMetrics(client, STREAM + i, 5, i + 1);
+			StreamMetricManager manager = new StreamMetricManager(STREAM + i, OPERATIONS, client, null);
+			manager.setMetricDataBatcher(batcher);
+			managers.add(manager);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(streams);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>>>> futures = new ArrayList<>();
+		try {
+			for (final StreamMetricManager manager : managers) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return query(manager, 5);
+				}));
+			}
+			start.countDown();
+
+			for (int i = 0; i < streams; i++) {
+				// each stream sees only its own metrics
+				StreamMetricManager single = new StreamMetricManager(STREAM + i, OPERATIONS, client, null);
+				single.setUseGetMetricData(false);
+				assertEquals(summarise(query(single, 5)), summarise(futures.get(i).get()));
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		List<Integer> requests = client.getQueriesPerRequest();
+		int total = 0;
+		for (Integer queries : requests) {
+			assertTrue(queries <= MetricDataBatcher.MAX_QUERIES_PER_REQUEST);
+			total += queries;
+		}
+		assertEquals(STREAM_QUERIES * streams, total);
+		assertEquals(2, requests.size());
+	}
+
+	@Test
+	public void testBatchesKeepEachStartTime() throws Exception {
+		final SimulatedCloudWatchClient client = new SimulatedCloudWatchClient();
+		putMetrics(client, STREAM + 0, 70, 1);
+		putMetrics(client, STREAM + 1, 70, 2);
+		final MetricDataBatcher batcher = new MetricDataBatcher(client, 500);
+		final StreamMetricManager incremental = new StreamMetricManager(STREAM + 0, OPERATIONS, client, null);
+		final StreamMetricManager fresh = new StreamMetricManager(STREAM + 1, OPERATIONS, client, null);
+		incremental.setMetricDataBatcher(batcher);
+		fresh.setMetricDataBatcher(batcher);
+		query(incremental, 60, NOW.minusMinutes(1));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		final CountDownLatch start = new CountDownLatch(1);
+		int before = client.getDatapointsReturned();
+		int requestsBefore = client.getCallCount(SimulatedCloudWatchClient.GET_METRIC_DATA);
+		try {
+			List<Future<Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>>>> futures = new ArrayList<>();
+			for (final StreamMetricManager manager : Arrays.asList(incremental, fresh)) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return query(manager, 60);
+				}));
+			}
+			start.countDown();
+			for (Future<Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>>> f : futures) {
+				f.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		// the Stream already fetched only asks for the new and revisable minutes,
+		// rather than the full window of the first fetch of the other Stream
+		assertEquals(STREAM_QUERIES * (StreamMetricManager.DEFAULT_REVISION_PERIODS + 1) + STREAM_QUERIES * 61,
+				client.getDatapointsReturned() - before);
+		assertEquals(2, client.getCallCount(SimulatedCloudWatchClient.GET_METRIC_DATA) - requestsBefore);
+	}
+
+	private static void awaitOpenSubmissions(MetricDataBatcher batcher, int submissions) throws Exception {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (batcher.getOpenSubmissionCount() < submissions && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(submissions, batcher.getOpenSubmissionCount());
+	}
+
+	@Test
+	public void testInterruptedLeaderReleasesBatch() throws Exception {
+		final SimulatedCloudWatchClient client = new SimulatedCloudWatchClient();
+		putMetrics(client, STREAM + 0, 5, 1);
+		putMetrics(client, STREAM + 1, 5, 2);
+		final MetricDataBatcher batcher = new MetricDataBatcher(client, 60_000);
+		final StreamMetricManager leader = new StreamMetricManager(STREAM + 0, OPERATIONS, client, null);
+		final StreamMetricManager follower = new StreamMetricManager(STREAM + 1, OPERATIONS, client, null);
+		leader.setMetricDataBatcher(batcher);
+		follower.setMetricDataBatcher(batcher);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> leading = executor.submit(() -> query(leader, 5));
+			awaitOpenSubmissions(batcher, 1);
+			Future<?> following = executor.submit(() -> query(follower, 5));
+			awaitOpenSubmissions(batcher, 2);
+
+			// stopping the leader's monitor fails the batch rather than leaving
+			// the follower waiting
+			leading.cancel(true);
+			try {
+				following.get(5, TimeUnit.SECONDS);
+				fail("Follower of an interrupted batch returned");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause().getMessage().contains("Interrupted"));
+			}
+			assertEquals(0, batcher.getOpenSubmissionCount());
+			assertEquals(0, client.getCallCount(SimulatedCloudWatchClient.GET_METRIC_DATA));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFallBackWhenGetMetricDataDenied() throws Exception {
+		SimulatedCloudWatchClient client = new SimulatedCloudWatchClient();
+		putMetrics(client, STREAM, 5, 1);
+		client.setDenied(SimulatedCloudWatchClient.GET_METRIC_DATA, true);
+
+		StreamMetricManager manager = new StreamMetricManager(STREAM, OPERATIONS, client, null);
+		Map<String, List<Double>> first = summarise(query(manager, 5));
+		Map<String, List<Double>> second = summarise(query(manager, 5));
+
+		// the denied API is only tried once
+		assertEquals(1, client.getCallCount(SimulatedCloudWatchClient.GET_METRIC_DATA));
+		assertEquals(2 * STREAM_QUERIES, client.getCallCount(SimulatedCloudWatchClient.GET_METRIC_STATISTICS));
+		assertEquals(first, second);
+		assertEquals(12, first.get("GET.Bytes").size() + first.get("GET.Records").size());
+	}
+
+	@Test
+	public void testLaterQueriesFetchOnlyNewPeriods() throws Exception {
+		SimulatedCloudWatchClient client = new SimulatedCloudWatchClient();
+		putMetrics(client, STREAM, 70, 1);
+		StreamMetricManager manager = new StreamMetricManager(STREAM, OPERATIONS, client, null);
+
+		query(manager, 60);
+		assertEquals(STREAM_QUERIES * 61, client.getDatapointsReturned());
+
+		// new datapoints for the following minutes
+		for (int m = 1; m <= 3; m++) {
+			for (KinesisOperationType op : OPERATIONS) {
+				for (String metricName : op.getMetricsToFetch()) {
+					client.putMetric(STREAM, metricName,
+							Instant.ofEpochMilli(NOW.plusMinutes(m).getMillis() / 60_000 * 60_000), 100 * m);
+				}
+			}
+		}
+
+		for (int m = 1; m <= 3; m++) {
+			int before = client.getDatapointsReturned();
+			DateTime now = NOW.plusMinutes(m);
+			Map<String, List<Double>> incremental = summarise(query(manager, 60, now));
+
+			// the new minute and the revisable minutes before it
+			assertEquals(STREAM_QUERIES * (StreamMetricManager.DEFAULT_REVISION_PERIODS + 1),
+					client.getDatapointsReturned() - before);
+
+			StreamMetricManager full = new StreamMetricManager(STREAM, OPERATIONS, client, null);
+			assertEquals(summarise(query(full, 60, now)), incremental);
+		}
+	}
+
+	@Test
+	public void testLateDataRevisesRecentPeriods() throws Exception {
+		SimulatedCloudWatchClient client = new SimulatedCloudWatchClient();
+		putMetrics(client, STREAM, 10, 1);
+		StreamMetricManager manager = new StreamMetricManager(STREAM, OPERATIONS, client, null);
+		query(manager, 10);
+
+		// CloudWatch completes the current minute and the one before it
+		Instant current = Instant.ofEpochMilli(NOW.getMillis() / 60_000 * 60_000);
+		client.putMetric(STREAM, "GetRecords.Bytes", current, 6_000_000);
+		client.putMetric(STREAM, "GetRecords.Bytes", current.minusSeconds(60), 12_000_000);
+
+		Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> revised = query(manager, 10,
+				NOW.plusSeconds(20));
+		List<Double> values = values(revised.get(KinesisOperationType.GET).get(StreamMetric.Bytes));
+		assertTrue(values.contains(100_000d));
+		assertTrue(values.contains(200_000d));
+		assertEquals(11, values.size());
+	}
+
+	@Test
+	public void testShardLevelUtilisation() throws Exception {
+		SimulatedKinesisClient kinesis = new SimulatedKinesisClient(STREAM, 4);
+		SimulatedCloudWatchClient client = new SimulatedCloudWatchClient();
+		putMetrics(client, STREAM, 5, 1);
+		String hotShard = kinesis.getOpenShards(STREAM).get(2).shardId();
+		for (int i = 0; i <= 5; i++) {
+			Instant minute = Instant.ofEpochMilli(NOW.minusMinutes(i).getMillis() / 60_000 * 60_000);
+			for (Shard s : kinesis.getOpenShards(STREAM)) {
+				boolean hot = s.shardId().equals(hotShard);
+				client.putShardMetric(STREAM, s.shardId(), StreamMetricManager.SHARD_INCOMING_BYTES, minute,
+						60 * (hot ? 900_000 : 100_000));
+				client.putShardMetric(STREAM, s.shardId(), StreamMetricManager.SHARD_INCOMING_RECORDS, minute,
+						60 * 100);
+				client.putShardMetric(STREAM, s.shardId(), StreamMetricManager.SHARD_WRITE_THROTTLED, minute,
+						hot && i < 2 ? 10 : 0);
+			}
+		}
+
+		StreamMetricManager manager = new StreamMetricManager(STREAM, OPERATIONS, client, kinesis);
+		manager.setShardLevelMetrics(true);
+		manager.loadMaxCapacity();
+		query(manager, 5);
+
+		// stream and shard queries go in the same request
+		assertEquals(Arrays.asList(STREAM_QUERIES + 3 * 4), client.getQueriesPerRequest());
+		assertEquals(4, manager.getShardUtilisation().size());
+		for (ShardUtilisation s : manager.getShardUtilisation().values()) {
+			if (s.getShardId().equals(hotShard)) {
+				assertEquals(6, s.getHighPeriods(0.75));
+				assertEquals(900_000d / 1_048_576, s.getPeakUtilisation(), 1e-9);
+			} else {
+				assertEquals(0, s.getHighPeriods(0.75));
+			}
+		}
+		assertEquals(2, manager.getShardUtilisation().get(hotShard).getHighPeriods(0.9));
+	}
+
+	@Test
+	public void testConsumerUtilisation() throws Exception {
+		SimulatedKinesisClient kinesis = new SimulatedKinesisClient(STREAM, 4);
+		kinesis.registerConsumer(STREAM, "reporting");
+		kinesis.registerConsumer(STREAM, "archiver");
+		SimulatedCloudWatchClient client = new SimulatedCloudWatchClient();
+		putMetrics(client, STREAM, 5, 1);
+		for (int i = 0; i <= 5; i++) {
+			Instant minute = Instant.ofEpochMilli(NOW.minusMinutes(i).getMillis() / 60_000 * 60_000);
+			client.putConsumerMetric(STREAM, "reporting", StreamMetricManager.CONSUMER_BYTES, minute, 60 * 7_000_000);
+			client.putConsumerMetric(STREAM, "archiver", StreamMetricManager.CONSUMER_BYTES, minute, 60 * 1_000);
+		}
+
+		StreamMetricManager manager = new StreamMetricManager(STREAM, OPERATIONS, client, kinesis);
+		manager.loadMaxCapacity();
+		query(manager, 5);
+
+		// consumer queries go in the same request as the stream queries
+		assertEquals(Arrays.asList(STREAM_QUERIES + 2), client.getQueriesPerRequest());
+		assertEquals(2, manager.getConsumerUtilisation().size());
+		List<Double> reporting = values(manager.getConsumerUtilisation().get("reporting").get(StreamMetric.Bytes));
+		assertEquals(6, reporting.size());
+		assertEquals(7_000_000d, reporting.get(0), 1e-9);
+		assertEquals(1_000d,
+				values(manager.getConsumerUtilisation().get("archiver").get(StreamMetric.Bytes)).get(0), 1e-9);
+
+		// consumers are only tracked with GetMetricData
+		manager.setUseGetMetricData(false);
+		query(manager, 5);
+		assertTrue(manager.getConsumerUtilisation().isEmpty());
+	}
+}
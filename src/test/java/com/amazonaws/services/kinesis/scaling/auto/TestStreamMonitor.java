@@ -0,0 +1,390 @@
+/**
+ * Amazon Kinesis Scaling Utility
+ *
+ * Copyright 2014, Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.amazonaws.services.kinesis.scaling.auto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.scaling.ScaleDirection;
+import com.amazonaws.services.kinesis.scaling.ScalingCompletionStatus;
+import com.amazonaws.services.kinesis.scaling.ScalingOperationReport;
+import com.amazonaws.services.kinesis.scaling.SimulatedKinesisClient;
+import com.amazonaws.services.kinesis.scaling.StreamScaler;
+
+import software.amazon.awssdk.services.kinesis.model.Shard;
+
+public class TestStreamMonitor {
+	private static final String STREAM = "TestStream";
+
+	private static final int MINUTES = 5;
+
+	private static final DateTime NOW = new DateTime(1_600_000_000_000L);
+
+	private static SimulatedKinesisClient unthrottled(int openShards) {
+		SimulatedKinesisClient client = new SimulatedKinesisClient(STREAM, openShards);
+		for (String op : new String[] { SimulatedKinesisClient.LIST_SHARDS,
+				SimulatedKinesisClient.DESCRIBE_STREAM_SUMMARY, SimulatedKinesisClient.SPLIT_SHARD,
+				SimulatedKinesisClient.MERGE_SHARDS }) {
+			client.setTransactionLimit(op, null);
+		}
+		return client;
+	}
+
+	private static StreamMonitor monitor(SimulatedKinesisClient client) throws Exception {
+		ScalingConfig scaleUp = new ScalingConfig();
+		scaleUp.setScaleThresholdPct(75);
+		scaleUp.setScaleAfterMins(3);
+		scaleUp.setScalePct(100);
+		scaleUp.setCoolOffMins(0);
+		ScalingConfig scaleDown = new ScalingConfig();
+		scaleDown.setScaleThresholdPct(25);
+		scaleDown.setScaleAfterMins(MINUTES);
+		scaleDown.setScalePct(50);
+		scaleDown.setCoolOffMins(0);
+
+		AutoscalingConfiguration config = new AutoscalingConfiguration();
+		config.setStreamName(STREAM);
+		config.setScaleOnOperation(Arrays.asList(KinesisOperationType.PUT));
+		config.setScaleUp(scaleUp);
+		config.setScaleDown(scaleDown);
+		config.setScaleHotShards(true);
+
+		return new StreamMonitor(config, new StreamScaler(client));
+	}
+
+	/* stream level PUT utilisation, with a rate of throttled records in the given minutes */
+	private static Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> putUtilisation(double bytesPct,
+			int openShards, int throttledMinutes) {
+		Instant end = Instant.ofEpochMilli(NOW.getMillis());
+		Instant start = end.minusSeconds(MINUTES * 60);
+		Map<StreamMetric, UtilisationSeries> metrics = new HashMap<>();
+		for (StreamMetric m : StreamMetric.values()) {
+			metrics.put(m, new UtilisationSeries(start, end, 60));
+		}
+		StreamMetrics capacity = KinesisOperationType.PUT.getMaxCapacity();
+		for (int i = 0; i < MINUTES; i++) {
+			Instant minute = metrics.get(StreamMetric.Bytes).getTimestamp(i);
+			metrics.get(StreamMetric.Bytes).add(minute, bytesPct * openShards * capacity.get(StreamMetric.Bytes));
+			metrics.get(StreamMetric.Records).add(minute, 10);
+			metrics.get(StreamMetric.Throttles).add(minute, i < throttledMinutes ? 50 : 0);
+		}
+
+		Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> utilisation = new HashMap<>();
+		utilisation.put(KinesisOperationType.PUT, metrics);
+		return utilisation;
+	}
+
+	/* stream level GET utilisation, with the iterator age of each minute */
+	private static Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> getUtilisation(double bytesPct,
+			int openShards, long... ages) {
+		Instant end = Instant.ofEpochMilli(NOW.getMillis());
+		Instant start = end.minusSeconds(MINUTES * 60);
+		Map<StreamMetric, UtilisationSeries> metrics = new HashMap<>();
+		for (StreamMetric m : StreamMetric.values()) {
+			metrics.put(m, new UtilisationSeries(start, end, 60));
+		}
+		StreamMetrics capacity = KinesisOperationType.GET.getMaxCapacity();
+		for (int i = 0; i < MINUTES; i++) {
+			Instant minute = metrics.get(StreamMetric.Bytes).getTimestamp(i);
+			metrics.get(StreamMetric.Bytes).add(minute, bytesPct * openShards * capacity.get(StreamMetric.Bytes));
+			metrics.get(StreamMetric.Records).add(minute, 10);
+			metrics.get(StreamMetric.IteratorAge).add(minute, ages[i]);
+		}
+
+		Map<KinesisOperationType, Map<StreamMetric, UtilisationSeries>> utilisation = new HashMap<>();
+		utilisation.put(KinesisOperationType.GET, metrics);
+		return utilisation;
+	}
+
+	private static Map<KinesisOperationType, StreamMetrics> getCapacity(int openShards) {
+		StreamMetrics capacity = KinesisOperationType.GET.getMaxCapacity();
+		capacity.put(StreamMetric.Bytes, openShards * capacity.get(StreamMetric.Bytes));
+		capacity.put(StreamMetric.Records, openShards * capacity.get(StreamMetric.Records));
+
+		Map<KinesisOperationType, StreamMetrics> streamMaxCapacity = new HashMap<>();
+		streamMaxCapacity.put(KinesisOperationType.GET, capacity);
+		return streamMaxCapacity;
+	}
+
+	/* the GET bytes of an enhanced fan-out consumer, as a share of the stream capacity */
+	private static Map<StreamMetric, UtilisationSeries> consumer(double bytesPct, int openShards) {
+		Instant end = Instant.ofEpochMilli(NOW.getMillis());
+		UtilisationSeries bytes = new UtilisationSeries(end.minusSeconds(MINUTES * 60), end, 60);
+		for (int i = 0; i < MINUTES; i++) {
+			bytes.add(bytes.getTimestamp(i),
+					bytesPct * openShards * KinesisOperationType.GET.getMaxCapacity().get(StreamMetric.Bytes));
+		}
+
+		Map<StreamMetric, UtilisationSeries> metrics = new HashMap<>();
+		metrics.put(StreamMetric.Bytes, bytes);
+		return metrics;
+	}
+
+	private static StreamMonitor getMonitor(SimulatedKinesisClient client) throws Exception {
+		StreamMonitor monitor = monitor(client);
+		monitor.getConfig().setScaleHotShards(false);
+		monitor.getConfig().setScaleOnOperation(Arrays.asList(KinesisOperationType.GET));
+		monitor.getConfig().getScaleUp().setScalePct(200);
+		return monitor;
+	}
+
+	private static StreamMonitor iteratorAgeMonitor(SimulatedKinesisClient client) throws Exception {
+		StreamMonitor monitor = getMonitor(client);
+
+		IteratorAgeConfig iteratorAge = new IteratorAgeConfig();
+		iteratorAge.setScaleThresholdMillis(60_000);
+		iteratorAge.setMaxIncreaseMillisPerMin(1_000);
+		iteratorAge.setFloorMillis(5_000);
+		monitor.getConfig().setIteratorAge(iteratorAge);
+		return monitor;
+	}
+
+	private static Map<KinesisOperationType, StreamMetrics> putCapacity(int openShards) {
+		StreamMetrics capacity = KinesisOperationType.PUT.getMaxCapacity();
+		capacity.put(StreamMetric.Bytes, openShards * capacity.get(StreamMetric.Bytes));
+		capacity.put(StreamMetric.Records, openShards * capacity.get(StreamMetric.Records));
+
+		Map<KinesisOperationType, StreamMetrics> streamMaxCapacity = new HashMap<>();
+		streamMaxCapacity.put(KinesisOperationType.PUT, capacity);
+		return streamMaxCapacity;
+	}
+
+	private static StreamMonitor throttleMonitor(SimulatedKinesisClient client) throws Exception {
+		StreamMonitor monitor = monitor(client);
+		monitor.getConfig().setScaleHotShards(false);
+		monitor.getConfig().getScaleUp().setThrottleThreshold(10D);
+		monitor.getConfig().getScaleUp().setThrottleAfterMins(2);
+		monitor.getConfig().getScaleUp().setScalePct(200);
+		return monitor;
+	}
+
+	/*
+	 * a PUT monitor which has the history of an hourly pattern peaking at minute
+	 * 45, from three hours before the hour until now
+	 */
+	private static StreamMonitor forecastMonitor(SimulatedKinesisClient client, double peakShards, DateTime now)
+			throws Exception {
+		StreamMonitor monitor = throttleMonitor(client);
+		ForecastConfig forecast = new ForecastConfig();
+		forecast.setSeasonMins(60);
+		forecast.setPeriodMins(5);
+		forecast.setLeadTimeMins(15);
+		monitor.getConfig().setForecast(forecast);
+		monitor = new StreamMonitor(monitor.getConfig(), new StreamScaler(client));
+
+		DateTime hour = now.minusMinutes(now.getMinuteOfHour()).minusHours(3);
+		for (int minute = 0; minute < 3 * 60 + now.getMinuteOfHour(); minute++) {
+			double shards = peakShards / 2 * (1 + Math.sin(2 * Math.PI * (minute % 60 - 30) / 60));
+			monitor.getForecaster().add(KinesisOperationType.PUT, StreamMetric.Bytes,
+					Instant.ofEpochMilli(hour.plusMinutes(minute).getMillis()),
+					shards * KinesisOperationType.PUT.getMaxCapacity().get(StreamMetric.Bytes));
+		}
+		return monitor;
+	}
+
+	/* a shard with a constant rate of bytes per second, and throttles in the given minutes */
+	private static ShardUtilisation shard(String shardId, double bytesPerSecond, int throttledMinutes) {
+		Instant end = Instant.ofEpochMilli(NOW.getMillis());
+		Instant start = end.minusSeconds(MINUTES * 60);
+		UtilisationSeries bytes = new UtilisationSeries(start, end, 60);
+		UtilisationSeries records = new UtilisationSeries(start, end, 60);
+		UtilisationSeries throttled = new UtilisationSeries(start, end, 60);
+		for (int i = 0; i < MINUTES; i++) {
+			bytes.add(bytes.getTimestamp(i), bytesPerSecond);
+			records.add(records.getTimestamp(i), 10);
+			throttled.add(throttled.getTimestamp(i), i < throttledMinutes ? 1 : 0);
+		}
+		return new ShardUtilisation(shardId, bytes, records, throttled);
+	}
+
+	@Test
+	public void testOnlyHotShardsAreSplit() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		Map<String, ShardUtilisation> utilisation = new HashMap<>();
+		for (Shard s : client.getOpenShards(STREAM)) {
+			utilisation.put(s.shardId(), shard(s.shardId(), 100_000, 0));
+		}
+		String hot = client.getOpenShards(STREAM).get(1).shardId();
+		String throttled = client.getOpenShards(STREAM).get(3).shardId();
+		utilisation.put(hot, shard(hot, 1_000_000, 0));
+		utilisation.put(throttled, shard(throttled, 500_000, 4));
+
+		ScalingOperationReport report = monitor(client).processShardUtilisation(utilisation, NOW);
+
+		assertNotNull(report);
+		assertEquals(ScaleDirection.UP, report.getScaleDirection());
+		assertEquals(2, report.getOperationsMade());
+		assertEquals(6, client.getOpenShardCount(STREAM));
+		assertNull(report.getLayout().get(hot));
+		assertNull(report.getLayout().get(throttled));
+		assertNotNull(report.getLayout().get(client.getOpenShards(STREAM).get(0).shardId()));
+	}
+
+	@Test
+	public void testPartialSplitIsReported() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		Map<String, ShardUtilisation> utilisation = new HashMap<>();
+		String hot = client.getOpenShards(STREAM).get(1).shardId();
+		utilisation.put(hot, shard(hot, 1_000_000, 0));
+
+		// the second hot Shard no longer exists, so its split fails after the
+		// first has landed
+		utilisation.put("shardId-999999999999", shard("shardId-999999999999", 900_000, 0));
+
+		ScalingOperationReport report = monitor(client).processShardUtilisation(utilisation, NOW);
+
+		assertNotNull(report);
+		assertEquals(ScalingCompletionStatus.Error, report.getEndStatus());
+		assertEquals(ScaleDirection.UP, report.getScaleDirection());
+		assertEquals(1, report.getOperationsMade());
+		assertEquals(5, client.getOpenShardCount(STREAM));
+	}
+
+	@Test
+	public void testNoSplitWithoutHotShards() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		Map<String, ShardUtilisation> utilisation = new HashMap<>();
+		for (Shard s : client.getOpenShards(STREAM)) {
+			// throttled, but not for long enough
+			utilisation.put(s.shardId(), shard(s.shardId(), 100_000, 2));
+		}
+
+		assertNull(monitor(client).processShardUtilisation(utilisation, NOW));
+		assertEquals(4, client.getOpenShardCount(STREAM));
+	}
+
+	@Test
+	public void testForecastPeakScalesUpAhead() throws Exception {
+		SimulatedKinesisClient client = unthrottled(2);
+
+		// the peak of 3 Shards is more than 15 minutes away
+		DateTime beforePeak = NOW.minusMinutes(NOW.getMinuteOfHour());
+		assertNull(forecastMonitor(client, 3, beforePeak).processForecast(beforePeak));
+		assertEquals(2, client.getOpenShardCount(STREAM));
+
+		// within the lead time of the peak, the Stream is scaled up so that it
+		// is below the 75% threshold
+		DateTime nearPeak = beforePeak.plusMinutes(35);
+		ScalingOperationReport report = forecastMonitor(client, 3, nearPeak).processForecast(nearPeak);
+		assertNotNull(report);
+		assertEquals(ScaleDirection.UP, report.getScaleDirection());
+		assertTrue(client.getOpenShardCount(STREAM) >= 4);
+	}
+
+	@Test
+	public void testForecastPreventsScaleDown() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+
+		// utilisation is low now, but the forecast peak needs 4 Shards
+		DateTime nearPeak = NOW.minusMinutes(NOW.getMinuteOfHour()).plusMinutes(35);
+		StreamMonitor monitor = forecastMonitor(client, 3, nearPeak);
+		monitor.processForecast(nearPeak);
+		monitor.processCloudwatchMetrics(putUtilisation(0.1, 4, 0), putCapacity(4), MINUTES, NOW);
+		assertEquals(4, client.getOpenShardCount(STREAM));
+	}
+
+	@Test
+	public void testSustainedThrottlingScalesUp() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+
+		// well below the scale up threshold, but rejecting writes
+		throttleMonitor(client).processCloudwatchMetrics(putUtilisation(0.5, 4, 2), putCapacity(4), MINUTES, NOW);
+		assertEquals(8, client.getOpenShardCount(STREAM));
+	}
+
+	@Test
+	public void testThrottlingPreventsScaleDown() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+
+		// a brief throttle isn't enough to scale up, but the stream mustn't be
+		// made smaller either
+		throttleMonitor(client).processCloudwatchMetrics(putUtilisation(0.1, 4, 1), putCapacity(4), MINUTES, NOW);
+		assertEquals(4, client.getOpenShardCount(STREAM));
+
+		// without throttling the same utilisation scales down
+		throttleMonitor(client).processCloudwatchMetrics(putUtilisation(0.1, 4, 0), putCapacity(4), MINUTES, NOW);
+		assertEquals(2, client.getOpenShardCount(STREAM));
+	}
+
+	@Test
+	public void testRisingIteratorAgeScalesUp() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+
+		// consumers read well under capacity, but are falling further behind
+		iteratorAgeMonitor(client).processCloudwatchMetrics(getUtilisation(0.5, 4, 4_000, 6_000, 8_000, 10_000, 12_000),
+				getCapacity(4), MINUTES, NOW);
+		assertEquals(8, client.getOpenShardCount(STREAM));
+	}
+
+	@Test
+	public void testIteratorAgeBelowFloorDoesNotScaleUp() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+
+		// rising quickly, but consumers are still only seconds behind
+		iteratorAgeMonitor(client).processCloudwatchMetrics(getUtilisation(0.5, 4, 0, 1_000, 2_000, 3_000, 4_000),
+				getCapacity(4), MINUTES, NOW);
+		assertEquals(4, client.getOpenShardCount(STREAM));
+	}
+
+	@Test
+	public void testIteratorAgeAboveFloorPreventsScaleDown() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+
+		// low utilisation, and a steady but high iterator age
+		iteratorAgeMonitor(client).processCloudwatchMetrics(getUtilisation(0.1, 4, 30_000, 30_000, 30_000, 30_000,
+				30_000), getCapacity(4), MINUTES, NOW);
+		assertEquals(4, client.getOpenShardCount(STREAM));
+
+		// once consumers catch up, the stream scales down
+		iteratorAgeMonitor(client).processCloudwatchMetrics(getUtilisation(0.1, 4, 30_000, 20_000, 10_000, 1_000,
+				0), getCapacity(4), MINUTES, NOW);
+		assertEquals(2, client.getOpenShardCount(STREAM));
+	}
+
+	@Test
+	public void testHeavyConsumerScalesUp() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		Map<String, Map<StreamMetric, UtilisationSeries>> consumers = new HashMap<>();
+		consumers.put("reporting", consumer(0.9, 4));
+		consumers.put("archiver", consumer(0.3, 4));
+
+		// GetRecords consumers read little, but one fan-out consumer is near
+		// its own limit
+		getMonitor(client).processCloudwatchMetrics(getUtilisation(0.1, 4, 0, 0, 0, 0, 0), consumers,
+				getCapacity(4), MINUTES, NOW);
+		assertEquals(8, client.getOpenShardCount(STREAM));
+	}
+
+	@Test
+	public void testBusyConsumerPreventsScaleDown() throws Exception {
+		SimulatedKinesisClient client = unthrottled(4);
+		Map<String, Map<StreamMetric, UtilisationSeries>> consumers = new HashMap<>();
+		consumers.put("reporting", consumer(0.5, 4));
+		consumers.put("archiver", consumer(0.1, 4));
+
+		getMonitor(client).processCloudwatchMetrics(getUtilisation(0.1, 4, 0, 0, 0, 0, 0), consumers,
+				getCapacity(4), MINUTES, NOW);
+		assertEquals(4, client.getOpenShardCount(STREAM));
+
+		// once all consumers are quiet the stream scales down
+		consumers.put("reporting", consumer(0.1, 4));
+		getMonitor(client).processCloudwatchMetrics(getUtilisation(0.1, 4, 0, 0, 0, 0, 0), consumers,
+				getCapacity(4), MINUTES, NOW);
+		assertEquals(2, client.getOpenShardCount(STREAM));
+	}
+}